@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import static java.lang.Math.min;
+
+import android.os.Debug;
+import androidx.annotation.DoNotInline;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.io.EOFException;
+import java.io.IOException;
+
+/** Utility methods and classes shared between benchmarks. */
+public final class BenchmarkUtil {
+
+  private BenchmarkUtil() {}
+
+  /** Returns the value of a runtime statistic, or 0 if it's not available. */
+  public static long getRuntimeStat(String statName) {
+    return Util.SDK_INT >= 23 ? Api23.getRuntimeStat(statName) : 0;
+  }
+
+  /**
+   * An {@link ExtractorOutput} whose tracks discard their sample data and count the number of
+   * samples they receive. The same track output is returned for every track.
+   */
+  public static final class DiscardingExtractorOutput implements ExtractorOutput, TrackOutput {
+
+    private final byte[] readBuffer;
+
+    private long sampleCount;
+
+    public DiscardingExtractorOutput() {
+      readBuffer = new byte[4096];
+    }
+
+    /** Returns the number of samples received across all tracks. */
+    public long getSampleCount() {
+      return sampleCount;
+    }
+
+    // ExtractorOutput implementation.
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return this;
+    }
+
+    @Override
+    public void endTracks() {
+      // Do nothing.
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      // Do nothing.
+    }
+
+    // TrackOutput implementation.
+
+    @Override
+    public void format(Format format) {
+      // Do nothing.
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      int bytesSkipped = input.read(readBuffer, /* offset= */ 0, min(readBuffer.length, length));
+      if (bytesSkipped == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      return bytesSkipped;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      data.skipBytes(length);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      sampleCount++;
+    }
+  }
+
+  @RequiresApi(23)
+  private static final class Api23 {
+
+    @DoNotInline
+    public static long getRuntimeStat(String statName) {
+      @Nullable String value = Debug.getRuntimeStat(statName);
+      return value != null ? Long.parseLong(value) : 0;
+    }
+  }
+}
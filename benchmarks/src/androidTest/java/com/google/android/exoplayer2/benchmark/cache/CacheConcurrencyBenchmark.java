@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.ConcurrentSimpleCache;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the throughput of {@link SimpleCache} and {@link ConcurrentSimpleCache} when accessed
+ * from multiple threads, each of which operates on its own set of keys.
+ *
+ * <p>Each measured iteration runs {@link #OPERATIONS_PER_THREAD} operations on every thread, so the
+ * throughput in operations per second is {@code threadCount * OPERATIONS_PER_THREAD / time}.
+ */
+@RunWith(Parameterized.class)
+public final class CacheConcurrencyBenchmark {
+
+  private static final String SIMPLE_CACHE = "SimpleCache";
+  private static final String CONCURRENT_SIMPLE_CACHE = "ConcurrentSimpleCache";
+
+  private static final int KEYS_PER_THREAD = 8;
+  private static final int SPANS_PER_KEY = 16;
+  private static final int SPAN_LENGTH = 4096;
+  private static final int OPERATIONS_PER_THREAD = 256;
+  private static final long MAX_CACHE_BYTES = 1024 * 1024 * 1024;
+
+  @Parameters(name = "{0}_threads={1}")
+  public static ImmutableList<Object[]> parameters() {
+    ImmutableList.Builder<Object[]> parameters = ImmutableList.builder();
+    for (String cacheType : new String[] {SIMPLE_CACHE, CONCURRENT_SIMPLE_CACHE}) {
+      for (int threadCount : new int[] {1, 2, 4, 8}) {
+        parameters.add(new Object[] {cacheType, threadCount});
+      }
+    }
+    return parameters.build();
+  }
+
+  @Parameter(0)
+  public String cacheType;
+
+  @Parameter(1)
+  public int threadCount;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private File cacheDir;
+  private StandaloneDatabaseProvider databaseProvider;
+  private Cache cache;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    cacheDir = Util.createTempDirectory(context, "CacheConcurrencyBenchmark");
+    databaseProvider = new StandaloneDatabaseProvider(context);
+    CacheEvictor evictor = new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES);
+    cache =
+        cacheType.equals(SIMPLE_CACHE)
+            ? new SimpleCache(cacheDir, evictor, databaseProvider)
+            : new ConcurrentSimpleCache(cacheDir, evictor, databaseProvider);
+    executorService = Executors.newFixedThreadPool(threadCount);
+    for (int thread = 0; thread < threadCount; thread++) {
+      for (int key = 0; key < KEYS_PER_THREAD; key++) {
+        for (int span = 0; span < SPANS_PER_KEY; span++) {
+          writeSpan(getKey(thread, key), (long) span * SPAN_LENGTH);
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdown();
+    cache.release();
+    SimpleCache.delete(cacheDir, databaseProvider);
+    databaseProvider.close();
+  }
+
+  @Test
+  public void readWorkload() throws Exception {
+    runOnAllThreads(
+        thread -> {
+          Random random = new Random(thread);
+          for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            String key = getKey(thread, random.nextInt(KEYS_PER_THREAD));
+            long position = (long) random.nextInt(SPANS_PER_KEY) * SPAN_LENGTH;
+            CacheSpan span = cache.startReadWrite(key, position, SPAN_LENGTH);
+            assertThat(span.isCached).isTrue();
+            cache.isCached(key, position, SPAN_LENGTH);
+            cache.getCachedBytes(key, /* position= */ 0, C.LENGTH_UNSET);
+          }
+        });
+  }
+
+  @Test
+  public void readWriteWorkload() throws Exception {
+    runOnAllThreads(
+        thread -> {
+          Random random = new Random(thread);
+          String writeKey = "write-" + thread;
+          for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            if (i % 4 == 0) {
+              writeSpan(writeKey, (long) i * SPAN_LENGTH);
+            } else {
+              String key = getKey(thread, random.nextInt(KEYS_PER_THREAD));
+              long position = (long) random.nextInt(SPANS_PER_KEY) * SPAN_LENGTH;
+              cache.startReadWrite(key, position, SPAN_LENGTH);
+            }
+          }
+          cache.removeResource(writeKey);
+        });
+  }
+
+  private void runOnAllThreads(ThreadWorkload workload) throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    List<Future<Void>> futures = new ArrayList<>(threadCount);
+    while (state.keepRunning()) {
+      futures.clear();
+      for (int thread = 0; thread < threadCount; thread++) {
+        int threadIndex = thread;
+        Callable<Void> callable =
+            () -> {
+              workload.run(threadIndex);
+              return null;
+            };
+        futures.add(executorService.submit(callable));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).get();
+      }
+    }
+  }
+
+  private void writeSpan(String key, long position) throws Exception {
+    CacheSpan holeSpan = cache.startReadWrite(key, position, SPAN_LENGTH);
+    if (holeSpan.isCached) {
+      return;
+    }
+    try {
+      File file = cache.startFile(key, position, SPAN_LENGTH);
+      try (FileOutputStream outputStream = new FileOutputStream(file)) {
+        outputStream.write(new byte[SPAN_LENGTH]);
+      }
+      cache.commitFile(file, SPAN_LENGTH);
+    } finally {
+      cache.releaseHoleSpan(holeSpan);
+    }
+  }
+
+  private static String getKey(int thread, int key) {
+    return "key-" + thread + "-" + key;
+  }
+
+  private interface ThreadWorkload {
+    void run(int thread) throws Exception;
+  }
+}
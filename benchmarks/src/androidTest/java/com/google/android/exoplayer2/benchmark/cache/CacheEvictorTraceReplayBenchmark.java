@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.cache;
+
+import android.content.Context;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.upstream.cache.WindowTinyLfuCacheEvictor;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Replays a synthetic VOD access trace against a {@link SimpleCache}, comparing the hit ratio and
+ * replay time of {@link LeastRecentlyUsedCacheEvictor} and {@link WindowTinyLfuCacheEvictor}.
+ *
+ * <p>The trace consists of viewing sessions that each play the opening segments of a title, with
+ * title popularity following a Zipf distribution. Every {@link #SCAN_SESSION_INTERVAL}th session
+ * instead binge-scans a long title from start to end, touching more segments than fit in the
+ * cache. The hit ratio for each evictor is reported as an instrumentation status and logged.
+ */
+@RunWith(Parameterized.class)
+public final class CacheEvictorTraceReplayBenchmark {
+
+  private static final String TAG = "CacheEvictorBenchmark";
+
+  private static final String LEAST_RECENTLY_USED = "LeastRecentlyUsed";
+  private static final String WINDOW_TINY_LFU = "WindowTinyLfu";
+
+  private static final int SPAN_LENGTH = 1024;
+  private static final int CACHE_SIZE_SPANS = 1000;
+  private static final int TITLE_COUNT = 200;
+  private static final int SEGMENTS_PER_SESSION = 20;
+  private static final int SCAN_SEGMENT_COUNT = 1500;
+  private static final int SESSION_COUNT = 500;
+  private static final int SCAN_SESSION_INTERVAL = 25;
+  private static final double ZIPF_EXPONENT = 1.0;
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<String> parameters() {
+    return ImmutableList.of(LEAST_RECENTLY_USED, WINDOW_TINY_LFU);
+  }
+
+  @Parameter public String evictorType;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private Context context;
+  private StandaloneDatabaseProvider databaseProvider;
+  private byte[] spanData;
+  private List<String> traceKeys;
+  private List<Integer> traceSegments;
+
+  @Before
+  public void setUp() {
+    context = ApplicationProvider.getApplicationContext();
+    databaseProvider = new StandaloneDatabaseProvider(context);
+    spanData = new byte[SPAN_LENGTH];
+    traceKeys = new ArrayList<>();
+    traceSegments = new ArrayList<>();
+    generateTrace(new Random(/* seed= */ 0));
+  }
+
+  @After
+  public void tearDown() {
+    databaseProvider.close();
+  }
+
+  @Test
+  public void replayTrace() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    double hitRatio = 0;
+    while (state.keepRunning()) {
+      state.pauseTiming();
+      File cacheDir = Util.createTempDirectory(context, "CacheEvictorTraceReplayBenchmark");
+      SimpleCache cache = new SimpleCache(cacheDir, createEvictor(), databaseProvider);
+      state.resumeTiming();
+
+      hitRatio = replay(cache);
+
+      state.pauseTiming();
+      cache.release();
+      SimpleCache.delete(cacheDir, databaseProvider);
+      state.resumeTiming();
+    }
+    reportHitRatio(hitRatio);
+  }
+
+  private CacheEvictor createEvictor() {
+    long maxBytes = (long) CACHE_SIZE_SPANS * SPAN_LENGTH;
+    return evictorType.equals(LEAST_RECENTLY_USED)
+        ? new LeastRecentlyUsedCacheEvictor(maxBytes)
+        : new WindowTinyLfuCacheEvictor(maxBytes);
+  }
+
+  private double replay(SimpleCache cache) throws Exception {
+    int hitCount = 0;
+    for (int i = 0; i < traceKeys.size(); i++) {
+      String key = traceKeys.get(i);
+      long position = (long) traceSegments.get(i) * SPAN_LENGTH;
+      CacheSpan span = cache.startReadWrite(key, position, SPAN_LENGTH);
+      if (span.isCached) {
+        hitCount++;
+        continue;
+      }
+      try {
+        File file = cache.startFile(key, position, SPAN_LENGTH);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+          outputStream.write(spanData);
+        }
+        cache.commitFile(file, SPAN_LENGTH);
+      } finally {
+        cache.releaseHoleSpan(span);
+      }
+    }
+    return (double) hitCount / traceKeys.size();
+  }
+
+  private void generateTrace(Random random) {
+    double[] cumulativePopularity = new double[TITLE_COUNT];
+    double total = 0;
+    for (int i = 0; i < TITLE_COUNT; i++) {
+      total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      cumulativePopularity[i] = total;
+    }
+    for (int session = 0; session < SESSION_COUNT; session++) {
+      if (session % SCAN_SESSION_INTERVAL == SCAN_SESSION_INTERVAL - 1) {
+        // Each scan is of a different title, so none of its segments are ever accessed again.
+        String key = "scan-" + session;
+        for (int segment = 0; segment < SCAN_SEGMENT_COUNT; segment++) {
+          traceKeys.add(key);
+          traceSegments.add(segment);
+        }
+        continue;
+      }
+      double value = random.nextDouble() * total;
+      int title = 0;
+      while (cumulativePopularity[title] < value) {
+        title++;
+      }
+      String key = "title-" + title;
+      for (int segment = 0; segment < SEGMENTS_PER_SESSION; segment++) {
+        traceKeys.add(key);
+        traceSegments.add(segment);
+      }
+    }
+  }
+
+  private void reportHitRatio(double hitRatio) {
+    Log.i(TAG, evictorType + " hit ratio: " + hitRatio);
+    Bundle status = new Bundle();
+    status.putDouble(evictorType + "_hitRatio", hitRatio);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.cache;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheBufferPool;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Simulates a bulk segment download, in which a {@link CacheWriter} and {@link CacheDataSink} are
+ * created for each segment, with and without a shared {@link CacheBufferPool}.
+ *
+ * <p>In addition to the time taken, the number of bytes allocated and the number and total
+ * duration of garbage collections whilst writing the segments are reported as instrumentation
+ * statuses and logged.
+ */
+@RunWith(Parameterized.class)
+public final class CacheWriteBufferPoolBenchmark {
+
+  private static final String TAG = "CacheWriteBenchmark";
+
+  private static final int SEGMENT_COUNT = 200;
+  private static final int SEGMENT_LENGTH = 64 * 1024;
+  private static final int MAX_POOLED_BUFFERS = 4;
+
+  @Parameters(name = "pooled={0}")
+  public static ImmutableList<Boolean> parameters() {
+    return ImmutableList.of(false, true);
+  }
+
+  @Parameter public boolean pooled;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private File cacheDir;
+  private StandaloneDatabaseProvider databaseProvider;
+  private SimpleCache cache;
+  private byte[] segmentData;
+  @Nullable private CacheBufferPool writerBufferPool;
+  @Nullable private CacheBufferPool sinkBufferPool;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    cacheDir = Util.createTempDirectory(context, "CacheWriteBufferPoolBenchmark");
+    databaseProvider = new StandaloneDatabaseProvider(context);
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    segmentData = new byte[SEGMENT_LENGTH];
+    new Random(/* seed= */ 0).nextBytes(segmentData);
+    if (pooled) {
+      writerBufferPool =
+          new CacheBufferPool(CacheWriter.DEFAULT_BUFFER_SIZE_BYTES, MAX_POOLED_BUFFERS);
+      sinkBufferPool = new CacheBufferPool(CacheDataSink.DEFAULT_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    SimpleCache.delete(cacheDir, databaseProvider);
+    databaseProvider.close();
+  }
+
+  @Test
+  public void writeSegments() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    long bytesAllocated = 0;
+    long gcCount = 0;
+    long gcTimeMs = 0;
+    int iterationCount = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      long startGcCount = getRuntimeStat("art.gc.gc-count");
+      long startGcTimeMs = getRuntimeStat("art.gc.gc-time");
+
+      for (int i = 0; i < SEGMENT_COUNT; i++) {
+        writeSegment("segment-" + i);
+      }
+
+      state.pauseTiming();
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+      gcCount += getRuntimeStat("art.gc.gc-count") - startGcCount;
+      gcTimeMs += getRuntimeStat("art.gc.gc-time") - startGcTimeMs;
+      iterationCount++;
+      for (String key : cache.getKeys()) {
+        cache.removeResource(key);
+      }
+      state.resumeTiming();
+    }
+    reportResults(
+        bytesAllocated / iterationCount,
+        (float) gcCount / iterationCount,
+        (float) gcTimeMs / iterationCount);
+  }
+
+  private void writeSegment(String uri) throws Exception {
+    CacheDataSink cacheDataSink =
+        sinkBufferPool != null
+            ? new CacheDataSink(cache, CacheDataSink.DEFAULT_FRAGMENT_SIZE, sinkBufferPool)
+            : new CacheDataSink(cache, CacheDataSink.DEFAULT_FRAGMENT_SIZE);
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            new ByteArrayDataSource(segmentData),
+            new FileDataSource(),
+            cacheDataSink,
+            /* flags= */ 0,
+            /* eventListener= */ null);
+    new CacheWriter(
+            cacheDataSource,
+            new DataSpec.Builder().setUri(Uri.parse(uri)).setLength(SEGMENT_LENGTH).build(),
+            /* temporaryBuffer= */ null,
+            /* progressListener= */ null,
+            writerBufferPool)
+        .cache();
+  }
+
+  private void reportResults(long bytesAllocated, float gcCount, float gcTimeMs) {
+    String name = pooled ? "pooled" : "unpooled";
+    Log.i(
+        TAG,
+        name
+            + ": bytesAllocated="
+            + bytesAllocated
+            + ", gcCount="
+            + gcCount
+            + ", gcTimeMs="
+            + gcTimeMs);
+    Bundle status = new Bundle();
+    status.putLong(name + "_bytesAllocated", bytesAllocated);
+    status.putFloat(name + "_gcCount", gcCount);
+    status.putFloat(name + "_gcTimeMs", gcTimeMs);
+    if (writerBufferPool != null && sinkBufferPool != null) {
+      status.putLong(
+          name + "_bufferPoolHits", writerBufferPool.getHitCount() + sinkBufferPool.getHitCount());
+      status.putLong(
+          name + "_bufferPoolMisses",
+          writerBufferPool.getMissCount() + sinkBufferPool.getMissCount());
+    }
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
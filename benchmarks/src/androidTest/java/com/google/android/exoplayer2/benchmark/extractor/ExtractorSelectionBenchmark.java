@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.extractor;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.FileTypes;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the time taken to select an extractor for a file from {@code testdata}, by sniffing the
+ * extractors created by {@link DefaultExtractorsFactory} in order until one recognizes the file.
+ *
+ * <p>Selection is measured both with the default extractor order, and with the extractors ranked
+ * by the file type inferred from the start of the file by {@link
+ * FileTypes#inferFileTypeFromHeader(byte[], int)}. No URI or response headers are provided, so
+ * that the order isn't otherwise informed. For each file, the time to selection in microseconds
+ * and the number of extractors sniffed are reported as instrumentation statuses and logged.
+ */
+@RunWith(Parameterized.class)
+public final class ExtractorSelectionBenchmark {
+
+  private static final String TAG = "ExtractorSelection";
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<Object[]> parameters() {
+    return ImmutableList.of(
+        parameters("Ac3", "media/ts/sample.ac3"),
+        parameters("Ac4", "media/ts/sample.ac4"),
+        parameters("Adts", "media/ts/sample.adts"),
+        parameters("Amr", "media/amr/sample_nb.amr"),
+        parameters("Avi", "media/avi/sample.avi"),
+        parameters("Flac", "media/flac/bear.flac"),
+        parameters("Flv", "media/flv/sample.flv"),
+        parameters("FragmentedMp4", "media/mp4/sample_fragmented.mp4"),
+        parameters("Jpeg", "media/jpeg/pixel-motion-photo-shortened.jpg"),
+        parameters("Matroska", "media/mkv/sample.mkv"),
+        parameters("Mp3", "media/mp3/bear-vbr-xing-header.mp3"),
+        parameters("Mp4", "media/mp4/sample.mp4"),
+        parameters("Ogg", "media/ogg/bear_vorbis.ogg"),
+        parameters("Ps", "media/ts/sample_h262_mpeg_audio.ps"),
+        parameters("Ts", "media/ts/sample_h264_mpeg_audio.ts"),
+        parameters("Wav", "media/wav/sample.wav"));
+  }
+
+  private static Object[] parameters(String name, String assetPath) {
+    return new Object[] {name, assetPath};
+  }
+
+  @Parameter(0)
+  public String name;
+
+  @Parameter(1)
+  public String assetPath;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] data;
+  private byte[] header;
+  private DefaultExtractorsFactory extractorsFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    try (InputStream inputStream = context.getAssets().open(assetPath)) {
+      data = Util.toByteArray(inputStream);
+    }
+    header = new byte[FileTypes.HEADER_INFERENCE_LENGTH];
+    extractorsFactory = new DefaultExtractorsFactory();
+  }
+
+  @Test
+  public void selectWithDefaultOrder() throws Exception {
+    measureSelection(/* inferHeaderFileType= */ false, name + "_defaultOrder");
+  }
+
+  @Test
+  public void selectWithHeaderFileType() throws Exception {
+    measureSelection(/* inferHeaderFileType= */ true, name + "_headerFileType");
+  }
+
+  private void measureSelection(boolean inferHeaderFileType, String resultName)
+      throws IOException {
+    BenchmarkState state = benchmarkRule.getState();
+    long selectionCount = 0;
+    long sniffCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      sniffCount += select(inferHeaderFileType);
+      elapsedNs += System.nanoTime() - startTimeNs;
+      selectionCount++;
+    }
+    reportResults(resultName, selectionCount, sniffCount, elapsedNs);
+  }
+
+  /**
+   * Selects an extractor for {@link #data} in the same way as {@code BundledExtractorsAdapter},
+   * returning the number of extractors sniffed.
+   */
+  private int select(boolean inferHeaderFileType) throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    long length = dataSource.open(new DataSpec(Uri.EMPTY));
+    ExtractorInput input = new DefaultExtractorInput(dataSource, /* position= */ 0, length);
+    try {
+      @FileTypes.Type int headerFileType = FileTypes.UNKNOWN;
+      if (inferHeaderFileType) {
+        int headerLength =
+            ExtractorUtil.peekToLength(input, header, /* offset= */ 0, header.length);
+        input.resetPeekPosition();
+        headerFileType = FileTypes.inferFileTypeFromHeader(header, headerLength);
+      }
+      Extractor[] extractors =
+          extractorsFactory.createExtractors(Uri.EMPTY, ImmutableMap.of(), headerFileType);
+      for (int i = 0; i < extractors.length; i++) {
+        boolean sniffed = false;
+        try {
+          sniffed = extractors[i].sniff(input);
+        } catch (EOFException e) {
+          // Do nothing.
+        } finally {
+          input.resetPeekPosition();
+        }
+        if (sniffed) {
+          return i + 1;
+        }
+      }
+      throw new IllegalStateException("No extractor could read " + assetPath);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private static void reportResults(
+      String resultName, long selectionCount, long sniffCount, long elapsedNs) {
+    double timeToSelectionUs = selectionCount == 0 ? 0 : elapsedNs / 1e3 / selectionCount;
+    double extractorsSniffed = selectionCount == 0 ? 0 : (double) sniffCount / selectionCount;
+    Log.i(
+        TAG,
+        resultName
+            + ": timeToSelectionUs="
+            + timeToSelectionUs
+            + ", extractorsSniffed="
+            + extractorsSniffed);
+    Bundle status = new Bundle();
+    status.putDouble(resultName + "_timeToSelectionUs", timeToSelectionUs);
+    status.putDouble(resultName + "_extractorsSniffed", extractorsSniffed);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.extractor;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil.DiscardingExtractorOutput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.amr.AmrExtractor;
+import com.google.android.exoplayer2.extractor.avi.AviExtractor;
+import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.jpeg.JpegExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.Ac3Extractor;
+import com.google.android.exoplayer2.extractor.ts.Ac4Extractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.PsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the throughput of each extractor created by {@link DefaultExtractorsFactory} when
+ * extracting a file from {@code testdata}, providing a baseline for detecting regressions in the
+ * parsing hot path.
+ *
+ * <p>Files are read from memory, so that the results aren't affected by I/O, and extracted samples
+ * are discarded. For each extractor, the throughput in MB/s and the number of bytes allocated per
+ * extracted sample are reported as instrumentation statuses and logged.
+ */
+@RunWith(Parameterized.class)
+public final class ExtractorThroughputBenchmark {
+
+  private static final String TAG = "ExtractorBenchmark";
+
+  /** The number of times the file is extracted in each measured iteration. */
+  private static final int EXTRACTION_COUNT = 10;
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<Object[]> parameters() {
+    return ImmutableList.of(
+        parameters("Ac3Extractor", Ac3Extractor::new, "media/ts/sample.ac3"),
+        parameters("Ac4Extractor", Ac4Extractor::new, "media/ts/sample.ac4"),
+        parameters("AdtsExtractor", AdtsExtractor::new, "media/ts/sample.adts"),
+        parameters("AmrExtractor", AmrExtractor::new, "media/amr/sample_nb.amr"),
+        parameters("AviExtractor", AviExtractor::new, "media/avi/sample.avi"),
+        parameters("FlacExtractor", FlacExtractor::new, "media/flac/bear.flac"),
+        parameters("FlvExtractor", FlvExtractor::new, "media/flv/sample.flv"),
+        parameters(
+            "FragmentedMp4Extractor",
+            FragmentedMp4Extractor::new,
+            "media/mp4/sample_fragmented.mp4"),
+        parameters(
+            "JpegExtractor", JpegExtractor::new, "media/jpeg/pixel-motion-photo-shortened.jpg"),
+        parameters("MatroskaExtractor", MatroskaExtractor::new, "media/mkv/sample.mkv"),
+        parameters("Mp3Extractor", Mp3Extractor::new, "media/mp3/bear-vbr-xing-header.mp3"),
+        parameters("Mp4Extractor", Mp4Extractor::new, "media/mp4/sample.mp4"),
+        parameters("OggExtractor", OggExtractor::new, "media/ogg/bear_vorbis.ogg"),
+        parameters("PsExtractor", PsExtractor::new, "media/ts/sample_h262_mpeg_audio.ps"),
+        parameters("TsExtractor", TsExtractor::new, "media/ts/sample_h264_mpeg_audio.ts"),
+        parameters("WavExtractor", WavExtractor::new, "media/wav/sample.wav"));
+  }
+
+  private static Object[] parameters(
+      String name, Supplier<Extractor> extractorSupplier, String assetPath) {
+    return new Object[] {name, extractorSupplier, assetPath};
+  }
+
+  @Parameter(0)
+  public String name;
+
+  @Parameter(1)
+  public Supplier<Extractor> extractorSupplier;
+
+  @Parameter(2)
+  public String assetPath;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    try (InputStream inputStream = context.getAssets().open(assetPath)) {
+      data = Util.toByteArray(inputStream);
+    }
+  }
+
+  @Test
+  public void extract() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    DiscardingExtractorOutput output = new DiscardingExtractorOutput();
+    long bytesRead = 0;
+    long elapsedNs = 0;
+    long bytesAllocated = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      long startTimeNs = System.nanoTime();
+      for (int i = 0; i < EXTRACTION_COUNT; i++) {
+        bytesRead += extract(output);
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+    }
+    reportResults(bytesRead, elapsedNs, bytesAllocated, output.getSampleCount());
+  }
+
+  /** Extracts {@link #data}, returning the number of bytes read by the extractor. */
+  private long extract(ExtractorOutput output) throws IOException {
+    Extractor extractor = extractorSupplier.get();
+    extractor.init(output);
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    PositionHolder positionHolder = new PositionHolder();
+    long bytesRead = 0;
+    long position = 0;
+    int result = Extractor.RESULT_SEEK;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      long length =
+          dataSource.open(new DataSpec.Builder().setUri(Uri.EMPTY).setPosition(position).build());
+      DefaultExtractorInput input = new DefaultExtractorInput(dataSource, position, length);
+      try {
+        do {
+          result = extractor.read(input, positionHolder);
+        } while (result == Extractor.RESULT_CONTINUE);
+      } finally {
+        bytesRead += input.getPosition() - position;
+        dataSource.close();
+      }
+      if (result == Extractor.RESULT_SEEK) {
+        position = positionHolder.position;
+      }
+    }
+    extractor.release();
+    return bytesRead;
+  }
+
+  private void reportResults(
+      long bytesRead, long elapsedNs, long bytesAllocated, long sampleCount) {
+    double throughputMbps =
+        elapsedNs == 0 ? 0 : (bytesRead / 1e6) / ((double) elapsedNs / C.NANOS_PER_SECOND);
+    double bytesAllocatedPerSample = sampleCount == 0 ? 0 : (double) bytesAllocated / sampleCount;
+    Log.i(
+        TAG,
+        name
+            + ": throughputMbps="
+            + throughputMbps
+            + ", bytesAllocatedPerSample="
+            + bytesAllocatedPerSample);
+    Bundle status = new Bundle();
+    status.putDouble(name + "_throughputMbps", throughputMbps);
+    status.putDouble(name + "_bytesAllocatedPerSample", bytesAllocatedPerSample);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.extractor;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil.DiscardingExtractorOutput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the number of bytes allocated per fragment by {@link FragmentedMp4Extractor} when
+ * extracting a long fragmented MP4 stream, such as a live stream that's played for a long time.
+ *
+ * <p>The stream is generated in memory. It starts with the initialization segment (ftyp and moov)
+ * of {@link #INIT_ASSET_PATH}, followed by moof and mdat pairs containing samples of its H.264
+ * video track. Extracted samples are discarded. The number of bytes allocated per fragment is
+ * reported as an instrumentation status and logged.
+ */
+@RunWith(Parameterized.class)
+public final class FragmentedMp4AllocationBenchmark {
+
+  private static final String TAG = "Fmp4AllocBenchmark";
+
+  private static final String INIT_ASSET_PATH = "media/mp4/sample_fragmented.mp4";
+  /** The size of the ftyp and moov boxes at the start of {@link #INIT_ASSET_PATH}. */
+  private static final int INIT_SIZE = 1244;
+  /** The ID of the H.264 track of {@link #INIT_ASSET_PATH}, whose NAL unit lengths use 4 bytes. */
+  private static final int TRACK_ID = 1;
+
+  private static final int FRAGMENT_COUNT = 3_600;
+  private static final int SAMPLE_DURATION = 1_000;
+  private static final int SAMPLE_SIZE = 128;
+  private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+  private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<Object[]> parameters() {
+    return ImmutableList.of(
+        new Object[] {"OneSamplePerFragment", 1}, new Object[] {"ThirtySamplesPerFragment", 30});
+  }
+
+  @Parameter(0)
+  public String name;
+
+  @Parameter(1)
+  public int samplesPerFragment;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    byte[] init;
+    try (InputStream inputStream = context.getAssets().open(INIT_ASSET_PATH)) {
+      init = Util.toByteArray(inputStream);
+    }
+    data = createStream(init, samplesPerFragment);
+  }
+
+  @Test
+  public void extract() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    DiscardingExtractorOutput output = new DiscardingExtractorOutput();
+    long fragmentCount = 0;
+    long bytesAllocated = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      extract(output);
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+      fragmentCount += FRAGMENT_COUNT;
+    }
+    double bytesAllocatedPerFragment =
+        fragmentCount == 0 ? 0 : (double) bytesAllocated / fragmentCount;
+    Log.i(TAG, name + ": bytesAllocatedPerFragment=" + bytesAllocatedPerFragment);
+    Bundle status = new Bundle();
+    status.putDouble(name + "_bytesAllocatedPerFragment", bytesAllocatedPerFragment);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+
+  private void extract(ExtractorOutput output) throws IOException {
+    FragmentedMp4Extractor extractor = new FragmentedMp4Extractor();
+    extractor.init(output);
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    PositionHolder positionHolder = new PositionHolder();
+    long position = 0;
+    int result = Extractor.RESULT_SEEK;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      long length =
+          dataSource.open(new DataSpec.Builder().setUri(Uri.EMPTY).setPosition(position).build());
+      DefaultExtractorInput input = new DefaultExtractorInput(dataSource, position, length);
+      try {
+        do {
+          result = extractor.read(input, positionHolder);
+        } while (result == Extractor.RESULT_CONTINUE);
+      } finally {
+        dataSource.close();
+      }
+      if (result == Extractor.RESULT_SEEK) {
+        position = positionHolder.position;
+      }
+    }
+    extractor.release();
+  }
+
+  // Stream generation.
+
+  private static byte[] createStream(byte[] init, int samplesPerFragment) {
+    // Each sample is a single non-IDR slice NAL unit, preceded by its 4 byte length.
+    byte[] sample = new byte[SAMPLE_SIZE];
+    new Random(/* seed= */ 0).nextBytes(sample);
+    writeInt(sample, /* offset= */ 0, SAMPLE_SIZE - 4);
+    sample[4] = 0x21;
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(init, /* off= */ 0, INIT_SIZE);
+    for (int i = 0; i < FRAGMENT_COUNT; i++) {
+      byte[] moof = createMoof(/* sequenceNumber= */ i + 1, samplesPerFragment);
+      stream.write(moof, /* off= */ 0, moof.length);
+      ByteArrayOutputStream mdat = new ByteArrayOutputStream();
+      for (int j = 0; j < samplesPerFragment; j++) {
+        mdat.write(sample, /* off= */ 0, sample.length);
+      }
+      writeBox(stream, "mdat", mdat.toByteArray());
+    }
+    return stream.toByteArray();
+  }
+
+  private static byte[] createMoof(int sequenceNumber, int sampleCount) {
+    // The flags are default-base-is-moof, default-sample-duration-present and
+    // default-sample-flags-present.
+    byte[] tfhd =
+        ints(
+            /* versionAndFlags= */ 0x00020028,
+            TRACK_ID,
+            SAMPLE_DURATION,
+            SAMPLE_FLAGS_NON_SYNC);
+    long baseMediaDecodeTime = (long) (sequenceNumber - 1) * sampleCount * SAMPLE_DURATION;
+    byte[] tfdt =
+        ints(
+            /* versionAndFlags= */ 0x01000000,
+            (int) (baseMediaDecodeTime >>> 32),
+            (int) baseMediaDecodeTime);
+    // The flags are data-offset-present, first-sample-flags-present and sample-size-present. The
+    // data offset is filled in once the size of the moof is known.
+    int[] trunValues = new int[4 + sampleCount];
+    trunValues[0] = 0x00000205;
+    trunValues[1] = sampleCount;
+    trunValues[3] = SAMPLE_FLAGS_SYNC;
+    for (int i = 0; i < sampleCount; i++) {
+      trunValues[4 + i] = SAMPLE_SIZE;
+    }
+    byte[] trun = ints(trunValues);
+
+    ByteArrayOutputStream traf = new ByteArrayOutputStream();
+    writeBox(traf, "tfhd", tfhd);
+    writeBox(traf, "tfdt", tfdt);
+    int trunOffsetInTraf = traf.size();
+    writeBox(traf, "trun", trun);
+    ByteArrayOutputStream moofContent = new ByteArrayOutputStream();
+    writeBox(moofContent, "mfhd", ints(/* versionAndFlags= */ 0, sequenceNumber));
+    int trafOffsetInMoofContent = moofContent.size();
+    writeBox(moofContent, "traf", traf.toByteArray());
+    ByteArrayOutputStream moofBox = new ByteArrayOutputStream();
+    writeBox(moofBox, "moof", moofContent.toByteArray());
+    byte[] moof = moofBox.toByteArray();
+
+    // The samples start after the header of the mdat that follows the moof.
+    int dataOffsetPosition =
+        /* moof header */ 8
+            + trafOffsetInMoofContent
+            + /* traf header */ 8
+            + trunOffsetInTraf
+            + /* trun header, version and flags, sample_count */ 16;
+    writeInt(moof, dataOffsetPosition, /* value= */ moof.length + 8);
+    return moof;
+  }
+
+  private static byte[] ints(int... values) {
+    byte[] bytes = new byte[values.length * 4];
+    for (int i = 0; i < values.length; i++) {
+      writeInt(bytes, /* offset= */ i * 4, values[i]);
+    }
+    return bytes;
+  }
+
+  private static void writeInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >> 24);
+    bytes[offset + 1] = (byte) (value >> 16);
+    bytes[offset + 2] = (byte) (value >> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+
+  private static void writeBox(ByteArrayOutputStream output, String type, byte[] content) {
+    byte[] header = new byte[8];
+    writeInt(header, /* offset= */ 0, /* value= */ 8 + content.length);
+    System.arraycopy(
+        type.getBytes(StandardCharsets.US_ASCII),
+        /* srcPos= */ 0,
+        header,
+        /* destPos= */ 4,
+        /* length= */ 4);
+    output.write(header, /* off= */ 0, header.length);
+    output.write(content, /* off= */ 0, content.length);
+  }
+}
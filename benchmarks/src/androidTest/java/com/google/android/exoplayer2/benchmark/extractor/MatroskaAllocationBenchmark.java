@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.extractor;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.benchmark.BenchmarkUtil.DiscardingExtractorOutput;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the number of bytes allocated per block by {@link MatroskaExtractor} when extracting a
+ * long Matroska file, to check that the block parsing path doesn't allocate once the extractor has
+ * been set up.
+ *
+ * <p>The file is generated in memory and contains a single VP9 track, with one cue point per
+ * cluster. Its blocks are stored either as SimpleBlock elements or as BlockGroup elements
+ * containing a Block (and a ReferenceBlock for frames that aren't keyframes). Extracted samples
+ * are discarded. The number of bytes allocated per block is reported as an instrumentation status
+ * and logged.
+ */
+@RunWith(Parameterized.class)
+public final class MatroskaAllocationBenchmark {
+
+  private static final String TAG = "MatroskaAllocBenchmark";
+
+  private static final int ID_EBML = 0x1A45DFA3;
+  private static final int ID_EBML_READ_VERSION = 0x42F7;
+  private static final int ID_DOC_TYPE = 0x4282;
+  private static final int ID_DOC_TYPE_READ_VERSION = 0x4285;
+  private static final int ID_SEGMENT = 0x18538067;
+  private static final int ID_SEGMENT_INFO = 0x1549A966;
+  private static final int ID_TIMECODE_SCALE = 0x2AD7B1;
+  private static final int ID_DURATION = 0x4489;
+  private static final int ID_TRACKS = 0x1654AE6B;
+  private static final int ID_TRACK_ENTRY = 0xAE;
+  private static final int ID_TRACK_NUMBER = 0xD7;
+  private static final int ID_TRACK_TYPE = 0x83;
+  private static final int ID_CODEC_ID = 0x86;
+  private static final int ID_VIDEO = 0xE0;
+  private static final int ID_PIXEL_WIDTH = 0xB0;
+  private static final int ID_PIXEL_HEIGHT = 0xBA;
+  private static final int ID_CUES = 0x1C53BB6B;
+  private static final int ID_CUE_POINT = 0xBB;
+  private static final int ID_CUE_TIME = 0xB3;
+  private static final int ID_CUE_TRACK_POSITIONS = 0xB7;
+  private static final int ID_CUE_TRACK = 0xF7;
+  private static final int ID_CUE_CLUSTER_POSITION = 0xF1;
+  private static final int ID_CLUSTER = 0x1F43B675;
+  private static final int ID_TIME_CODE = 0xE7;
+  private static final int ID_SIMPLE_BLOCK = 0xA3;
+  private static final int ID_BLOCK_GROUP = 0xA0;
+  private static final int ID_BLOCK = 0xA1;
+  private static final int ID_REFERENCE_BLOCK = 0xFB;
+
+  /** The number of blocks in the generated file, corresponding to 20 minutes at 30 fps. */
+  private static final int BLOCK_COUNT = 36_000;
+
+  private static final int BLOCKS_PER_CLUSTER = 150;
+  private static final int BLOCK_DURATION_MS = 33;
+  private static final int SAMPLE_SIZE = 256;
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<Object[]> parameters() {
+    return ImmutableList.of(new Object[] {"SimpleBlock", false}, new Object[] {"BlockGroup", true});
+  }
+
+  @Parameter(0)
+  public String name;
+
+  @Parameter(1)
+  public boolean useBlockGroups;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] data;
+
+  @Before
+  public void setUp() {
+    data = createFile(useBlockGroups);
+  }
+
+  @Test
+  public void extract() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    DiscardingExtractorOutput output = new DiscardingExtractorOutput();
+    long bytesAllocated = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      extract(output);
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+    }
+    double bytesAllocatedPerBlock =
+        output.getSampleCount() == 0 ? 0 : (double) bytesAllocated / output.getSampleCount();
+    Log.i(TAG, name + ": bytesAllocatedPerBlock=" + bytesAllocatedPerBlock);
+    Bundle status = new Bundle();
+    status.putDouble(name + "_bytesAllocatedPerBlock", bytesAllocatedPerBlock);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+
+  private void extract(ExtractorOutput output) throws IOException {
+    MatroskaExtractor extractor = new MatroskaExtractor();
+    extractor.init(output);
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    PositionHolder positionHolder = new PositionHolder();
+    long position = 0;
+    int result = Extractor.RESULT_SEEK;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      long length =
+          dataSource.open(new DataSpec.Builder().setUri(Uri.EMPTY).setPosition(position).build());
+      DefaultExtractorInput input = new DefaultExtractorInput(dataSource, position, length);
+      try {
+        do {
+          result = extractor.read(input, positionHolder);
+        } while (result == Extractor.RESULT_CONTINUE);
+      } finally {
+        dataSource.close();
+      }
+      if (result == Extractor.RESULT_SEEK) {
+        position = positionHolder.position;
+      }
+    }
+    extractor.release();
+  }
+
+  // File generation.
+
+  private static byte[] createFile(boolean useBlockGroups) {
+    int clusterCount = Util.ceilDivide(BLOCK_COUNT, BLOCKS_PER_CLUSTER);
+    long[] clusterTimesMs = new long[clusterCount];
+    long[] clusterOffsets = new long[clusterCount];
+    byte[] sample = new byte[SAMPLE_SIZE];
+    new Random(/* seed= */ 0).nextBytes(sample);
+    ByteArrayOutputStream clusters = new ByteArrayOutputStream();
+    for (int clusterIndex = 0; clusterIndex < clusterCount; clusterIndex++) {
+      long clusterTimeMs = (long) clusterIndex * BLOCKS_PER_CLUSTER * BLOCK_DURATION_MS;
+      clusterTimesMs[clusterIndex] = clusterTimeMs;
+      clusterOffsets[clusterIndex] = clusters.size();
+      ByteArrayOutputStream cluster = new ByteArrayOutputStream();
+      writeElement(cluster, ID_TIME_CODE, uint(clusterTimeMs, /* byteCount= */ 8));
+      int blockCount = min(BLOCKS_PER_CLUSTER, BLOCK_COUNT - clusterIndex * BLOCKS_PER_CLUSTER);
+      for (int i = 0; i < blockCount; i++) {
+        boolean isKeyframe = i == 0;
+        int relativeTimecode = i * BLOCK_DURATION_MS;
+        if (useBlockGroups) {
+          ByteArrayOutputStream blockGroup = new ByteArrayOutputStream();
+          writeElement(blockGroup, ID_BLOCK, block(relativeTimecode, /* flags= */ 0, sample));
+          if (!isKeyframe) {
+            writeElement(
+                blockGroup, ID_REFERENCE_BLOCK, uint(-BLOCK_DURATION_MS, /* byteCount= */ 1));
+          }
+          writeElement(cluster, ID_BLOCK_GROUP, blockGroup.toByteArray());
+        } else {
+          int flags = isKeyframe ? 0x80 : 0;
+          writeElement(cluster, ID_SIMPLE_BLOCK, block(relativeTimecode, flags, sample));
+        }
+      }
+      writeElement(clusters, ID_CLUSTER, cluster.toByteArray());
+    }
+
+    ByteArrayOutputStream info = new ByteArrayOutputStream();
+    writeElement(info, ID_TIMECODE_SCALE, uint(/* value= */ 1_000_000, /* byteCount= */ 4));
+    writeElement(
+        info,
+        ID_DURATION,
+        uint(
+            Double.doubleToLongBits((double) BLOCK_COUNT * BLOCK_DURATION_MS),
+            /* byteCount= */ 8));
+    ByteArrayOutputStream video = new ByteArrayOutputStream();
+    writeElement(video, ID_PIXEL_WIDTH, uint(/* value= */ 1280, /* byteCount= */ 2));
+    writeElement(video, ID_PIXEL_HEIGHT, uint(/* value= */ 720, /* byteCount= */ 2));
+    ByteArrayOutputStream trackEntry = new ByteArrayOutputStream();
+    writeElement(trackEntry, ID_TRACK_NUMBER, uint(/* value= */ 1, /* byteCount= */ 1));
+    writeElement(trackEntry, ID_TRACK_TYPE, uint(/* value= */ 1, /* byteCount= */ 1));
+    writeElement(trackEntry, ID_CODEC_ID, "V_VP9".getBytes(StandardCharsets.US_ASCII));
+    writeElement(trackEntry, ID_VIDEO, video.toByteArray());
+    ByteArrayOutputStream tracks = new ByteArrayOutputStream();
+    writeElement(tracks, ID_TRACK_ENTRY, trackEntry.toByteArray());
+
+    ByteArrayOutputStream segment = new ByteArrayOutputStream();
+    writeElement(segment, ID_SEGMENT_INFO, info.toByteArray());
+    writeElement(segment, ID_TRACKS, tracks.toByteArray());
+    // Cue cluster positions are relative to the start of the segment content and are written with
+    // a fixed size, so the size of the Cues element doesn't depend on them.
+    int cuesSize = createCues(clusterTimesMs, clusterOffsets, /* clusterOffsetBase= */ 0).length;
+    long clusterOffsetBase = segment.size() + cuesSize;
+    segment.write(
+        createCues(clusterTimesMs, clusterOffsets, clusterOffsetBase), /* off= */ 0, cuesSize);
+    byte[] clustersBytes = clusters.toByteArray();
+    segment.write(clustersBytes, /* off= */ 0, clustersBytes.length);
+
+    ByteArrayOutputStream ebmlHeader = new ByteArrayOutputStream();
+    writeElement(ebmlHeader, ID_EBML_READ_VERSION, uint(/* value= */ 1, /* byteCount= */ 1));
+    writeElement(ebmlHeader, ID_DOC_TYPE, "webm".getBytes(StandardCharsets.US_ASCII));
+    writeElement(ebmlHeader, ID_DOC_TYPE_READ_VERSION, uint(/* value= */ 2, /* byteCount= */ 1));
+    ByteArrayOutputStream file = new ByteArrayOutputStream();
+    writeElement(file, ID_EBML, ebmlHeader.toByteArray());
+    writeElement(file, ID_SEGMENT, segment.toByteArray());
+    return file.toByteArray();
+  }
+
+  private static byte[] createCues(
+      long[] clusterTimesMs, long[] clusterOffsets, long clusterOffsetBase) {
+    ByteArrayOutputStream cues = new ByteArrayOutputStream();
+    for (int i = 0; i < clusterTimesMs.length; i++) {
+      ByteArrayOutputStream cueTrackPositions = new ByteArrayOutputStream();
+      writeElement(cueTrackPositions, ID_CUE_TRACK, uint(/* value= */ 1, /* byteCount= */ 1));
+      writeElement(
+          cueTrackPositions,
+          ID_CUE_CLUSTER_POSITION,
+          uint(clusterOffsetBase + clusterOffsets[i], /* byteCount= */ 8));
+      ByteArrayOutputStream cuePoint = new ByteArrayOutputStream();
+      writeElement(cuePoint, ID_CUE_TIME, uint(clusterTimesMs[i], /* byteCount= */ 8));
+      writeElement(cuePoint, ID_CUE_TRACK_POSITIONS, cueTrackPositions.toByteArray());
+      writeElement(cues, ID_CUE_POINT, cuePoint.toByteArray());
+    }
+    ByteArrayOutputStream element = new ByteArrayOutputStream();
+    writeElement(element, ID_CUES, cues.toByteArray());
+    return element.toByteArray();
+  }
+
+  /** Returns the content of a (Simple)Block element for track number 1, without lacing. */
+  private static byte[] block(int relativeTimecode, int flags, byte[] sample) {
+    byte[] block = new byte[4 + sample.length];
+    block[0] = (byte) 0x81;
+    block[1] = (byte) (relativeTimecode >> 8);
+    block[2] = (byte) relativeTimecode;
+    block[3] = (byte) flags;
+    System.arraycopy(sample, /* srcPos= */ 0, block, /* destPos= */ 4, sample.length);
+    return block;
+  }
+
+  /** Returns the {@code byteCount} least significant bytes of {@code value}, big endian. */
+  private static byte[] uint(long value, int byteCount) {
+    byte[] bytes = new byte[byteCount];
+    for (int i = 0; i < byteCount; i++) {
+      bytes[i] = (byte) (value >> ((byteCount - 1 - i) * 8));
+    }
+    return bytes;
+  }
+
+  private static void writeElement(ByteArrayOutputStream output, int id, byte[] content) {
+    // Element IDs include their length marker bits, so they're written using as few bytes as
+    // possible.
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      if ((id >>> shift) != 0 || shift == 0) {
+        output.write(id >>> shift);
+      }
+    }
+    if (content.length < 0x7F) {
+      output.write(0x80 | content.length);
+    } else {
+      // Use an 8 byte size.
+      output.write(0x01);
+      for (int shift = 48; shift >= 0; shift -= 8) {
+        output.write((int) ((long) content.length >>> shift));
+      }
+    }
+    output.write(content, /* off= */ 0, content.length);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.extractor;
+
+import static java.lang.Math.min;
+
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.NalUnitStartCodeScanner;
+import com.google.android.exoplayer2.util.NalUnitUtil;
+import com.google.common.collect.ImmutableList;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Compares the throughput of finding NAL units byte by byte using {@link NalUnitUtil#findNalUnit}
+ * and eight bytes at a time using a {@link NalUnitStartCodeScanner}.
+ *
+ * <p>The data simulates a high bitrate (4K) H.264 elementary stream carried in a transport stream:
+ * large, high entropy NAL units are consumed in chunks the size of a transport stream packet
+ * payload, as the elementary stream readers in the {@code ts} package do. The throughput in MB/s
+ * is reported as an instrumentation status and logged.
+ */
+@RunWith(Parameterized.class)
+public final class NalUnitScanBenchmark {
+
+  private static final String TAG = "NalUnitScanBenchmark";
+
+  private static final int DATA_LENGTH = 8 * 1024 * 1024;
+  private static final int MEAN_NAL_UNIT_LENGTH = 64 * 1024;
+  private static final int CHUNK_LENGTH = 184;
+
+  @Parameters(name = "wordAtATime={0}")
+  public static ImmutableList<Boolean> parameters() {
+    return ImmutableList.of(false, true);
+  }
+
+  @Parameter public boolean wordAtATime;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] data;
+  private int nalUnitCount;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(/* seed= */ 0);
+    data = new byte[DATA_LENGTH];
+    random.nextBytes(data);
+    int position = 0;
+    while (position + 4 < DATA_LENGTH) {
+      data[position] = 0;
+      data[position + 1] = 0;
+      data[position + 2] = 1;
+      data[position + 3] = NalUnitUtil.NAL_UNIT_TYPE_NON_IDR;
+      position += 4 + random.nextInt(2 * MEAN_NAL_UNIT_LENGTH);
+    }
+  }
+
+  @Test
+  public void scan() {
+    BenchmarkState state = benchmarkRule.getState();
+    long bytesScanned = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      nalUnitCount = wordAtATime ? scanWordAtATime() : scanByteByByte();
+      elapsedNs += System.nanoTime() - startTimeNs;
+      bytesScanned += data.length;
+    }
+    reportThroughput(bytesScanned, elapsedNs);
+  }
+
+  private int scanByteByByte() {
+    boolean[] prefixFlags = new boolean[3];
+    int count = 0;
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += CHUNK_LENGTH) {
+      int limit = min(chunkStart + CHUNK_LENGTH, data.length);
+      int offset = chunkStart;
+      while (offset < limit) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, offset, limit, prefixFlags);
+        if (nalUnitOffset == limit) {
+          break;
+        }
+        count++;
+        offset = nalUnitOffset + 3;
+      }
+    }
+    return count;
+  }
+
+  private int scanWordAtATime() {
+    NalUnitStartCodeScanner scanner = new NalUnitStartCodeScanner();
+    int count = 0;
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += CHUNK_LENGTH) {
+      int limit = min(chunkStart + CHUNK_LENGTH, data.length);
+      int offset = chunkStart;
+      while (offset < limit) {
+        int nalUnitOffset = scanner.findNalUnit(data, offset, limit);
+        if (nalUnitOffset == limit) {
+          break;
+        }
+        count++;
+        offset = nalUnitOffset + 3;
+      }
+    }
+    return count;
+  }
+
+  private void reportThroughput(long bytesScanned, long elapsedNs) {
+    double throughputMbps =
+        elapsedNs == 0 ? 0 : (bytesScanned / 1e6) / ((double) elapsedNs / C.NANOS_PER_SECOND);
+    String name = wordAtATime ? "wordAtATime" : "byteByByte";
+    Log.i(TAG, name + ": " + throughputMbps + " MB/s, " + nalUnitCount + " NAL units");
+    Bundle status = new Bundle();
+    status.putDouble(name + "_throughputMbps", throughputMbps);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
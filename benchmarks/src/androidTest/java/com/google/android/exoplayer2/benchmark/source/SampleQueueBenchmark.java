@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.SampleQueue;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.common.collect.ImmutableList;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the time taken by {@link SampleQueue#seekTo(long, boolean)} and the throughput of
+ * {@link SampleQueue#read} on a queue holding a very large back buffer, as when a long live stream
+ * is played with a back buffer of several hours.
+ *
+ * <p>The queue holds a 30 fps video track with a keyframe every two seconds. Seeks are to random
+ * times in the back buffer, each of which rewinds the queue and searches for the keyframe before
+ * the seek time. Reads are of a window of samples starting at a random sample. The time per seek
+ * in microseconds and the number of samples read per second are reported as instrumentation
+ * statuses and logged.
+ */
+@RunWith(Parameterized.class)
+public final class SampleQueueBenchmark {
+
+  private static final String TAG = "SampleQueueBenchmark";
+
+  private static final long SAMPLE_DURATION_US = 33_333;
+  private static final int KEYFRAME_INTERVAL = 60;
+  private static final int SAMPLE_SIZE = 16;
+  private static final int SEEK_COUNT = 100;
+  private static final int READ_COUNT = 1000;
+
+  @Parameters(name = "backBufferHours={0}")
+  public static ImmutableList<Integer> parameters() {
+    return ImmutableList.of(1, 4);
+  }
+
+  @Parameter public int backBufferHours;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private SampleQueue sampleQueue;
+  private FormatHolder formatHolder;
+  private DecoderInputBuffer inputBuffer;
+  private int sampleCount;
+  private Random random;
+
+  @Before
+  public void setUp() {
+    sampleQueue =
+        SampleQueue.createWithoutDrm(
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+    sampleQueue.format(new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build());
+    sampleCount = (int) (backBufferHours * 3_600 * C.MICROS_PER_SECOND / SAMPLE_DURATION_US);
+    ParsableByteArray sampleData = new ParsableByteArray(SAMPLE_SIZE);
+    for (int i = 0; i < sampleCount; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, SAMPLE_SIZE);
+      sampleQueue.sampleMetadata(
+          /* timeUs= */ i * SAMPLE_DURATION_US,
+          /* flags= */ i % KEYFRAME_INTERVAL == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          SAMPLE_SIZE,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+    }
+    formatHolder = new FormatHolder();
+    inputBuffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    // Read the format, so that subsequent reads return samples.
+    assertThat(read()).isEqualTo(C.RESULT_FORMAT_READ);
+    random = new Random(/* seed= */ 0);
+  }
+
+  @After
+  public void tearDown() {
+    sampleQueue.release();
+  }
+
+  @Test
+  public void seekTo() {
+    long durationUs = sampleCount * SAMPLE_DURATION_US;
+    BenchmarkState state = benchmarkRule.getState();
+    long seekCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      for (int i = 0; i < SEEK_COUNT; i++) {
+        long timeUs = (long) (random.nextDouble() * durationUs);
+        sampleQueue.seekTo(timeUs, /* allowTimeBeyondBuffer= */ false);
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+      seekCount += SEEK_COUNT;
+    }
+    double timePerSeekUs = seekCount == 0 ? 0 : elapsedNs / 1e3 / seekCount;
+    reportResult("timePerSeekUs", timePerSeekUs);
+  }
+
+  @Test
+  public void read() {
+    BenchmarkState state = benchmarkRule.getState();
+    long readCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      int startIndex = random.nextInt(sampleCount - READ_COUNT);
+      long startTimeNs = System.nanoTime();
+      sampleQueue.seekTo(startIndex);
+      for (int i = 0; i < READ_COUNT; i++) {
+        read();
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+      readCount += READ_COUNT;
+    }
+    double samplesReadPerSecond =
+        elapsedNs == 0 ? 0 : readCount / ((double) elapsedNs / C.NANOS_PER_SECOND);
+    reportResult("samplesReadPerSecond", samplesReadPerSecond);
+  }
+
+  private int read() {
+    inputBuffer.clear();
+    return sampleQueue.read(
+        formatHolder, inputBuffer, /* readFlags= */ 0, /* loadingFinished= */ false);
+  }
+
+  private void reportResult(String resultName, double value) {
+    String name = "backBufferHours" + backBufferHours + "_" + resultName;
+    Log.i(TAG, name + "=" + value);
+    Bundle status = new Bundle();
+    status.putDouble(name, value);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.source.dash;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the time taken and the bytes allocated by {@link DashManifestParser} to parse a refresh
+ * of a multi-period live manifest whose segments are described by SegmentTimeline elements, and the
+ * time taken to look up segments by time in the parsed manifest.
+ *
+ * <p>The manifest has four periods covering the time shift buffer, each with a video adaptation set
+ * of constant segment duration and an audio adaptation set whose segment durations alternate. The
+ * time per parse in microseconds, the number of bytes allocated per parse and the time per segment
+ * lookup in nanoseconds are reported as instrumentation statuses and logged. Allocations are only
+ * reported from API level 23.
+ */
+@RunWith(Parameterized.class)
+public final class DashManifestParserBenchmark {
+
+  private static final String TAG = "DashManifestParser";
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/live/manifest.mpd");
+  private static final int PERIOD_COUNT = 4;
+  private static final int SEGMENT_DURATION_SECONDS = 2;
+  private static final int LOOKUP_COUNT = 1000;
+
+  @Parameters(name = "timeShiftBufferHours={0}")
+  public static ImmutableList<Integer> parameters() {
+    return ImmutableList.of(1, 6);
+  }
+
+  @Parameter public int timeShiftBufferHours;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] manifestBytes;
+
+  @Before
+  public void setUp() {
+    manifestBytes = Util.getUtf8Bytes(buildManifest());
+  }
+
+  @Test
+  public void parse() throws IOException {
+    BenchmarkState state = benchmarkRule.getState();
+    DashManifestParser parser = new DashManifestParser();
+    long parseCount = 0;
+    long elapsedNs = 0;
+    long bytesAllocated = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      long startTimeNs = System.nanoTime();
+      parser.parse(MANIFEST_URI, new ByteArrayInputStream(manifestBytes));
+      elapsedNs += System.nanoTime() - startTimeNs;
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+      parseCount++;
+    }
+    reportResult("timePerParseUs", parseCount == 0 ? 0 : elapsedNs / 1e3 / parseCount);
+    reportResult(
+        "bytesAllocatedPerParse", parseCount == 0 ? 0 : (double) bytesAllocated / parseCount);
+  }
+
+  @Test
+  public void getSegmentNum() throws IOException {
+    DashManifest manifest =
+        new DashManifestParser().parse(MANIFEST_URI, new ByteArrayInputStream(manifestBytes));
+    // The audio representation of the first period has the most runs of equal duration segments.
+    DashSegmentIndex index =
+        manifest.getPeriod(0).adaptationSets.get(1).representations.get(0).getIndex();
+    long periodDurationUs = manifest.getPeriodDurationUs(0);
+    assertThat(index.getSegmentCount(periodDurationUs)).isGreaterThan(0);
+    Random random = new Random(/* seed= */ 0);
+    BenchmarkState state = benchmarkRule.getState();
+    long lookupCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      for (int i = 0; i < LOOKUP_COUNT; i++) {
+        long timeUs = (long) (random.nextDouble() * periodDurationUs);
+        index.getSegmentNum(timeUs, periodDurationUs);
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+      lookupCount += LOOKUP_COUNT;
+    }
+    reportResult("timePerLookupNs", lookupCount == 0 ? 0 : (double) elapsedNs / lookupCount);
+  }
+
+  private String buildManifest() {
+    int periodDurationSeconds = timeShiftBufferHours * 3_600 / PERIOD_COUNT;
+    int segmentsPerPeriod = periodDurationSeconds / SEGMENT_DURATION_SECONDS;
+    StringBuilder manifest =
+        new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"dynamic\"")
+            .append(" availabilityStartTime=\"2023-01-01T00:00:00Z\"")
+            .append(" publishTime=\"2023-01-01T00:00:00Z\" minimumUpdatePeriod=\"PT2S\"")
+            .append(" timeShiftBufferDepth=\"PT")
+            .append(timeShiftBufferHours)
+            .append("H\" maxSegmentDuration=\"PT2S\" minBufferTime=\"PT4S\"")
+            .append(" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\">\n");
+    for (int period = 0; period < PERIOD_COUNT; period++) {
+      manifest
+          .append("<Period id=\"")
+          .append(period)
+          .append("\" start=\"PT")
+          .append(period * periodDurationSeconds)
+          .append("S\">\n");
+      // Video segments all have the same duration, so the timeline is a single S element.
+      manifest
+          .append("<AdaptationSet mimeType=\"video/mp4\" segmentAlignment=\"true\">\n")
+          .append("<SegmentTemplate timescale=\"90000\" initialization=\"v/init.mp4\"")
+          .append(" media=\"v/$Time$.m4s\">\n<SegmentTimeline>\n")
+          .append("<S t=\"0\" d=\"180000\" r=\"")
+          .append(segmentsPerPeriod - 1)
+          .append("\"/>\n</SegmentTimeline>\n</SegmentTemplate>\n")
+          .append("<Representation id=\"v1\" bandwidth=\"2000000\" codecs=\"avc1.640028\"")
+          .append(" width=\"1280\" height=\"720\"/>\n")
+          .append("</AdaptationSet>\n");
+      // Audio segments hold whole AAC frames, so their durations alternate around two seconds.
+      manifest
+          .append("<AdaptationSet mimeType=\"audio/mp4\" segmentAlignment=\"true\">\n")
+          .append("<SegmentTemplate timescale=\"48000\" initialization=\"a/init.mp4\"")
+          .append(" media=\"a/$Time$.m4s\">\n<SegmentTimeline>\n")
+          .append("<S t=\"0\" d=\"96256\" r=\"1\"/>\n");
+      for (int i = 2; i < segmentsPerPeriod; i += 3) {
+        manifest.append("<S d=\"95232\"/>\n<S d=\"96256\" r=\"1\"/>\n");
+      }
+      manifest
+          .append("</SegmentTimeline>\n</SegmentTemplate>\n")
+          .append("<Representation id=\"a1\" bandwidth=\"128000\" codecs=\"mp4a.40.2\"")
+          .append(" audioSamplingRate=\"48000\"/>\n")
+          .append("</AdaptationSet>\n")
+          .append("</Period>\n");
+    }
+    return manifest.append("</MPD>\n").toString();
+  }
+
+  private void reportResult(String resultName, double value) {
+    String name = "timeShiftBufferHours" + timeShiftBufferHours + "_" + resultName;
+    Log.i(TAG, name + "=" + value);
+    Bundle status = new Bundle();
+    status.putDouble(name, value);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
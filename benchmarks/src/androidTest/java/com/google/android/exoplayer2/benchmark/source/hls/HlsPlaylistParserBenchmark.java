@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.source.hls;
+
+import static com.google.android.exoplayer2.benchmark.BenchmarkUtil.getRuntimeStat;
+
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the time taken and the bytes allocated by {@link HlsPlaylistParser} to parse generated
+ * multivariant and media playlists whose tags have long attribute lists.
+ *
+ * <p>The multivariant playlist declares variants with all of the commonly used {@code
+ * #EXT-X-STREAM-INF} attributes, and the media playlist is a low latency live playlist with parts,
+ * byte ranges and keys. The time per parse in microseconds and the number of bytes allocated per
+ * playlist line are reported as instrumentation statuses and logged. Allocations are only reported
+ * from API level 23.
+ */
+@RunWith(Parameterized.class)
+public final class HlsPlaylistParserBenchmark {
+
+  private static final String TAG = "HlsPlaylistParser";
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/hls/playlist.m3u8");
+  private static final int VARIANT_COUNT = 64;
+  private static final int SEGMENT_COUNT = 600;
+  private static final int PARTS_PER_SEGMENT = 4;
+
+  @Parameters(name = "{0}")
+  public static ImmutableList<String> parameters() {
+    return ImmutableList.of("Multivariant", "Media");
+  }
+
+  @Parameter public String playlistType;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private byte[] playlistBytes;
+  private int lineCount;
+
+  @Before
+  public void setUp() {
+    String playlist =
+        playlistType.equals("Multivariant")
+            ? buildMultivariantPlaylist()
+            : buildLowLatencyMediaPlaylist();
+    playlistBytes = Util.getUtf8Bytes(playlist);
+    lineCount = Util.split(playlist, "\n").length;
+  }
+
+  @Test
+  public void parse() throws IOException {
+    BenchmarkState state = benchmarkRule.getState();
+    HlsPlaylistParser parser = new HlsPlaylistParser();
+    long parseCount = 0;
+    long elapsedNs = 0;
+    long bytesAllocated = 0;
+    while (state.keepRunning()) {
+      long startBytesAllocated = getRuntimeStat("art.gc.bytes-allocated");
+      long startTimeNs = System.nanoTime();
+      parser.parse(PLAYLIST_URI, new ByteArrayInputStream(playlistBytes));
+      elapsedNs += System.nanoTime() - startTimeNs;
+      bytesAllocated += getRuntimeStat("art.gc.bytes-allocated") - startBytesAllocated;
+      parseCount++;
+    }
+    double timePerParseUs = parseCount == 0 ? 0 : elapsedNs / 1e3 / parseCount;
+    double bytesAllocatedPerLine =
+        parseCount == 0 ? 0 : (double) bytesAllocated / parseCount / lineCount;
+    Log.i(
+        TAG,
+        playlistType
+            + ": timePerParseUs="
+            + timePerParseUs
+            + ", bytesAllocatedPerLine="
+            + bytesAllocatedPerLine);
+    Bundle status = new Bundle();
+    status.putDouble(playlistType + "_timePerParseUs", timePerParseUs);
+    status.putDouble(playlistType + "_bytesAllocatedPerLine", bytesAllocatedPerLine);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+
+  private static String buildMultivariantPlaylist() {
+    StringBuilder playlist =
+        new StringBuilder("#EXTM3U\n#EXT-X-VERSION:6\n#EXT-X-INDEPENDENT-SEGMENTS\n");
+    String[] languages = new String[] {"en", "fr", "de", "es"};
+    for (String language : languages) {
+      playlist
+          .append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",LANGUAGE=\"")
+          .append(language)
+          .append("\",NAME=\"Audio ")
+          .append(language)
+          .append("\",AUTOSELECT=YES,DEFAULT=NO,CHANNELS=\"2\",URI=\"audio/")
+          .append(language)
+          .append(".m3u8\"\n");
+      playlist
+          .append("#EXT-X-MEDIA:TYPE=SUBTITLES,GROUP-ID=\"subs\",LANGUAGE=\"")
+          .append(language)
+          .append("\",NAME=\"Subtitles ")
+          .append(language)
+          .append("\",AUTOSELECT=YES,FORCED=NO,")
+          .append("CHARACTERISTICS=\"public.accessibility.transcribes-spoken-dialog\",URI=\"subs/")
+          .append(language)
+          .append(".m3u8\"\n");
+    }
+    for (int i = 0; i < VARIANT_COUNT; i++) {
+      int bandwidth = 200_000 + i * 150_000;
+      int height = 144 + (i % 8) * 136;
+      playlist
+          .append("#EXT-X-STREAM-INF:BANDWIDTH=")
+          .append(bandwidth)
+          .append(",AVERAGE-BANDWIDTH=")
+          .append(bandwidth * 4 / 5)
+          .append(",CODECS=\"avc1.640028,mp4a.40.2\",RESOLUTION=")
+          .append(height * 16 / 9)
+          .append('x')
+          .append(height)
+          .append(",FRAME-RATE=29.970,AUDIO=\"aac\",SUBTITLES=\"subs\",CLOSED-CAPTIONS=NONE\n")
+          .append("video/")
+          .append(i)
+          .append("/playlist.m3u8\n");
+      playlist
+          .append("#EXT-X-I-FRAME-STREAM-INF:BANDWIDTH=")
+          .append(bandwidth / 10)
+          .append(",CODECS=\"avc1.640028\",RESOLUTION=")
+          .append(height * 16 / 9)
+          .append('x')
+          .append(height)
+          .append(",URI=\"video/")
+          .append(i)
+          .append("/iframes.m3u8\"\n");
+    }
+    return playlist.toString();
+  }
+
+  private static String buildLowLatencyMediaPlaylist() {
+    StringBuilder playlist =
+        new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:9\n")
+            .append("#EXT-X-TARGETDURATION:4\n")
+            .append("#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=3.0,")
+            .append("CAN-SKIP-UNTIL=24.0\n")
+            .append("#EXT-X-PART-INF:PART-TARGET=1.0\n")
+            .append("#EXT-X-MEDIA-SEQUENCE:1000\n")
+            .append("#EXT-X-PROGRAM-DATE-TIME:2023-01-01T00:00:00.000Z\n")
+            .append("#EXT-X-MAP:URI=\"init.mp4\",BYTERANGE=\"720@0\"\n");
+    long offset = 720;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      if (i % 150 == 0) {
+        playlist
+            .append("#EXT-X-KEY:METHOD=SAMPLE-AES,URI=\"skd://key")
+            .append(i)
+            .append("\",KEYFORMAT=\"com.apple.streamingkeydelivery\",KEYFORMATVERSIONS=\"1\"\n");
+      }
+      long segmentOffset = offset;
+      for (int j = 0; j < PARTS_PER_SEGMENT; j++) {
+        playlist
+            .append("#EXT-X-PART:DURATION=1.0,URI=\"media.mp4\",BYTERANGE=\"25000@")
+            .append(offset)
+            .append('"')
+            .append(j == 0 ? ",INDEPENDENT=YES" : "")
+            .append('\n');
+        offset += 25_000;
+      }
+      playlist
+          .append("#EXTINF:4.0,\n#EXT-X-BYTERANGE:")
+          .append(offset - segmentOffset)
+          .append('@')
+          .append(segmentOffset)
+          .append("\nmedia.mp4\n");
+    }
+    playlist
+        .append("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"media.mp4\",BYTERANGE-START=")
+        .append(offset)
+        .append(",BYTERANGE-LENGTH=25000\n")
+        .append("#EXT-X-RENDITION-REPORT:URI=\"../alt/playlist.m3u8\",LAST-MSN=")
+        .append(1000 + SEGMENT_COUNT - 1)
+        .append(",LAST-PART=3\n");
+    return playlist.toString();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.source.hls;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMultivariantPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the time taken by {@link HlsPlaylistParser} to parse a refresh of a live media playlist,
+ * as a function of the number of segments in the live window.
+ *
+ * <p>Each refresh removes the oldest segment from the window and appends a new one. Refreshes are
+ * parsed both without a previous playlist, and with the previous snapshot of the playlist so that
+ * the segments it already contains are reused. The time per refresh in microseconds is reported as
+ * an instrumentation status and logged.
+ */
+@RunWith(Parameterized.class)
+public final class HlsPlaylistRefreshBenchmark {
+
+  private static final String TAG = "HlsPlaylistRefresh";
+
+  private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/live/media.m3u8");
+  private static final int SEGMENT_DURATION_SECONDS = 2;
+  private static final long FIRST_MEDIA_SEQUENCE = 1_000;
+
+  @Parameters(name = "windowSegmentCount={0}")
+  public static ImmutableList<Integer> parameters() {
+    // One minute, thirty minutes and two hours of two second segments.
+    return ImmutableList.of(30, 900, 3600);
+  }
+
+  @Parameter public int windowSegmentCount;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private HlsMediaPlaylist previousPlaylist;
+  private byte[] refreshedPlaylistBytes;
+
+  @Before
+  public void setUp() throws IOException {
+    previousPlaylist =
+        parse(
+            /* previousPlaylist= */ null,
+            Util.getUtf8Bytes(buildPlaylist(/* mediaSequence= */ FIRST_MEDIA_SEQUENCE)));
+    refreshedPlaylistBytes =
+        Util.getUtf8Bytes(buildPlaylist(/* mediaSequence= */ FIRST_MEDIA_SEQUENCE + 1));
+    assertThat(previousPlaylist.segments).hasSize(windowSegmentCount);
+  }
+
+  @Test
+  public void parseRefreshWithoutPreviousPlaylist() throws IOException {
+    measureRefresh(/* usePreviousPlaylist= */ false, "withoutPreviousPlaylist");
+  }
+
+  @Test
+  public void parseRefreshWithPreviousPlaylist() throws IOException {
+    measureRefresh(/* usePreviousPlaylist= */ true, "withPreviousPlaylist");
+  }
+
+  private void measureRefresh(boolean usePreviousPlaylist, String resultName) throws IOException {
+    BenchmarkState state = benchmarkRule.getState();
+    long refreshCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      HlsMediaPlaylist playlist =
+          parse(usePreviousPlaylist ? previousPlaylist : null, refreshedPlaylistBytes);
+      elapsedNs += System.nanoTime() - startTimeNs;
+      refreshCount++;
+      state.pauseTiming();
+      assertThat(playlist.mediaSequence).isEqualTo(FIRST_MEDIA_SEQUENCE + 1);
+      state.resumeTiming();
+    }
+    double timePerRefreshUs = refreshCount == 0 ? 0 : elapsedNs / 1e3 / refreshCount;
+    String name = "windowSegmentCount" + windowSegmentCount + "_" + resultName;
+    Log.i(TAG, name + ": timePerRefreshUs=" + timePerRefreshUs);
+    Bundle status = new Bundle();
+    status.putDouble(name + "_timePerRefreshUs", timePerRefreshUs);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+
+  private String buildPlaylist(long mediaSequence) {
+    StringBuilder playlist =
+        new StringBuilder()
+            .append("#EXTM3U\n")
+            .append("#EXT-X-VERSION:6\n")
+            .append("#EXT-X-TARGETDURATION:")
+            .append(SEGMENT_DURATION_SECONDS)
+            .append('\n')
+            .append("#EXT-X-MEDIA-SEQUENCE:")
+            .append(mediaSequence)
+            .append('\n')
+            .append("#EXT-X-PROGRAM-DATE-TIME:2023-01-01T00:00:00.000Z\n")
+            .append("#EXT-X-MAP:URI=\"init.mp4\"\n");
+    for (long i = mediaSequence; i < mediaSequence + windowSegmentCount; i++) {
+      if (i % 900 == 0) {
+        // Rotate the key every thirty minutes.
+        playlist
+            .append("#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key/")
+            .append(i)
+            .append("\"\n");
+      }
+      playlist.append("#EXTINF:").append(SEGMENT_DURATION_SECONDS).append(".000,\n");
+      playlist.append("segment").append(i).append(".m4s\n");
+    }
+    return playlist.toString();
+  }
+
+  private static HlsMediaPlaylist parse(
+      @Nullable HlsMediaPlaylist previousPlaylist, byte[] playlistBytes) throws IOException {
+    return (HlsMediaPlaylist)
+        new HlsPlaylistParser(HlsMultivariantPlaylist.EMPTY, previousPlaylist)
+            .parse(PLAYLIST_URI, new ByteArrayInputStream(playlistBytes));
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark.upstream;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.DummyExtractorOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the throughput of extracting local media files read through a {@link FileDataSource},
+ * with and without memory mapping enabled.
+ *
+ * <p>Each measured iteration extracts the file {@link #EXTRACTION_COUNT} times, discarding the
+ * extracted samples. The throughput in MB/s is reported as an instrumentation status and logged.
+ */
+@RunWith(Parameterized.class)
+public final class FileDataSourceExtractionBenchmark {
+
+  private static final String TAG = "FileDataSourceBenchmark";
+
+  private static final String MP4 = "media/mp4/sample.mp4";
+  private static final String MATROSKA = "media/mkv/sample.mkv";
+
+  private static final int EXTRACTION_COUNT = 20;
+
+  @Parameters(name = "{0}_mapped={1}")
+  public static ImmutableList<Object[]> parameters() {
+    ImmutableList.Builder<Object[]> parameters = ImmutableList.builder();
+    for (String assetPath : new String[] {MP4, MATROSKA}) {
+      for (boolean memoryMapped : new boolean[] {false, true}) {
+        parameters.add(new Object[] {assetPath, memoryMapped});
+      }
+    }
+    return parameters.build();
+  }
+
+  @Parameter(0)
+  public String assetPath;
+
+  @Parameter(1)
+  public boolean memoryMapped;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private File tempDir;
+  private Uri fileUri;
+  private FileDataSource.Factory dataSourceFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    tempDir = Util.createTempDirectory(context, "FileDataSourceExtractionBenchmark");
+    File file = new File(tempDir, new File(assetPath).getName());
+    try (InputStream inputStream = context.getAssets().open(assetPath);
+        FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(Util.toByteArray(inputStream));
+    }
+    fileUri = Uri.fromFile(file);
+    dataSourceFactory = new FileDataSource.Factory().setMemoryMappingEnabled(memoryMapped);
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(tempDir);
+  }
+
+  @Test
+  public void extract() throws Exception {
+    BenchmarkState state = benchmarkRule.getState();
+    long bytesRead = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      for (int i = 0; i < EXTRACTION_COUNT; i++) {
+        bytesRead += extractFile();
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+    }
+    reportThroughput(bytesRead, elapsedNs);
+  }
+
+  /** Extracts the whole file, returning the number of bytes read from the data source. */
+  private long extractFile() throws Exception {
+    Extractor extractor = assetPath.equals(MP4) ? new Mp4Extractor() : new MatroskaExtractor();
+    extractor.init(new DummyExtractorOutput());
+    PositionHolder positionHolder = new PositionHolder();
+    FileDataSource dataSource = dataSourceFactory.createDataSource();
+    long bytesRead = 0;
+    long position = 0;
+    int result = Extractor.RESULT_SEEK;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      long length =
+          dataSource.open(new DataSpec.Builder().setUri(fileUri).setPosition(position).build());
+      DefaultExtractorInput input = new DefaultExtractorInput(dataSource, position, length);
+      try {
+        do {
+          result = extractor.read(input, positionHolder);
+        } while (result == Extractor.RESULT_CONTINUE);
+      } finally {
+        bytesRead += input.getPosition() - position;
+        dataSource.close();
+      }
+      if (result == Extractor.RESULT_SEEK) {
+        position = positionHolder.position;
+      }
+    }
+    extractor.release();
+    return bytesRead;
+  }
+
+  private void reportThroughput(long bytesRead, long elapsedNs) {
+    double throughputMbps =
+        elapsedNs == 0 ? 0 : (bytesRead / 1e6) / ((double) elapsedNs / C.NANOS_PER_SECOND);
+    String name = new File(assetPath).getName() + (memoryMapped ? "_mapped" : "_unmapped");
+    Log.i(TAG, name + ": " + throughputMbps + " MB/s");
+    Bundle status = new Bundle();
+    status.putDouble(name + "_throughputMbps", throughputMbps);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import android.os.Bundle;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Log;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Measures the throughput of reading consecutive HLS segments through {@link HlsSegmentPrefetcher}
+ * from a data source with a simulated request latency, as a function of the number of segments
+ * that are prefetched ahead of the one being read.
+ *
+ * <p>Segments are read in order, and the prefetched segments are updated before each segment is
+ * read in the same way as {@link HlsChunkSource}. A segment prefetch count of zero reads directly
+ * from the data source. The throughput in bytes per second is reported as an instrumentation
+ * status and logged.
+ *
+ * <p>The benchmark is in the package of {@link HlsSegmentPrefetcher}, which is package-private.
+ */
+@RunWith(Parameterized.class)
+public final class HlsSegmentPrefetcherBenchmark {
+
+  private static final String TAG = "HlsSegmentPrefetcher";
+
+  private static final int SEGMENT_COUNT = 8;
+  private static final int SEGMENT_SIZE = 256 * 1024;
+  private static final long LATENCY_MS = 20;
+
+  @Parameters(name = "segmentPrefetchCount={0}")
+  public static ImmutableList<Integer> parameters() {
+    return ImmutableList.of(0, 1, 3);
+  }
+
+  @Parameter public int segmentPrefetchCount;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private Map<Uri, byte[]> segments;
+  @Nullable private HlsSegmentPrefetcher prefetcher;
+  private DataSource dataSource;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(/* seed= */ 0);
+    ImmutableMap.Builder<Uri, byte[]> segments = ImmutableMap.builder();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      byte[] data = new byte[SEGMENT_SIZE];
+      random.nextBytes(data);
+      segments.put(getSegmentUri(i), data);
+    }
+    this.segments = segments.buildOrThrow();
+    dataSource = new LatencyDataSource(this.segments);
+    if (segmentPrefetchCount > 0) {
+      prefetcher =
+          new HlsSegmentPrefetcher(
+              /* dataSourceFactory= */ dataType -> new LatencyDataSource(this.segments),
+              /* transferListener= */ null,
+              /* maxSegmentCount= */ segmentPrefetchCount + 1,
+              HlsSegmentPrefetcher.DEFAULT_SEGMENT_BUFFER_SIZE,
+              HlsSegmentPrefetcher.DEFAULT_STALLED_CONNECTION_TIMEOUT_MS,
+              Clock.DEFAULT);
+      dataSource = prefetcher.createDataSource(dataSource);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (prefetcher != null) {
+      prefetcher.release();
+    }
+  }
+
+  @Test
+  public void readSegments() throws IOException {
+    BenchmarkState state = benchmarkRule.getState();
+    long readCount = 0;
+    long elapsedNs = 0;
+    while (state.keepRunning()) {
+      long startTimeNs = System.nanoTime();
+      for (int i = 0; i < SEGMENT_COUNT; i++) {
+        if (prefetcher != null) {
+          prefetcher.prefetch(getSegmentDataSpecs(i));
+        }
+        DataSpec dataSpec = new DataSpec(getSegmentUri(i));
+        try {
+          dataSource.open(dataSpec);
+          byte[] data = DataSourceUtil.readToEnd(dataSource);
+          state.pauseTiming();
+          assertThat(data).hasLength(SEGMENT_SIZE);
+          state.resumeTiming();
+        } finally {
+          dataSource.close();
+        }
+      }
+      elapsedNs += System.nanoTime() - startTimeNs;
+      readCount++;
+    }
+    double bytesPerSecond =
+        elapsedNs == 0 ? 0 : (double) readCount * SEGMENT_COUNT * SEGMENT_SIZE * 1e9 / elapsedNs;
+    String name = "segmentPrefetchCount" + segmentPrefetchCount;
+    Log.i(TAG, name + ": bytesPerSecond=" + bytesPerSecond);
+    Bundle status = new Bundle();
+    status.putDouble(name + "_bytesPerSecond", bytesPerSecond);
+    InstrumentationRegistry.getInstrumentation().sendStatus(/* resultCode= */ 2, status);
+  }
+
+  /** Returns the segment at {@code index} and the segments that are prefetched after it. */
+  private ImmutableList<DataSpec> getSegmentDataSpecs(int index) {
+    ImmutableList.Builder<DataSpec> dataSpecs = ImmutableList.builder();
+    for (int i = index; i < min(SEGMENT_COUNT, index + segmentPrefetchCount + 1); i++) {
+      dataSpecs.add(
+          new DataSpec.Builder()
+              .setUri(getSegmentUri(i))
+              .setFlags(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
+              .build());
+    }
+    return dataSpecs.build();
+  }
+
+  private static Uri getSegmentUri(int index) {
+    return Uri.parse("https://example.com/segment" + index + ".ts");
+  }
+
+  /** A {@link DataSource} that serves segments from memory after a simulated request latency. */
+  private static final class LatencyDataSource implements DataSource {
+
+    private final Map<Uri, byte[]> segments;
+
+    @Nullable private ByteArrayDataSource dataSource;
+
+    public LatencyDataSource(Map<Uri, byte[]> segments) {
+      this.segments = segments;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {}
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      try {
+        Thread.sleep(LATENCY_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      dataSource = new ByteArrayDataSource(checkNotNull(segments.get(dataSpec.uri)));
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      return checkNotNull(dataSource).read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return dataSource != null ? dataSource.getUri() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (dataSource != null) {
+        dataSource.close();
+        dataSource = null;
+      }
+    }
+  }
+}
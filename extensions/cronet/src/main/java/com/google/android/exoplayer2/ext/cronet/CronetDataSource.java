@@ -717,21 +717,31 @@ public class CronetDataSource extends BaseDataSource implements HttpDataSource {
    * returned. Otherwise, the call will block until at least one byte of data has been read and the
    * number of bytes read is returned.
    *
-   * <p>Passed buffer must be direct ByteBuffer. If you have a non-direct ByteBuffer, consider the
-   * alternative read method with its backed array.
+   * <p>Cronet writes directly into direct ByteBuffers. Non-direct ByteBuffers are read into using
+   * the alternative read method with their backing array.
    *
    * @param buffer The ByteBuffer into which the read data should be stored. Must be a direct
-   *     ByteBuffer.
+   *     ByteBuffer, or have a backing array.
    * @return The number of bytes read, or {@link C#RESULT_END_OF_INPUT} if no data is available
    *     because the end of the opened range has been reached.
    * @throws HttpDataSourceException If an error occurs reading from the source.
-   * @throws IllegalArgumentException If {@code buffer} is not a direct ByteBuffer.
+   * @throws IllegalArgumentException If {@code buffer} is neither a direct ByteBuffer nor has a
+   *     backing array.
    */
+  @Override
   public int read(ByteBuffer buffer) throws HttpDataSourceException {
     Assertions.checkState(opened);
 
     if (!buffer.isDirect()) {
-      throw new IllegalArgumentException("Passed buffer is not a direct ByteBuffer");
+      if (!buffer.hasArray()) {
+        throw new IllegalArgumentException("Passed buffer is not a direct ByteBuffer");
+      }
+      int bytesRead =
+          read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      if (bytesRead > 0) {
+        buffer.position(buffer.position() + bytesRead);
+      }
+      return bytesRead;
     }
     if (!buffer.hasRemaining()) {
       return 0;
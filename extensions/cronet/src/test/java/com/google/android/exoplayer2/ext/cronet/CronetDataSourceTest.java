@@ -901,6 +901,22 @@ public final class CronetDataSourceTest {
         .onBytesTransferred(dataSourceUnderTest, testDataSpec, /* isNetwork= */ true, 16);
   }
 
+  @Test
+  public void readNonDirectByteBufferReadsIntoBackingArray() throws HttpDataSourceException {
+    mockResponseStartSuccess();
+    mockReadSuccess(0, 16);
+
+    dataSourceUnderTest.open(testDataSpec);
+
+    byte[] returnedArray = new byte[12];
+    ByteBuffer returnedBuffer = ByteBuffer.wrap(returnedArray);
+    returnedBuffer.position(4);
+    int bytesRead = dataSourceUnderTest.read(returnedBuffer);
+    assertThat(bytesRead).isEqualTo(8);
+    assertThat(returnedBuffer.position()).isEqualTo(12);
+    assertThat(Arrays.copyOfRange(returnedArray, 4, 12)).isEqualTo(buildTestDataArray(0, 8));
+  }
+
   @Test
   public void overreadByteBuffer() throws HttpDataSourceException {
     testDataSpec = new DataSpec(Uri.parse(TEST_URL), 0, 16);
@@ -1364,14 +1380,14 @@ public final class CronetDataSourceTest {
   }
 
   @Test
-  public void readNonDirectedByteBufferFailure() throws HttpDataSourceException {
+  public void readNonDirectByteBufferWithoutBackingArrayFailure() throws HttpDataSourceException {
     mockResponseStartSuccess();
     mockReadFailure();
 
     dataSourceUnderTest.open(testDataSpec);
     byte[] returnedBuffer = new byte[8];
     try {
-      dataSourceUnderTest.read(ByteBuffer.wrap(returnedBuffer));
+      dataSourceUnderTest.read(ByteBuffer.wrap(returnedBuffer).asReadOnlyBuffer());
       fail("dataSourceUnderTest.read() returned, but IllegalArgumentException expected");
     } catch (IllegalArgumentException e) {
       // Expected.
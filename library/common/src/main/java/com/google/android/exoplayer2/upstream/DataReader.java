@@ -15,8 +15,11 @@
  */
 package com.google.android.exoplayer2.upstream;
 
+import static java.lang.Math.min;
+
 import com.google.android.exoplayer2.C;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Reads bytes from a data stream.
@@ -45,4 +48,40 @@ public interface DataReader {
    * @throws IOException If an error occurs reading from the input.
    */
   int read(byte[] buffer, int offset, int length) throws IOException;
+
+  /**
+   * Reads up to {@link ByteBuffer#remaining() buffer.remaining()} bytes of data from the input into
+   * {@code buffer}, starting at its position, and advances its position by the number of bytes
+   * read.
+   *
+   * <p>Apart from the target, this method behaves like {@link #read(byte[], int, int)}. The default
+   * implementation reads directly into the backing array of buffers that have one, and into a
+   * temporary array otherwise. Implementations that can write to a {@link ByteBuffer} without an
+   * intermediate copy (for example, from a memory mapped file or a {@link
+   * java.nio.channels.FileChannel}) should override it.
+   *
+   * @param buffer The target buffer into which data should be written.
+   * @return The number of bytes read, or {@link C#RESULT_END_OF_INPUT} if the input has ended.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  default int read(ByteBuffer buffer) throws IOException {
+    int length = buffer.remaining();
+    if (length == 0) {
+      return 0;
+    }
+    int bytesRead;
+    if (buffer.hasArray()) {
+      bytesRead = read(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+      if (bytesRead != C.RESULT_END_OF_INPUT) {
+        buffer.position(buffer.position() + bytesRead);
+      }
+    } else {
+      byte[] data = new byte[min(length, 4096)];
+      bytesRead = read(data, /* offset= */ 0, data.length);
+      if (bytesRead != C.RESULT_END_OF_INPUT) {
+        buffer.put(data, /* offset= */ 0, bytesRead);
+      }
+    }
+    return bytesRead;
+  }
 }
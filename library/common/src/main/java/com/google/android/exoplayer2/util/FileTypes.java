@@ -90,8 +90,17 @@ public final class FileTypes {
   /** File type for the AVI format. */
   public static final int AVI = 16;
 
+  /**
+   * The number of bytes from the start of a stream needed by {@link #inferFileTypeFromHeader(byte[],
+   * int)} to check the magic numbers of all file types.
+   */
+  public static final int HEADER_INFERENCE_LENGTH = 2 * 188 + 1;
+
   @VisibleForTesting /* package */ static final String HEADER_CONTENT_TYPE = "Content-Type";
 
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int TS_SYNC_BYTE = 0x47;
+
   private static final String EXTENSION_AC3 = ".ac3";
   private static final String EXTENSION_EC3 = ".ec3";
   private static final String EXTENSION_AC4 = ".ac4";
@@ -195,6 +204,105 @@ public final class FileTypes {
     }
   }
 
+  /**
+   * Returns the {@link Type} identified by the magic number at the start of a stream, or {@link
+   * #UNKNOWN} if the start of the stream doesn't identify a single file type.
+   *
+   * <p>The magic numbers of all file types are checked in one pass over the header, which is much
+   * cheaper than sniffing with each extractor in turn. The returned type is only a hint, and the
+   * corresponding extractor still needs to confirm that it can read the stream. Streams starting
+   * with an ID3 tag, which may be followed by several formats, are of {@link #UNKNOWN} type.
+   *
+   * @param header An array containing the first bytes of the stream.
+   * @param length The number of bytes of the stream in {@code header}. Only the first {@link
+   *     #HEADER_INFERENCE_LENGTH} bytes are checked.
+   */
+  public static @FileTypes.Type int inferFileTypeFromHeader(byte[] header, int length) {
+    if (length < 2) {
+      return FileTypes.UNKNOWN;
+    }
+    int byte0 = header[0] & 0xFF;
+    int byte1 = header[1] & 0xFF;
+    if (length >= 4) {
+      int fourcc = readInt(header, /* offset= */ 0);
+      switch (fourcc) {
+        case 0x1A45DFA3: // EBML header.
+          return FileTypes.MATROSKA;
+        case 0x664C6143: // "fLaC".
+          return FileTypes.FLAC;
+        case 0x4F676753: // "OggS".
+          return FileTypes.OGG;
+        case 0x4D546864: // "MThd".
+          return FileTypes.MIDI;
+        case 0x000001BA: // MPEG pack header.
+          return FileTypes.PS;
+        case 0x52463634: // "RF64".
+          return FileTypes.WAV;
+        case 0x52494646: // "RIFF".
+          if (length >= 12) {
+            int formType = readInt(header, /* offset= */ 8);
+            if (formType == 0x57415645) { // "WAVE".
+              return FileTypes.WAV;
+            } else if (formType == 0x41564920) { // "AVI ".
+              return FileTypes.AVI;
+            }
+          }
+          return FileTypes.UNKNOWN;
+        default:
+          break;
+      }
+      if ((fourcc >>> 8) == 0x464C56) { // "FLV".
+        return FileTypes.FLV;
+      }
+    }
+    if (length >= 8) {
+      switch (readInt(header, /* offset= */ 4)) {
+        case 0x66747970: // "ftyp".
+        case 0x73747970: // "styp".
+        case 0x6D6F6F76: // "moov".
+        case 0x6D6F6F66: // "moof".
+        case 0x73696478: // "sidx".
+          return FileTypes.MP4;
+        default:
+          break;
+      }
+    }
+    if (length >= 5
+        && byte0 == '#'
+        && byte1 == '!'
+        && header[2] == 'A'
+        && header[3] == 'M'
+        && header[4] == 'R') {
+      return FileTypes.AMR;
+    }
+    if (length >= HEADER_INFERENCE_LENGTH
+        && byte0 == TS_SYNC_BYTE
+        && (header[TS_PACKET_SIZE] & 0xFF) == TS_SYNC_BYTE
+        && (header[2 * TS_PACKET_SIZE] & 0xFF) == TS_SYNC_BYTE) {
+      return FileTypes.TS;
+    }
+    if (byte0 == 0x0B && byte1 == 0x77) {
+      return FileTypes.AC3;
+    } else if (byte0 == 0xAC && (byte1 == 0x40 || byte1 == 0x41)) {
+      return FileTypes.AC4;
+    } else if (byte0 == 0xFF) {
+      if (byte1 == 0xD8) {
+        return FileTypes.JPEG;
+      } else if ((byte1 & 0xF6) == 0xF0) {
+        // ADTS sync word, with a layer of 0.
+        return FileTypes.ADTS;
+      } else if (length >= 3
+          && (byte1 & 0xE0) == 0xE0
+          && (byte1 & 0x06) != 0
+          && (header[2] & 0xF0) != 0xF0
+          && (header[2] & 0x0C) != 0x0C) {
+        // MPEG audio frame sync, with a valid layer, bitrate index and sampling rate index.
+        return FileTypes.MP3;
+      }
+    }
+    return FileTypes.UNKNOWN;
+  }
+
   /** Returns the {@link Type} corresponding to the {@link Uri} provided. */
   public static @FileTypes.Type int inferFileTypeFromUri(Uri uri) {
     @Nullable String filename = uri.getLastPathSegment();
@@ -261,4 +369,11 @@ public final class FileTypes {
       return FileTypes.UNKNOWN;
     }
   }
+
+  private static int readInt(byte[] data, int offset) {
+    return (data[offset] & 0xFF) << 24
+        | (data[offset + 1] & 0xFF) << 16
+        | (data[offset + 2] & 0xFF) << 8
+        | (data[offset + 3] & 0xFF);
+  }
 }
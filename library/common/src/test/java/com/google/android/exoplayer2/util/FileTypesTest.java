@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.util;
 
 import static com.google.android.exoplayer2.util.FileTypes.HEADER_CONTENT_TYPE;
+import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromHeader;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromMimeType;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromUri;
 import static com.google.common.truth.Truth.assertThat;
@@ -94,4 +95,52 @@ public class FileTypesTest {
   public void inferFileFormat_fromEmptyUri_returnsUnknownFormat() {
     assertThat(inferFileTypeFromUri(Uri.EMPTY)).isEqualTo(FileTypes.UNKNOWN);
   }
+
+  @Test
+  public void inferFileFormat_fromMatroskaHeader_returnsExpectedFormat() {
+    byte[] header =
+        new byte[] {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x9F, 0x42, (byte) 0x86};
+
+    assertThat(inferFileTypeFromHeader(header, header.length)).isEqualTo(FileTypes.MATROSKA);
+  }
+
+  @Test
+  public void inferFileFormat_fromMp4Header_returnsExpectedFormat() {
+    byte[] header = Util.getUtf8Bytes("\0\0\0\u0018ftypisom\0\0\0\0");
+
+    assertThat(inferFileTypeFromHeader(header, header.length)).isEqualTo(FileTypes.MP4);
+  }
+
+  @Test
+  public void inferFileFormat_fromTsHeader_returnsExpectedFormat() {
+    byte[] header = new byte[FileTypes.HEADER_INFERENCE_LENGTH];
+    header[0] = 0x47;
+    header[188] = 0x47;
+    header[376] = 0x47;
+
+    assertThat(inferFileTypeFromHeader(header, header.length)).isEqualTo(FileTypes.TS);
+  }
+
+  @Test
+  public void inferFileFormat_fromTsHeaderWithoutSecondSyncByte_returnsUnknownFormat() {
+    byte[] header = new byte[FileTypes.HEADER_INFERENCE_LENGTH];
+    header[0] = 0x47;
+    header[376] = 0x47;
+
+    assertThat(inferFileTypeFromHeader(header, header.length)).isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void inferFileFormat_fromId3Header_returnsUnknownFormat() {
+    byte[] header = Util.getUtf8Bytes("ID3\u0004\0\0\0\0\0\0");
+
+    assertThat(inferFileTypeFromHeader(header, header.length)).isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void inferFileFormat_fromTruncatedHeader_returnsUnknownFormat() {
+    byte[] header = Util.getUtf8Bytes("fLaC");
+
+    assertThat(inferFileTypeFromHeader(header, /* length= */ 3)).isEqualTo(FileTypes.UNKNOWN);
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import androidx.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds NAL unit start codes in data passed to successive calls, including start codes that span
+ * the boundary between two calls.
+ *
+ * <p>The results are the same as those of {@link NalUnitUtil#findNalUnit(byte[], int, int,
+ * boolean[])} called with the same prefix flags each time, but the data is read eight bytes at a
+ * time, and only the individual bytes of eight byte words that contain a zero byte are checked.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class NalUnitStartCodeScanner {
+
+  private final boolean[] prefixFlags;
+
+  @Nullable private ByteBuffer wrappedData;
+
+  /** Creates an instance. */
+  public NalUnitStartCodeScanner() {
+    prefixFlags = new boolean[3];
+  }
+
+  /**
+   * Finds the first NAL unit in {@code data}.
+   *
+   * <p>NAL units whose first four bytes span {@code data} arrays passed to successive calls are
+   * found. In this case the return value may be 3, 2 or 1 less than {@code startOffset}, to indicate
+   * a NAL unit starting 3, 2 or 1 bytes before the first byte in the current array.
+   *
+   * @param data The data to search.
+   * @param startOffset The offset (inclusive) in the data to start the search.
+   * @param endOffset The offset (exclusive) in the data to end the search.
+   * @return The offset of the NAL unit, or {@code endOffset} if a NAL unit was not found.
+   */
+  public int findNalUnit(byte[] data, int startOffset, int endOffset) {
+    @Nullable ByteBuffer wrappedData = this.wrappedData;
+    if (wrappedData == null || wrappedData.array() != data) {
+      // Callers typically pass the same array to each call, so the wrapper is reused.
+      wrappedData = ByteBuffer.wrap(data);
+      this.wrappedData = wrappedData;
+    }
+    return NalUnitUtil.findNalUnit(data, wrappedData, startOffset, endOffset, prefixFlags);
+  }
+
+  /** Resets the scanner, discarding any start code prefix seen at the end of the previous data. */
+  public void reset() {
+    NalUnitUtil.clearPrefixFlags(prefixFlags);
+  }
+}
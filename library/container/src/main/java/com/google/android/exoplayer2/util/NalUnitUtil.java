@@ -750,6 +750,29 @@ public final class NalUnitUtil {
    */
   public static int findNalUnit(
       byte[] data, int startOffset, int endOffset, boolean[] prefixFlags) {
+    return findNalUnit(data, /* wrappedData= */ null, startOffset, endOffset, prefixFlags);
+  }
+
+  /**
+   * Finds the first NAL unit in {@code data}, as {@link #findNalUnit(byte[], int, int, boolean[])}
+   * does.
+   *
+   * @param data The data to search.
+   * @param wrappedData A {@link ByteBuffer} wrapping {@code data}, used to check eight bytes at a
+   *     time for start code prefixes, or {@code null} to check {@code data} byte by byte.
+   * @param startOffset The offset (inclusive) in the data to start the search.
+   * @param endOffset The offset (exclusive) in the data to end the search.
+   * @param prefixFlags A boolean array whose first three elements are used to store the state
+   *     required to detect NAL units where the NAL unit prefix spans array boundaries. The array
+   *     must be at least 3 elements long.
+   * @return The offset of the NAL unit, or {@code endOffset} if a NAL unit was not found.
+   */
+  /* package */ static int findNalUnit(
+      byte[] data,
+      @Nullable ByteBuffer wrappedData,
+      int startOffset,
+      int endOffset,
+      boolean[] prefixFlags) {
     int length = endOffset - startOffset;
 
     Assertions.checkState(length >= 0);
@@ -771,21 +794,13 @@ public final class NalUnitUtil {
       return startOffset - 1;
     }
 
-    int limit = endOffset - 1;
-    // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
-    // the third byte.
-    for (int i = startOffset + 2; i < limit; i += 3) {
-      if ((data[i] & 0xFE) != 0) {
-        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
-        // loop advance the index by three.
-      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
-        clearPrefixFlags(prefixFlags);
-        return i - 2;
-      } else {
-        // There isn't a NAL prefix here, but there might be at the next position. We should
-        // only skip forward by one. The loop will skip forward by three, so subtract two here.
-        i -= 2;
-      }
+    int nalUnitOffset =
+        wrappedData != null
+            ? findStartCodePrefixWordAtATime(data, wrappedData, startOffset, endOffset)
+            : findStartCodePrefix(data, startOffset, endOffset);
+    if (nalUnitOffset != endOffset) {
+      clearPrefixFlags(prefixFlags);
+      return nalUnitOffset;
     }
 
     // True if the last three bytes in the data seen so far are {0,0,1}.
@@ -817,6 +832,61 @@ public final class NalUnitUtil {
     prefixFlags[2] = false;
   }
 
+  /**
+   * Returns the offset of the first NAL unit start code prefix in {@code data} that's followed by
+   * at least one byte before {@code endOffset}, or {@code endOffset} if there is none.
+   */
+  private static int findStartCodePrefix(byte[] data, int startOffset, int endOffset) {
+    int limit = endOffset - 1;
+    // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
+    // the third byte.
+    for (int i = startOffset + 2; i < limit; i += 3) {
+      if ((data[i] & 0xFE) != 0) {
+        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
+        // loop advance the index by three.
+      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
+        return i - 2;
+      } else {
+        // There isn't a NAL prefix here, but there might be at the next position. We should
+        // only skip forward by one. The loop will skip forward by three, so subtract two here.
+        i -= 2;
+      }
+    }
+    return endOffset;
+  }
+
+  /**
+   * Equivalent to {@link #findStartCodePrefix(byte[], int, int)}, but reads {@code data} eight
+   * bytes at a time through {@code wrappedData}, only checking the individual bytes of words that
+   * contain a zero byte.
+   */
+  private static int findStartCodePrefixWordAtATime(
+      byte[] data, ByteBuffer wrappedData, int startOffset, int endOffset) {
+    // The offset of the last prefix that's followed by at least one byte.
+    int lastPrefixOffset = endOffset - 4;
+    int i = startOffset;
+    for (; i <= endOffset - 8; i += 8) {
+      long word = wrappedData.getLong(i);
+      // A prefix starts with a zero byte, so words without one can be skipped. This expression is
+      // non-zero if and only if at least one of the bytes in the word is zero.
+      if (((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) == 0) {
+        continue;
+      }
+      int wordEnd = min(i + 8, lastPrefixOffset + 1);
+      for (int j = i; j < wordEnd; j++) {
+        if (data[j] == 0 && data[j + 1] == 0 && data[j + 2] == 1) {
+          return j;
+        }
+      }
+    }
+    for (; i <= lastPrefixOffset; i++) {
+      if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+        return i;
+      }
+    }
+    return endOffset;
+  }
+
   private static int findNextUnescapeIndex(byte[] bytes, int offset, int limit) {
     for (int i = offset; i < limit - 2; i++) {
       if (bytes[i] == 0x00 && bytes[i + 1] == 0x00 && bytes[i + 2] == 0x03) {
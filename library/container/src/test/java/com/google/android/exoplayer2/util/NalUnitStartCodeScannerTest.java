@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link NalUnitStartCodeScanner}. */
+@RunWith(AndroidJUnit4.class)
+public final class NalUnitStartCodeScannerTest {
+
+  @Test
+  public void findNalUnit_findsNalUnitAtEachPositionInWord() {
+    for (int nalUnitPosition = 0; nalUnitPosition < 24; nalUnitPosition++) {
+      byte[] data = new byte[32];
+      Arrays.fill(data, (byte) 0xFF);
+      data[nalUnitPosition] = 0;
+      data[nalUnitPosition + 1] = 0;
+      data[nalUnitPosition + 2] = 1;
+      NalUnitStartCodeScanner scanner = new NalUnitStartCodeScanner();
+
+      assertThat(scanner.findNalUnit(data, 0, data.length)).isEqualTo(nalUnitPosition);
+      // Shouldn't find NAL unit whose prefix ends at the limit (since the limit is exclusive).
+      scanner.reset();
+      assertThat(scanner.findNalUnit(data, 0, nalUnitPosition + 3))
+          .isEqualTo(nalUnitPosition + 3);
+      // Shouldn't find NAL unit whose prefix starts before the offset.
+      scanner.reset();
+      assertThat(scanner.findNalUnit(data, nalUnitPosition + 1, data.length))
+          .isEqualTo(data.length);
+    }
+  }
+
+  @Test
+  public void findNalUnit_withPrefixSpanningCalls_returnsNegativeOffset() {
+    byte[] data1 = new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0};
+    byte[] data2 = new byte[] {1, 0x67, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    NalUnitStartCodeScanner scanner = new NalUnitStartCodeScanner();
+
+    assertThat(scanner.findNalUnit(data1, 0, data1.length)).isEqualTo(data1.length);
+    assertThat(scanner.findNalUnit(data2, 0, data2.length)).isEqualTo(-2);
+  }
+
+  @Test
+  public void reset_discardsPrefixSeenInPreviousData() {
+    byte[] data1 = new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0};
+    byte[] data2 = new byte[] {1, 0x67, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    NalUnitStartCodeScanner scanner = new NalUnitStartCodeScanner();
+
+    scanner.findNalUnit(data1, 0, data1.length);
+    scanner.reset();
+
+    assertThat(scanner.findNalUnit(data2, 0, data2.length)).isEqualTo(data2.length);
+  }
+
+  @Test
+  public void findNalUnit_randomDataSplitIntoChunks_matchesNalUnitUtil() {
+    Random random = new Random(/* seed= */ 0);
+    for (int iteration = 0; iteration < 100; iteration++) {
+      byte[] data = new byte[1 + random.nextInt(2000)];
+      for (int i = 0; i < data.length; i++) {
+        // Use a small alphabet, so that start codes are frequent.
+        data[i] = (byte) random.nextInt(3);
+      }
+      NalUnitStartCodeScanner scanner = new NalUnitStartCodeScanner();
+      boolean[] prefixFlags = new boolean[3];
+      int chunkStart = 0;
+      while (chunkStart < data.length) {
+        int chunkEnd = Math.min(data.length, chunkStart + 1 + random.nextInt(200));
+        int offset = chunkStart;
+        while (offset < chunkEnd) {
+          int expected = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+          int actual = scanner.findNalUnit(data, offset, chunkEnd);
+          assertThat(actual).isEqualTo(expected);
+          offset = expected == chunkEnd ? chunkEnd : Math.max(offset, expected + 3);
+        }
+        chunkStart = chunkEnd;
+      }
+    }
+  }
+}
@@ -15,20 +15,27 @@
  */
 package com.google.android.exoplayer2.offline;
 
-import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.PriorityTaskManager.PriorityTooLowException;
 import com.google.android.exoplayer2.util.RunnableFutureTask;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
@@ -36,6 +43,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 /**
  * A downloader for progressive media streams.
  *
+ * <p>If the length of the stream is known or can be resolved, the stream can be split into several
+ * byte ranges that are downloaded in parallel. See {@link #ProgressiveDownloader(MediaItem,
+ * CacheDataSource.Factory, Executor, int)}.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -44,11 +55,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 @Deprecated
 public final class ProgressiveDownloader implements Downloader {
 
+  /** The minimum length of each byte range that's downloaded in parallel. */
+  private static final long MIN_PARALLEL_RANGE_LENGTH = 256 * 1024;
+
   private final Executor executor;
   private final DataSpec dataSpec;
+  private final CacheDataSource.Factory cacheDataSourceFactory;
   private final CacheDataSource dataSource;
   private final CacheWriter cacheWriter;
   @Nullable private final PriorityTaskManager priorityTaskManager;
+  private final int parallelRangeCount;
+  private final ArrayList<RangeDownloadRunnable> activeRangeRunnables;
 
   @Nullable private ProgressListener progressListener;
   private volatile @MonotonicNonNull RunnableFutureTask<Void, IOException> downloadRunnable;
@@ -72,13 +89,43 @@ public final class ProgressiveDownloader implements Downloader {
    * @param mediaItem The media item with a uri to the stream to be downloaded.
    * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
    *     download will be written.
-   * @param executor An {@link Executor} used to make requests for the media being downloaded. In
-   *     the future, providing an {@link Executor} that uses multiple threads may speed up the
-   *     download by allowing parts of it to be executed in parallel.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded. To
+   *     download parts of the stream in parallel, use {@link #ProgressiveDownloader(MediaItem,
+   *     CacheDataSource.Factory, Executor, int)}.
    */
   public ProgressiveDownloader(
       MediaItem mediaItem, CacheDataSource.Factory cacheDataSourceFactory, Executor executor) {
+    this(mediaItem, cacheDataSourceFactory, executor, /* parallelRangeCount= */ 1);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * <p>If {@code parallelRangeCount} is greater than one and the length of the stream is known or
+   * can be resolved, the parts of the stream that aren't yet cached are split into up to {@code
+   * parallelRangeCount} byte ranges of similar size, each of which is written into the cache by its
+   * own {@link CacheWriter}. Data that's already cached is skipped, so an interrupted download is
+   * resumed from the spans that were written before it was interrupted. If the length can't be
+   * resolved, the stream is downloaded sequentially.
+   *
+   * @param mediaItem The media item with a uri to the stream to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded. The
+   *     byte ranges are only downloaded in parallel if the {@link Executor} uses multiple threads.
+   * @param parallelRangeCount The maximum number of byte ranges into which the stream is split, or
+   *     {@code 1} to download the stream sequentially.
+   */
+  public ProgressiveDownloader(
+      MediaItem mediaItem,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      int parallelRangeCount) {
+    Assertions.checkArgument(parallelRangeCount > 0);
     this.executor = Assertions.checkNotNull(executor);
+    this.cacheDataSourceFactory = cacheDataSourceFactory;
+    this.parallelRangeCount = parallelRangeCount;
+    activeRangeRunnables = new ArrayList<>();
     Assertions.checkNotNull(mediaItem.localConfiguration);
     dataSpec =
         new DataSpec.Builder()
@@ -101,6 +148,40 @@ public final class ProgressiveDownloader implements Downloader {
     if (priorityTaskManager != null) {
       priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     }
+    try {
+      long contentLength = parallelRangeCount > 1 ? getContentLength() : C.LENGTH_UNSET;
+      if (contentLength != C.LENGTH_UNSET) {
+        downloadRanges(getParallelRanges(contentLength), contentLength);
+      } else {
+        downloadSequentially();
+      }
+    } finally {
+      if (priorityTaskManager != null) {
+        priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
+      }
+    }
+  }
+
+  @Override
+  public void cancel() {
+    synchronized (activeRangeRunnables) {
+      isCanceled = true;
+      for (int i = 0; i < activeRangeRunnables.size(); i++) {
+        activeRangeRunnables.get(i).cancel(/* interruptIfRunning= */ true);
+      }
+    }
+    RunnableFutureTask<Void, IOException> downloadRunnable = this.downloadRunnable;
+    if (downloadRunnable != null) {
+      downloadRunnable.cancel(/* interruptIfRunning= */ true);
+    }
+  }
+
+  @Override
+  public void remove() {
+    dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
+  }
+
+  private void downloadSequentially() throws IOException, InterruptedException {
     try {
       boolean finished = false;
       while (!finished && !isCanceled) {
@@ -140,25 +221,153 @@ public final class ProgressiveDownloader implements Downloader {
     } finally {
       // If the main download thread was interrupted as part of cancelation, then it's possible that
       // the runnable is still doing work. We need to wait until it's finished before returning.
-      checkNotNull(downloadRunnable).blockUntilFinished();
-      if (priorityTaskManager != null) {
-        priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
+      if (downloadRunnable != null) {
+        downloadRunnable.blockUntilFinished();
       }
     }
   }
 
-  @Override
-  public void cancel() {
-    isCanceled = true;
-    RunnableFutureTask<Void, IOException> downloadRunnable = this.downloadRunnable;
-    if (downloadRunnable != null) {
-      downloadRunnable.cancel(/* interruptIfRunning= */ true);
+  private void downloadRanges(List<DataSpec> ranges, long contentLength)
+      throws IOException, InterruptedException {
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    RangeProgressNotifier progressNotifier =
+        new RangeProgressNotifier(
+            contentLength, cache.getCachedBytes(cacheKey, /* position= */ 0, contentLength));
+    progressNotifier.notifyProgress();
+    ArrayDeque<DataSpec> pendingRanges = new ArrayDeque<>(ranges);
+    try {
+      while (!isCanceled && !pendingRanges.isEmpty()) {
+        // Block until there aren't any higher priority tasks.
+        if (priorityTaskManager != null) {
+          priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
+        }
+        while (!pendingRanges.isEmpty()) {
+          RangeDownloadRunnable rangeRunnable =
+              new RangeDownloadRunnable(
+                  pendingRanges.removeFirst(),
+                  cacheDataSourceFactory.createDataSourceForDownloading(),
+                  progressNotifier);
+          synchronized (activeRangeRunnables) {
+            if (isCanceled) {
+              break;
+            }
+            activeRangeRunnables.add(rangeRunnable);
+          }
+          executor.execute(rangeRunnable);
+        }
+        for (int i = 0; i < activeRangeRunnables.size(); i++) {
+          RangeDownloadRunnable rangeRunnable = activeRangeRunnables.get(i);
+          try {
+            rangeRunnable.get();
+          } catch (ExecutionException e) {
+            Throwable cause = Assertions.checkNotNull(e.getCause());
+            if (cause instanceof PriorityTooLowException) {
+              // The range is downloaded again in the next loop iteration, skipping the data that
+              // was cached before the exception was thrown.
+              pendingRanges.addLast(rangeRunnable.dataSpec);
+            } else if (cause instanceof IOException) {
+              throw (IOException) cause;
+            } else {
+              // The cause must be an uncaught Throwable type.
+              Util.sneakyThrow(cause);
+            }
+          }
+        }
+        synchronized (activeRangeRunnables) {
+          activeRangeRunnables.clear();
+        }
+      }
+    } finally {
+      // If one of the runnables has thrown an exception, then the others may still be doing work.
+      // Cancel them and wait until they finish before returning.
+      synchronized (activeRangeRunnables) {
+        for (int i = 0; i < activeRangeRunnables.size(); i++) {
+          activeRangeRunnables.get(i).cancel(/* interruptIfRunning= */ true);
+        }
+      }
+      for (int i = 0; i < activeRangeRunnables.size(); i++) {
+        activeRangeRunnables.get(i).blockUntilFinished();
+      }
+      synchronized (activeRangeRunnables) {
+        activeRangeRunnables.clear();
+      }
     }
   }
 
-  @Override
-  public void remove() {
-    dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
+  /**
+   * Returns the length of the stream, read from the cache's content metadata or resolved from
+   * upstream, or {@link C#LENGTH_UNSET} if the stream should be downloaded sequentially because its
+   * length can't be resolved.
+   */
+  private long getContentLength() throws IOException {
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(cacheKey));
+    return contentLength != C.LENGTH_UNSET ? contentLength : resolveContentLength();
+  }
+
+  /**
+   * Returns the byte ranges into which the parts of the stream that aren't yet cached are split
+   * for parallel download.
+   *
+   * @param contentLength The length of the stream.
+   */
+  private List<DataSpec> getParallelRanges(long contentLength) {
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    long uncachedLength =
+        contentLength - cache.getCachedBytes(cacheKey, /* position= */ 0, contentLength);
+    long targetRangeLength =
+        max(MIN_PARALLEL_RANGE_LENGTH, Util.ceilDivide(uncachedLength, parallelRangeCount));
+
+    // Each range covers a similar amount of uncached data. Data that's already cached at the start
+    // of a range is excluded from it, and data that's cached within a range is skipped by the
+    // CacheWriter that downloads it.
+    List<DataSpec> ranges = new ArrayList<>();
+    long rangeStart = 0;
+    long rangeEnd = 0;
+    long rangeUncachedLength = 0;
+    long position = 0;
+    while (position < contentLength) {
+      long cachedLength = cache.getCachedLength(cacheKey, position, contentLength - position);
+      if (cachedLength > 0) {
+        position += cachedLength;
+        continue;
+      }
+      if (rangeUncachedLength == 0) {
+        rangeStart = position;
+      }
+      long length = min(-cachedLength, targetRangeLength - rangeUncachedLength);
+      position += length;
+      rangeEnd = position;
+      rangeUncachedLength += length;
+      if (rangeUncachedLength == targetRangeLength) {
+        ranges.add(dataSpec.subrange(rangeStart, rangeEnd - rangeStart));
+        rangeUncachedLength = 0;
+      }
+    }
+    if (rangeUncachedLength > 0) {
+      ranges.add(dataSpec.subrange(rangeStart, rangeEnd - rangeStart));
+    }
+    return ranges;
+  }
+
+  /**
+   * Opens and closes {@link #dataSource} to resolve the length of the stream, which is written to
+   * the cache's content metadata if data is requested from upstream.
+   *
+   * @return The length of the stream, or {@link C#LENGTH_UNSET} if it couldn't be resolved.
+   */
+  private long resolveContentLength() throws IOException {
+    try {
+      return dataSource.open(dataSpec);
+    } catch (PriorityTooLowException e) {
+      // Fall back to a sequential download, which handles waiting for higher priority tasks.
+      return C.LENGTH_UNSET;
+    } finally {
+      DataSourceUtil.closeQuietly(dataSource);
+    }
   }
 
   private void onProgress(long contentLength, long bytesCached, long newBytesCached) {
@@ -171,4 +380,51 @@ public final class ProgressiveDownloader implements Downloader {
             : ((bytesCached * 100f) / contentLength);
     progressListener.onProgress(contentLength, bytesCached, percentDownloaded);
   }
+
+  private static final class RangeDownloadRunnable extends RunnableFutureTask<Void, IOException> {
+
+    public final DataSpec dataSpec;
+    private final CacheWriter cacheWriter;
+
+    public RangeDownloadRunnable(
+        DataSpec dataSpec, CacheDataSource dataSource, RangeProgressNotifier progressNotifier) {
+      this.dataSpec = dataSpec;
+      cacheWriter =
+          new CacheWriter(dataSource, dataSpec, /* temporaryBuffer= */ null, progressNotifier);
+    }
+
+    @Override
+    protected Void doWork() throws IOException {
+      cacheWriter.cache();
+      return null;
+    }
+
+    @Override
+    protected void cancelWork() {
+      cacheWriter.cancel();
+    }
+  }
+
+  /** Combines the progress of the {@link CacheWriter CacheWriters} for each range. */
+  private final class RangeProgressNotifier implements CacheWriter.ProgressListener {
+
+    private final long contentLength;
+
+    private long bytesCached;
+
+    public RangeProgressNotifier(long contentLength, long bytesCached) {
+      this.contentLength = contentLength;
+      this.bytesCached = bytesCached;
+    }
+
+    @Override
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+      this.bytesCached += newBytesCached;
+      notifyProgress();
+    }
+
+    public synchronized void notifyProgress() {
+      ProgressiveDownloader.this.onProgress(contentLength, bytesCached, /* newBytesCached= */ 0);
+    }
+  }
 }
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.upstream.ParsingLoadable.Parser;
 import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheBufferPool;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheWriter;
@@ -90,6 +91,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   @Nullable private final PriorityTaskManager priorityTaskManager;
   private final Executor executor;
   private final long maxMergedSegmentStartTimeDiffUs;
+  @Nullable private final CacheBufferPool bufferPool;
 
   /**
    * The currently active runnables.
@@ -139,6 +141,37 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       CacheDataSource.Factory cacheDataSourceFactory,
       Executor executor,
       long maxMergedSegmentStartTimeDiffMs) {
+    this(
+        mediaItem,
+        manifestParser,
+        cacheDataSourceFactory,
+        executor,
+        maxMergedSegmentStartTimeDiffMs,
+        /* bufferPool= */ null);
+  }
+
+  /**
+   * @param mediaItem The {@link MediaItem} to be downloaded.
+   * @param manifestParser A parser for manifests belonging to the media to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded.
+   *     Providing an {@link Executor} that uses multiple threads will speed up the download by
+   *     allowing parts of it to be executed in parallel.
+   * @param maxMergedSegmentStartTimeDiffMs The maximum difference of the start time of two
+   *     segments, up to which the segments (of the same URI) should be merged into a single
+   *     download segment, in milliseconds.
+   * @param bufferPool An optional {@link CacheBufferPool} from which the temporary buffer used to
+   *     write each segment into the cache is acquired, or {@code null} to allocate the temporary
+   *     buffers for each download.
+   */
+  public SegmentDownloader(
+      MediaItem mediaItem,
+      Parser<M> manifestParser,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      long maxMergedSegmentStartTimeDiffMs,
+      @Nullable CacheBufferPool bufferPool) {
     checkNotNull(mediaItem.localConfiguration);
     this.manifestDataSpec = getCompressibleDataSpec(mediaItem.localConfiguration.uri);
     this.manifestParser = manifestParser;
@@ -150,6 +183,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     priorityTaskManager = cacheDataSourceFactory.getUpstreamPriorityTaskManager();
     activeRunnables = new ArrayList<>();
     maxMergedSegmentStartTimeDiffUs = Util.msToUs(maxMergedSegmentStartTimeDiffMs);
+    this.bufferPool = bufferPool;
   }
 
   @Override
@@ -227,19 +261,20 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
 
         // Create and execute a runnable to download the next segment.
         CacheDataSource segmentDataSource;
-        byte[] temporaryBuffer;
+        @Nullable byte[] temporaryBuffer;
         if (!recycledRunnables.isEmpty()) {
           SegmentDownloadRunnable recycledRunnable = recycledRunnables.removeFirst();
           segmentDataSource = recycledRunnable.dataSource;
           temporaryBuffer = recycledRunnable.temporaryBuffer;
         } else {
           segmentDataSource = cacheDataSourceFactory.createDataSourceForDownloading();
-          temporaryBuffer = new byte[BUFFER_SIZE_BYTES];
+          // With a pool, the CacheWriter acquires a buffer for the duration of each segment.
+          temporaryBuffer = bufferPool == null ? new byte[BUFFER_SIZE_BYTES] : null;
         }
         Segment segment = pendingSegments.removeFirst();
         SegmentDownloadRunnable downloadRunnable =
             new SegmentDownloadRunnable(
-                segment, segmentDataSource, progressNotifier, temporaryBuffer);
+                segment, segmentDataSource, progressNotifier, temporaryBuffer, bufferPool);
         addActiveRunnable(downloadRunnable);
         executor.execute(downloadRunnable);
 
@@ -488,20 +523,22 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     public final Segment segment;
     public final CacheDataSource dataSource;
     @Nullable private final ProgressNotifier progressNotifier;
-    public final byte[] temporaryBuffer;
+    @Nullable public final byte[] temporaryBuffer;
     private final CacheWriter cacheWriter;
 
     public SegmentDownloadRunnable(
         Segment segment,
         CacheDataSource dataSource,
         @Nullable ProgressNotifier progressNotifier,
-        byte[] temporaryBuffer) {
+        @Nullable byte[] temporaryBuffer,
+        @Nullable CacheBufferPool bufferPool) {
       this.segment = segment;
       this.dataSource = dataSource;
       this.progressNotifier = progressNotifier;
       this.temporaryBuffer = temporaryBuffer;
       this.cacheWriter =
-          new CacheWriter(dataSource, segment.dataSpec, temporaryBuffer, progressNotifier);
+          new CacheWriter(
+              dataSource, segment.dataSpec, temporaryBuffer, progressNotifier, bufferPool);
     }
 
     @Override
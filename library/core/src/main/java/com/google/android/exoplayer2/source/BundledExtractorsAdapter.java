@@ -22,11 +22,13 @@ import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorUtil;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
 import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
@@ -46,6 +48,7 @@ import java.util.Map;
 public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor {
 
   private final ExtractorsFactory extractorsFactory;
+  private final byte[] header;
 
   @Nullable private Extractor extractor;
   @Nullable private ExtractorInput extractorInput;
@@ -57,6 +60,7 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
    */
   public BundledExtractorsAdapter(ExtractorsFactory extractorsFactory) {
     this.extractorsFactory = extractorsFactory;
+    header = new byte[FileTypes.HEADER_INFERENCE_LENGTH];
   }
 
   @Override
@@ -77,6 +81,17 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     if (extractors.length == 1) {
       this.extractor = extractors[0];
     } else {
+      // Peek the start of the stream once, so that the extractors most likely to read it are
+      // sniffed first. This is skipped if there's only one extractor, since it's not sniffed.
+      int headerLength =
+          ExtractorUtil.peekToLength(extractorInput, header, /* offset= */ 0, header.length);
+      extractorInput.resetPeekPosition();
+      @FileTypes.Type
+      int headerFileType = FileTypes.inferFileTypeFromHeader(header, headerLength);
+      if (headerFileType != FileTypes.UNKNOWN) {
+        // Create the extractors again, ordered by the file type inferred from the header.
+        extractors = extractorsFactory.createExtractors(uri, responseHeaders, headerFileType);
+      }
       for (Extractor extractor : extractors) {
         try {
           if (extractor.sniff(extractorInput)) {
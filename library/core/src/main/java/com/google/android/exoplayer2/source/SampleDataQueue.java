@@ -197,6 +197,18 @@ import java.util.Arrays;
     return bytesAppended;
   }
 
+  public void sampleData(ByteBuffer buffer, int length) {
+    while (length > 0) {
+      int bytesAppended = preAppend(length);
+      buffer.get(
+          writeAllocationNode.allocation.data,
+          writeAllocationNode.translateOffset(totalBytesWritten),
+          bytesAppended);
+      length -= bytesAppended;
+      postAppend(bytesAppended);
+    }
+  }
+
   public void sampleData(ParsableByteArray buffer, int length) {
     while (length > 0) {
       int bytesAppended = preAppend(length);
@@ -49,6 +49,7 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
@@ -73,7 +74,8 @@ public class SampleQueue implements TrackOutput {
     void onUpstreamFormatChanged(Format format);
   }
 
-  @VisibleForTesting /* package */ static final int SAMPLE_CAPACITY_INCREMENT = 1000;
+  @VisibleForTesting /* package */ static final int INITIAL_SAMPLE_CAPACITY = 1024;
+  private static final int INITIAL_KEYFRAME_CAPACITY = 64;
   private static final String TAG = "SampleQueue";
 
   private final SampleDataQueue sampleDataQueue;
@@ -86,19 +88,32 @@ public class SampleQueue implements TrackOutput {
   @Nullable private Format downstreamFormat;
   @Nullable private DrmSession currentDrmSession;
 
+  // Sample metadata is held in a ring buffer of parallel arrays, whose capacity is a power of two.
+  // The capacity is doubled when the buffer is full, so the arrays stop being reallocated once the
+  // queue has reached its largest size.
   private int capacity;
   private long[] sourceIds;
   private long[] offsets;
   private int[] sizes;
   private int[] flags;
   private long[] timesUs;
-  private @NullableType CryptoData[] cryptoDatas;
+  // Only allocated once an encrypted sample is queued.
+  @Nullable private @NullableType CryptoData[] cryptoDatas;
 
   private int length;
   private int absoluteFirstIndex;
   private int relativeFirstIndex;
   private int readPosition;
 
+  // The absolute indices of the keyframes in the queue, held in a ring buffer whose capacity is a
+  // power of two. Used to seek by binary search rather than by scanning the queue.
+  private int[] keyframeIndices;
+  private int keyframeLength;
+  private int keyframeRelativeFirstIndex;
+  // The absolute index of the last keyframe queued with a timestamp smaller than that of an earlier
+  // sample, or C.INDEX_UNSET. Keyframe timestamps are only ordered after this index.
+  private int lastUnorderedKeyframeIndex;
+
   private long startTimeUs;
   private long largestDiscardedTimestampUs;
   private long largestQueuedTimestampUs;
@@ -173,13 +188,14 @@ public class SampleQueue implements TrackOutput {
     this.drmEventDispatcher = drmEventDispatcher;
     sampleDataQueue = new SampleDataQueue(allocator);
     extrasHolder = new SampleExtrasHolder();
-    capacity = SAMPLE_CAPACITY_INCREMENT;
+    capacity = INITIAL_SAMPLE_CAPACITY;
     sourceIds = new long[capacity];
     offsets = new long[capacity];
     timesUs = new long[capacity];
     flags = new int[capacity];
     sizes = new int[capacity];
-    cryptoDatas = new CryptoData[capacity];
+    keyframeIndices = new int[INITIAL_KEYFRAME_CAPACITY];
+    lastUnorderedKeyframeIndex = C.INDEX_UNSET;
     sharedSampleMetadata =
         new SpannedData<>(/* removeCallback= */ metadata -> metadata.drmSessionReference.release());
     startTimeUs = Long.MIN_VALUE;
@@ -218,6 +234,9 @@ public class SampleQueue implements TrackOutput {
     absoluteFirstIndex = 0;
     relativeFirstIndex = 0;
     readPosition = 0;
+    keyframeLength = 0;
+    keyframeRelativeFirstIndex = 0;
+    lastUnorderedKeyframeIndex = C.INDEX_UNSET;
     upstreamKeyframeRequired = true;
     startTimeUs = Long.MIN_VALUE;
     largestDiscardedTimestampUs = Long.MIN_VALUE;
@@ -483,7 +502,7 @@ public class SampleQueue implements TrackOutput {
       return false;
     }
     int offset =
-        findSampleBefore(relativeReadIndex, length - readPosition, timeUs, /* keyframe= */ true);
+        findSampleBefore(readPosition, length - readPosition, timeUs, /* keyframe= */ true);
     if (offset == -1) {
       return false;
     }
@@ -510,7 +529,7 @@ public class SampleQueue implements TrackOutput {
       return length - readPosition;
     }
     int offset =
-        findSampleBefore(relativeReadIndex, length - readPosition, timeUs, /* keyframe= */ true);
+        findSampleBefore(readPosition, length - readPosition, timeUs, /* keyframe= */ true);
     if (offset == -1) {
       return 0;
     }
@@ -604,6 +623,11 @@ public class SampleQueue implements TrackOutput {
     sampleDataQueue.sampleData(data, length);
   }
 
+  @Override
+  public final void sampleData(ByteBuffer data, int length, @SampleDataPart int sampleDataPart) {
+    sampleDataQueue.sampleData(data, length);
+  }
+
   @Override
   public void sampleMetadata(
       long timeUs,
@@ -731,7 +755,7 @@ public class SampleQueue implements TrackOutput {
     }
     extrasHolder.size = sizes[relativeReadIndex];
     extrasHolder.offset = offsets[relativeReadIndex];
-    extrasHolder.cryptoData = cryptoDatas[relativeReadIndex];
+    extrasHolder.cryptoData = cryptoDatas != null ? cryptoDatas[relativeReadIndex] : null;
 
     return C.RESULT_BUFFER_READ;
   }
@@ -766,7 +790,8 @@ public class SampleQueue implements TrackOutput {
       return C.INDEX_UNSET;
     }
     int searchLength = stopAtReadPosition && readPosition != length ? readPosition + 1 : length;
-    int discardCount = findSampleBefore(relativeFirstIndex, searchLength, timeUs, toKeyframe);
+    int discardCount =
+        findSampleBefore(/* startPosition= */ 0, searchLength, timeUs, toKeyframe);
     if (discardCount == -1) {
       return C.INDEX_UNSET;
     }
@@ -810,6 +835,12 @@ public class SampleQueue implements TrackOutput {
           offsets[previousSampleRelativeIndex] + sizes[previousSampleRelativeIndex] <= offset);
     }
 
+    if ((sampleFlags & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+      if (timeUs < largestQueuedTimestampUs) {
+        lastUnorderedKeyframeIndex = getWriteIndex();
+      }
+      appendKeyframeIndex(getWriteIndex());
+    }
     isLastSampleQueued = (sampleFlags & C.BUFFER_FLAG_LAST_SAMPLE) != 0;
     largestQueuedTimestampUs = max(largestQueuedTimestampUs, timeUs);
 
@@ -818,7 +849,12 @@ public class SampleQueue implements TrackOutput {
     offsets[relativeEndIndex] = offset;
     sizes[relativeEndIndex] = size;
     flags[relativeEndIndex] = sampleFlags;
-    cryptoDatas[relativeEndIndex] = cryptoData;
+    if (cryptoData != null && cryptoDatas == null) {
+      cryptoDatas = new CryptoData[capacity];
+    }
+    if (cryptoDatas != null) {
+      cryptoDatas[relativeEndIndex] = cryptoData;
+    }
     sourceIds[relativeEndIndex] = upstreamSourceId;
 
     if (sharedSampleMetadata.isEmpty()
@@ -835,39 +871,57 @@ public class SampleQueue implements TrackOutput {
 
     length++;
     if (length == capacity) {
-      // Increase the capacity.
-      int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
+      // Double the capacity, so that it remains a power of two.
+      int newCapacity = capacity * 2;
       long[] newSourceIds = new long[newCapacity];
       long[] newOffsets = new long[newCapacity];
       long[] newTimesUs = new long[newCapacity];
       int[] newFlags = new int[newCapacity];
       int[] newSizes = new int[newCapacity];
-      CryptoData[] newCryptoDatas = new CryptoData[newCapacity];
       int beforeWrap = capacity - relativeFirstIndex;
       System.arraycopy(offsets, relativeFirstIndex, newOffsets, 0, beforeWrap);
       System.arraycopy(timesUs, relativeFirstIndex, newTimesUs, 0, beforeWrap);
       System.arraycopy(flags, relativeFirstIndex, newFlags, 0, beforeWrap);
       System.arraycopy(sizes, relativeFirstIndex, newSizes, 0, beforeWrap);
-      System.arraycopy(cryptoDatas, relativeFirstIndex, newCryptoDatas, 0, beforeWrap);
       System.arraycopy(sourceIds, relativeFirstIndex, newSourceIds, 0, beforeWrap);
       int afterWrap = relativeFirstIndex;
       System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
       System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
       System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
       System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
-      System.arraycopy(cryptoDatas, 0, newCryptoDatas, beforeWrap, afterWrap);
       System.arraycopy(sourceIds, 0, newSourceIds, beforeWrap, afterWrap);
+      if (cryptoDatas != null) {
+        @NullableType CryptoData[] newCryptoDatas = new CryptoData[newCapacity];
+        System.arraycopy(cryptoDatas, relativeFirstIndex, newCryptoDatas, 0, beforeWrap);
+        System.arraycopy(cryptoDatas, 0, newCryptoDatas, beforeWrap, afterWrap);
+        cryptoDatas = newCryptoDatas;
+      }
       offsets = newOffsets;
       timesUs = newTimesUs;
       flags = newFlags;
       sizes = newSizes;
-      cryptoDatas = newCryptoDatas;
       sourceIds = newSourceIds;
       relativeFirstIndex = 0;
       capacity = newCapacity;
     }
   }
 
+  /** Appends the absolute index of a keyframe to {@link #keyframeIndices}. */
+  private void appendKeyframeIndex(int sampleIndex) {
+    if (keyframeLength == keyframeIndices.length) {
+      int[] newKeyframeIndices = new int[keyframeIndices.length * 2];
+      int beforeWrap = keyframeIndices.length - keyframeRelativeFirstIndex;
+      System.arraycopy(
+          keyframeIndices, keyframeRelativeFirstIndex, newKeyframeIndices, 0, beforeWrap);
+      System.arraycopy(
+          keyframeIndices, 0, newKeyframeIndices, beforeWrap, keyframeRelativeFirstIndex);
+      keyframeIndices = newKeyframeIndices;
+      keyframeRelativeFirstIndex = 0;
+    }
+    keyframeIndices[getKeyframeRelativeIndex(keyframeLength)] = sampleIndex;
+    keyframeLength++;
+  }
+
   /**
    * Attempts to discard samples from the end of the queue to allow samples starting from the
    * specified timestamp to be spliced in. Samples will not be discarded prior to the read position.
@@ -894,6 +948,9 @@ public class SampleQueue implements TrackOutput {
     largestQueuedTimestampUs = max(largestDiscardedTimestampUs, getLargestTimestamp(length));
     isLastSampleQueued = discardCount == 0 && isLastSampleQueued;
     sharedSampleMetadata.discardFrom(discardFromIndex);
+    while (keyframeLength > 0 && getKeyframeIndex(keyframeLength - 1) >= discardFromIndex) {
+      keyframeLength--;
+    }
     if (length != 0) {
       int relativeLastWriteIndex = getRelativeIndex(length - 1);
       return offsets[relativeLastWriteIndex] + sizes[relativeLastWriteIndex];
@@ -959,19 +1016,20 @@ public class SampleQueue implements TrackOutput {
    * Finds the sample in the specified range that's before or at the specified time. If {@code
    * keyframe} is {@code true} then the sample is additionally required to be a keyframe.
    *
-   * @param relativeStartIndex The relative index from which to start searching.
+   * @param startPosition The offset from the start of the queue from which to start searching.
    * @param length The length of the range being searched.
    * @param timeUs The specified time.
    * @param keyframe Whether only keyframes should be considered.
-   * @return The offset from {@code relativeFirstIndex} to the found sample, or -1 if no matching
-   *     sample was found.
+   * @return The offset from {@code startPosition} to the found sample, or -1 if no matching sample
+   *     was found.
    */
-  private int findSampleBefore(int relativeStartIndex, int length, long timeUs, boolean keyframe) {
-    // This could be optimized to use a binary search, however in practice callers to this method
-    // normally pass times near to the start of the search region. Hence it's unclear whether
-    // switching to a binary search would yield any real benefit.
+  private int findSampleBefore(int startPosition, int length, long timeUs, boolean keyframe) {
+    int startIndex = absoluteFirstIndex + startPosition;
+    if (keyframe && lastUnorderedKeyframeIndex < startIndex) {
+      return findKeyframeBefore(startIndex, length, timeUs);
+    }
     int sampleCountToTarget = -1;
-    int searchIndex = relativeStartIndex;
+    int searchIndex = getRelativeIndex(startPosition);
     for (int i = 0; i < length && timesUs[searchIndex] <= timeUs; i++) {
       if (!keyframe || (flags[searchIndex] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
         // We've found a suitable sample.
@@ -990,6 +1048,72 @@ public class SampleQueue implements TrackOutput {
     return sampleCountToTarget;
   }
 
+  /**
+   * Equivalent to {@link #findSampleBefore} for keyframes, but binary searches {@link
+   * #keyframeIndices} rather than scanning the samples in the range.
+   *
+   * <p>Must only be called if the timestamp of each keyframe in the range is larger than or equal
+   * to the timestamps of the samples before it, in which case keyframe timestamps are ordered and
+   * the keyframes found by both methods are the same.
+   *
+   * @param startIndex The absolute index from which to start searching.
+   * @param length The length of the range being searched.
+   * @param timeUs The specified time.
+   * @return The offset from {@code startIndex} to the found keyframe, or -1 if no matching keyframe
+   *     was found.
+   */
+  private int findKeyframeBefore(int startIndex, int length, long timeUs) {
+    int firstKeyframe = findFirstKeyframeAtOrAfter(startIndex);
+    int endKeyframe = findFirstKeyframeAtOrAfter(startIndex + length);
+    // Find the first keyframe in the range whose timestamp is larger than or equal to timeUs.
+    int low = firstKeyframe;
+    int high = endKeyframe;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getKeyframeTimeUs(mid) < timeUs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low < endKeyframe && getKeyframeTimeUs(low) == timeUs) {
+      return getKeyframeIndex(low) - startIndex;
+    } else if (low > firstKeyframe) {
+      return getKeyframeIndex(low - 1) - startIndex;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position in {@link #keyframeIndices} of the first keyframe whose absolute index is
+   * larger than or equal to {@code sampleIndex}, or {@link #keyframeLength} if there is none.
+   */
+  private int findFirstKeyframeAtOrAfter(int sampleIndex) {
+    int low = 0;
+    int high = keyframeLength;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getKeyframeIndex(mid) < sampleIndex) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private long getKeyframeTimeUs(int keyframePosition) {
+    return timesUs[getRelativeIndex(getKeyframeIndex(keyframePosition) - absoluteFirstIndex)];
+  }
+
+  private int getKeyframeIndex(int keyframePosition) {
+    return keyframeIndices[getKeyframeRelativeIndex(keyframePosition)];
+  }
+
+  private int getKeyframeRelativeIndex(int keyframePosition) {
+    return (keyframeRelativeFirstIndex + keyframePosition) & (keyframeIndices.length - 1);
+  }
+
   /**
    * Counts the number of samples that haven't been read that have a timestamp smaller than {@code
    * timeUs}.
@@ -1031,6 +1155,10 @@ public class SampleQueue implements TrackOutput {
       readPosition = 0;
     }
     sharedSampleMetadata.discardTo(absoluteFirstIndex);
+    while (keyframeLength > 0 && getKeyframeIndex(0) < absoluteFirstIndex) {
+      keyframeRelativeFirstIndex = getKeyframeRelativeIndex(1);
+      keyframeLength--;
+    }
 
     if (length == 0) {
       int relativeLastDiscardIndex = (relativeFirstIndex == 0 ? capacity : relativeFirstIndex) - 1;
@@ -1073,8 +1201,7 @@ public class SampleQueue implements TrackOutput {
    * @param offset The offset, which must be in the range [0, length].
    */
   private int getRelativeIndex(int offset) {
-    int relativeIndex = relativeFirstIndex + offset;
-    return relativeIndex < capacity ? relativeIndex : relativeIndex - capacity;
+    return (relativeFirstIndex + offset) & (capacity - 1);
   }
 
   /** A holder for sample metadata not held by {@link DecoderInputBuffer}. */
@@ -36,6 +36,7 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -238,6 +239,11 @@ public final class BundledChunkExtractor implements ExtractorOutput, ChunkExtrac
       castNonNull(trackOutput).sampleData(data, length);
     }
 
+    @Override
+    public void sampleData(ByteBuffer data, int length, @SampleDataPart int sampleDataPart) {
+      castNonNull(trackOutput).sampleData(data, length, sampleDataPart);
+    }
+
     @Override
     public void sampleMetadata(
         long timeUs,
@@ -24,19 +24,28 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.testutil.CacheAsserts;
 import com.google.android.exoplayer2.testutil.FailOnCloseDataSink;
 import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.After;
 import org.junit.Before;
@@ -173,12 +182,108 @@ public class ProgressiveDownloaderTest {
     assertThat(progressListener.bytesDownloaded).isEqualTo(2_000_000);
   }
 
+  @Test
+  public void download_withParallelRanges_downloadsRangesConcurrently() throws Exception {
+    Uri uri = Uri.parse("test:///test.mp4");
+    byte[] data = TestUtil.buildTestData(1_200_000);
+    List<FakeDataSource> upstreamDataSources = Collections.synchronizedList(new ArrayList<>());
+    DataSource.Factory upstreamDataSourceFactory =
+        () -> {
+          // Each data source needs its own FakeDataSet, since they're read concurrently.
+          FakeDataSet fakeDataSet = new FakeDataSet();
+          fakeDataSet.setData(uri, data);
+          FakeDataSource dataSource = new FakeDataSource(fakeDataSet);
+          upstreamDataSources.add(dataSource);
+          return dataSource;
+        };
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(downloadCache)
+            .setUpstreamDataSourceFactory(upstreamDataSourceFactory);
+    ExecutorService executorService = Executors.newFixedThreadPool(/* nThreads= */ 4);
+    ProgressiveDownloader downloader =
+        new ProgressiveDownloader(
+            MediaItem.fromUri(uri),
+            cacheDataSourceFactory,
+            executorService,
+            /* parallelRangeCount= */ 4);
+    TestProgressListener progressListener = new TestProgressListener();
+
+    try {
+      downloader.download(progressListener);
+    } finally {
+      executorService.shutdown();
+    }
+
+    assertThat(progressListener.contentLength).isEqualTo(data.length);
+    assertThat(progressListener.bytesDownloaded).isEqualTo(data.length);
+    assertThat(downloadCache.isCached(uri.toString(), /* position= */ 0, data.length)).isTrue();
+    List<Long> rangePositions = new ArrayList<>();
+    for (FakeDataSource dataSource : upstreamDataSources) {
+      for (DataSpec dataSpec : dataSource.getAndClearOpenedDataSpecs()) {
+        if (dataSpec.length != C.LENGTH_UNSET) {
+          rangePositions.add(dataSpec.position);
+        }
+      }
+    }
+    assertThat(rangePositions).containsExactly(0L, 300_000L, 600_000L, 900_000L);
+    CacheAsserts.assertDataCached(
+        downloadCache, new DataSpec.Builder().setUri(uri).setLength(data.length).build(), data);
+  }
+
+  @Test
+  public void download_withParallelRanges_resumesFromCachedSpans() throws Exception {
+    Uri uri = Uri.parse("test:///test.mp4");
+    byte[] data = TestUtil.buildTestData(1_200_000);
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    fakeDataSet.setData(uri, data);
+    FakeDataSource upstreamDataSource = new FakeDataSource(fakeDataSet);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(downloadCache)
+            .setUpstreamDataSourceFactory(() -> upstreamDataSource);
+    // Cache the first half of the data, and the length of the stream so that the remaining data is
+    // split into parallel ranges.
+    new CacheWriter(
+            cacheDataSourceFactory.createDataSource(),
+            new DataSpec.Builder().setUri(uri).setLength(600_000).build(),
+            /* temporaryBuffer= */ null,
+            /* progressListener= */ null)
+        .cache();
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, data.length);
+    downloadCache.applyContentMetadataMutations(uri.toString(), mutations);
+    upstreamDataSource.getAndClearOpenedDataSpecs();
+    ProgressiveDownloader downloader =
+        new ProgressiveDownloader(
+            MediaItem.fromUri(uri),
+            cacheDataSourceFactory,
+            Runnable::run,
+            /* parallelRangeCount= */ 2);
+    TestProgressListener progressListener = new TestProgressListener();
+
+    downloader.download(progressListener);
+
+    assertThat(progressListener.bytesDownloaded).isEqualTo(data.length);
+    List<Long> rangePositions = new ArrayList<>();
+    for (DataSpec dataSpec : upstreamDataSource.getAndClearOpenedDataSpecs()) {
+      assertThat(dataSpec.position).isAtLeast(600_000);
+      assertThat(dataSpec.length).isNotEqualTo(C.LENGTH_UNSET);
+      rangePositions.add(dataSpec.position);
+    }
+    assertThat(rangePositions).containsExactly(600_000L, 900_000L);
+    CacheAsserts.assertDataCached(
+        downloadCache, new DataSpec.Builder().setUri(uri).setLength(data.length).build(), data);
+  }
+
   private static final class TestProgressListener implements Downloader.ProgressListener {
 
+    public long contentLength;
     public long bytesDownloaded;
 
     @Override
     public void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded) {
+      this.contentLength = contentLength;
       this.bytesDownloaded = bytesDownloaded;
     }
   }
@@ -51,6 +51,7 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.common.primitives.Bytes;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
@@ -161,7 +162,7 @@ public final class SampleQueueTest {
 
   @Test
   public void capacityIncreases() {
-    int numberOfSamplesToInput = 3 * SampleQueue.SAMPLE_CAPACITY_INCREMENT + 1;
+    int numberOfSamplesToInput = 3 * SampleQueue.INITIAL_SAMPLE_CAPACITY + 1;
     sampleQueue.format(FORMAT_1);
     sampleQueue.sampleData(
         new ParsableByteArray(numberOfSamplesToInput), /* length= */ numberOfSamplesToInput);
@@ -274,6 +275,29 @@ public final class SampleQueueTest {
         ALLOCATION_SIZE);
   }
 
+  @Test
+  public void readSampleWrittenFromDirectByteBuffer() {
+    ByteBuffer data = ByteBuffer.allocateDirect(DATA.length);
+    data.put(DATA);
+    data.flip();
+
+    sampleQueue.sampleData(data, DATA.length, TrackOutput.SAMPLE_DATA_PART_MAIN);
+    sampleQueue.format(FORMAT_1);
+    sampleQueue.sampleMetadata(1000, C.BUFFER_FLAG_KEY_FRAME, DATA.length, 0, null);
+
+    assertThat(data.hasRemaining()).isFalse();
+    assertAllocationCount(10);
+    assertReadFormat(false, FORMAT_1);
+    assertReadSample(
+        1000,
+        /* isKeyFrame= */ true,
+        /* isDecodeOnly= */ false,
+        /* isEncrypted= */ false,
+        DATA,
+        /* offset= */ 0,
+        DATA.length);
+  }
+
   @Test
   public void readSingleSamples() {
     sampleQueue.sampleData(new ParsableByteArray(DATA), ALLOCATION_SIZE);
@@ -768,6 +792,53 @@ public final class SampleQueueTest {
     assertNoSamplesToRead(FORMAT_2);
   }
 
+  @Test
+  public void seekTo_afterQueueWrappedAndCapacityIncreased_seeksToKeyframeBefore() {
+    int keyframeInterval = 30;
+    int sampleCount = 3 * SampleQueue.INITIAL_SAMPLE_CAPACITY;
+    sampleQueue.format(FORMAT_1);
+    for (int i = 0; i < SampleQueue.INITIAL_SAMPLE_CAPACITY / 2; i++) {
+      writeSample(
+          new byte[1],
+          /* timestampUs= */ i * 1000L,
+          i % keyframeInterval == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0);
+    }
+    // Discard from the start of the queue, so that later samples wrap around the ring buffer.
+    sampleQueue.discardTo(
+        /* timeUs= */ 300_000, /* toKeyframe= */ true, /* stopAtReadPosition= */ false);
+    for (int i = SampleQueue.INITIAL_SAMPLE_CAPACITY / 2; i < sampleCount; i++) {
+      writeSample(
+          new byte[1],
+          /* timestampUs= */ i * 1000L,
+          i % keyframeInterval == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0);
+    }
+
+    assertThat(sampleQueue.getFirstIndex()).isEqualTo(300);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 2_000_500, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(1980);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 2_010_000, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(2010);
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 299_000, /* allowTimeBeyondBuffer= */ false))
+        .isFalse();
+  }
+
+  @Test
+  public void seekTo_withKeyframeBeforeLargerEarlierTimestamp_stopsAtLargerTimestamp() {
+    sampleQueue.format(FORMAT_1);
+    writeSample(new byte[1], /* timestampUs= */ 0, C.BUFFER_FLAG_KEY_FRAME);
+    writeSample(new byte[1], /* timestampUs= */ 5000, /* sampleFlags= */ 0);
+    writeSample(new byte[1], /* timestampUs= */ 1000, C.BUFFER_FLAG_KEY_FRAME);
+    writeSample(new byte[1], /* timestampUs= */ 2000, /* sampleFlags= */ 0);
+    writeSample(new byte[1], /* timestampUs= */ 3000, C.BUFFER_FLAG_KEY_FRAME);
+
+    assertThat(sampleQueue.seekTo(/* timeUs= */ 3500, /* allowTimeBeyondBuffer= */ false))
+        .isTrue();
+    // The search stops at the sample with timestamp 5000, as it does for ordered timestamps.
+    assertThat(sampleQueue.getReadIndex()).isEqualTo(0);
+  }
+
   @Test
   public void seekToEndAndBackToStart() {
     writeTestData();
@@ -56,7 +56,9 @@ import com.google.android.exoplayer2.source.dash.PlayerEmsgHandler.PlayerEmsgCal
 import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestPatchParser;
 import com.google.android.exoplayer2.source.dash.manifest.Period;
+import com.google.android.exoplayer2.source.dash.manifest.PatchLocation;
 import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.source.dash.manifest.UtcTimingElement;
 import com.google.android.exoplayer2.upstream.Allocator;
@@ -120,6 +122,7 @@ public final class DashMediaSource extends BaseMediaSource {
     private long fallbackTargetLiveOffsetMs;
     private long minLiveStartPositionUs;
     @Nullable private ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+    private boolean manifestPatchingEnabled;
 
     /**
      * Creates a new factory for {@link DashMediaSource}s.
@@ -248,6 +251,25 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets whether live manifests that declare a {@code PatchLocation} are refreshed by loading MPD
+     * patches, as defined by ISO/IEC 23009-1:2022 Section 5.15, and applying them to the current
+     * manifest with a {@link DashManifestPatchParser}.
+     *
+     * <p>Patching is disabled for media items with stream keys. The full manifest is loaded if the
+     * patch location has expired, or if a patch fails to load or can't be applied.
+     *
+     * <p>The default value is {@code false}.
+     *
+     * @param manifestPatchingEnabled Whether to refresh live manifests by loading MPD patches.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setManifestPatchingEnabled(boolean manifestPatchingEnabled) {
+      this.manifestPatchingEnabled = manifestPatchingEnabled;
+      return this;
+    }
+
     /**
      * Sets the factory to create composite {@link SequenceableLoader}s for when this media source
      * loads data from multiple streams (video, audio etc...). The default is an instance of {@link
@@ -315,6 +337,7 @@ public final class DashMediaSource extends BaseMediaSource {
           manifest,
           /* manifestDataSourceFactory= */ null,
           /* manifestParser= */ null,
+          /* manifestPatchingEnabled= */ false,
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           cmcdConfiguration,
@@ -353,6 +376,7 @@ public final class DashMediaSource extends BaseMediaSource {
           /* manifest= */ null,
           manifestDataSourceFactory,
           manifestParser,
+          /* manifestPatchingEnabled= */ manifestPatchingEnabled && streamKeys.isEmpty(),
           chunkSourceFactory,
           compositeSequenceableLoaderFactory,
           cmcdConfiguration,
@@ -408,7 +432,9 @@ public final class DashMediaSource extends BaseMediaSource {
   private final long minLiveStartPositionUs;
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends DashManifest> manifestParser;
+  private final boolean manifestPatchingEnabled;
   private final ManifestCallback manifestCallback;
+  private final ManifestPatchCallback manifestPatchCallback;
   private final Object manifestUriLock;
   private final SparseArray<DashMediaPeriod> periodsById;
   private final Runnable refreshManifestRunnable;
@@ -442,6 +468,7 @@ public final class DashMediaSource extends BaseMediaSource {
       @Nullable DashManifest manifest,
       @Nullable DataSource.Factory manifestDataSourceFactory,
       @Nullable ParsingLoadable.Parser<? extends DashManifest> manifestParser,
+      boolean manifestPatchingEnabled,
       DashChunkSource.Factory chunkSourceFactory,
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       @Nullable CmcdConfiguration cmcdConfiguration,
@@ -456,6 +483,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.manifest = manifest;
     this.manifestDataSourceFactory = manifestDataSourceFactory;
     this.manifestParser = manifestParser;
+    this.manifestPatchingEnabled = manifestPatchingEnabled;
     this.chunkSourceFactory = chunkSourceFactory;
     this.cmcdConfiguration = cmcdConfiguration;
     this.drmSessionManager = drmSessionManager;
@@ -474,11 +502,13 @@ public final class DashMediaSource extends BaseMediaSource {
     if (sideloadedManifest) {
       Assertions.checkState(!manifest.dynamic);
       manifestCallback = null;
+      manifestPatchCallback = null;
       refreshManifestRunnable = null;
       simulateManifestRefreshRunnable = null;
       manifestLoadErrorThrower = new LoaderErrorThrower.Placeholder();
     } else {
       manifestCallback = new ManifestCallback();
+      manifestPatchCallback = new ManifestPatchCallback();
       manifestLoadErrorThrower = new ManifestLoadErrorThrower();
       refreshManifestRunnable = this::startLoadingManifest;
       simulateManifestRefreshRunnable = () -> processManifest(false);
@@ -725,6 +755,28 @@ public final class DashMediaSource extends BaseMediaSource {
     return loadErrorAction;
   }
 
+  /* package */ LoadErrorAction onManifestPatchLoadError(
+      ParsingLoadable<DashManifest> loadable,
+      long elapsedRealtimeMs,
+      long loadDurationMs,
+      IOException error) {
+    LoadEventInfo loadEventInfo =
+        new LoadEventInfo(
+            loadable.loadTaskId,
+            loadable.dataSpec,
+            loadable.getUri(),
+            loadable.getResponseHeaders(),
+            elapsedRealtimeMs,
+            loadDurationMs,
+            loadable.bytesLoaded());
+    manifestEventDispatcher.loadError(loadEventInfo, loadable.type, error, /* wasCanceled= */ true);
+    loadErrorHandlingPolicy.onLoadTaskConcluded(loadable.loadTaskId);
+    Log.w(TAG, "Failed to load or apply manifest patch, loading the full manifest", error);
+    // The loader has finished the failed load, so the full manifest can be loaded straight away.
+    startLoadingFullManifest();
+    return Loader.DONT_RETRY;
+  }
+
   /* package */ void onUtcTimestampLoadCompleted(
       ParsingLoadable<Long> loadable, long elapsedRealtimeMs, long loadDurationMs) {
     LoadEventInfo loadEventInfo =
@@ -1048,17 +1100,56 @@ public final class DashMediaSource extends BaseMediaSource {
       manifestLoadPending = true;
       return;
     }
+    manifestLoadPending = false;
+    @Nullable Uri manifestPatchUri = getManifestPatchUri();
+    if (manifestPatchUri != null) {
+      startLoading(
+          new ParsingLoadable<>(
+              dataSource,
+              manifestPatchUri,
+              C.DATA_TYPE_MANIFEST,
+              new DashManifestPatchParser(manifest)),
+          manifestPatchCallback,
+          /* minRetryCount= */ 0);
+    } else {
+      startLoadingFullManifest();
+    }
+  }
+
+  private void startLoadingFullManifest() {
     Uri manifestUri;
     synchronized (manifestUriLock) {
       manifestUri = this.manifestUri;
     }
-    manifestLoadPending = false;
     startLoading(
         new ParsingLoadable<>(dataSource, manifestUri, C.DATA_TYPE_MANIFEST, manifestParser),
         manifestCallback,
         loadErrorHandlingPolicy.getMinimumLoadableRetryCount(C.DATA_TYPE_MANIFEST));
   }
 
+  /**
+   * Returns the URI of the patch to load to refresh the current manifest, or null if the full
+   * manifest should be loaded.
+   */
+  @Nullable
+  private Uri getManifestPatchUri() {
+    if (!manifestPatchingEnabled
+        || manifest == null
+        || !manifest.dynamic
+        || manifest.patchLocation == null) {
+      return null;
+    }
+    PatchLocation patchLocation = manifest.patchLocation;
+    if (patchLocation.ttlMs != C.TIME_UNSET
+        && manifest.publishTimeMs != C.TIME_UNSET
+        && Util.getNowUnixTimeMs(elapsedRealtimeOffsetMs)
+            > manifest.publishTimeMs + patchLocation.ttlMs) {
+      // The patch location has expired.
+      return null;
+    }
+    return patchLocation.uri;
+  }
+
   private long getManifestLoadRetryDelayMillis() {
     return min((staleManifestReloadAttempt - 1) * 1000, 5000);
   }
@@ -1389,6 +1480,35 @@ public final class DashMediaSource extends BaseMediaSource {
     }
   }
 
+  private final class ManifestPatchCallback
+      implements Loader.Callback<ParsingLoadable<DashManifest>> {
+
+    @Override
+    public void onLoadCompleted(
+        ParsingLoadable<DashManifest> loadable, long elapsedRealtimeMs, long loadDurationMs) {
+      onManifestLoadCompleted(loadable, elapsedRealtimeMs, loadDurationMs);
+    }
+
+    @Override
+    public void onLoadCanceled(
+        ParsingLoadable<DashManifest> loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        boolean released) {
+      DashMediaSource.this.onLoadCanceled(loadable, elapsedRealtimeMs, loadDurationMs);
+    }
+
+    @Override
+    public LoadErrorAction onLoadError(
+        ParsingLoadable<DashManifest> loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      return onManifestPatchLoadError(loadable, elapsedRealtimeMs, loadDurationMs, error);
+    }
+  }
+
   private final class UtcTimestampCallback implements Loader.Callback<ParsingLoadable<Long>> {
 
     @Override
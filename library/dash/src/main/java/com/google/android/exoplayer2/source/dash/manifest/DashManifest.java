@@ -93,8 +93,52 @@ public class DashManifest implements FilterableManifest<DashManifest> {
   /** The {@link ProgramInformation}, or null if not present. */
   @Nullable public final ProgramInformation programInformation;
 
+  /** The {@code id} value, or null if not present. */
+  @Nullable public final String id;
+
+  /** The {@link PatchLocation}, or null if not present. */
+  @Nullable public final PatchLocation patchLocation;
+
   private final List<Period> periods;
 
+  /**
+   * @deprecated Use {@link #DashManifest(long, long, long, boolean, long, long, long, long,
+   *     ProgramInformation, UtcTimingElement, ServiceDescriptionElement, Uri, String,
+   *     PatchLocation, List)} instead.
+   */
+  @Deprecated
+  public DashManifest(
+      long availabilityStartTimeMs,
+      long durationMs,
+      long minBufferTimeMs,
+      boolean dynamic,
+      long minUpdatePeriodMs,
+      long timeShiftBufferDepthMs,
+      long suggestedPresentationDelayMs,
+      long publishTimeMs,
+      @Nullable ProgramInformation programInformation,
+      @Nullable UtcTimingElement utcTiming,
+      @Nullable ServiceDescriptionElement serviceDescription,
+      @Nullable Uri location,
+      List<Period> periods) {
+    this(
+        availabilityStartTimeMs,
+        durationMs,
+        minBufferTimeMs,
+        dynamic,
+        minUpdatePeriodMs,
+        timeShiftBufferDepthMs,
+        suggestedPresentationDelayMs,
+        publishTimeMs,
+        programInformation,
+        utcTiming,
+        serviceDescription,
+        location,
+        /* id= */ null,
+        /* patchLocation= */ null,
+        periods);
+  }
+
   public DashManifest(
       long availabilityStartTimeMs,
       long durationMs,
@@ -108,6 +152,8 @@ public class DashManifest implements FilterableManifest<DashManifest> {
       @Nullable UtcTimingElement utcTiming,
       @Nullable ServiceDescriptionElement serviceDescription,
       @Nullable Uri location,
+      @Nullable String id,
+      @Nullable PatchLocation patchLocation,
       List<Period> periods) {
     this.availabilityStartTimeMs = availabilityStartTimeMs;
     this.durationMs = durationMs;
@@ -121,6 +167,8 @@ public class DashManifest implements FilterableManifest<DashManifest> {
     this.utcTiming = utcTiming;
     this.location = location;
     this.serviceDescription = serviceDescription;
+    this.id = id;
+    this.patchLocation = patchLocation;
     this.periods = periods == null ? Collections.emptyList() : periods;
   }
 
@@ -181,6 +229,8 @@ public class DashManifest implements FilterableManifest<DashManifest> {
         utcTiming,
         serviceDescription,
         location,
+        id,
+        patchLocation,
         copyPeriods);
   }
 
@@ -137,9 +137,11 @@ public class DashManifestParser extends DefaultHandler
     long suggestedPresentationDelayMs =
         dynamic ? parseDuration(xpp, "suggestedPresentationDelay", C.TIME_UNSET) : C.TIME_UNSET;
     long publishTimeMs = parseDateTime(xpp, "publishTime", C.TIME_UNSET);
+    @Nullable String id = xpp.getAttributeValue(null, "id");
     ProgramInformation programInformation = null;
     UtcTimingElement utcTiming = null;
     Uri location = null;
+    @Nullable PatchLocation patchLocation = null;
     ServiceDescriptionElement serviceDescription = null;
     long baseUrlAvailabilityTimeOffsetUs = dynamic ? 0 : C.TIME_UNSET;
     BaseUrl documentBaseUrl =
@@ -170,6 +172,8 @@ public class DashManifestParser extends DefaultHandler
         utcTiming = parseUtcTiming(xpp);
       } else if (XmlPullParserUtil.isStartTag(xpp, "Location")) {
         location = UriUtil.resolveToUri(documentBaseUri.toString(), xpp.nextText());
+      } else if (XmlPullParserUtil.isStartTag(xpp, "PatchLocation")) {
+        patchLocation = parsePatchLocation(xpp, documentBaseUri);
       } else if (XmlPullParserUtil.isStartTag(xpp, "ServiceDescription")) {
         serviceDescription = parseServiceDescription(xpp);
       } else if (XmlPullParserUtil.isStartTag(xpp, "Period") && !seenEarlyAccessPeriod) {
@@ -230,9 +234,83 @@ public class DashManifestParser extends DefaultHandler
         utcTiming,
         serviceDescription,
         location,
+        id,
+        patchLocation,
         periods);
   }
 
+  /**
+   * Builds a {@link DashManifest}.
+   *
+   * <p>The default implementation delegates to the deprecated overload without {@code id} and
+   * {@code patchLocation}, so that subclasses overriding it keep taking effect. If that overload
+   * returns a plain {@link DashManifest}, a copy with {@code id} and {@code patchLocation} is
+   * returned. A manifest of a subclass of {@link DashManifest} is returned unchanged, and isn't
+   * refreshed with MPD patches.
+   */
+  @SuppressWarnings("deprecation") // Delegating to the deprecated overload.
+  protected DashManifest buildMediaPresentationDescription(
+      long availabilityStartTime,
+      long durationMs,
+      long minBufferTimeMs,
+      boolean dynamic,
+      long minUpdateTimeMs,
+      long timeShiftBufferDepthMs,
+      long suggestedPresentationDelayMs,
+      long publishTimeMs,
+      @Nullable ProgramInformation programInformation,
+      @Nullable UtcTimingElement utcTiming,
+      @Nullable ServiceDescriptionElement serviceDescription,
+      @Nullable Uri location,
+      @Nullable String id,
+      @Nullable PatchLocation patchLocation,
+      List<Period> periods) {
+    DashManifest manifest =
+        buildMediaPresentationDescription(
+            availabilityStartTime,
+            durationMs,
+            minBufferTimeMs,
+            dynamic,
+            minUpdateTimeMs,
+            timeShiftBufferDepthMs,
+            suggestedPresentationDelayMs,
+            publishTimeMs,
+            programInformation,
+            utcTiming,
+            serviceDescription,
+            location,
+            periods);
+    if ((id == null && patchLocation == null) || manifest.getClass() != DashManifest.class) {
+      return manifest;
+    }
+    List<Period> manifestPeriods = new ArrayList<>(manifest.getPeriodCount());
+    for (int i = 0; i < manifest.getPeriodCount(); i++) {
+      manifestPeriods.add(manifest.getPeriod(i));
+    }
+    return new DashManifest(
+        manifest.availabilityStartTimeMs,
+        manifest.durationMs,
+        manifest.minBufferTimeMs,
+        manifest.dynamic,
+        manifest.minUpdatePeriodMs,
+        manifest.timeShiftBufferDepthMs,
+        manifest.suggestedPresentationDelayMs,
+        manifest.publishTimeMs,
+        manifest.programInformation,
+        manifest.utcTiming,
+        manifest.serviceDescription,
+        manifest.location,
+        id,
+        patchLocation,
+        manifestPeriods);
+  }
+
+  /**
+   * @deprecated Override {@link #buildMediaPresentationDescription(long, long, long, boolean, long,
+   *     long, long, long, ProgramInformation, UtcTimingElement, ServiceDescriptionElement, Uri,
+   *     String, PatchLocation, List)} instead.
+   */
+  @Deprecated
   protected DashManifest buildMediaPresentationDescription(
       long availabilityStartTime,
       long durationMs,
@@ -260,6 +338,8 @@ public class DashManifestParser extends DefaultHandler
         utcTiming,
         serviceDescription,
         location,
+        /* id= */ null,
+        /* patchLocation= */ null,
         periods);
   }
 
@@ -273,6 +353,18 @@ public class DashManifestParser extends DefaultHandler
     return new UtcTimingElement(schemeIdUri, value);
   }
 
+  protected PatchLocation parsePatchLocation(XmlPullParser xpp, Uri documentBaseUri)
+      throws XmlPullParserException, IOException {
+    @Nullable String ttl = xpp.getAttributeValue(null, "ttl");
+    long ttlMs = ttl == null ? C.TIME_UNSET : (long) (Double.parseDouble(ttl) * 1000);
+    Uri uri = UriUtil.resolveToUri(documentBaseUri.toString(), xpp.nextText());
+    return buildPatchLocation(uri, ttlMs);
+  }
+
+  protected PatchLocation buildPatchLocation(Uri uri, long ttlMs) {
+    return new PatchLocation(uri, ttlMs);
+  }
+
   protected ServiceDescriptionElement parseServiceDescription(XmlPullParser xpp)
       throws XmlPullParserException, IOException {
     long targetOffsetMs = C.TIME_UNSET;
@@ -1264,7 +1356,7 @@ public class DashManifestParser extends DefaultHandler
   protected List<SegmentTimelineElement> parseSegmentTimeline(
       XmlPullParser xpp, long timescale, long periodDurationMs)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    SegmentTimeline.Builder segmentTimeline = new SegmentTimeline.Builder();
     long startTime = 0;
     long elementDuration = C.TIME_UNSET;
     int elementRepeatCount = 0;
@@ -1275,7 +1367,7 @@ public class DashManifestParser extends DefaultHandler
         long newStartTime = parseLong(xpp, "t", C.TIME_UNSET);
         if (havePreviousTimelineElement) {
           startTime =
-              addSegmentTimelineElementsToList(
+              addSegmentTimelineElements(
                   segmentTimeline,
                   startTime,
                   elementDuration,
@@ -1294,14 +1386,14 @@ public class DashManifestParser extends DefaultHandler
     } while (!XmlPullParserUtil.isEndTag(xpp, "SegmentTimeline"));
     if (havePreviousTimelineElement) {
       long periodDuration = Util.scaleLargeTimestamp(periodDurationMs, timescale, 1000);
-      addSegmentTimelineElementsToList(
+      addSegmentTimelineElements(
           segmentTimeline,
           startTime,
           elementDuration,
           elementRepeatCount,
           /* endTime= */ periodDuration);
     }
-    return segmentTimeline;
+    return segmentTimeline.build();
   }
 
   /**
@@ -1315,8 +1407,8 @@ public class DashManifestParser extends DefaultHandler
    *     unknown. Only needed if {@code repeatCount} is negative.
    * @return Calculated next start time.
    */
-  private long addSegmentTimelineElementsToList(
-      List<SegmentTimelineElement> segmentTimeline,
+  private long addSegmentTimelineElements(
+      SegmentTimeline.Builder segmentTimeline,
       long startTime,
       long elementDuration,
       int elementRepeatCount,
@@ -1325,13 +1417,17 @@ public class DashManifestParser extends DefaultHandler
         elementRepeatCount >= 0
             ? 1 + elementRepeatCount
             : (int) Util.ceilDivide(endTime - startTime, elementDuration);
-    for (int i = 0; i < count; i++) {
-      segmentTimeline.add(buildSegmentTimelineElement(startTime, elementDuration));
-      startTime += elementDuration;
-    }
-    return startTime;
+    // Added even if the count isn't positive, so that the S elements keep their positions.
+    segmentTimeline.addElements(startTime, elementDuration, count);
+    return count > 0 ? startTime + count * elementDuration : startTime;
   }
 
+  /**
+   * @deprecated Segment timelines are stored as runs of segments of equal duration, so this method
+   *     is no longer called. Override {@link #parseSegmentTimeline(XmlPullParser, long, long)}
+   *     instead.
+   */
+  @Deprecated
   protected SegmentTimelineElement buildSegmentTimelineElement(long startTime, long duration) {
     return new SegmentTimelineElement(startTime, duration);
   }
@@ -0,0 +1,716 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.android.exoplayer2.source.dash.manifest.DashManifestParser.parseDateTime;
+import static com.google.android.exoplayer2.source.dash.manifest.DashManifestParser.parseInt;
+import static com.google.android.exoplayer2.source.dash.manifest.DashManifestParser.parseLong;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.MultiSegmentBase;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.util.XmlPullParserUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Parses an MPD patch document, as defined by ISO/IEC 23009-1:2022 Section 5.15, and applies it to
+ * the {@link DashManifest} the parser was created with.
+ *
+ * <p>An MPD patch holds {@code add}, {@code replace} and {@code remove} operations, as defined by
+ * RFC 5261, on the elements and attributes of the manifest selected by XPath expressions. The
+ * operations are applied to the parsed manifest rather than to its XML document, which limits them
+ * to the parts of a live manifest that change between refreshes:
+ *
+ * <ul>
+ *   <li>The {@code publishTime}, {@code type}, {@code mediaPresentationDuration}, {@code
+ *       minimumUpdatePeriod}, {@code timeShiftBufferDepth} and {@code suggestedPresentationDelay}
+ *       attributes of the {@code MPD} element.
+ *   <li>The {@code PatchLocation} element.
+ *   <li>The removal of a {@code Period} element.
+ *   <li>The addition of {@code S} elements to the end of a {@code SegmentTimeline} element, and the
+ *       removal of {@code S} elements by position.
+ *   <li>The {@code startNumber} attribute of a {@code SegmentTemplate} element.
+ * </ul>
+ *
+ * <p>Selector steps can select elements by {@code id}, as in {@code [@id='1']}, or by position, as
+ * in {@code [1]}. A {@link ParserException} is thrown if the patch doesn't apply to the manifest or
+ * contains other operations, in which case the full manifest should be loaded instead.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class DashManifestPatchParser implements ParsingLoadable.Parser<DashManifest> {
+
+  private static final Pattern SELECTOR_STEP_PATTERN =
+      Pattern.compile("/(@?[\\w-]+)(?:\\[(?:@id=(?:'([^']*)'|\"([^\"]*)\")|(\\d{1,9}))\\])?");
+
+  private final DashManifest manifest;
+  private final DashManifestParser manifestParser;
+  private final XmlPullParserFactory xmlParserFactory;
+
+  /**
+   * Creates an instance.
+   *
+   * @param manifest The manifest to which the patch is applied.
+   */
+  public DashManifestPatchParser(DashManifest manifest) {
+    this.manifest = manifest;
+    manifestParser = new DashManifestParser();
+    try {
+      xmlParserFactory = XmlPullParserFactory.newInstance();
+    } catch (XmlPullParserException e) {
+      throw new RuntimeException("Couldn't create XmlPullParserFactory instance", e);
+    }
+  }
+
+  @Override
+  public DashManifest parse(Uri uri, InputStream inputStream) throws IOException {
+    try {
+      XmlPullParser xpp = xmlParserFactory.newPullParser();
+      xpp.setInput(inputStream, null);
+      int eventType = xpp.next();
+      if (eventType != XmlPullParser.START_TAG || !"Patch".equals(xpp.getName())) {
+        throw ParserException.createForMalformedManifest(
+            "inputStream does not contain a valid MPD patch", /* cause= */ null);
+      }
+      return parsePatch(xpp, uri);
+    } catch (XmlPullParserException e) {
+      throw ParserException.createForMalformedManifest(/* message= */ null, /* cause= */ e);
+    }
+  }
+
+  private DashManifest parsePatch(XmlPullParser xpp, Uri documentBaseUri)
+      throws XmlPullParserException, IOException {
+    @Nullable String mpdId = xpp.getAttributeValue(null, "mpdId");
+    long originalPublishTimeMs = parseDateTime(xpp, "originalPublishTime", C.TIME_UNSET);
+    long publishTimeMs = parseDateTime(xpp, "publishTime", C.TIME_UNSET);
+    if (mpdId == null
+        || !mpdId.equals(manifest.id)
+        || originalPublishTimeMs == C.TIME_UNSET
+        || originalPublishTimeMs != manifest.publishTimeMs) {
+      throw ParserException.createForMalformedManifest(
+          "Patch doesn't apply to the manifest", /* cause= */ null);
+    }
+    PatchedManifest patchedManifest = new PatchedManifest(manifest);
+    do {
+      xpp.next();
+      if (XmlPullParserUtil.isStartTag(xpp, "add")
+          || XmlPullParserUtil.isStartTag(xpp, "replace")
+          || XmlPullParserUtil.isStartTag(xpp, "remove")) {
+        applyOperation(xpp, patchedManifest, documentBaseUri);
+      } else {
+        DashManifestParser.maybeSkipTag(xpp);
+      }
+    } while (!XmlPullParserUtil.isEndTag(xpp, "Patch"));
+    if (publishTimeMs != C.TIME_UNSET) {
+      patchedManifest.publishTimeMs = publishTimeMs;
+    }
+    return patchedManifest.build();
+  }
+
+  private void applyOperation(
+      XmlPullParser xpp, PatchedManifest patchedManifest, Uri documentBaseUri)
+      throws XmlPullParserException, IOException {
+    String operation = xpp.getName();
+    @Nullable String selector = xpp.getAttributeValue(null, "sel");
+    if (selector == null) {
+      throw ParserException.createForMalformedManifest(
+          "Missing sel attribute in " + operation, /* cause= */ null);
+    }
+    List<Step> steps = parseSelector(selector);
+    @Nullable String type = xpp.getAttributeValue(null, "type");
+    @Nullable String position = xpp.getAttributeValue(null, "pos");
+    Step lastStep = steps.get(steps.size() - 1);
+    if (position != null) {
+      throw createUnsupportedOperationException(operation, selector);
+    }
+
+    if ("add".equals(operation) && type != null) {
+      // Adds an attribute to the selected element.
+      if (!type.startsWith("@") || lastStep.isAttribute()) {
+        throw createUnsupportedOperationException(operation, selector);
+      }
+      setAttribute(patchedManifest, steps, type.substring(1), xpp.nextText().trim(), selector);
+      return;
+    }
+    if (lastStep.isAttribute()) {
+      List<Step> elementSteps = steps.subList(0, steps.size() - 1);
+      String attributeName = lastStep.name.substring(1);
+      if ("replace".equals(operation)) {
+        setAttribute(patchedManifest, elementSteps, attributeName, xpp.nextText().trim(), selector);
+      } else if ("remove".equals(operation)) {
+        setAttribute(patchedManifest, elementSteps, attributeName, /* value= */ null, selector);
+        skipToEndTag(xpp, operation);
+      } else {
+        throw createUnsupportedOperationException(operation, selector);
+      }
+      return;
+    }
+
+    if (steps.size() == 1 && "add".equals(operation)) {
+      // Adds elements to the MPD element.
+      do {
+        xpp.next();
+        if (XmlPullParserUtil.isStartTag(xpp, "PatchLocation")) {
+          patchedManifest.patchLocation = manifestParser.parsePatchLocation(xpp, documentBaseUri);
+        } else if (XmlPullParserUtil.isStartTag(xpp)) {
+          throw createUnsupportedOperationException(operation, selector + "/" + xpp.getName());
+        }
+      } while (!XmlPullParserUtil.isEndTag(xpp, operation));
+    } else if (steps.size() == 2 && lastStep.name.equals("PatchLocation")) {
+      if ("remove".equals(operation)) {
+        patchedManifest.patchLocation = null;
+        skipToEndTag(xpp, operation);
+      } else if ("replace".equals(operation)) {
+        do {
+          xpp.next();
+          if (XmlPullParserUtil.isStartTag(xpp, "PatchLocation")) {
+            patchedManifest.patchLocation =
+                manifestParser.parsePatchLocation(xpp, documentBaseUri);
+          } else if (XmlPullParserUtil.isStartTag(xpp)) {
+            throw createUnsupportedOperationException(operation, selector);
+          }
+        } while (!XmlPullParserUtil.isEndTag(xpp, operation));
+      } else {
+        throw createUnsupportedOperationException(operation, selector);
+      }
+    } else if (steps.size() == 2 && lastStep.name.equals("Period") && "remove".equals(operation)) {
+      int periodIndex = getPeriodIndex(patchedManifest.periods, lastStep, selector);
+      if (patchedManifest.periods.size() == 1) {
+        throw ParserException.createForMalformedManifest(
+            "Patch removes the only period", /* cause= */ null);
+      }
+      patchedManifest.periods.remove(periodIndex);
+      skipToEndTag(xpp, operation);
+    } else if (lastStep.name.equals("SegmentTimeline")
+        && !lastStep.hasPredicate()
+        && "add".equals(operation)) {
+      List<long[]> elements = parseSegmentTimelineElements(xpp, operation, selector);
+      updateSegmentTemplates(
+          patchedManifest,
+          steps.subList(0, steps.size() - 1),
+          selector,
+          (segmentTemplate, periodDurationMs) ->
+              segmentTemplate.copyWithSegmentTimeline(
+                  segmentTemplate.startNumber,
+                  appendSegmentTimelineElements(
+                      getSegmentTimeline(segmentTemplate, selector),
+                      elements,
+                      segmentTemplate.timescale,
+                      periodDurationMs)));
+    } else if (lastStep.name.equals("S")
+        && lastStep.position != C.INDEX_UNSET
+        && steps.size() >= 2
+        && steps.get(steps.size() - 2).name.equals("SegmentTimeline")
+        && "remove".equals(operation)) {
+      updateSegmentTemplates(
+          patchedManifest,
+          steps.subList(0, steps.size() - 2),
+          selector,
+          (segmentTemplate, periodDurationMs) ->
+              segmentTemplate.copyWithSegmentTimeline(
+                  segmentTemplate.startNumber,
+                  removeEntry(
+                      getSegmentTimeline(segmentTemplate, selector),
+                      /* entry= */ lastStep.position - 1,
+                      selector)));
+      skipToEndTag(xpp, operation);
+    } else {
+      throw createUnsupportedOperationException(operation, selector);
+    }
+  }
+
+  private static void setAttribute(
+      PatchedManifest patchedManifest,
+      List<Step> elementSteps,
+      String name,
+      @Nullable String value,
+      String selector)
+      throws ParserException {
+    if (elementSteps.size() == 1) {
+      setManifestAttribute(patchedManifest, name, value, selector);
+    } else if (elementSteps.get(elementSteps.size() - 1).name.equals("SegmentTemplate")
+        && name.equals("startNumber")
+        && value != null) {
+      long startNumber = parseStartNumber(value, selector);
+      updateSegmentTemplates(
+          patchedManifest,
+          elementSteps,
+          selector,
+          (segmentTemplate, periodDurationMs) ->
+              segmentTemplate.copyWithSegmentTimeline(
+                  startNumber, getSegmentTimeline(segmentTemplate, selector)));
+    } else {
+      throw createUnsupportedOperationException("attribute", selector);
+    }
+  }
+
+  private static void setManifestAttribute(
+      PatchedManifest patchedManifest, String name, @Nullable String value, String selector)
+      throws ParserException {
+    switch (name) {
+      case "publishTime":
+        patchedManifest.publishTimeMs =
+            value == null ? C.TIME_UNSET : Util.parseXsDateTime(value);
+        break;
+      case "type":
+        if (value == null) {
+          throw createUnsupportedOperationException("remove", selector);
+        }
+        patchedManifest.dynamic = "dynamic".equals(value);
+        break;
+      case "mediaPresentationDuration":
+        patchedManifest.durationMs = value == null ? C.TIME_UNSET : Util.parseXsDuration(value);
+        break;
+      case "minimumUpdatePeriod":
+        patchedManifest.minUpdatePeriodMs =
+            value == null ? C.TIME_UNSET : Util.parseXsDuration(value);
+        break;
+      case "timeShiftBufferDepth":
+        patchedManifest.timeShiftBufferDepthMs =
+            value == null ? C.TIME_UNSET : Util.parseXsDuration(value);
+        break;
+      case "suggestedPresentationDelay":
+        patchedManifest.suggestedPresentationDelayMs =
+            value == null ? C.TIME_UNSET : Util.parseXsDuration(value);
+        break;
+      default:
+        throw createUnsupportedOperationException("attribute", selector);
+    }
+  }
+
+  /**
+   * Applies an update to the {@link SegmentTemplate} of each representation selected by {@code
+   * templateSteps}, which select a {@code SegmentTemplate} element of a period, an adaptation set
+   * or a representation.
+   *
+   * <p>A {@code SegmentTemplate} element of a period or an adaptation set is inherited by the
+   * representations it contains, so its segments can only be updated if they're the same in all of
+   * the selected representations.
+   */
+  private static void updateSegmentTemplates(
+      PatchedManifest patchedManifest,
+      List<Step> templateSteps,
+      String selector,
+      SegmentTemplateUpdate update)
+      throws ParserException {
+    int stepCount = templateSteps.size();
+    if (stepCount < 3
+        || !templateSteps.get(1).name.equals("Period")
+        || !templateSteps.get(stepCount - 1).name.equals("SegmentTemplate")
+        || templateSteps.get(stepCount - 1).hasPredicate()) {
+      throw createUnsupportedOperationException("update", selector);
+    }
+    @Nullable Step adaptationSetStep = null;
+    @Nullable Step representationStep = null;
+    int stepIndex = 2;
+    if (templateSteps.get(stepIndex).name.equals("AdaptationSet")) {
+      adaptationSetStep = templateSteps.get(stepIndex++);
+      if (templateSteps.get(stepIndex).name.equals("Representation")) {
+        representationStep = templateSteps.get(stepIndex++);
+      }
+    }
+    if (stepIndex != stepCount - 1) {
+      throw createUnsupportedOperationException("update", selector);
+    }
+
+    int periodIndex = getPeriodIndex(patchedManifest.periods, templateSteps.get(1), selector);
+    Period period = patchedManifest.periods.get(periodIndex);
+    long periodDurationMs = patchedManifest.getPeriodDurationMs(periodIndex);
+    @Nullable MultiSegmentBase firstSegmentTemplate = null;
+    List<AdaptationSet> adaptationSets = new ArrayList<>(period.adaptationSets);
+    for (int i = 0; i < adaptationSets.size(); i++) {
+      AdaptationSet adaptationSet = adaptationSets.get(i);
+      @Nullable
+      String adaptationSetId =
+          adaptationSet.id != AdaptationSet.ID_UNSET ? Long.toString(adaptationSet.id) : null;
+      if (adaptationSetStep != null && !adaptationSetStep.matches(adaptationSetId, i)) {
+        continue;
+      }
+      List<Representation> representations = new ArrayList<>(adaptationSet.representations);
+      for (int j = 0; j < representations.size(); j++) {
+        Representation representation = representations.get(j);
+        if (representationStep != null
+            && !representationStep.matches(representation.format.id, j)) {
+          continue;
+        }
+        if (!(representation instanceof MultiSegmentRepresentation)
+            || !(((MultiSegmentRepresentation) representation).segmentBase
+                instanceof SegmentTemplate)) {
+          throw ParserException.createForManifestWithUnsupportedFeature(
+              "Patched representation has no SegmentTemplate: " + selector, /* cause= */ null);
+        }
+        MultiSegmentRepresentation multiSegmentRepresentation =
+            (MultiSegmentRepresentation) representation;
+        SegmentTemplate segmentTemplate = (SegmentTemplate) multiSegmentRepresentation.segmentBase;
+        if (firstSegmentTemplate == null) {
+          firstSegmentTemplate = segmentTemplate;
+        } else if (!haveSameSegments(firstSegmentTemplate, segmentTemplate)) {
+          throw ParserException.createForManifestWithUnsupportedFeature(
+              "Patched representations have different segments: " + selector, /* cause= */ null);
+        }
+        representations.set(
+            j,
+            new MultiSegmentRepresentation(
+                representation.revisionId,
+                representation.format,
+                representation.baseUrls,
+                update.apply(segmentTemplate, periodDurationMs),
+                representation.inbandEventStreams,
+                representation.essentialProperties,
+                representation.supplementalProperties));
+      }
+      adaptationSets.set(
+          i,
+          new AdaptationSet(
+              adaptationSet.id,
+              adaptationSet.type,
+              representations,
+              adaptationSet.accessibilityDescriptors,
+              adaptationSet.essentialProperties,
+              adaptationSet.supplementalProperties));
+    }
+    if (firstSegmentTemplate == null) {
+      throw ParserException.createForMalformedManifest(
+          "Patch selects no representation: " + selector, /* cause= */ null);
+    }
+    patchedManifest.periods.set(
+        periodIndex,
+        new Period(
+            period.id,
+            period.startMs,
+            adaptationSets,
+            period.eventStreams,
+            period.assetIdentifier));
+  }
+
+  private static List<long[]> parseSegmentTimelineElements(
+      XmlPullParser xpp, String operation, String selector)
+      throws XmlPullParserException, IOException {
+    List<long[]> elements = new ArrayList<>();
+    do {
+      xpp.next();
+      if (XmlPullParserUtil.isStartTag(xpp, "S")) {
+        long duration = parseLong(xpp, "d", C.TIME_UNSET);
+        if (duration == C.TIME_UNSET || duration <= 0) {
+          throw ParserException.createForMalformedManifest(
+              "Invalid S element duration: " + selector, /* cause= */ null);
+        }
+        elements.add(
+            new long[] {parseLong(xpp, "t", C.TIME_UNSET), duration, parseInt(xpp, "r", 0)});
+      } else if (XmlPullParserUtil.isStartTag(xpp)) {
+        throw createUnsupportedOperationException(operation, selector + "/" + xpp.getName());
+      }
+    } while (!XmlPullParserUtil.isEndTag(xpp, operation));
+    return elements;
+  }
+
+  /**
+   * Appends the segments of {@code S} elements, each given as its start time, duration and repeat
+   * count, to a segment timeline.
+   */
+  private static SegmentTimeline appendSegmentTimelineElements(
+      SegmentTimeline segmentTimeline,
+      List<long[]> elements,
+      long timescale,
+      long periodDurationMs)
+      throws ParserException {
+    SegmentTimeline.Builder builder = segmentTimeline.buildUpon();
+    long startTime = segmentTimeline.getEndTime();
+    for (int i = 0; i < elements.size(); i++) {
+      long[] element = elements.get(i);
+      if (element[0] != C.TIME_UNSET) {
+        if (element[0] < startTime) {
+          throw ParserException.createForMalformedManifest(
+              "Added S element overlaps the segment timeline", /* cause= */ null);
+        }
+        startTime = element[0];
+      }
+      long duration = element[1];
+      long repeatCount = element[2];
+      int count;
+      if (repeatCount >= 0) {
+        count = (int) repeatCount + 1;
+      } else {
+        // A negative repeat count lasts until the start of the next S element, or until the end of
+        // the period for the last one.
+        long endTime;
+        if (i < elements.size() - 1) {
+          endTime = elements.get(i + 1)[0];
+        } else {
+          endTime =
+              periodDurationMs == C.TIME_UNSET
+                  ? C.TIME_UNSET
+                  : Util.scaleLargeTimestamp(periodDurationMs, timescale, 1000);
+        }
+        if (endTime == C.TIME_UNSET) {
+          throw ParserException.createForMalformedManifest(
+              "Added S element with negative repeat count has no end time", /* cause= */ null);
+        }
+        count = (int) Util.ceilDivide(endTime - startTime, duration);
+      }
+      // Added even if the count isn't positive, so that the S elements keep their positions.
+      builder.addElements(startTime, duration, count);
+      if (count > 0) {
+        startTime += count * duration;
+      }
+    }
+    return builder.build();
+  }
+
+  /** Removes the segments of the {@code S} element at the given position from a timeline. */
+  private static SegmentTimeline removeEntry(
+      SegmentTimeline segmentTimeline, int entry, String selector) throws ParserException {
+    int entryCount = segmentTimeline.getEntryCount();
+    if (entryCount == C.LENGTH_UNSET) {
+      throw ParserException.createForManifestWithUnsupportedFeature(
+          "Patched SegmentTimeline has unknown S elements: " + selector, /* cause= */ null);
+    }
+    if (entry >= entryCount) {
+      throw ParserException.createForMalformedManifest(
+          "Patch selects no S element: " + selector, /* cause= */ null);
+    }
+    SegmentTimeline.Builder builder = new SegmentTimeline.Builder();
+    for (int i = 0; i < entryCount; i++) {
+      if (i == entry) {
+        continue;
+      }
+      int firstIndex = segmentTimeline.getEntryFirstIndex(i);
+      int count = segmentTimeline.getEntryEndIndex(i) - firstIndex;
+      if (count > 0) {
+        builder.addElements(
+            segmentTimeline.getStartTime(firstIndex),
+            segmentTimeline.getDuration(firstIndex),
+            count);
+      } else {
+        builder.addElements(/* startTime= */ 0, /* duration= */ 0, /* count= */ 0);
+      }
+    }
+    return builder.build();
+  }
+
+  private static SegmentTimeline getSegmentTimeline(
+      SegmentTemplate segmentTemplate, String selector) throws ParserException {
+    if (segmentTemplate.segmentTimeline == null) {
+      throw ParserException.createForManifestWithUnsupportedFeature(
+          "Patched SegmentTemplate has no SegmentTimeline: " + selector, /* cause= */ null);
+    }
+    return segmentTemplate.segmentTimeline;
+  }
+
+  private static boolean haveSameSegments(MultiSegmentBase first, MultiSegmentBase second) {
+    if (first.startNumber != second.startNumber || first.timescale != second.timescale) {
+      return false;
+    }
+    if (first.segmentTimeline == null || second.segmentTimeline == null) {
+      return first.segmentTimeline == second.segmentTimeline;
+    }
+    return first.segmentTimeline.hasSameRuns(second.segmentTimeline);
+  }
+
+  private static int getPeriodIndex(List<Period> periods, Step periodStep, String selector)
+      throws ParserException {
+    if (!periodStep.hasPredicate()) {
+      throw createUnsupportedOperationException("update", selector);
+    }
+    for (int i = 0; i < periods.size(); i++) {
+      if (periodStep.matches(periods.get(i).id, i)) {
+        return i;
+      }
+    }
+    throw ParserException.createForMalformedManifest(
+        "Patch selects no period: " + selector, /* cause= */ null);
+  }
+
+  private static List<Step> parseSelector(String selector) throws ParserException {
+    List<Step> steps = new ArrayList<>();
+    Matcher matcher = SELECTOR_STEP_PATTERN.matcher(selector);
+    int position = 0;
+    while (position < selector.length()) {
+      matcher.region(position, selector.length());
+      if (!matcher.lookingAt()) {
+        throw createUnsupportedOperationException("selector", selector);
+      }
+      @Nullable String id = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+      @Nullable String index = matcher.group(4);
+      steps.add(
+          new Step(
+              matcher.group(1),
+              id,
+              index != null ? Integer.parseInt(index) : C.INDEX_UNSET));
+      position = matcher.end();
+    }
+    if (steps.isEmpty() || !steps.get(0).name.equals("MPD") || steps.get(0).hasPredicate()) {
+      throw createUnsupportedOperationException("selector", selector);
+    }
+    for (int i = 1; i < steps.size() - 1; i++) {
+      if (steps.get(i).isAttribute()) {
+        throw createUnsupportedOperationException("selector", selector);
+      }
+    }
+    return steps;
+  }
+
+  private static long parseStartNumber(String value, String selector) throws ParserException {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw ParserException.createForMalformedManifest("Invalid value: " + selector, e);
+    }
+  }
+
+  private static void skipToEndTag(XmlPullParser xpp, String name)
+      throws XmlPullParserException, IOException {
+    while (!XmlPullParserUtil.isEndTag(xpp, name)) {
+      xpp.next();
+    }
+  }
+
+  private static ParserException createUnsupportedOperationException(
+      String operation, String selector) {
+    return ParserException.createForManifestWithUnsupportedFeature(
+        "Unsupported patch " + operation + ": " + selector, /* cause= */ null);
+  }
+
+  /** An update of the {@link SegmentTemplate} of a representation. */
+  private interface SegmentTemplateUpdate {
+
+    /**
+     * Returns the updated template.
+     *
+     * @param segmentTemplate The template to update.
+     * @param periodDurationMs The duration of the enclosing period in milliseconds, or {@link
+     *     C#TIME_UNSET} if unknown.
+     */
+    SegmentTemplate apply(SegmentTemplate segmentTemplate, long periodDurationMs)
+        throws ParserException;
+  }
+
+  /** A location step of a selector. */
+  private static final class Step {
+
+    /** The element name, or the attribute name prefixed with {@code @}. */
+    public final String name;
+    /** The value of the {@code id} predicate, or null if there's none. */
+    @Nullable public final String id;
+    /** The 1-based position predicate, or {@link C#INDEX_UNSET} if there's none. */
+    public final int position;
+
+    public Step(String name, @Nullable String id, int position) {
+      this.name = name;
+      this.id = id;
+      this.position = position;
+    }
+
+    public boolean isAttribute() {
+      return name.startsWith("@");
+    }
+
+    public boolean hasPredicate() {
+      return id != null || position != C.INDEX_UNSET;
+    }
+
+    /** Returns whether the step selects an element with the given id and 0-based index. */
+    public boolean matches(@Nullable String elementId, int index) {
+      if (id != null) {
+        return id.equals(elementId);
+      }
+      return position == C.INDEX_UNSET || position == index + 1;
+    }
+  }
+
+  /** The mutable state of the manifest while a patch is applied. */
+  private static final class PatchedManifest {
+
+    private final DashManifest manifest;
+    private final List<Period> periods;
+
+    public long durationMs;
+    public boolean dynamic;
+    public long minUpdatePeriodMs;
+    public long timeShiftBufferDepthMs;
+    public long suggestedPresentationDelayMs;
+    public long publishTimeMs;
+    @Nullable public PatchLocation patchLocation;
+
+    public PatchedManifest(DashManifest manifest) {
+      this.manifest = manifest;
+      periods = new ArrayList<>(manifest.getPeriodCount());
+      for (int i = 0; i < manifest.getPeriodCount(); i++) {
+        periods.add(manifest.getPeriod(i));
+      }
+      durationMs = manifest.durationMs;
+      dynamic = manifest.dynamic;
+      minUpdatePeriodMs = manifest.minUpdatePeriodMs;
+      timeShiftBufferDepthMs = manifest.timeShiftBufferDepthMs;
+      suggestedPresentationDelayMs = manifest.suggestedPresentationDelayMs;
+      publishTimeMs = manifest.publishTimeMs;
+      patchLocation = manifest.patchLocation;
+    }
+
+    public long getPeriodDurationMs(int index) {
+      if (index < periods.size() - 1) {
+        return periods.get(index + 1).startMs - periods.get(index).startMs;
+      }
+      return durationMs == C.TIME_UNSET ? C.TIME_UNSET : durationMs - periods.get(index).startMs;
+    }
+
+    public DashManifest build() throws ParserException {
+      if (!dynamic) {
+        minUpdatePeriodMs = C.TIME_UNSET;
+        timeShiftBufferDepthMs = C.TIME_UNSET;
+        suggestedPresentationDelayMs = C.TIME_UNSET;
+        if (durationMs == C.TIME_UNSET) {
+          throw ParserException.createForManifestWithUnsupportedFeature(
+              "Patch makes the manifest static without a duration", /* cause= */ null);
+        }
+      }
+      return new DashManifest(
+          manifest.availabilityStartTimeMs,
+          durationMs,
+          manifest.minBufferTimeMs,
+          dynamic,
+          minUpdatePeriodMs,
+          timeShiftBufferDepthMs,
+          suggestedPresentationDelayMs,
+          publishTimeMs,
+          manifest.programInformation,
+          manifest.utcTiming,
+          manifest.serviceDescription,
+          manifest.location,
+          manifest.id,
+          patchLocation,
+          periods);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+
+/**
+ * Represents a PatchLocation element, as defined by ISO/IEC 23009-1:2022 Section 5.15.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PatchLocation {
+
+  /** The location of the MPD patch document. */
+  public final Uri uri;
+
+  /**
+   * The time in milliseconds after the {@code publishTime} of the manifest during which the patch
+   * location can be used, or {@link C#TIME_UNSET} if it doesn't expire.
+   */
+  public final long ttlMs;
+
+  public PatchLocation(Uri uri, long ttlMs) {
+    this.uri = uri;
+    this.ttlMs = ttlMs;
+  }
+
+  @Override
+  public String toString() {
+    return uri + ", " + ttlMs;
+  }
+}
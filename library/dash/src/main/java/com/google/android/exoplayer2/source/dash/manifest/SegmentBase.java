@@ -123,9 +123,9 @@ public abstract class SegmentBase {
 
     /* package */ final long startNumber;
     /* package */ final long duration;
-    @Nullable /* package */ final List<SegmentTimelineElement> segmentTimeline;
-    private final long timeShiftBufferDepthUs;
-    private final long periodStartUnixTimeUs;
+    @Nullable /* package */ final SegmentTimeline segmentTimeline;
+    /* package */ final long timeShiftBufferDepthUs;
+    /* package */ final long periodStartUnixTimeUs;
 
     /**
      * Offset to the current realtime at which segments become available, in microseconds, or {@link
@@ -168,7 +168,8 @@ public abstract class SegmentBase {
       super(initialization, timescale, presentationTimeOffset);
       this.startNumber = startNumber;
       this.duration = duration;
-      this.segmentTimeline = segmentTimeline;
+      this.segmentTimeline =
+          segmentTimeline != null ? SegmentTimeline.copyOf(segmentTimeline) : null;
       this.availabilityTimeOffsetUs = availabilityTimeOffsetUs;
       this.timeShiftBufferDepthUs = timeShiftBufferDepthUs;
       this.periodStartUnixTimeUs = periodStartUnixTimeUs;
@@ -192,28 +193,44 @@ public abstract class SegmentBase {
                 ? segmentNum
                 : min(segmentNum, firstSegmentNum + segmentCount - 1);
       } else {
-        // The index cannot be unbounded. Identify the segment using binary search.
-        long lowIndex = firstSegmentNum;
-        long highIndex = firstSegmentNum + segmentCount - 1;
-        while (lowIndex <= highIndex) {
-          long midIndex = lowIndex + (highIndex - lowIndex) / 2;
-          long midTimeUs = getSegmentTimeUs(midIndex);
-          if (midTimeUs < timeUs) {
-            lowIndex = midIndex + 1;
-          } else if (midTimeUs > timeUs) {
-            highIndex = midIndex - 1;
+        // The index cannot be unbounded. Identify the run of segments of equal duration that
+        // contains the segment using binary search, and then the segment within the run.
+        int lowRun = 0;
+        int highRun = segmentTimeline.getRunCount() - 1;
+        while (lowRun <= highRun) {
+          int midRun = (lowRun + highRun) >>> 1;
+          if (getTimelineTimeUs(segmentTimeline.getRunStartTime(midRun)) <= timeUs) {
+            lowRun = midRun + 1;
+          } else {
+            highRun = midRun - 1;
+          }
+        }
+        if (highRun < 0) {
+          return firstSegmentNum;
+        }
+        long runStartTime = segmentTimeline.getRunStartTime(highRun);
+        long runDuration = segmentTimeline.getRunDuration(highRun);
+        int runFirstIndex = segmentTimeline.getRunFirstIndex(highRun);
+        // The first segment of the run starts at or before timeUs.
+        int lowIndex = runFirstIndex;
+        int highIndex = segmentTimeline.getRunEndIndex(highRun) - 1;
+        while (lowIndex < highIndex) {
+          int midIndex = (lowIndex + highIndex + 1) >>> 1;
+          long midTime = runStartTime + (midIndex - runFirstIndex) * runDuration;
+          if (getTimelineTimeUs(midTime) <= timeUs) {
+            lowIndex = midIndex;
           } else {
-            return midIndex;
+            highIndex = midIndex - 1;
           }
         }
-        return lowIndex == firstSegmentNum ? lowIndex : highIndex;
+        return min(startNumber + lowIndex, firstSegmentNum + segmentCount - 1);
       }
     }
 
     /** See {@link DashSegmentIndex#getDurationUs(long, long)}. */
     public final long getSegmentDurationUs(long sequenceNumber, long periodDurationUs) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get((int) (sequenceNumber - startNumber)).duration;
+        long duration = segmentTimeline.getDuration((int) (sequenceNumber - startNumber));
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         long segmentCount = getSegmentCount(periodDurationUs);
@@ -226,14 +243,11 @@ public abstract class SegmentBase {
 
     /** See {@link DashSegmentIndex#getTimeUs(long)}. */
     public final long getSegmentTimeUs(long sequenceNumber) {
-      long unscaledSegmentTime;
       if (segmentTimeline != null) {
-        unscaledSegmentTime =
-            segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime
-                - presentationTimeOffset;
-      } else {
-        unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
+        return getTimelineTimeUs(
+            segmentTimeline.getStartTime((int) (sequenceNumber - startNumber)));
       }
+      long unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
       return Util.scaleLargeTimestamp(unscaledSegmentTime, C.MICROS_PER_SECOND, timescale);
     }
 
@@ -301,6 +315,12 @@ public abstract class SegmentBase {
 
     /** See {@link DashSegmentIndex#getSegmentCount(long)}. */
     public abstract long getSegmentCount(long periodDurationUs);
+
+    /** Returns the time in the period of a start time in the segment timeline, in microseconds. */
+    private long getTimelineTimeUs(long startTime) {
+      return Util.scaleLargeTimestamp(
+          startTime - presentationTimeOffset, C.MICROS_PER_SECOND, timescale);
+    }
   }
 
   /** A {@link MultiSegmentBase} that uses a SegmentList to define its segments. */
@@ -430,6 +450,24 @@ public abstract class SegmentBase {
       this.endNumber = endNumber;
     }
 
+    /** Returns a copy of this template with the given start number and segment timeline. */
+    /* package */ SegmentTemplate copyWithSegmentTimeline(
+        long startNumber, SegmentTimeline segmentTimeline) {
+      return new SegmentTemplate(
+          initialization,
+          timescale,
+          presentationTimeOffset,
+          startNumber,
+          endNumber,
+          duration,
+          segmentTimeline,
+          availabilityTimeOffsetUs,
+          initializationTemplate,
+          mediaTemplate,
+          timeShiftBufferDepthUs,
+          periodStartUnixTimeUs);
+    }
+
     @Override
     @Nullable
     public RangedUri getInitialization(Representation representation) {
@@ -447,7 +485,7 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, long sequenceNumber) {
       long time;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime;
+        time = segmentTimeline.getStartTime((int) (sequenceNumber - startNumber));
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.lang.Math.max;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A compact, immutable representation of the elements of a SegmentTimeline manifest element.
+ *
+ * <p>Consecutive elements of equal duration, such as those expanded from the repeat count of an
+ * {@code S} element, are stored as a single run holding the start time and duration of the first
+ * element and the number of elements. The start time and duration of an element are resolved by
+ * binary search over the runs, and a {@link SegmentTimelineElement} is only created when an element
+ * is read through the {@link List} interface.
+ *
+ * <p>A timeline built with a {@link Builder} also keeps the index of the first element added by
+ * each call to {@link Builder#addElements(long, long, int)}, which corresponds to an {@code S}
+ * element of the manifest, so that {@code S} elements can be addressed by MPD patches independently
+ * of how they are merged into runs.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class SegmentTimeline extends AbstractList<SegmentTimelineElement>
+    implements RandomAccess {
+
+  /** Builder for {@link SegmentTimeline} instances. */
+  public static final class Builder {
+
+    private static final int INITIAL_RUN_CAPACITY = 8;
+
+    private long[] runStartTimes;
+    private long[] runDurations;
+    private int[] runFirstIndices;
+    private int runCount;
+    @Nullable private int[] entryFirstIndices;
+    private int entryCount;
+    private int size;
+
+    /** Creates a builder for an empty timeline. */
+    public Builder() {
+      runStartTimes = new long[INITIAL_RUN_CAPACITY];
+      runDurations = new long[INITIAL_RUN_CAPACITY];
+      runFirstIndices = new int[INITIAL_RUN_CAPACITY];
+      entryFirstIndices = new int[INITIAL_RUN_CAPACITY];
+    }
+
+    private Builder(SegmentTimeline timeline) {
+      int capacity = max(INITIAL_RUN_CAPACITY, timeline.getRunCount() * 2);
+      runStartTimes = Arrays.copyOf(timeline.runStartTimes, capacity);
+      runDurations = Arrays.copyOf(timeline.runDurations, capacity);
+      runFirstIndices = Arrays.copyOf(timeline.runFirstIndices, capacity);
+      runCount = timeline.getRunCount();
+      if (timeline.entryFirstIndices != null) {
+        entryCount = timeline.entryFirstIndices.length;
+        entryFirstIndices =
+            Arrays.copyOf(timeline.entryFirstIndices, max(INITIAL_RUN_CAPACITY, entryCount * 2));
+      }
+      size = timeline.size;
+    }
+
+    /**
+     * Appends consecutive elements of equal duration to the timeline.
+     *
+     * <p>The elements are merged into the last run of the timeline if they have the same duration
+     * and the first of them starts where the run ends.
+     *
+     * @param startTime The start time of the first element. The value in seconds is the division of
+     *     this value and the {@code timescale} of the enclosing element.
+     * @param duration The duration of each element. The value in seconds is the division of this
+     *     value and the {@code timescale} of the enclosing element.
+     * @param count The number of elements. If the count is not positive, no elements are appended,
+     *     but the call still counts as an {@code S} element, so that the following ones keep their
+     *     positions.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder addElements(long startTime, long duration, int count) {
+      @Nullable int[] entryFirstIndices = this.entryFirstIndices;
+      if (entryFirstIndices != null) {
+        if (entryCount == entryFirstIndices.length) {
+          entryFirstIndices = Arrays.copyOf(entryFirstIndices, entryCount * 2);
+          this.entryFirstIndices = entryFirstIndices;
+        }
+        entryFirstIndices[entryCount++] = size;
+      }
+      if (count <= 0) {
+        return this;
+      }
+      if (runCount > 0) {
+        int lastRun = runCount - 1;
+        long lastRunEndTime =
+            runStartTimes[lastRun] + (size - runFirstIndices[lastRun]) * runDurations[lastRun];
+        if (runDurations[lastRun] == duration && lastRunEndTime == startTime) {
+          size += count;
+          return this;
+        }
+      }
+      if (runCount == runStartTimes.length) {
+        int newCapacity = runCount * 2;
+        runStartTimes = Arrays.copyOf(runStartTimes, newCapacity);
+        runDurations = Arrays.copyOf(runDurations, newCapacity);
+        runFirstIndices = Arrays.copyOf(runFirstIndices, newCapacity);
+      }
+      runStartTimes[runCount] = startTime;
+      runDurations[runCount] = duration;
+      runFirstIndices[runCount] = size;
+      runCount++;
+      size += count;
+      return this;
+    }
+
+    /** Builds the timeline. */
+    public SegmentTimeline build() {
+      return new SegmentTimeline(
+          Arrays.copyOf(runStartTimes, runCount),
+          Arrays.copyOf(runDurations, runCount),
+          Arrays.copyOf(runFirstIndices, runCount),
+          entryFirstIndices != null ? Arrays.copyOf(entryFirstIndices, entryCount) : null,
+          size);
+    }
+  }
+
+  /**
+   * Returns a {@link SegmentTimeline} with the given elements, or the list itself if it's already a
+   * {@link SegmentTimeline}. Contiguous elements of equal duration are merged into a single run.
+   * The returned timeline doesn't know the {@code S} elements its elements were described by.
+   */
+  public static SegmentTimeline copyOf(List<SegmentTimelineElement> elements) {
+    if (elements instanceof SegmentTimeline) {
+      return (SegmentTimeline) elements;
+    }
+    Builder builder = new Builder();
+    builder.entryFirstIndices = null;
+    int runStartIndex = 0;
+    for (int i = 1; i <= elements.size(); i++) {
+      SegmentTimelineElement runStart = elements.get(runStartIndex);
+      if (i < elements.size()) {
+        SegmentTimelineElement element = elements.get(i);
+        SegmentTimelineElement previous = elements.get(i - 1);
+        if (element.duration == runStart.duration
+            && element.startTime == previous.startTime + previous.duration) {
+          continue;
+        }
+      }
+      builder.addElements(runStart.startTime, runStart.duration, i - runStartIndex);
+      runStartIndex = i;
+    }
+    return builder.build();
+  }
+
+  private final long[] runStartTimes;
+  private final long[] runDurations;
+  private final int[] runFirstIndices;
+  @Nullable private final int[] entryFirstIndices;
+  private final int size;
+
+  private SegmentTimeline(
+      long[] runStartTimes,
+      long[] runDurations,
+      int[] runFirstIndices,
+      @Nullable int[] entryFirstIndices,
+      int size) {
+    this.runStartTimes = runStartTimes;
+    this.runDurations = runDurations;
+    this.runFirstIndices = runFirstIndices;
+    this.entryFirstIndices = entryFirstIndices;
+    this.size = size;
+  }
+
+  /** Returns a {@link Builder} initialized with the runs of this timeline. */
+  public Builder buildUpon() {
+    return new Builder(this);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public SegmentTimelineElement get(int index) {
+    return new SegmentTimelineElement(getStartTime(index), getDuration(index));
+  }
+
+  /**
+   * Returns the start time of the element at the given index. The value in seconds is the division
+   * of this value and the {@code timescale} of the enclosing element.
+   */
+  public long getStartTime(int index) {
+    int run = getRunIndex(index);
+    return runStartTimes[run] + (index - runFirstIndices[run]) * runDurations[run];
+  }
+
+  /**
+   * Returns the duration of the element at the given index. The value in seconds is the division
+   * of this value and the {@code timescale} of the enclosing element.
+   */
+  public long getDuration(int index) {
+    return runDurations[getRunIndex(index)];
+  }
+
+  /** Returns the number of runs of consecutive elements of equal duration. */
+  /* package */ int getRunCount() {
+    return runFirstIndices.length;
+  }
+
+  /** Returns the start time of the first element of a run. */
+  /* package */ long getRunStartTime(int run) {
+    return runStartTimes[run];
+  }
+
+  /** Returns the duration of each element of a run. */
+  /* package */ long getRunDuration(int run) {
+    return runDurations[run];
+  }
+
+  /** Returns the index of the first element of a run. */
+  /* package */ int getRunFirstIndex(int run) {
+    return runFirstIndices[run];
+  }
+
+  /** Returns the index following the last element of a run. */
+  /* package */ int getRunEndIndex(int run) {
+    return run == runFirstIndices.length - 1 ? size : runFirstIndices[run + 1];
+  }
+
+  /**
+   * Returns the number of {@code S} elements the timeline was built from, or {@link C#LENGTH_UNSET}
+   * if they aren't known because the timeline was copied from a list of elements.
+   */
+  /* package */ int getEntryCount() {
+    return entryFirstIndices != null ? entryFirstIndices.length : C.LENGTH_UNSET;
+  }
+
+  /** Returns the index of the first element of an {@code S} element. */
+  /* package */ int getEntryFirstIndex(int entry) {
+    return checkNotNull(entryFirstIndices)[entry];
+  }
+
+  /** Returns the index following the last element of an {@code S} element. */
+  /* package */ int getEntryEndIndex(int entry) {
+    int[] entryFirstIndices = checkNotNull(this.entryFirstIndices);
+    return entry == entryFirstIndices.length - 1 ? size : entryFirstIndices[entry + 1];
+  }
+
+  /** Returns the time at which the last element ends, or 0 if the timeline is empty. */
+  /* package */ long getEndTime() {
+    if (runFirstIndices.length == 0) {
+      return 0;
+    }
+    int lastRun = runFirstIndices.length - 1;
+    return runStartTimes[lastRun] + (size - runFirstIndices[lastRun]) * runDurations[lastRun];
+  }
+
+  /** Returns whether this timeline has the same runs and {@code S} elements as another one. */
+  /* package */ boolean hasSameRuns(SegmentTimeline other) {
+    return size == other.size
+        && Arrays.equals(runStartTimes, other.runStartTimes)
+        && Arrays.equals(runDurations, other.runDurations)
+        && Arrays.equals(runFirstIndices, other.runFirstIndices)
+        && Arrays.equals(entryFirstIndices, other.entryFirstIndices);
+  }
+
+  private int getRunIndex(int index) {
+    checkElementIndex(index, size);
+    return Util.binarySearchFloor(
+        runFirstIndices, index, /* inclusive= */ true, /* stayInBounds= */ false);
+  }
+}
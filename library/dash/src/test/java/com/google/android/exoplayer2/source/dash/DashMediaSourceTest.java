@@ -20,6 +20,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.fail;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
@@ -29,18 +30,29 @@ import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.Timeline.Window;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.robolectric.RobolectricUtil;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSource.MediaSourceCaller;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
 import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
 import com.google.android.exoplayer2.upstream.FileDataSource;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableMap;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.shadows.ShadowLooper;
@@ -62,6 +74,22 @@ public final class DashMediaSourceTest {
       "media/mpd/sample_mpd_live_with_offset_too_short";
   private static final String SAMPLE_MPD_LIVE_WITH_OFFSET_TOO_LONG =
       "media/mpd/sample_mpd_live_with_offset_too_long";
+  private static final String SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION =
+      "media/mpd/sample_mpd_live_with_patch_location";
+  private static final String SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION_PATCH =
+      "media/mpd/sample_mpd_live_with_patch_location_patch";
+
+  private MockWebServer mockWebServer;
+
+  @Before
+  public void setUp() {
+    mockWebServer = new MockWebServer();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
 
   @Test
   public void iso8601ParserParse() throws IOException {
@@ -444,6 +472,68 @@ public final class DashMediaSourceTest {
     assertThat(window.liveConfiguration.targetOffsetMs).isEqualTo(60_000 - 16_000);
   }
 
+  @Test
+  public void prepare_withManifestPatchingEnabled_refreshesManifestWithPatch() throws Exception {
+    mockWebServer.setDispatcher(
+        createDispatcher(
+            ImmutableMap.of(
+                "/live/manifest.mpd",
+                getBytes(SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION),
+                "/live/patch.mpp",
+                getBytes(SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION_PATCH))));
+    DashMediaSource mediaSource =
+        new DashMediaSource.Factory(new DefaultHttpDataSource.Factory())
+            .setManifestPatchingEnabled(true)
+            .createMediaSource(
+                MediaItem.fromUri(mockWebServer.url("/live/manifest.mpd").toString()));
+    AtomicReference<DashManifest> manifestReference = new AtomicReference<>();
+    MediaSourceCaller caller =
+        (MediaSource source, Timeline timeline) ->
+            manifestReference.set(
+                (DashManifest) timeline.getWindow(0, new Timeline.Window()).manifest);
+    long patchedPublishTimeMs = Util.parseXsDateTime("2023-01-01T00:00:22Z");
+
+    mediaSource.prepareSource(caller, /* mediaTransferListener= */ null, PlayerId.UNSET);
+    RobolectricUtil.runMainLooperUntil(
+        () ->
+            manifestReference.get() != null
+                && manifestReference.get().publishTimeMs == patchedPublishTimeMs);
+    mediaSource.releaseSource(caller);
+
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/live/manifest.mpd");
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/live/patch.mpp");
+    DashManifest patchedManifest = manifestReference.get();
+    for (int i = 0; i < 2; i++) {
+      DashSegmentIndex index =
+          patchedManifest.getPeriod(0).adaptationSets.get(0).representations.get(i).getIndex();
+      assertThat(index.getSegmentCount(C.TIME_UNSET)).isEqualTo(11);
+    }
+  }
+
+  @Test
+  public void prepare_withManifestPatchLoadError_refreshesManifestWithFullManifest()
+      throws Exception {
+    mockWebServer.setDispatcher(
+        createDispatcher(
+            ImmutableMap.of(
+                "/live/manifest.mpd", getBytes(SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION))));
+    DashMediaSource mediaSource =
+        new DashMediaSource.Factory(new DefaultHttpDataSource.Factory())
+            .setManifestPatchingEnabled(true)
+            .createMediaSource(
+                MediaItem.fromUri(mockWebServer.url("/live/manifest.mpd").toString()));
+    MediaSourceCaller caller = (MediaSource source, Timeline timeline) -> {};
+
+    mediaSource.prepareSource(caller, /* mediaTransferListener= */ null, PlayerId.UNSET);
+    RobolectricUtil.runMainLooperUntil(() -> mockWebServer.getRequestCount() >= 3);
+    mediaSource.maybeThrowSourceInfoRefreshError();
+    mediaSource.releaseSource(caller);
+
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/live/manifest.mpd");
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/live/patch.mpp");
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/live/manifest.mpd");
+  }
+
   private static Window prepareAndWaitForTimelineRefresh(MediaSource mediaSource)
       throws InterruptedException {
     AtomicReference<Window> windowReference = new AtomicReference<>();
@@ -472,6 +562,23 @@ public final class DashMediaSourceTest {
     return new ByteArrayDataSource(manifestData);
   }
 
+  private static byte[] getBytes(String fileName) throws IOException {
+    return TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), fileName);
+  }
+
+  /** Returns a dispatcher that serves the given bodies by path, and 404 for other paths. */
+  private static Dispatcher createDispatcher(ImmutableMap<String, byte[]> bodiesByPath) {
+    return new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        @Nullable byte[] body = bodiesByPath.get(request.getPath());
+        return body == null
+            ? new MockResponse().setResponseCode(404)
+            : new MockResponse().setResponseCode(200).setBody(new Buffer().write(body));
+      }
+    };
+  }
+
   private static void assertParseStringToLong(
       long expected, ParsingLoadable.Parser<Long> parser, String data) throws IOException {
     long actual = parser.parse(null, new ByteArrayInputStream(Util.getUtf8Bytes(data)));
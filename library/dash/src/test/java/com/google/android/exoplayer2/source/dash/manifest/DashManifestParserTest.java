@@ -82,6 +82,8 @@ public class DashManifestParserTest {
       "media/mpd/sample_mpd_service_description_low_latency_only_target_latency";
   private static final String SAMPLE_MPD_CLEAR_KEY_LICENSE_URL =
       "media/mpd/sample_mpd_clear_key_license_url";
+  private static final String SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION =
+      "media/mpd/sample_mpd_live_with_patch_location";
 
   private static final String NEXT_TAG_NAME = "Next";
   private static final String NEXT_TAG = "<" + NEXT_TAG_NAME + "/>";
@@ -242,6 +244,70 @@ public class DashManifestParserTest {
     assertThat(manifest.location).isEqualTo(expectedLocation);
   }
 
+  @Test
+  public void parseMediaPresentationDescription_patchLocation() throws IOException {
+    DashManifestParser parser = new DashManifestParser();
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/a/b/test.mpd"),
+            TestUtil.getInputStream(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION));
+
+    assertThat(manifest.id).isEqualTo("live");
+    assertThat(manifest.patchLocation.uri)
+        .isEqualTo(Uri.parse("https://example.com/a/b/patch.mpp"));
+    assertThat(manifest.patchLocation.ttlMs).isEqualTo(60_000);
+  }
+
+  @Test
+  public void parseMediaPresentationDescription_withDeprecatedBuildMethodOverridden_usesOverride()
+      throws IOException {
+    DashManifestParser parser =
+        new DashManifestParser() {
+          @SuppressWarnings("deprecation") // Testing the deprecated overload.
+          @Override
+          protected DashManifest buildMediaPresentationDescription(
+              long availabilityStartTime,
+              long durationMs,
+              long minBufferTimeMs,
+              boolean dynamic,
+              long minUpdateTimeMs,
+              long timeShiftBufferDepthMs,
+              long suggestedPresentationDelayMs,
+              long publishTimeMs,
+              @Nullable ProgramInformation programInformation,
+              @Nullable UtcTimingElement utcTiming,
+              @Nullable ServiceDescriptionElement serviceDescription,
+              @Nullable Uri location,
+              List<Period> periods) {
+            return super.buildMediaPresentationDescription(
+                availabilityStartTime,
+                durationMs,
+                /* minBufferTimeMs= */ 1234,
+                dynamic,
+                minUpdateTimeMs,
+                timeShiftBufferDepthMs,
+                suggestedPresentationDelayMs,
+                publishTimeMs,
+                programInformation,
+                utcTiming,
+                serviceDescription,
+                location,
+                periods);
+          }
+        };
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/a/b/test.mpd"),
+            TestUtil.getInputStream(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION));
+
+    assertThat(manifest.minBufferTimeMs).isEqualTo(1234);
+    assertThat(manifest.id).isEqualTo("live");
+    assertThat(manifest.patchLocation.uri)
+        .isEqualTo(Uri.parse("https://example.com/a/b/patch.mpp"));
+  }
+
   @Test
   public void parseMediaPresentationDescription_images() throws IOException {
     DashManifestParser parser = new DashManifestParser();
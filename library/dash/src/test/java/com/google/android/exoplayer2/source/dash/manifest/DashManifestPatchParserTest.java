@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link DashManifestPatchParser}. */
+@RunWith(AndroidJUnit4.class)
+public final class DashManifestPatchParserTest {
+
+  private static final String SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION =
+      "media/mpd/sample_mpd_live_with_patch_location";
+  private static final String SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION_PATCH =
+      "media/mpd/sample_mpd_live_with_patch_location_patch";
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/live/manifest.mpd");
+  private static final Uri PATCH_URI = Uri.parse("https://example.com/live/patch.mpp");
+  private static final String TIMELINE_SELECTOR =
+      "/MPD/Period[@id='0']/AdaptationSet[@id='0']/SegmentTemplate/SegmentTimeline";
+
+  private DashManifest manifest;
+
+  @Before
+  public void setUp() throws IOException {
+    manifest =
+        new DashManifestParser()
+            .parse(
+                MANIFEST_URI,
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(),
+                    SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION));
+  }
+
+  @Test
+  public void parse_withAddedSegmentTimelineElement_appendsSegmentToAllRepresentations()
+      throws IOException {
+    DashManifest patchedManifest =
+        new DashManifestPatchParser(manifest)
+            .parse(
+                PATCH_URI,
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(),
+                    SAMPLE_MPD_LIVE_WITH_PATCH_LOCATION_PATCH));
+
+    assertThat(patchedManifest.publishTimeMs)
+        .isEqualTo(Util.parseXsDateTime("2023-01-01T00:00:22Z"));
+    assertThat(patchedManifest.id).isEqualTo("live");
+    assertThat(patchedManifest.patchLocation).isSameInstanceAs(manifest.patchLocation);
+    assertThat(patchedManifest.minUpdatePeriodMs).isEqualTo(2_000);
+    for (int i = 0; i < 2; i++) {
+      DashSegmentIndex index = getSegmentIndex(patchedManifest, /* representationIndex= */ i);
+      assertThat(index.getFirstSegmentNum()).isEqualTo(1);
+      assertThat(index.getSegmentCount(C.TIME_UNSET)).isEqualTo(11);
+      assertThat(index.getTimeUs(/* segmentNum= */ 11)).isEqualTo(20_000_000);
+      assertThat(index.getDurationUs(/* segmentNum= */ 11, C.TIME_UNSET)).isEqualTo(2_000_000);
+    }
+    // The original manifest is unchanged.
+    DashSegmentIndex originalIndex = getSegmentIndex(manifest, /* representationIndex= */ 0);
+    assertThat(originalIndex.getSegmentCount(C.TIME_UNSET)).isEqualTo(10);
+  }
+
+  @Test
+  public void parse_withRemovedSegmentTimelineElement_removesSegmentsAndUpdatesStartNumber()
+      throws IOException {
+    DashManifest patchedManifest =
+        applyPatch(
+            "<add sel=\""
+                + TIMELINE_SELECTOR
+                + "\"><S t=\"20000\" d=\"1000\" r=\"1\"/></add>"
+                + "<remove sel=\""
+                + TIMELINE_SELECTOR
+                + "/S[1]\"/>"
+                + "<replace sel=\"/MPD/Period[@id='0']/AdaptationSet[@id='0']/SegmentTemplate"
+                + "/@startNumber\">11</replace>");
+
+    DashSegmentIndex index = getSegmentIndex(patchedManifest, /* representationIndex= */ 1);
+    assertThat(index.getFirstSegmentNum()).isEqualTo(11);
+    assertThat(index.getSegmentCount(C.TIME_UNSET)).isEqualTo(2);
+    assertThat(index.getTimeUs(/* segmentNum= */ 11)).isEqualTo(20_000_000);
+    assertThat(index.getTimeUs(/* segmentNum= */ 12)).isEqualTo(21_000_000);
+    assertThat(index.getSegmentNum(/* timeUs= */ 21_500_000, C.TIME_UNSET)).isEqualTo(12);
+  }
+
+  @Test
+  public void parse_withRemovedSElementMergedIntoRun_removesOnlyItsSegments() throws IOException {
+    // The added S elements continue the run of the existing one, and are merged into it.
+    DashManifest patchedManifest =
+        applyPatch(
+            "<add sel=\""
+                + TIMELINE_SELECTOR
+                + "\"><S t=\"20000\" d=\"2000\"/><S d=\"2000\"/></add>"
+                + "<remove sel=\""
+                + TIMELINE_SELECTOR
+                + "/S[2]\"/>");
+
+    DashSegmentIndex index = getSegmentIndex(patchedManifest, /* representationIndex= */ 0);
+    assertThat(index.getSegmentCount(C.TIME_UNSET)).isEqualTo(11);
+    assertThat(index.getTimeUs(/* segmentNum= */ 10)).isEqualTo(18_000_000);
+    assertThat(index.getTimeUs(/* segmentNum= */ 11)).isEqualTo(22_000_000);
+  }
+
+  @Test
+  public void parse_withNegativeRepeatCountFollowedBySElementWithoutTime_throwsParserException() {
+    assertThrows(
+        ParserException.class,
+        () ->
+            applyPatch(
+                "<add sel=\""
+                    + TIMELINE_SELECTOR
+                    + "\"><S t=\"20000\" d=\"1000\" r=\"-1\"/><S d=\"1000\"/></add>"));
+  }
+
+  @Test
+  public void parse_withManifestAttributesAndPatchLocation_updatesManifest() throws IOException {
+    DashManifest patchedManifest =
+        applyPatch(
+            "<add sel=\"/MPD\" type=\"@minimumUpdatePeriod\">PT4S</add>"
+                + "<replace sel=\"/MPD/@timeShiftBufferDepth\">PT30S</replace>"
+                + "<replace sel=\"/MPD/PatchLocation\">"
+                + "<PatchLocation ttl=\"30\">patch.mpp?publishTime=22</PatchLocation>"
+                + "</replace>");
+
+    assertThat(patchedManifest.minUpdatePeriodMs).isEqualTo(4_000);
+    assertThat(patchedManifest.timeShiftBufferDepthMs).isEqualTo(30_000);
+    assertThat(patchedManifest.patchLocation.uri)
+        .isEqualTo(Uri.parse("https://example.com/live/patch.mpp?publishTime=22"));
+    assertThat(patchedManifest.patchLocation.ttlMs).isEqualTo(30_000);
+  }
+
+  @Test
+  public void parse_withRemovedPatchLocationAndStaticType_endsPresentation() throws IOException {
+    DashManifest patchedManifest =
+        applyPatch(
+            "<remove sel=\"/MPD/PatchLocation\"/>"
+                + "<replace sel=\"/MPD/@type\">static</replace>"
+                + "<add sel=\"/MPD\" type=\"@mediaPresentationDuration\">PT20S</add>");
+
+    assertThat(patchedManifest.dynamic).isFalse();
+    assertThat(patchedManifest.durationMs).isEqualTo(20_000);
+    assertThat(patchedManifest.minUpdatePeriodMs).isEqualTo(C.TIME_UNSET);
+    assertThat(patchedManifest.patchLocation).isNull();
+  }
+
+  @Test
+  public void parse_withOtherOriginalPublishTime_throwsParserException() {
+    String patch =
+        "<Patch mpdId=\"live\" originalPublishTime=\"2023-01-01T00:00:18Z\""
+            + " publishTime=\"2023-01-01T00:00:22Z\"/>";
+
+    assertThrows(
+        ParserException.class,
+        () ->
+            new DashManifestPatchParser(manifest)
+                .parse(PATCH_URI, new ByteArrayInputStream(Util.getUtf8Bytes(patch))));
+  }
+
+  @Test
+  public void parse_withAddedPeriod_throwsParserException() {
+    assertThrows(
+        ParserException.class,
+        () -> applyPatch("<add sel=\"/MPD\"><Period id=\"1\" start=\"PT22S\"/></add>"));
+  }
+
+  @Test
+  public void parse_withOverlappingSegmentTimelineElement_throwsParserException() {
+    assertThrows(
+        ParserException.class,
+        () ->
+            applyPatch(
+                "<add sel=\"" + TIMELINE_SELECTOR + "\"><S t=\"18000\" d=\"2000\"/></add>"));
+  }
+
+  @Test
+  public void parse_withDifferentSegmentsInSelectedRepresentations_throwsParserException()
+      throws IOException {
+    manifest =
+        applyPatch(
+            "<add sel=\"/MPD/Period[@id='0']/AdaptationSet[@id='0']/Representation[@id='0']"
+                + "/SegmentTemplate/SegmentTimeline\"><S d=\"2000\"/></add>");
+
+    assertThrows(
+        ParserException.class,
+        () -> applyPatch("<add sel=\"" + TIMELINE_SELECTOR + "\"><S d=\"2000\"/></add>"));
+  }
+
+  /** Applies a patch that keeps the publish time of the manifest, so patches can be chained. */
+  private DashManifest applyPatch(String operations) throws IOException {
+    String patch =
+        "<Patch xmlns=\"urn:mpeg:dash:schema:mpd-patch:2020\" mpdId=\"live\""
+            + " originalPublishTime=\"2023-01-01T00:00:20Z\""
+            + " publishTime=\"2023-01-01T00:00:20Z\">"
+            + operations
+            + "</Patch>";
+    return new DashManifestPatchParser(manifest)
+        .parse(PATCH_URI, new ByteArrayInputStream(Util.getUtf8Bytes(patch)));
+  }
+
+  private static DashSegmentIndex getSegmentIndex(DashManifest manifest, int representationIndex) {
+    return manifest
+        .getPeriod(0)
+        .adaptationSets
+        .get(0)
+        .representations
+        .get(representationIndex)
+        .getIndex();
+  }
+}
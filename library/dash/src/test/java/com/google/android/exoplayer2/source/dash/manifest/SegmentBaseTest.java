@@ -221,4 +221,39 @@ public final class SegmentBaseTest {
             /* periodStartUnixTimeUs= */ C.TIME_UNSET);
     assertThat(segmentTemplate.getSegmentCount(1618875028000000L)).isEqualTo(8994299808L);
   }
+
+  @Test
+  public void getSegmentNum_withSegmentTimeline_resolvesSegmentsAcrossRuns() {
+    SegmentTimeline segmentTimeline =
+        new SegmentTimeline.Builder()
+            .addElements(/* startTime= */ 1000, /* duration= */ 2000, /* count= */ 3)
+            .addElements(/* startTime= */ 8000, /* duration= */ 1000, /* count= */ 2)
+            .build();
+    SegmentBase.SegmentTemplate segmentTemplate =
+        new SegmentBase.SegmentTemplate(
+            /* initialization= */ null,
+            /* timescale= */ 1000,
+            /* presentationTimeOffset= */ 1000,
+            /* startNumber= */ 10,
+            /* endNumber= */ C.INDEX_UNSET,
+            /* duration= */ C.TIME_UNSET,
+            segmentTimeline,
+            /* availabilityTimeOffsetUs= */ C.TIME_UNSET,
+            /* initializationTemplate= */ null,
+            /* mediaTemplate= */ null,
+            /* timeShiftBufferDepthUs= */ C.TIME_UNSET,
+            /* periodStartUnixTimeUs= */ C.TIME_UNSET);
+
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ -1, C.TIME_UNSET)).isEqualTo(10);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 0, C.TIME_UNSET)).isEqualTo(10);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 3_999_999, C.TIME_UNSET)).isEqualTo(11);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 4_000_000, C.TIME_UNSET)).isEqualTo(12);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 6_500_000, C.TIME_UNSET)).isEqualTo(12);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 7_000_000, C.TIME_UNSET)).isEqualTo(13);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ 100_000_000, C.TIME_UNSET))
+        .isEqualTo(14);
+    assertThat(segmentTemplate.getSegmentTimeUs(/* sequenceNumber= */ 14)).isEqualTo(8_000_000);
+    assertThat(segmentTemplate.getSegmentDurationUs(/* sequenceNumber= */ 14, C.TIME_UNSET))
+        .isEqualTo(1_000_000);
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SegmentTimeline}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentTimelineTest {
+
+  @Test
+  public void build_withContiguousElementsOfEqualDuration_mergesRunsAndKeepsSElements() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .addElements(/* startTime= */ 0, /* duration= */ 96000, /* count= */ 2)
+            .addElements(/* startTime= */ 192000, /* duration= */ 96000, /* count= */ 1)
+            .build();
+
+    assertThat(timeline.getRunCount()).isEqualTo(1);
+    assertThat(timeline.getEntryCount()).isEqualTo(2);
+    assertThat(timeline.getEntryFirstIndex(/* entry= */ 1)).isEqualTo(2);
+    assertThat(timeline.getEntryEndIndex(/* entry= */ 1)).isEqualTo(3);
+    assertThat(timeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 96000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 192000, /* duration= */ 96000))
+        .inOrder();
+  }
+
+  @Test
+  public void build_withGapOrDurationChange_startsNewRun() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .addElements(/* startTime= */ 0, /* duration= */ 96000, /* count= */ 2)
+            .addElements(/* startTime= */ 200000, /* duration= */ 96000, /* count= */ 1)
+            .addElements(/* startTime= */ 296000, /* duration= */ 48000, /* count= */ 2)
+            .addElements(/* startTime= */ 392000, /* duration= */ 48000, /* count= */ 0)
+            .build();
+
+    assertThat(timeline.getRunCount()).isEqualTo(3);
+    // The S element without elements keeps its position.
+    assertThat(timeline.getEntryCount()).isEqualTo(4);
+    assertThat(timeline.getEntryFirstIndex(/* entry= */ 3)).isEqualTo(5);
+    assertThat(timeline.getEntryEndIndex(/* entry= */ 3)).isEqualTo(5);
+    assertThat(timeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 96000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 200000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 296000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 344000, /* duration= */ 48000))
+        .inOrder();
+  }
+
+  @Test
+  public void getStartTimeAndDuration_withLongRuns_resolvesElements() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .addElements(/* startTime= */ 1000, /* duration= */ 2000, /* count= */ 100_000)
+            .addElements(/* startTime= */ 200_001_000, /* duration= */ 1000, /* count= */ 100_000)
+            .build();
+
+    assertThat(timeline).hasSize(200_000);
+    assertThat(timeline.getStartTime(0)).isEqualTo(1000);
+    assertThat(timeline.getStartTime(99_999)).isEqualTo(199_999_000);
+    assertThat(timeline.getDuration(99_999)).isEqualTo(2000);
+    assertThat(timeline.getStartTime(100_000)).isEqualTo(200_001_000);
+    assertThat(timeline.getDuration(100_000)).isEqualTo(1000);
+    assertThat(timeline.getStartTime(199_999)).isEqualTo(300_000_000);
+    assertThrows(IndexOutOfBoundsException.class, () -> timeline.getStartTime(200_000));
+  }
+
+  @Test
+  public void buildUpon_appendsRunsToCopyOfTimeline() {
+    SegmentTimeline timeline =
+        new SegmentTimeline.Builder()
+            .addElements(/* startTime= */ 0, /* duration= */ 10, /* count= */ 2)
+            .build();
+
+    SegmentTimeline extendedTimeline =
+        timeline
+            .buildUpon()
+            .addElements(/* startTime= */ 20, /* duration= */ 5, /* count= */ 2)
+            .build();
+
+    assertThat(timeline).hasSize(2);
+    assertThat(extendedTimeline.getRunCount()).isEqualTo(2);
+    assertThat(extendedTimeline.getEntryCount()).isEqualTo(2);
+    assertThat(extendedTimeline.getEndTime()).isEqualTo(30);
+    assertThat(extendedTimeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 10, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 20, /* duration= */ 5),
+            new SegmentTimelineElement(/* startTime= */ 25, /* duration= */ 5))
+        .inOrder();
+  }
+
+  @Test
+  public void copyOf_withElementList_returnsEqualTimeline() {
+    ImmutableList<SegmentTimelineElement> elements =
+        ImmutableList.of(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 10, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 25, /* duration= */ 5),
+            new SegmentTimelineElement(/* startTime= */ 30, /* duration= */ 5));
+
+    SegmentTimeline timeline = SegmentTimeline.copyOf(elements);
+
+    assertThat(timeline).isEqualTo(elements);
+    assertThat(timeline.getRunCount()).isEqualTo(2);
+    assertThat(timeline.getEntryCount()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(SegmentTimeline.copyOf(timeline)).isSameInstanceAs(timeline);
+  }
+}
@@ -34,7 +34,9 @@ import com.google.android.exoplayer2.offline.DownloadException;
 import com.google.android.exoplayer2.offline.DownloadRequest;
 import com.google.android.exoplayer2.offline.Downloader;
 import com.google.android.exoplayer2.offline.DownloaderFactory;
+import com.google.android.exoplayer2.offline.SegmentDownloader;
 import com.google.android.exoplayer2.offline.StreamKey;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
 import com.google.android.exoplayer2.testutil.CacheAsserts.RequestSet;
 import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
@@ -42,6 +44,7 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.PlaceholderDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheBufferPool;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
@@ -154,6 +157,55 @@ public class DashDownloaderTest {
     assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
   }
 
+  @Test
+  public void downloadRepresentationsWithBufferPool_reusesBuffersAcrossDownloads()
+      throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6)
+            .setRandomData("text_segment_1", 1)
+            .setRandomData("text_segment_2", 2)
+            .setRandomData("text_segment_3", 3);
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 1024, /* maxPooledBuffers= */ 2);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(new FakeDataSource.Factory().setFakeDataSet(fakeDataSet));
+
+    new DashDownloader(
+            new MediaItem.Builder()
+                .setUri(TEST_MPD_URI)
+                .setStreamKeys(keysList(new StreamKey(0, 0, 0)))
+                .build(),
+            new DashManifestParser(),
+            cacheDataSourceFactory,
+            /* executor= */ Runnable::run,
+            SegmentDownloader.DEFAULT_MAX_MERGED_SEGMENT_START_TIME_DIFF_MS,
+            bufferPool)
+        .download(progressListener);
+    new DashDownloader(
+            new MediaItem.Builder()
+                .setUri(TEST_MPD_URI)
+                .setStreamKeys(keysList(new StreamKey(0, 1, 0)))
+                .build(),
+            new DashManifestParser(),
+            cacheDataSourceFactory,
+            /* executor= */ Runnable::run,
+            SegmentDownloader.DEFAULT_MAX_MERGED_SEGMENT_START_TIME_DIFF_MS,
+            bufferPool)
+        .download(progressListener);
+
+    assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
+    assertThat(bufferPool.getMissCount()).isEqualTo(1);
+    assertThat(bufferPool.getHitCount()).isGreaterThan(0);
+    assertThat(bufferPool.getPooledBufferCount()).isEqualTo(1);
+  }
+
   @Test
   public void downloadAllRepresentations() throws Exception {
     FakeDataSet fakeDataSet =
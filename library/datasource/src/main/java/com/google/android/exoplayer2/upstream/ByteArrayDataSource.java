@@ -23,6 +23,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A {@link DataSource} for reading from a byte array.
@@ -85,6 +86,23 @@ public final class ByteArrayDataSource extends BaseDataSource {
     return length;
   }
 
+  @Override
+  public int read(ByteBuffer buffer) {
+    int length = buffer.remaining();
+    if (length == 0) {
+      return 0;
+    } else if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+
+    length = min(length, bytesRemaining);
+    buffer.put(data, readPosition, length);
+    readPosition += length;
+    bytesRemaining -= length;
+    bytesTransferred(length);
+    return length;
+  }
+
   @Override
   @Nullable
   public Uri getUri() {
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayDeque;
+
+/**
+ * A bounded pool of equally sized byte arrays, which can be shared by the {@link CacheWriter
+ * CacheWriters} and {@link CacheDataSink CacheDataSinks} that write into a cache so that their
+ * buffers are reused rather than allocated for each instance.
+ *
+ * <p>Buffers are allocated on demand when the pool is empty. At most {@code maxPooledBuffers}
+ * released buffers are retained, and any further buffers that are released are left for the
+ * garbage collector. Instances are thread-safe.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class CacheBufferPool {
+
+  private final int bufferSize;
+  private final int maxPooledBuffers;
+  private final ArrayDeque<byte[]> pooledBuffers;
+
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Creates an instance.
+   *
+   * @param bufferSize The size of each buffer, in bytes.
+   * @param maxPooledBuffers The maximum number of released buffers that are retained for reuse.
+   */
+  public CacheBufferPool(int bufferSize, int maxPooledBuffers) {
+    checkArgument(bufferSize > 0);
+    checkArgument(maxPooledBuffers >= 0);
+    this.bufferSize = bufferSize;
+    this.maxPooledBuffers = maxPooledBuffers;
+    pooledBuffers = new ArrayDeque<>(maxPooledBuffers);
+  }
+
+  /** Returns the size of the buffers in this pool, in bytes. */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Returns a buffer of {@link #getBufferSize()} bytes, which should be returned to the pool by
+   * calling {@link #release(byte[])} when it's no longer used. The content of the buffer is
+   * undefined.
+   */
+  public synchronized byte[] acquire() {
+    @Nullable byte[] buffer = pooledBuffers.pollLast();
+    if (buffer != null) {
+      hitCount++;
+      return buffer;
+    }
+    missCount++;
+    return new byte[bufferSize];
+  }
+
+  /**
+   * Returns a buffer to the pool.
+   *
+   * @param buffer A buffer obtained from {@link #acquire()}, which must not be used after this
+   *     method is called.
+   */
+  public synchronized void release(byte[] buffer) {
+    checkArgument(buffer.length == bufferSize);
+    if (pooledBuffers.size() < maxPooledBuffers) {
+      pooledBuffers.addLast(buffer);
+    }
+  }
+
+  /** Returns the number of calls to {@link #acquire()} that reused a pooled buffer. */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of calls to {@link #acquire()} that allocated a new buffer. */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of buffers currently held by the pool. */
+  public synchronized int getPooledBufferCount() {
+    return pooledBuffers.size();
+  }
+}
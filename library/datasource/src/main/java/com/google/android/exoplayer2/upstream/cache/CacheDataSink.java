@@ -55,6 +55,7 @@ public final class CacheDataSink implements DataSink {
     private @MonotonicNonNull Cache cache;
     private long fragmentSize;
     private int bufferSize;
+    @Nullable private CacheBufferPool bufferPool;
 
     /** Creates an instance. */
     public Factory() {
@@ -110,9 +111,30 @@ public final class CacheDataSink implements DataSink {
       return this;
     }
 
+    /**
+     * Sets a {@link CacheBufferPool} from which the in-memory buffer used when writing to a cache
+     * file is acquired. The buffer is acquired when a sink is opened, and returned to the pool when
+     * it's closed. If set, the value passed to {@link #setBufferSize(int)} is ignored, and buffers
+     * of the pool's buffer size are used.
+     *
+     * <p>The default value is {@code null}.
+     *
+     * @param bufferPool The {@link CacheBufferPool}, or {@code null} to allocate a buffer for each
+     *     sink.
+     * @return This factory.
+     */
+    @CanIgnoreReturnValue
+    public Factory setBufferPool(@Nullable CacheBufferPool bufferPool) {
+      this.bufferPool = bufferPool;
+      return this;
+    }
+
     @Override
     public DataSink createDataSink() {
-      return new CacheDataSink(checkNotNull(cache), fragmentSize, bufferSize);
+      Cache cache = checkNotNull(this.cache);
+      return bufferPool != null
+          ? new CacheDataSink(cache, fragmentSize, bufferPool)
+          : new CacheDataSink(cache, fragmentSize, bufferSize);
     }
   }
 
@@ -135,6 +157,7 @@ public final class CacheDataSink implements DataSink {
   private final Cache cache;
   private final long fragmentSize;
   private final int bufferSize;
+  @Nullable private final CacheBufferPool bufferPool;
 
   @Nullable private DataSpec dataSpec;
   private long dataSpecFragmentSize;
@@ -143,6 +166,7 @@ public final class CacheDataSink implements DataSink {
   private long outputStreamBytesWritten;
   private long dataSpecBytesWritten;
   private @MonotonicNonNull ReusableBufferedOutputStream bufferedOutputStream;
+  @Nullable private byte[] pooledBuffer;
 
   /**
    * Constructs an instance using {@link #DEFAULT_BUFFER_SIZE}.
@@ -169,6 +193,25 @@ public final class CacheDataSink implements DataSink {
    *     value disables buffering.
    */
   public CacheDataSink(Cache cache, long fragmentSize, int bufferSize) {
+    this(cache, fragmentSize, bufferSize, /* bufferPool= */ null);
+  }
+
+  /**
+   * @param cache The cache into which data should be written.
+   * @param fragmentSize For requests that should be fragmented into multiple cache files, this is
+   *     the maximum size of a cache file in bytes. If set to {@link C#LENGTH_UNSET} then no
+   *     fragmentation will occur. Using a small value allows for finer-grained cache eviction
+   *     policies, at the cost of increased overhead both on the cache implementation and the file
+   *     system. Values under {@code (2 * 1024 * 1024)} are not recommended.
+   * @param bufferPool The {@link CacheBufferPool} from which the buffer for writing to a cache file
+   *     is acquired whilst the sink is open.
+   */
+  public CacheDataSink(Cache cache, long fragmentSize, CacheBufferPool bufferPool) {
+    this(cache, fragmentSize, bufferPool.getBufferSize(), bufferPool);
+  }
+
+  private CacheDataSink(
+      Cache cache, long fragmentSize, int bufferSize, @Nullable CacheBufferPool bufferPool) {
     Assertions.checkState(
         fragmentSize > 0 || fragmentSize == C.LENGTH_UNSET,
         "fragmentSize must be positive or C.LENGTH_UNSET.");
@@ -182,6 +225,7 @@ public final class CacheDataSink implements DataSink {
     this.cache = checkNotNull(cache);
     this.fragmentSize = fragmentSize == C.LENGTH_UNSET ? Long.MAX_VALUE : fragmentSize;
     this.bufferSize = bufferSize;
+    this.bufferPool = bufferPool;
   }
 
   @Override
@@ -237,6 +281,11 @@ public final class CacheDataSink implements DataSink {
       closeCurrentOutputStream();
     } catch (IOException e) {
       throw new CacheDataSinkException(e);
+    } finally {
+      if (pooledBuffer != null) {
+        checkNotNull(bufferPool).release(pooledBuffer);
+        pooledBuffer = null;
+      }
     }
   }
 
@@ -249,7 +298,18 @@ public final class CacheDataSink implements DataSink {
         cache.startFile(
             castNonNull(dataSpec.key), dataSpec.position + dataSpecBytesWritten, length);
     FileOutputStream underlyingFileOutputStream = new FileOutputStream(file);
-    if (bufferSize > 0) {
+    if (bufferPool != null) {
+      if (pooledBuffer == null) {
+        pooledBuffer = bufferPool.acquire();
+      }
+      if (bufferedOutputStream == null) {
+        bufferedOutputStream =
+            new ReusableBufferedOutputStream(underlyingFileOutputStream, pooledBuffer);
+      } else {
+        bufferedOutputStream.reset(underlyingFileOutputStream, pooledBuffer);
+      }
+      outputStream = bufferedOutputStream;
+    } else if (bufferSize > 0) {
       if (bufferedOutputStream == null) {
         bufferedOutputStream =
             new ReusableBufferedOutputStream(underlyingFileOutputStream, bufferSize);
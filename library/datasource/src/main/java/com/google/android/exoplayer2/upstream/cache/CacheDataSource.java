@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.upstream.cache;
 
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.ElementType.LOCAL_VARIABLE;
@@ -40,7 +41,9 @@ import com.google.android.exoplayer2.upstream.TeeDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.common.base.Supplier;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.io.IOException;
 import java.io.InterruptedIOException;
@@ -48,9 +51,12 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -79,10 +85,16 @@ public final class CacheDataSource implements DataSource {
     private int upstreamPriority;
     private @CacheDataSource.Flags int flags;
     @Nullable private CacheDataSource.EventListener eventListener;
+    private long maxCachedGapLength;
+    private long maxCoalescedRequestLength;
+    private long readAheadLength;
+    @Nullable private Executor readAheadExecutor;
+    private final Statistics statistics;
 
     public Factory() {
       cacheReadDataSourceFactory = new FileDataSource.Factory();
       cacheKeyFactory = CacheKeyFactory.DEFAULT;
+      statistics = new Statistics();
     }
 
     /**
@@ -255,6 +267,60 @@ public final class CacheDataSource implements DataSource {
       return this;
     }
 
+    /**
+     * Sets whether requests to upstream for data that's not cached should be extended to also fill
+     * any further holes in the cache, provided the cached data between the holes is short enough
+     * that re-reading it from upstream is cheaper than making an additional upstream request. The
+     * data read from upstream that's already cached is returned to the caller, but isn't written to
+     * the cache again.
+     *
+     * <p>Coalescing only applies to requests of known length, and only to holes that aren't being
+     * written by another {@link CacheDataSource} at the time of the request.
+     *
+     * <p>The default is {@code 0} for both parameters, which disables coalescing.
+     *
+     * @param maxCachedGapLength The maximum length of cached data between two holes for them to be
+     *     requested from upstream together, in bytes.
+     * @param maxCoalescedRequestLength The maximum length of an upstream request that's extended to
+     *     fill further holes, in bytes.
+     * @return This factory.
+     */
+    @CanIgnoreReturnValue
+    public Factory setUpstreamRequestCoalescing(
+        long maxCachedGapLength, long maxCoalescedRequestLength) {
+      Assertions.checkArgument(maxCachedGapLength >= 0 && maxCoalescedRequestLength >= 0);
+      this.maxCachedGapLength = maxCachedGapLength;
+      this.maxCoalescedRequestLength = maxCoalescedRequestLength;
+      return this;
+    }
+
+    /**
+     * Sets whether data following each request of known length should be read ahead into the
+     * cache, so that it's already cached when it's requested.
+     *
+     * <p>Data is read ahead on the given {@link Executor} using a {@link CacheWriter}, and only if
+     * it's not already fully cached. Read ahead requires the cache to be writable and an upstream
+     * {@link DataSource.Factory} to be set.
+     *
+     * <p>The default is {@code 0}, which disables read ahead.
+     *
+     * @param readAheadLength The number of bytes to read ahead, or {@code 0} to disable read ahead.
+     * @param readAheadExecutor The {@link Executor} on which data is read ahead.
+     * @return This factory.
+     */
+    @CanIgnoreReturnValue
+    public Factory setReadAhead(long readAheadLength, Executor readAheadExecutor) {
+      Assertions.checkArgument(readAheadLength >= 0);
+      this.readAheadLength = readAheadLength;
+      this.readAheadExecutor = readAheadExecutor;
+      return this;
+    }
+
+    /** Returns the {@link Statistics} that are shared by all instances created by this factory. */
+    public Statistics getStatistics() {
+      return statistics;
+    }
+
     @Override
     public CacheDataSource createDataSource() {
       return createDataSourceInternal(
@@ -302,6 +368,15 @@ public final class CacheDataSource implements DataSource {
 
     private CacheDataSource createDataSourceInternal(
         @Nullable DataSource upstreamDataSource, @Flags int flags, int upstreamPriority) {
+      return createDataSourceInternal(
+          upstreamDataSource, flags, upstreamPriority, /* allowReadAhead= */ true);
+    }
+
+    private CacheDataSource createDataSourceInternal(
+        @Nullable DataSource upstreamDataSource,
+        @Flags int flags,
+        int upstreamPriority,
+        boolean allowReadAhead) {
       Cache cache = checkNotNull(this.cache);
       @Nullable DataSink cacheWriteDataSink;
       if (cacheIsReadOnly || upstreamDataSource == null) {
@@ -320,7 +395,51 @@ public final class CacheDataSource implements DataSource {
           flags,
           upstreamPriorityTaskManager,
           upstreamPriority,
-          eventListener);
+          eventListener,
+          maxCachedGapLength,
+          maxCoalescedRequestLength,
+          allowReadAhead ? readAheadLength : 0,
+          allowReadAhead ? readAheadExecutor : null,
+          allowReadAhead ? this::createDataSourceForReadAhead : null,
+          statistics);
+    }
+
+    private CacheDataSource createDataSourceForReadAhead() {
+      return createDataSourceInternal(
+          upstreamDataSourceFactory != null ? upstreamDataSourceFactory.createDataSource() : null,
+          flags | FLAG_BLOCK_ON_CACHE,
+          upstreamPriority,
+          /* allowReadAhead= */ false);
+    }
+  }
+
+  /**
+   * Counters describing the upstream requests saved by coalescing, and the data read ahead into the
+   * cache. Instances are thread-safe, and are shared by all {@link CacheDataSource} instances
+   * created by the same {@link Factory}.
+   */
+  public static final class Statistics {
+
+    private final AtomicLong upstreamRequestsSaved;
+    private final AtomicLong bytesPrefetched;
+
+    /** Creates an instance with all counters set to zero. */
+    public Statistics() {
+      upstreamRequestsSaved = new AtomicLong();
+      bytesPrefetched = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of upstream requests that were avoided by requesting several holes in the
+     * cache from upstream together.
+     */
+    public long getUpstreamRequestsSaved() {
+      return upstreamRequestsSaved.get();
+    }
+
+    /** Returns the number of bytes that were read ahead into the cache. */
+    public long getBytesPrefetched() {
+      return bytesPrefetched.get();
     }
   }
 
@@ -399,15 +518,25 @@ public final class CacheDataSource implements DataSource {
   /** Cache ignored due to a request with an unset length. */
   public static final int CACHE_IGNORED_REASON_UNSET_LENGTH = 1;
 
+  private static final String TAG = "CacheDataSource";
+
   /** Minimum number of bytes to read before checking cache for availability. */
   private static final long MIN_READ_BEFORE_CHECKING_CACHE = 100 * 1024;
 
   private final Cache cache;
   private final DataSource cacheReadDataSource;
   @Nullable private final DataSource cacheWriteDataSource;
+  @Nullable private final CoalescingTeeDataSource coalescingCacheWriteDataSource;
   private final DataSource upstreamDataSource;
   private final CacheKeyFactory cacheKeyFactory;
   @Nullable private final EventListener eventListener;
+  private final long maxCachedGapLength;
+  private final long maxCoalescedRequestLength;
+  private final long readAheadLength;
+  @Nullable private final Executor readAheadExecutor;
+  @Nullable private final Supplier<CacheDataSource> readAheadDataSourceSupplier;
+  private final Statistics statistics;
+  private final List<CacheSpan> coalescedHoleSpans;
 
   private final boolean blockOnCache;
   private final boolean ignoreCacheOnError;
@@ -523,7 +652,13 @@ public final class CacheDataSource implements DataSource {
         flags,
         /* upstreamPriorityTaskManager= */ null,
         /* upstreamPriority= */ C.PRIORITY_PLAYBACK,
-        eventListener);
+        eventListener,
+        /* maxCachedGapLength= */ 0,
+        /* maxCoalescedRequestLength= */ 0,
+        /* readAheadLength= */ 0,
+        /* readAheadExecutor= */ null,
+        /* readAheadDataSourceSupplier= */ null,
+        new Statistics());
   }
 
   private CacheDataSource(
@@ -535,7 +670,13 @@ public final class CacheDataSource implements DataSource {
       @Flags int flags,
       @Nullable PriorityTaskManager upstreamPriorityTaskManager,
       int upstreamPriority,
-      @Nullable EventListener eventListener) {
+      @Nullable EventListener eventListener,
+      long maxCachedGapLength,
+      long maxCoalescedRequestLength,
+      long readAheadLength,
+      @Nullable Executor readAheadExecutor,
+      @Nullable Supplier<CacheDataSource> readAheadDataSourceSupplier,
+      Statistics statistics) {
     this.cache = cache;
     this.cacheReadDataSource = cacheReadDataSource;
     this.cacheKeyFactory = cacheKeyFactory != null ? cacheKeyFactory : CacheKeyFactory.DEFAULT;
@@ -554,11 +695,23 @@ public final class CacheDataSource implements DataSource {
           cacheWriteDataSink != null
               ? new TeeDataSource(upstreamDataSource, cacheWriteDataSink)
               : null;
+      this.coalescingCacheWriteDataSource =
+          cacheWriteDataSink != null && maxCoalescedRequestLength > 0
+              ? new CoalescingTeeDataSource(upstreamDataSource, cacheWriteDataSink)
+              : null;
     } else {
       this.upstreamDataSource = PlaceholderDataSource.INSTANCE;
       this.cacheWriteDataSource = null;
+      this.coalescingCacheWriteDataSource = null;
     }
     this.eventListener = eventListener;
+    this.maxCachedGapLength = maxCachedGapLength;
+    this.maxCoalescedRequestLength = maxCoalescedRequestLength;
+    this.readAheadLength = readAheadLength;
+    this.readAheadExecutor = readAheadExecutor;
+    this.readAheadDataSourceSupplier = readAheadDataSourceSupplier;
+    this.statistics = statistics;
+    coalescedHoleSpans = new ArrayList<>();
   }
 
   /** Returns the {@link Cache} used by this instance. */
@@ -571,6 +724,11 @@ public final class CacheDataSource implements DataSource {
     return cacheKeyFactory;
   }
 
+  /** Returns the {@link Statistics} to which this instance contributes. */
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public void addTransferListener(TransferListener transferListener) {
     checkNotNull(transferListener);
@@ -614,6 +772,9 @@ public final class CacheDataSource implements DataSource {
       if (bytesRemaining > 0 || bytesRemaining == C.LENGTH_UNSET) {
         openNextSource(requestDataSpec, false);
       }
+      if (readAheadLength > 0 && !currentRequestIgnoresCache && dataSpec.length != C.LENGTH_UNSET) {
+        maybeReadAhead(requestDataSpec);
+      }
       return dataSpec.length != C.LENGTH_UNSET ? dataSpec.length : bytesRemaining;
     } catch (Throwable e) {
       handleBeforeThrow(e);
@@ -760,9 +921,16 @@ public final class CacheDataSource implements DataSource {
           length = min(length, bytesRemaining);
         }
       }
+      if (coalescingCacheWriteDataSource != null
+          && length != C.LENGTH_UNSET
+          && bytesRemaining != C.LENGTH_UNSET) {
+        length = coalesceHoles(key, length);
+      }
       nextDataSpec =
           requestDataSpec.buildUpon().setPosition(readPosition).setLength(length).build();
-      if (cacheWriteDataSource != null) {
+      if (!coalescedHoleSpans.isEmpty()) {
+        nextDataSource = checkNotNull(coalescingCacheWriteDataSource);
+      } else if (cacheWriteDataSource != null) {
         nextDataSource = cacheWriteDataSource;
       } else {
         nextDataSource = upstreamDataSource;
@@ -786,8 +954,9 @@ public final class CacheDataSource implements DataSource {
         closeCurrentSource();
       } catch (Throwable e) {
         if (castNonNull(nextSpan).isHoleSpan()) {
-          // Release the hole span before throwing, else we'll hold it forever.
+          // Release the hole spans before throwing, else we'll hold them forever.
           cache.releaseHoleSpan(nextSpan);
+          releaseCoalescedHoleSpans();
         }
         throw e;
       }
@@ -817,6 +986,106 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  /**
+   * Locks further holes that follow the hole at {@link #readPosition}, so that they can be filled
+   * by the same upstream request, and sets up {@link #coalescingCacheWriteDataSource} to write
+   * them into the cache. The locked holes are added to {@link #coalescedHoleSpans}.
+   *
+   * @param key The cache key.
+   * @param holeLength The length of the hole at {@link #readPosition}.
+   * @return The length of the upstream request, which is {@code holeLength} if no further holes
+   *     were locked.
+   */
+  private long coalesceHoles(String key, long holeLength) throws CacheException {
+    long requestEndPosition = readPosition + min(bytesRemaining, maxCoalescedRequestLength);
+    long position = readPosition + holeLength;
+    while (position < requestEndPosition) {
+      long cachedLength = cache.getCachedLength(key, position, requestEndPosition - position);
+      if (cachedLength <= 0 || cachedLength > maxCachedGapLength) {
+        break;
+      }
+      long holePosition = position + cachedLength;
+      if (holePosition >= requestEndPosition) {
+        break;
+      }
+      @Nullable
+      CacheSpan holeSpan =
+          cache.startReadWriteNonBlocking(key, holePosition, requestEndPosition - holePosition);
+      if (holeSpan == null || holeSpan.isCached) {
+        // The hole is being written by someone else, or was filled since it was queried.
+        break;
+      }
+      coalescedHoleSpans.add(holeSpan);
+      position =
+          holeSpan.isOpenEnded()
+              ? requestEndPosition
+              : min(holeSpan.position + holeSpan.length, requestEndPosition);
+    }
+    if (coalescedHoleSpans.isEmpty()) {
+      return holeLength;
+    }
+    CoalescingTeeDataSource coalescingCacheWriteDataSource =
+        checkNotNull(this.coalescingCacheWriteDataSource);
+    coalescingCacheWriteDataSource.clearWriteRanges();
+    coalescingCacheWriteDataSource.addWriteRange(readPosition, holeLength);
+    for (int i = 0; i < coalescedHoleSpans.size(); i++) {
+      CacheSpan holeSpan = coalescedHoleSpans.get(i);
+      long holeEndPosition =
+          holeSpan.isOpenEnded()
+              ? requestEndPosition
+              : min(holeSpan.position + holeSpan.length, requestEndPosition);
+      coalescingCacheWriteDataSource.addWriteRange(
+          holeSpan.position, holeEndPosition - holeSpan.position);
+    }
+    statistics.upstreamRequestsSaved.addAndGet(coalescedHoleSpans.size());
+    return position - readPosition;
+  }
+
+  private void releaseCoalescedHoleSpans() {
+    for (int i = 0; i < coalescedHoleSpans.size(); i++) {
+      cache.releaseHoleSpan(coalescedHoleSpans.get(i));
+    }
+    coalescedHoleSpans.clear();
+  }
+
+  /**
+   * Reads the data that follows the request ahead into the cache on {@link #readAheadExecutor},
+   * unless it's already cached.
+   */
+  private void maybeReadAhead(DataSpec requestDataSpec) {
+    if (readAheadExecutor == null || readAheadDataSourceSupplier == null) {
+      return;
+    }
+    String key = castNonNull(requestDataSpec.key);
+    long position = requestDataSpec.position + requestDataSpec.length;
+    long length = readAheadLength;
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+    if (contentLength != C.LENGTH_UNSET) {
+      length = min(length, max(0, contentLength - position));
+    }
+    if (length == 0 || cache.isCached(key, position, length)) {
+      return;
+    }
+    DataSpec readAheadDataSpec =
+        requestDataSpec.buildUpon().setPosition(position).setLength(length).build();
+    CacheDataSource readAheadDataSource = readAheadDataSourceSupplier.get();
+    readAheadExecutor.execute(
+        () -> {
+          CacheWriter cacheWriter =
+              new CacheWriter(
+                  readAheadDataSource,
+                  readAheadDataSpec,
+                  /* temporaryBuffer= */ null,
+                  (requestLength, bytesCached, newBytesCached) ->
+                      statistics.bytesPrefetched.addAndGet(newBytesCached));
+          try {
+            cacheWriter.cache();
+          } catch (IOException e) {
+            Log.w(TAG, "Failed to read ahead into the cache", e);
+          }
+        });
+  }
+
   private void setNoBytesRemainingAndMaybeStoreLength(String key) throws IOException {
     bytesRemaining = 0;
     if (isWritingToCache()) {
@@ -844,7 +1113,8 @@ public final class CacheDataSource implements DataSource {
   }
 
   private boolean isWritingToCache() {
-    return currentDataSource == cacheWriteDataSource;
+    return currentDataSource == cacheWriteDataSource
+        || (currentDataSource != null && currentDataSource == coalescingCacheWriteDataSource);
   }
 
   private void closeCurrentSource() throws IOException {
@@ -860,6 +1130,7 @@ public final class CacheDataSource implements DataSource {
         cache.releaseHoleSpan(currentHoleSpan);
         currentHoleSpan = null;
       }
+      releaseCoalescedHoleSpans();
     }
   }
 
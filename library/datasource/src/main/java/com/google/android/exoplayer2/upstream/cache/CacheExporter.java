@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Util.castNonNull;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.C;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies cached resources out of a {@link Cache}, either to a file or into another {@link Cache},
+ * by transferring data directly between the cache's span files using {@link FileChannel}. This
+ * avoids copying the data through a {@link CacheDataSource} and an intermediate buffer, allowing
+ * the operating system to perform the copy without it passing through the Java heap.
+ *
+ * <p>All methods may be slow and shouldn't be called on the main thread.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class CacheExporter {
+
+  /**
+   * Writes a fully cached resource to a file.
+   *
+   * @param cache The cache containing the resource.
+   * @param key The cache key of the resource.
+   * @param file The file to write. Any existing file is overwritten.
+   * @return The number of bytes written.
+   * @throws IOException If the length of the resource isn't known, if the resource isn't fully
+   *     cached, or if an error occurs reading the cache or writing the file.
+   */
+  @WorkerThread
+  public static long exportToFile(Cache cache, String key, File file) throws IOException {
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+    if (contentLength == C.LENGTH_UNSET) {
+      throw new IOException("Content length unknown: " + key);
+    }
+    if (!cache.isCached(key, /* position= */ 0, contentLength)) {
+      throw new IOException("Resource not fully cached: " + key);
+    }
+    List<CacheSpan> spans = new ArrayList<>(cache.getCachedSpans(key));
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      FileChannel outputChannel = outputStream.getChannel();
+      for (int i = 0; i < spans.size(); i++) {
+        CacheSpan span = spans.get(i);
+        if (span.position >= contentLength) {
+          break;
+        }
+        long length = Math.min(span.length, contentLength - span.position);
+        try (FileInputStream inputStream = new FileInputStream(castNonNull(span.file))) {
+          transfer(inputStream.getChannel(), outputChannel, span.position, length);
+        }
+      }
+      outputStream.getFD().sync();
+    }
+    return contentLength;
+  }
+
+  /**
+   * Copies the cached data and content metadata of a resource from one cache to another. Only data
+   * that's cached in {@code source} and isn't already cached in {@code destination} is copied, so
+   * a partially cached resource can be copied, and a copy that was interrupted can be resumed.
+   *
+   * <p>Ranges that are locked for writing in {@code destination} are skipped.
+   *
+   * @param source The cache from which the resource is copied.
+   * @param destination The cache into which the resource is copied.
+   * @param key The cache key of the resource.
+   * @return The number of bytes copied.
+   * @throws IOException If an error occurs reading from {@code source} or writing to {@code
+   *     destination}.
+   */
+  @WorkerThread
+  public static long copy(Cache source, Cache destination, String key) throws IOException {
+    copyContentMetadata(source, destination, key);
+    long bytesCopied = 0;
+    List<CacheSpan> spans = new ArrayList<>(source.getCachedSpans(key));
+    for (int i = 0; i < spans.size(); i++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedIOException();
+      }
+      CacheSpan span = spans.get(i);
+      long position = span.position;
+      long endPosition = span.position + span.length;
+      while (position < endPosition) {
+        @Nullable
+        CacheSpan destinationSpan =
+            destination.startReadWriteNonBlocking(key, position, endPosition - position);
+        if (destinationSpan == null) {
+          // The range is being written by someone else. Skip to the end of the span.
+          break;
+        }
+        // A cached span may start before the current position, so its length is measured from the
+        // position.
+        long length =
+            destinationSpan.isOpenEnded()
+                ? endPosition - position
+                : Math.min(
+                    destinationSpan.position + destinationSpan.length - position,
+                    endPosition - position);
+        if (destinationSpan.isCached) {
+          // Skip data that's already cached in the destination.
+          position += length;
+          continue;
+        }
+        try {
+          copySpanRange(span, destination, key, position, length);
+        } finally {
+          destination.releaseHoleSpan(destinationSpan);
+        }
+        position += length;
+        bytesCopied += length;
+      }
+    }
+    return bytesCopied;
+  }
+
+  private static void copySpanRange(
+      CacheSpan sourceSpan, Cache destination, String key, long position, long length)
+      throws IOException {
+    File file = destination.startFile(key, position, length);
+    boolean committed = false;
+    try {
+      try (FileInputStream inputStream = new FileInputStream(castNonNull(sourceSpan.file));
+          FileOutputStream outputStream = new FileOutputStream(file)) {
+        FileChannel outputChannel = outputStream.getChannel();
+        inputStream.getChannel().position(position - sourceSpan.position);
+        transfer(inputStream.getChannel(), outputChannel, /* outputPosition= */ 0, length);
+        outputStream.getFD().sync();
+      }
+      destination.commitFile(file, length);
+      committed = true;
+    } finally {
+      if (!committed) {
+        file.delete();
+      }
+    }
+  }
+
+  private static void copyContentMetadata(Cache source, Cache destination, String key)
+      throws IOException {
+    ContentMetadata contentMetadata = source.getContentMetadata(key);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    if (contentMetadata instanceof DefaultContentMetadata) {
+      for (Map.Entry<String, byte[]> entry :
+          ((DefaultContentMetadata) contentMetadata).entrySet()) {
+        mutations.set(entry.getKey(), entry.getValue());
+      }
+    } else {
+      long contentLength = ContentMetadata.getContentLength(contentMetadata);
+      if (contentLength != C.LENGTH_UNSET) {
+        ContentMetadataMutations.setContentLength(mutations, contentLength);
+      }
+      @Nullable Uri redirectedUri = ContentMetadata.getRedirectedUri(contentMetadata);
+      if (redirectedUri != null) {
+        ContentMetadataMutations.setRedirectedUri(mutations, redirectedUri);
+      }
+    }
+    if (!mutations.getEditedValues().isEmpty()) {
+      destination.applyContentMetadataMutations(key, mutations);
+    }
+  }
+
+  /**
+   * Transfers {@code length} bytes from the current position of {@code input} to {@code output},
+   * starting at {@code outputPosition}.
+   */
+  private static void transfer(
+      FileChannel input, FileChannel output, long outputPosition, long length) throws IOException {
+    long bytesTransferred = 0;
+    while (bytesTransferred < length) {
+      long count =
+          output.transferFrom(input, outputPosition + bytesTransferred, length - bytesTransferred);
+      if (count <= 0) {
+        // transferFrom returns 0 if the input has fewer bytes than expected.
+        throw new IOException("Unexpected end of cache file");
+      }
+      bytesTransferred += count;
+    }
+  }
+
+  private CacheExporter() {}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A manifest of the spans held by a {@link SimpleCache}, written when the cache is released so that
+ * the next instance can be initialized without listing and parsing the name of every cache file.
+ *
+ * <p>The manifest is only valid for a single initialization. It's deleted as soon as it's loaded,
+ * so that a manifest can never describe a cache that has since been modified. A manifest that's
+ * missing, corrupt, written for a different cache UID or that references content that's not in the
+ * {@link CachedContentIndex} is rejected, in which case the cache directory must be scanned.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class CacheSpanManifest {
+
+  /* package */ static final String FILE_NAME = "cached_span_manifest.exm";
+
+  private static final int VERSION = 1;
+
+  private final File cacheDir;
+  private final AtomicFile atomicFile;
+
+  /**
+   * Creates an instance.
+   *
+   * @param cacheDir The cache directory, in which the manifest is stored.
+   */
+  public CacheSpanManifest(File cacheDir) {
+    this.cacheDir = cacheDir;
+    atomicFile = new AtomicFile(new File(cacheDir, FILE_NAME));
+  }
+
+  /** Returns whether the manifest exists. */
+  public boolean exists() {
+    return atomicFile.exists();
+  }
+
+  /** Deletes the manifest. */
+  public void delete() {
+    atomicFile.delete();
+  }
+
+  /**
+   * Writes the manifest, replacing any existing manifest.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param uid The cache UID.
+   * @param contents The {@link CachedContent CachedContents} whose spans should be written.
+   * @throws IOException If an error occurs writing the manifest.
+   */
+  @WorkerThread
+  public void store(long uid, Collection<CachedContent> contents) throws IOException {
+    int spanCount = 0;
+    for (CachedContent cachedContent : contents) {
+      spanCount += cachedContent.getSpans().size();
+    }
+    OutputStream outputStream = atomicFile.startWrite();
+    CheckedOutputStream checkedOutputStream =
+        new CheckedOutputStream(new BufferedOutputStream(outputStream), new CRC32());
+    DataOutputStream output = new DataOutputStream(checkedOutputStream);
+    output.writeInt(VERSION);
+    output.writeLong(uid);
+    output.writeInt(spanCount);
+    for (CachedContent cachedContent : contents) {
+      for (SimpleCacheSpan span : cachedContent.getSpans()) {
+        File file = span.file;
+        @Nullable File parent = file.getParentFile();
+        output.writeUTF(parent == null || parent.equals(cacheDir) ? "" : parent.getName());
+        output.writeUTF(file.getName());
+        output.writeLong(span.length);
+        output.writeLong(span.lastTouchTimestamp);
+      }
+    }
+    output.writeInt((int) checkedOutputStream.getChecksum().getValue());
+    atomicFile.endWrite(output);
+  }
+
+  /**
+   * Loads and then deletes the manifest.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param uid The cache UID, which must match the UID for which the manifest was written.
+   * @param index The initialized content index, used to resolve the keys of the spans.
+   * @return The spans in the manifest, or {@code null} if the manifest doesn't exist or was
+   *     rejected.
+   */
+  @WorkerThread
+  @Nullable
+  public List<SimpleCacheSpan> loadAndDelete(long uid, CachedContentIndex index) {
+    if (!atomicFile.exists()) {
+      return null;
+    }
+    @Nullable List<SimpleCacheSpan> spans = read(uid, index);
+    atomicFile.delete();
+    // If the manifest can't be deleted, it would be stale by the time it's next loaded.
+    return atomicFile.exists() ? null : spans;
+  }
+
+  @Nullable
+  private List<SimpleCacheSpan> read(long uid, CachedContentIndex index) {
+    @Nullable DataInputStream input = null;
+    try {
+      CheckedInputStream checkedInputStream =
+          new CheckedInputStream(new BufferedInputStream(atomicFile.openRead()), new CRC32());
+      input = new DataInputStream(checkedInputStream);
+      int version = input.readInt();
+      if (version != VERSION || input.readLong() != uid) {
+        return null;
+      }
+      int spanCount = input.readInt();
+      if (spanCount < 0) {
+        return null;
+      }
+      List<SimpleCacheSpan> spans = new ArrayList<>(spanCount);
+      for (int i = 0; i < spanCount; i++) {
+        String directoryName = input.readUTF();
+        String fileName = input.readUTF();
+        long length = input.readLong();
+        long lastTouchTimestamp = input.readLong();
+        File directory = directoryName.isEmpty() ? cacheDir : new File(cacheDir, directoryName);
+        @Nullable
+        SimpleCacheSpan span =
+            SimpleCacheSpan.createCacheEntry(
+                new File(directory, fileName), length, lastTouchTimestamp, index);
+        if (span == null) {
+          // The manifest isn't consistent with the content index.
+          return null;
+        }
+        spans.add(span);
+      }
+      int checksum = (int) checkedInputStream.getChecksum().getValue();
+      if (input.readInt() != checksum || input.read() != -1) {
+        return null;
+      }
+      return spans;
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.C;
@@ -58,7 +60,8 @@ public final class CacheWriter {
   private final Cache cache;
   private final DataSpec dataSpec;
   private final String cacheKey;
-  private final byte[] temporaryBuffer;
+  @Nullable private final byte[] temporaryBuffer;
+  @Nullable private final CacheBufferPool bufferPool;
   @Nullable private final ProgressListener progressListener;
 
   private long nextPosition;
@@ -79,11 +82,34 @@ public final class CacheWriter {
       DataSpec dataSpec,
       @Nullable byte[] temporaryBuffer,
       @Nullable ProgressListener progressListener) {
+    this(dataSource, dataSpec, temporaryBuffer, progressListener, /* bufferPool= */ null);
+  }
+
+  /**
+   * @param dataSource A {@link CacheDataSource} that writes to the target cache.
+   * @param dataSpec Defines the data to be written.
+   * @param temporaryBuffer A temporary buffer to be used during caching, or {@code null} if the
+   *     writer should obtain its temporary buffer from {@code bufferPool}, or instantiate its own
+   *     internal temporary buffer if {@code bufferPool} is also {@code null}.
+   * @param progressListener An optional progress listener.
+   * @param bufferPool An optional {@link CacheBufferPool} from which a temporary buffer is acquired
+   *     for the duration of each call to {@link #cache()}, if {@code temporaryBuffer} is {@code
+   *     null}.
+   */
+  public CacheWriter(
+      CacheDataSource dataSource,
+      DataSpec dataSpec,
+      @Nullable byte[] temporaryBuffer,
+      @Nullable ProgressListener progressListener,
+      @Nullable CacheBufferPool bufferPool) {
     this.dataSource = dataSource;
     this.cache = dataSource.getCache();
     this.dataSpec = dataSpec;
     this.temporaryBuffer =
-        temporaryBuffer == null ? new byte[DEFAULT_BUFFER_SIZE_BYTES] : temporaryBuffer;
+        temporaryBuffer == null && bufferPool == null
+            ? new byte[DEFAULT_BUFFER_SIZE_BYTES]
+            : temporaryBuffer;
+    this.bufferPool = bufferPool;
     this.progressListener = progressListener;
     cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
     nextPosition = dataSpec.position;
@@ -128,18 +154,32 @@ public final class CacheWriter {
       progressListener.onProgress(getLength(), bytesCached, /* newBytesCached= */ 0);
     }
 
-    while (endPosition == C.INDEX_UNSET || nextPosition < endPosition) {
-      throwIfCanceled();
-      long maxRemainingLength =
-          endPosition == C.INDEX_UNSET ? Long.MAX_VALUE : endPosition - nextPosition;
-      long blockLength = cache.getCachedLength(cacheKey, nextPosition, maxRemainingLength);
-      if (blockLength > 0) {
-        nextPosition += blockLength;
-      } else {
-        // There's a hole of length -blockLength.
-        blockLength = -blockLength;
-        long nextRequestLength = blockLength == Long.MAX_VALUE ? C.LENGTH_UNSET : blockLength;
-        nextPosition += readBlockToCache(nextPosition, nextRequestLength);
+    @Nullable byte[] pooledBuffer = null;
+    try {
+      while (endPosition == C.INDEX_UNSET || nextPosition < endPosition) {
+        throwIfCanceled();
+        long maxRemainingLength =
+            endPosition == C.INDEX_UNSET ? Long.MAX_VALUE : endPosition - nextPosition;
+        long blockLength = cache.getCachedLength(cacheKey, nextPosition, maxRemainingLength);
+        if (blockLength > 0) {
+          nextPosition += blockLength;
+        } else {
+          // There's a hole of length -blockLength.
+          blockLength = -blockLength;
+          long nextRequestLength = blockLength == Long.MAX_VALUE ? C.LENGTH_UNSET : blockLength;
+          byte[] buffer = temporaryBuffer;
+          if (buffer == null) {
+            if (pooledBuffer == null) {
+              pooledBuffer = checkNotNull(bufferPool).acquire();
+            }
+            buffer = pooledBuffer;
+          }
+          nextPosition += readBlockToCache(nextPosition, nextRequestLength, buffer);
+        }
+      }
+    } finally {
+      if (pooledBuffer != null) {
+        checkNotNull(bufferPool).release(pooledBuffer);
       }
     }
   }
@@ -149,10 +189,11 @@ public final class CacheWriter {
    *
    * @param position The starting position of the block.
    * @param length The length of the block, or {@link C#LENGTH_UNSET} if unbounded.
+   * @param buffer The buffer into which data is read before it's written to the cache.
    * @return The number of bytes read.
    * @throws IOException If an error occurs reading the data or writing it to the cache.
    */
-  private long readBlockToCache(long position, long length) throws IOException {
+  private long readBlockToCache(long position, long length, byte[] buffer) throws IOException {
     boolean isLastBlock = position + length == endPosition || length == C.LENGTH_UNSET;
 
     long resolvedLength = C.LENGTH_UNSET;
@@ -192,7 +233,7 @@ public final class CacheWriter {
       int bytesRead = 0;
       while (bytesRead != C.RESULT_END_OF_INPUT) {
         throwIfCanceled();
-        bytesRead = dataSource.read(temporaryBuffer, /* offset= */ 0, temporaryBuffer.length);
+        bytesRead = dataSource.read(buffer, /* offset= */ 0, buffer.length);
         if (bytesRead != C.RESULT_END_OF_INPUT) {
           onNewBytesCached(bytesRead);
           totalBytesRead += bytesRead;
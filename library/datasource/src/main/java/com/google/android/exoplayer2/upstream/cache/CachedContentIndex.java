@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.upstream.cache;
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Assertions.checkState;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import android.annotation.SuppressLint;
@@ -43,7 +44,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -57,6 +60,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -79,6 +83,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   /* package */ static final String FILE_NAME_ATOMIC = "cached_content_index.exi";
 
+  /* package */ static final String FILE_NAME_JOURNAL = FILE_NAME_ATOMIC + ".journal";
+
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
 
   private final HashMap<String, CachedContent> keyToContent;
@@ -192,6 +198,33 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /**
+   * Creates an instance that uses journal storage, which appends changes to a log that's compacted
+   * periodically rather than rewriting the whole index whenever it's stored.
+   *
+   * <p>Any existing index in database or legacy storage is migrated into journal storage when the
+   * index is first initialized.
+   *
+   * @param journalStorageDir The directory in which the journal is stored. Any unencrypted legacy
+   *     storage in this directory is migrated.
+   * @param databaseProvider Provides the database from which any existing index is migrated, or
+   *     {@code null} to migrate from legacy storage instead.
+   */
+  public CachedContentIndex(File journalStorageDir, @Nullable DatabaseProvider databaseProvider) {
+    keyToContent = new HashMap<>();
+    idToKey = new SparseArray<>();
+    removedIds = new SparseBooleanArray();
+    newIds = new SparseBooleanArray();
+    storage = new JournalStorage(new File(journalStorageDir, FILE_NAME_JOURNAL));
+    previousStorage =
+        databaseProvider != null
+            ? new DatabaseStorage(databaseProvider)
+            : new LegacyStorage(
+                new File(journalStorageDir, FILE_NAME_ATOMIC),
+                /* secretKey= */ null,
+                /* encrypt= */ false);
+  }
+
   /**
    * Loads the index data for the given cache UID.
    *
@@ -751,6 +784,272 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /**
+   * {@link Storage} implementation that appends mutation records to a journal file, so that the
+   * cost of {@link #storeIncremental(HashMap)} is proportional to the number of changes rather than
+   * to the size of the index.
+   *
+   * <p>The journal consists of a header followed by a sequence of records. Each record is framed by
+   * its length and a CRC32 checksum, so that a record that was only partially written (e.g. because
+   * the process was killed whilst appending) can be detected and discarded when the journal is
+   * replayed. The journal is compacted by rewriting it through an {@link AtomicFile} containing one
+   * record per {@link CachedContent} once it accumulates too many superseded records.
+   */
+  private static final class JournalStorage implements Storage {
+
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_TYPE_UPDATE = 0;
+    private static final byte RECORD_TYPE_REMOVE = 1;
+
+    /** The minimum number of records in the journal before it's considered for compaction. */
+    private static final int MIN_RECORD_COUNT_FOR_COMPACTION = 1024;
+    /**
+     * The journal is compacted when its record count exceeds this multiple of the number of {@link
+     * CachedContent CachedContents} in the index.
+     */
+    private static final int COMPACTION_RECORD_COUNT_FACTOR = 2;
+
+    /** The maximum length of a single record, used to detect corrupt record lengths. */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final AtomicFile atomicFile;
+    private final File file;
+    private final SparseArray<@NullableType CachedContent> pendingUpdates;
+    private final ByteArrayOutputStream recordOutputStream;
+    private final CRC32 crc32;
+
+    private int recordCount;
+    private boolean compactionRequired;
+
+    public JournalStorage(File file) {
+      this.file = file;
+      atomicFile = new AtomicFile(file);
+      pendingUpdates = new SparseArray<>();
+      recordOutputStream = new ByteArrayOutputStream();
+      crc32 = new CRC32();
+      // The journal is written in full on the first store unless a valid journal is loaded.
+      compactionRequired = true;
+    }
+
+    @Override
+    public void initialize(long uid) {
+      // Do nothing. Journal storage uses a separate file for each cache.
+    }
+
+    @Override
+    public boolean exists() {
+      return atomicFile.exists();
+    }
+
+    @Override
+    public void delete() {
+      atomicFile.delete();
+      pendingUpdates.clear();
+      recordCount = 0;
+      compactionRequired = true;
+    }
+
+    @Override
+    public void load(
+        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+      checkState(pendingUpdates.size() == 0);
+      if (!atomicFile.exists()) {
+        return;
+      }
+      SparseArray<CachedContent> idToContent = new SparseArray<>();
+      if (!replay(idToContent)) {
+        atomicFile.delete();
+        recordCount = 0;
+        compactionRequired = true;
+        return;
+      }
+      for (int i = 0; i < idToContent.size(); i++) {
+        CachedContent cachedContent = idToContent.valueAt(i);
+        content.put(cachedContent.key, cachedContent);
+        idToKey.put(cachedContent.id, cachedContent.key);
+      }
+      if (recordCount > getCompactionThreshold(idToContent.size())) {
+        compactionRequired = true;
+      }
+    }
+
+    @Override
+    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+      recordOutputStream.reset();
+      DataOutputStream output = new DataOutputStream(recordOutputStream);
+      output.writeInt(VERSION);
+      output.writeInt(/* flags= */ 0);
+      for (CachedContent cachedContent : content.values()) {
+        writeUpdateRecord(cachedContent, output);
+      }
+      OutputStream outputStream = atomicFile.startWrite();
+      recordOutputStream.writeTo(outputStream);
+      atomicFile.endWrite(outputStream);
+      recordCount = content.size();
+      compactionRequired = false;
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+      if (pendingUpdates.size() == 0 && !compactionRequired) {
+        return;
+      }
+      if (compactionRequired
+          || recordCount + pendingUpdates.size() > getCompactionThreshold(content.size())) {
+        storeFully(content);
+        return;
+      }
+      recordOutputStream.reset();
+      DataOutputStream output = new DataOutputStream(recordOutputStream);
+      for (int i = 0; i < pendingUpdates.size(); i++) {
+        @Nullable CachedContent cachedContent = pendingUpdates.valueAt(i);
+        if (cachedContent == null) {
+          writeRemoveRecord(pendingUpdates.keyAt(i), output);
+        } else {
+          writeUpdateRecord(cachedContent, output);
+        }
+      }
+      try (FileOutputStream outputStream = new FileOutputStream(file, /* append= */ true)) {
+        recordOutputStream.writeTo(outputStream);
+        outputStream.flush();
+        outputStream.getFD().sync();
+      } catch (IOException e) {
+        // The journal may now end with a partially written record. Rewrite it on the next store.
+        compactionRequired = true;
+        throw e;
+      }
+      recordCount += pendingUpdates.size();
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void onUpdate(CachedContent cachedContent) {
+      pendingUpdates.put(cachedContent.id, cachedContent);
+    }
+
+    @Override
+    public void onRemove(CachedContent cachedContent, boolean neverStored) {
+      if (neverStored) {
+        pendingUpdates.delete(cachedContent.id);
+      } else {
+        pendingUpdates.put(cachedContent.id, null);
+      }
+    }
+
+    /**
+     * Replays the journal into {@code idToContent}.
+     *
+     * <p>Replay stops at the first truncated or corrupt record, in which case the journal is
+     * compacted on the next store so that subsequently appended records are not lost behind the
+     * corrupt one.
+     *
+     * @return Whether the journal header could be read. If false, the journal should be deleted.
+     */
+    private boolean replay(SparseArray<CachedContent> idToContent) {
+      recordCount = 0;
+      compactionRequired = false;
+      @Nullable DataInputStream input = null;
+      try {
+        input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+        int version;
+        try {
+          version = input.readInt();
+          input.readInt(); // flags
+        } catch (IOException e) {
+          return false;
+        }
+        if (version != VERSION) {
+          return false;
+        }
+        byte[] record = Util.EMPTY_BYTE_ARRAY;
+        while (true) {
+          int length;
+          try {
+            length = input.readInt();
+          } catch (EOFException e) {
+            // Clean end of the journal.
+            return true;
+          }
+          if (length <= 0 || length > MAX_RECORD_LENGTH) {
+            compactionRequired = true;
+            return true;
+          }
+          if (record.length < length) {
+            record = new byte[length];
+          }
+          input.readFully(record, 0, length);
+          int checksum = input.readInt();
+          crc32.reset();
+          crc32.update(record, 0, length);
+          if ((int) crc32.getValue() != checksum) {
+            compactionRequired = true;
+            return true;
+          }
+          applyRecord(
+              new DataInputStream(new ByteArrayInputStream(record, 0, length)), idToContent);
+          recordCount++;
+        }
+      } catch (IOException e) {
+        // A truncated record, or a record whose payload could not be parsed.
+        compactionRequired = true;
+        return true;
+      } finally {
+        Util.closeQuietly(input);
+      }
+    }
+
+    private static void applyRecord(
+        DataInputStream input, SparseArray<CachedContent> idToContent) throws IOException {
+      byte type = input.readByte();
+      int id = input.readInt();
+      switch (type) {
+        case RECORD_TYPE_UPDATE:
+          String key = input.readUTF();
+          DefaultContentMetadata metadata = readContentMetadata(input);
+          idToContent.put(id, new CachedContent(id, key, metadata));
+          break;
+        case RECORD_TYPE_REMOVE:
+          idToContent.remove(id);
+          break;
+        default:
+          throw new IOException("Unexpected record type: " + type);
+      }
+    }
+
+    private void writeUpdateRecord(CachedContent cachedContent, DataOutputStream output)
+        throws IOException {
+      ByteArrayOutputStream payloadOutputStream = new ByteArrayOutputStream();
+      DataOutputStream payload = new DataOutputStream(payloadOutputStream);
+      payload.writeByte(RECORD_TYPE_UPDATE);
+      payload.writeInt(cachedContent.id);
+      payload.writeUTF(cachedContent.key);
+      writeContentMetadata(cachedContent.getMetadata(), payload);
+      writeRecord(payloadOutputStream.toByteArray(), output);
+    }
+
+    private void writeRemoveRecord(int id, DataOutputStream output) throws IOException {
+      ByteArrayOutputStream payloadOutputStream = new ByteArrayOutputStream(/* size= */ 5);
+      DataOutputStream payload = new DataOutputStream(payloadOutputStream);
+      payload.writeByte(RECORD_TYPE_REMOVE);
+      payload.writeInt(id);
+      writeRecord(payloadOutputStream.toByteArray(), output);
+    }
+
+    private void writeRecord(byte[] payload, DataOutputStream output) throws IOException {
+      crc32.reset();
+      crc32.update(payload, 0, payload.length);
+      output.writeInt(payload.length);
+      output.write(payload);
+      output.writeInt((int) crc32.getValue());
+    }
+
+    private static int getCompactionThreshold(int contentCount) {
+      return max(MIN_RECORD_COUNT_FOR_COMPACTION, COMPACTION_RECORD_COUNT_FACTOR * contentCount);
+    }
+  }
+
   /** {@link Storage} implementation that uses an SQL database. */
   private static final class DatabaseStorage implements Storage {
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSink;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a single range from upstream and tees only the parts of it that fall within a set of write
+ * ranges into a {@link DataSink}. Used by {@link CacheDataSource} to fill several cache holes, and
+ * the small cached gaps between them, with a single upstream request.
+ *
+ * <p>Each write range is written to the sink using a separate {@link DataSpec}, so that the sink
+ * sees the same sequence of calls as it would if each range had been requested individually.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class CoalescingTeeDataSource implements DataSource {
+
+  private final DataSource upstream;
+  private final DataSink dataSink;
+  private final List<long[]> writeRanges;
+
+  @Nullable private DataSpec dataSpec;
+  private long readPosition;
+  private long bytesRemaining;
+  private int writeRangeIndex;
+  private boolean dataSinkNeedsClosing;
+
+  /**
+   * @param upstream The upstream {@link DataSource}.
+   * @param dataSink The {@link DataSink} into which data within the write ranges is written.
+   */
+  public CoalescingTeeDataSource(DataSource upstream, DataSink dataSink) {
+    this.upstream = checkNotNull(upstream);
+    this.dataSink = checkNotNull(dataSink);
+    writeRanges = new ArrayList<>();
+  }
+
+  /** Removes all write ranges. Must not be called whilst the source is open. */
+  public void clearWriteRanges() {
+    writeRanges.clear();
+  }
+
+  /**
+   * Adds a range of the next {@link DataSpec} to be opened that should be written to the sink.
+   * Ranges must be added in increasing order of position, and must not overlap.
+   *
+   * @param position The position of the range in the resource.
+   * @param length The length of the range.
+   */
+  public void addWriteRange(long position, long length) {
+    checkArgument(length > 0);
+    if (!writeRanges.isEmpty()) {
+      long[] lastRange = writeRanges.get(writeRanges.size() - 1);
+      checkArgument(position >= lastRange[0] + lastRange[1]);
+    }
+    writeRanges.add(new long[] {position, length});
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    checkNotNull(transferListener);
+    upstream.addTransferListener(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    checkArgument(dataSpec.length != C.LENGTH_UNSET);
+    this.dataSpec = dataSpec;
+    readPosition = dataSpec.position;
+    writeRangeIndex = 0;
+    bytesRemaining = upstream.open(dataSpec);
+    return bytesRemaining;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int bytesRead = upstream.read(buffer, offset, length);
+    if (bytesRead > 0) {
+      writeToSink(buffer, offset, bytesRead);
+      readPosition += bytesRead;
+      if (bytesRemaining != C.LENGTH_UNSET) {
+        bytesRemaining -= bytesRead;
+      }
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    return upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    dataSpec = null;
+    try {
+      upstream.close();
+    } finally {
+      if (dataSinkNeedsClosing) {
+        dataSinkNeedsClosing = false;
+        dataSink.close();
+      }
+    }
+  }
+
+  private void writeToSink(byte[] buffer, int offset, int length) throws IOException {
+    long position = readPosition;
+    long endPosition = readPosition + length;
+    while (position < endPosition && writeRangeIndex < writeRanges.size()) {
+      long[] writeRange = writeRanges.get(writeRangeIndex);
+      long rangeStart = writeRange[0];
+      long rangeEnd = rangeStart + writeRange[1];
+      if (rangeStart >= endPosition) {
+        // The next write range starts after the data that was read.
+        return;
+      }
+      if (!dataSinkNeedsClosing) {
+        // Data before the start of the range is already cached, and isn't written.
+        position = max(position, rangeStart);
+        DataSpec dataSpec = checkNotNull(this.dataSpec);
+        dataSink.open(dataSpec.subrange(rangeStart - dataSpec.position, writeRange[1]));
+        dataSinkNeedsClosing = true;
+      }
+      int bytesToWrite = (int) (min(endPosition, rangeEnd) - position);
+      dataSink.write(buffer, offset + (int) (position - readPosition), bytesToWrite);
+      position += bytesToWrite;
+      if (position == rangeEnd) {
+        dataSinkNeedsClosing = false;
+        dataSink.close();
+        writeRangeIndex++;
+      }
+    }
+  }
+}
@@ -0,0 +1,1061 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.SUBDIRECTORY_COUNT;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.UID_FILE_SUFFIX;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.createCacheDirectories;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.createUid;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.loadUid;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.lockFolder;
+import static com.google.android.exoplayer2.upstream.cache.SimpleCache.unlockFolder;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import com.google.android.exoplayer2.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Cache} implementation equivalent to {@link SimpleCache}, but which allows operations on
+ * different keys to proceed concurrently.
+ *
+ * <p>{@link SimpleCache} serializes every operation on a single monitor. This implementation
+ * instead guards each {@link CachedContent} with one of a fixed number of striped locks, selected
+ * by the hash of its key. The content index, the {@link CacheEvictor} and {@link
+ * Cache.Listener listeners} are coordinated separately:
+ *
+ * <ul>
+ *   <li>Structural changes to the content index, and writes to the persisted index, are guarded by
+ *       a dedicated lock that is only held briefly and never while acquiring a key lock.
+ *   <li>Evictor events are queued whilst the key lock is held, and are dispatched to the evictor
+ *       one at a time after the key lock has been released. The evictor is therefore never called
+ *       concurrently, and may call {@link #removeSpan(CacheSpan)} for any key.
+ *   <li>Listeners are notified whilst the lock for their key is held, so notifications for a given
+ *       key remain serial and in order. Listeners must not call into the cache for other keys.
+ * </ul>
+ *
+ * <p>Stale spans (i.e. spans whose underlying files have been modified or deleted) are detected
+ * and removed per key, rather than by scanning the whole cache as {@link SimpleCache} does.
+ *
+ * <p>The on-disk format is identical to that of {@link SimpleCache}, and the two implementations
+ * can be used interchangeably for the same cache directory, although only one instance of either
+ * is allowed for a given directory at a given time.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class ConcurrentSimpleCache implements Cache {
+
+  /** The default number of locks across which keys are striped. */
+  public static final int DEFAULT_LOCK_STRIPE_COUNT = 32;
+
+  private static final String TAG = "ConcurrentSimpleCache";
+
+  private final File cacheDir;
+  private final CacheEvictor evictor;
+  private final Random random;
+  private final boolean touchCacheSpans;
+  private final ReentrantLock[] keyLocks;
+  private final Condition[] keyLockConditions;
+  private final ConcurrentHashMap<String, CachedContent> contents;
+  private final ConcurrentHashMap<String, ArrayList<Listener>> listeners;
+  private final AtomicLong totalSpace;
+  private final ConditionVariable initializationCondition;
+
+  private final Object indexLock;
+
+  @GuardedBy("indexLock")
+  private final CachedContentIndex contentIndex;
+
+  @GuardedBy("indexLock")
+  @Nullable
+  private final CacheFileMetadataIndex fileIndex;
+
+  private final ReentrantLock evictorLock;
+  private final ConcurrentLinkedQueue<Runnable> pendingEvictorEvents;
+
+  private volatile long uid;
+  private volatile boolean initialized;
+  private volatile boolean released;
+  @Nullable private volatile CacheException initializationException;
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the directory. Hence
+   * the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored.
+   */
+  public ConcurrentSimpleCache(
+      File cacheDir, CacheEvictor evictor, DatabaseProvider databaseProvider) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        /* legacyIndexSecretKey= */ null,
+        /* legacyIndexEncrypt= */ false,
+        /* preferLegacyIndex= */ false,
+        DEFAULT_LOCK_STRIPE_COUNT);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param lockStripeCount The number of locks across which keys are striped. Operations on keys
+   *     that map to the same lock are serialized.
+   */
+  public ConcurrentSimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      int lockStripeCount) {
+    this(
+        cacheDir,
+        evictor,
+        new CachedContentIndex(
+            databaseProvider,
+            cacheDir,
+            legacyIndexSecretKey,
+            legacyIndexEncrypt,
+            preferLegacyIndex),
+        databaseProvider != null && !preferLegacyIndex
+            ? new CacheFileMetadataIndex(databaseProvider)
+            : null,
+        lockStripeCount);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * <p>When {@code useJournalIndex} is {@code true} the cache index is stored in an append-only
+   * journal in the cache directory, which is compacted periodically. Storing the index then takes
+   * time proportional to the number of changes since it was last stored, rather than to the size
+   * of the index. Any existing database or legacy index is migrated into the journal.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which cache file metadata is stored, and the
+   *     cache index if {@code useJournalIndex} is {@code false}. May be {@code null}, in which case
+   *     the legacy index is used if {@code useJournalIndex} is {@code false}.
+   * @param useJournalIndex Whether to store the cache index in an append-only journal.
+   * @param lockStripeCount The number of locks across which keys are striped. Operations on keys
+   *     that map to the same lock are serialized.
+   */
+  public ConcurrentSimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      boolean useJournalIndex,
+      int lockStripeCount) {
+    this(
+        cacheDir,
+        evictor,
+        useJournalIndex
+            ? new CachedContentIndex(cacheDir, databaseProvider)
+            : new CachedContentIndex(
+                databaseProvider,
+                cacheDir,
+                /* legacyStorageSecretKey= */ null,
+                /* legacyStorageEncrypt= */ false,
+                /* preferLegacyStorage= */ false),
+        databaseProvider != null ? new CacheFileMetadataIndex(databaseProvider) : null,
+        lockStripeCount);
+  }
+
+  /* package */ ConcurrentSimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      int lockStripeCount) {
+    Assertions.checkArgument(lockStripeCount > 0);
+    if (!lockFolder(cacheDir)) {
+      throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
+    }
+
+    this.cacheDir = cacheDir;
+    this.evictor = evictor;
+    this.contentIndex = contentIndex;
+    this.fileIndex = fileIndex;
+    random = new Random();
+    touchCacheSpans = evictor.requiresCacheSpanTouches();
+    keyLocks = new ReentrantLock[lockStripeCount];
+    keyLockConditions = new Condition[lockStripeCount];
+    for (int i = 0; i < lockStripeCount; i++) {
+      keyLocks[i] = new ReentrantLock();
+      keyLockConditions[i] = keyLocks[i].newCondition();
+    }
+    contents = new ConcurrentHashMap<>();
+    listeners = new ConcurrentHashMap<>();
+    totalSpace = new AtomicLong();
+    initializationCondition = new ConditionVariable();
+    indexLock = new Object();
+    evictorLock = new ReentrantLock();
+    pendingEvictorEvents = new ConcurrentLinkedQueue<>();
+    uid = UID_UNSET;
+
+    // Start cache initialization. Operations block until the index has been loaded.
+    new Thread("ExoPlayer:ConcurrentSimpleCacheInit") {
+      @Override
+      public void run() {
+        initialize();
+        evictorLock.lock();
+        try {
+          initialized = true;
+          initializationCondition.open();
+          dispatchPendingEvictorEvents();
+          ConcurrentSimpleCache.this.evictor.onCacheInitialized();
+        } finally {
+          evictorLock.unlock();
+        }
+        dispatchPendingEvictorEvents();
+      }
+    }.start();
+  }
+
+  /**
+   * Checks whether the cache was initialized successfully.
+   *
+   * @throws CacheException If an error occurred during initialization.
+   */
+  public void checkInitialization() throws CacheException {
+    blockUntilInitialized();
+    @Nullable CacheException initializationException = this.initializationException;
+    if (initializationException != null) {
+      throw initializationException;
+    }
+  }
+
+  @Override
+  public long getUid() {
+    blockUntilInitialized();
+    return uid;
+  }
+
+  @Override
+  public void release() {
+    if (released) {
+      return;
+    }
+    blockUntilInitialized();
+    lockAllKeys();
+    try {
+      if (released) {
+        return;
+      }
+      listeners.clear();
+      for (CachedContent cachedContent : new ArrayList<>(contents.values())) {
+        removeStaleSpans(cachedContent);
+      }
+      try {
+        synchronized (indexLock) {
+          contentIndex.store();
+        }
+      } catch (IOException e) {
+        Log.e(TAG, "Storing index file failed", e);
+      } finally {
+        unlockFolder(cacheDir);
+        released = true;
+      }
+    } finally {
+      unlockAllKeys();
+    }
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    Assertions.checkState(!released);
+    Assertions.checkNotNull(key);
+    Assertions.checkNotNull(listener);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable ArrayList<Listener> listenersForKey = listeners.get(key);
+      if (listenersForKey == null) {
+        listenersForKey = new ArrayList<>();
+        listeners.put(key, listenersForKey);
+      }
+      listenersForKey.add(listener);
+      return getCachedSpansInternal(key);
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeListener(String key, Listener listener) {
+    if (released) {
+      return;
+    }
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable ArrayList<Listener> listenersForKey = listeners.get(key);
+      if (listenersForKey != null) {
+        listenersForKey.remove(listener);
+        if (listenersForKey.isEmpty()) {
+          listeners.remove(key);
+        }
+      }
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      return getCachedSpansInternal(key);
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    return new HashSet<>(contents.keySet());
+  }
+
+  @Override
+  public long getCacheSpace() {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    return totalSpace.get();
+  }
+
+  @Override
+  public CacheSpan startReadWrite(String key, long position, long length)
+      throws InterruptedException, CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    int keyLockIndex = getKeyLockIndex(key);
+    ReentrantLock keyLock = keyLocks[keyLockIndex];
+    keyLock.lockInterruptibly();
+    try {
+      while (true) {
+        @Nullable CacheSpan span = startReadWriteInternal(key, position, length);
+        if (span != null) {
+          return span;
+        } else {
+          // Lock not available. We'll be signalled when a span is added for a key sharing this
+          // key lock, or when a locked span for such a key is released.
+          keyLockConditions[keyLockIndex].await();
+        }
+      }
+    } finally {
+      keyLock.unlock();
+      dispatchPendingEvictorEvents();
+    }
+  }
+
+  @Override
+  @Nullable
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+      throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      return startReadWriteInternal(key, position, length);
+    } finally {
+      keyLock.unlock();
+      dispatchPendingEvictorEvents();
+    }
+  }
+
+  @Override
+  public File startFile(String key, long position, long length) throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    int id;
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      CachedContent cachedContent = Assertions.checkNotNull(contents.get(key));
+      Assertions.checkState(cachedContent.isFullyLocked(position, length));
+      id = cachedContent.id;
+      if (!cacheDir.exists()) {
+        // The cache directory has been deleted from underneath us. Recreate it, and remove
+        // in-memory spans for this key that correspond to cache files that no longer exist. Stale
+        // spans for other keys are removed when they're next accessed.
+        createCacheDirectories(cacheDir);
+        removeStaleSpans(cachedContent);
+      }
+    } finally {
+      keyLock.unlock();
+    }
+
+    evictorLock.lock();
+    try {
+      dispatchPendingEvictorEvents();
+      evictor.onStartFile(this, key, position, length);
+    } finally {
+      evictorLock.unlock();
+    }
+    dispatchPendingEvictorEvents();
+
+    // Randomly distribute files into subdirectories with a uniform distribution.
+    File cacheSubDir = new File(cacheDir, Integer.toString(random.nextInt(SUBDIRECTORY_COUNT)));
+    if (!cacheSubDir.exists()) {
+      createCacheDirectories(cacheSubDir);
+    }
+    long lastTouchTimestamp = System.currentTimeMillis();
+    return SimpleCacheSpan.getCacheFile(cacheSubDir, id, position, lastTouchTimestamp);
+  }
+
+  @Override
+  public void commitFile(File file, long length) throws CacheException {
+    Assertions.checkState(!released);
+    if (!file.exists()) {
+      return;
+    }
+    if (length == 0) {
+      file.delete();
+      return;
+    }
+
+    SimpleCacheSpan span;
+    synchronized (indexLock) {
+      span = Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
+    }
+    ReentrantLock keyLock = getKeyLock(span.key);
+    keyLock.lock();
+    try {
+      CachedContent cachedContent = Assertions.checkNotNull(contents.get(span.key));
+      Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
+
+      // Check if the span conflicts with the set content length
+      long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
+      if (contentLength != C.LENGTH_UNSET) {
+        Assertions.checkState((span.position + span.length) <= contentLength);
+      }
+
+      synchronized (indexLock) {
+        if (fileIndex != null) {
+          String fileName = file.getName();
+          try {
+            fileIndex.set(fileName, span.length, span.lastTouchTimestamp);
+          } catch (IOException e) {
+            throw new CacheException(e);
+          }
+        }
+      }
+      addSpan(span);
+      synchronized (indexLock) {
+        try {
+          contentIndex.store();
+        } catch (IOException e) {
+          throw new CacheException(e);
+        }
+      }
+      signalKeyLock(span.key);
+    } finally {
+      keyLock.unlock();
+      dispatchPendingEvictorEvents();
+    }
+  }
+
+  @Override
+  public void releaseHoleSpan(CacheSpan holeSpan) {
+    Assertions.checkState(!released);
+    ReentrantLock keyLock = getKeyLock(holeSpan.key);
+    keyLock.lock();
+    try {
+      CachedContent cachedContent = Assertions.checkNotNull(contents.get(holeSpan.key));
+      cachedContent.unlockRange(holeSpan.position);
+      maybeRemoveContent(cachedContent.key);
+      signalKeyLock(holeSpan.key);
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeResource(String key) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      for (CacheSpan span : getCachedSpansInternal(key)) {
+        removeSpanInternal(span);
+      }
+    } finally {
+      keyLock.unlock();
+      dispatchPendingEvictorEvents();
+    }
+  }
+
+  @Override
+  public void removeSpan(CacheSpan span) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(span.key);
+    keyLock.lock();
+    try {
+      removeSpanInternal(span);
+    } finally {
+      keyLock.unlock();
+      dispatchPendingEvictorEvents();
+    }
+  }
+
+  @Override
+  public boolean isCached(String key, long position, long length) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable CachedContent cachedContent = contents.get(key);
+      return cachedContent != null
+          && cachedContent.getCachedBytesLength(position, length) >= length;
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public long getCachedLength(String key, long position, long length) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    if (length == C.LENGTH_UNSET) {
+      length = Long.MAX_VALUE;
+    }
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable CachedContent cachedContent = contents.get(key);
+      return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public long getCachedBytes(String key, long position, long length) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    long endPosition = length == C.LENGTH_UNSET ? Long.MAX_VALUE : position + length;
+    if (endPosition < 0) {
+      // The calculation rolled over (length is probably Long.MAX_VALUE).
+      endPosition = Long.MAX_VALUE;
+    }
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable CachedContent cachedContent = contents.get(key);
+      if (cachedContent == null) {
+        return 0;
+      }
+      long currentPosition = position;
+      long cachedBytes = 0;
+      while (currentPosition < endPosition) {
+        long maxRemainingLength = endPosition - currentPosition;
+        long blockLength = cachedContent.getCachedBytesLength(currentPosition, maxRemainingLength);
+        if (blockLength > 0) {
+          cachedBytes += blockLength;
+        } else {
+          // There's a hole of length -blockLength.
+          blockLength = -blockLength;
+        }
+        currentPosition += blockLength;
+      }
+      return cachedBytes;
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations)
+      throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      synchronized (indexLock) {
+        contentIndex.applyContentMetadataMutations(key, mutations);
+        contents.put(key, Assertions.checkNotNull(contentIndex.get(key)));
+        try {
+          contentIndex.store();
+        } catch (IOException e) {
+          throw new CacheException(e);
+        }
+      }
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  @Override
+  public ContentMetadata getContentMetadata(String key) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    ReentrantLock keyLock = getKeyLock(key);
+    keyLock.lock();
+    try {
+      @Nullable CachedContent cachedContent = contents.get(key);
+      return cachedContent != null ? cachedContent.getMetadata() : DefaultContentMetadata.EMPTY;
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  /**
+   * Ensures that the cache's in-memory representation has been initialized. Called on the
+   * initialization thread without holding any locks, before any other thread is allowed to access
+   * the cache.
+   */
+  @SuppressWarnings("GuardedBy") // Other threads are blocked until initialization completes.
+  private void initialize() {
+    if (!cacheDir.exists()) {
+      try {
+        createCacheDirectories(cacheDir);
+      } catch (CacheException e) {
+        initializationException = e;
+        return;
+      }
+    }
+
+    @Nullable File[] files = cacheDir.listFiles();
+    if (files == null) {
+      String message = "Failed to list cache directory files: " + cacheDir;
+      Log.e(TAG, message);
+      initializationException = new CacheException(message);
+      return;
+    }
+
+    long uid = loadUid(files);
+    if (uid == UID_UNSET) {
+      try {
+        uid = createUid(cacheDir);
+      } catch (IOException e) {
+        String message = "Failed to create cache UID: " + cacheDir;
+        Log.e(TAG, message, e);
+        initializationException = new CacheException(message, e);
+        return;
+      }
+    }
+    this.uid = uid;
+
+    try {
+      contentIndex.initialize(uid);
+      for (CachedContent cachedContent : contentIndex.getAll()) {
+        contents.put(cachedContent.key, cachedContent);
+      }
+      if (fileIndex != null) {
+        fileIndex.initialize(uid);
+        Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
+        loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
+        fileIndex.removeAll(fileMetadata.keySet());
+      } else {
+        loadDirectory(cacheDir, /* isRoot= */ true, files, /* fileMetadata= */ null);
+      }
+    } catch (IOException e) {
+      String message = "Failed to initialize cache indices: " + cacheDir;
+      Log.e(TAG, message, e);
+      initializationException = new CacheException(message, e);
+      return;
+    }
+
+    contentIndex.removeEmpty();
+    contents.clear();
+    for (CachedContent cachedContent : contentIndex.getAll()) {
+      contents.put(cachedContent.key, cachedContent);
+    }
+    try {
+      contentIndex.store();
+    } catch (IOException e) {
+      Log.e(TAG, "Storing index file failed", e);
+    }
+  }
+
+  /**
+   * Loads a cache directory. If the root directory is passed, also loads any subdirectories.
+   *
+   * @param directory The directory.
+   * @param isRoot Whether the directory is the root directory.
+   * @param files The files belonging to the directory.
+   * @param fileMetadata A mutable map containing cache file metadata, keyed by file name. The map
+   *     is modified by removing entries for all loaded files. When the method call returns, the map
+   *     will contain only metadata that was unused. May be null if no file metadata is available.
+   */
+  @SuppressWarnings("GuardedBy") // Only called during initialization.
+  private void loadDirectory(
+      File directory,
+      boolean isRoot,
+      @Nullable File[] files,
+      @Nullable Map<String, CacheFileMetadata> fileMetadata) {
+    if (files == null || files.length == 0) {
+      // Either (a) directory isn't really a directory (b) it's empty, or (c) listing files failed.
+      if (!isRoot) {
+        // For (a) and (b) deletion is the desired result. For (c) it will be a no-op if the
+        // directory is non-empty, so there's no harm in trying.
+        directory.delete();
+      }
+      return;
+    }
+    for (File file : files) {
+      String fileName = file.getName();
+      if (isRoot && fileName.indexOf('.') == -1) {
+        loadDirectory(file, /* isRoot= */ false, file.listFiles(), fileMetadata);
+      } else {
+        if (isRoot
+            && (CachedContentIndex.isIndexFile(fileName) || fileName.endsWith(UID_FILE_SUFFIX))) {
+          // Skip expected UID and index files in the root directory.
+          continue;
+        }
+        long length = C.LENGTH_UNSET;
+        long lastTouchTimestamp = C.TIME_UNSET;
+        @Nullable
+        CacheFileMetadata metadata = fileMetadata != null ? fileMetadata.remove(fileName) : null;
+        if (metadata != null) {
+          length = metadata.length;
+          lastTouchTimestamp = metadata.lastTouchTimestamp;
+        }
+        @Nullable
+        SimpleCacheSpan span =
+            SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
+        if (span != null) {
+          addSpan(span);
+        } else {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  /** Must be called whilst holding the lock for {@code key}. */
+  private NavigableSet<CacheSpan> getCachedSpansInternal(String key) {
+    @Nullable CachedContent cachedContent = contents.get(key);
+    return cachedContent == null || cachedContent.isEmpty()
+        ? new TreeSet<>()
+        : new TreeSet<CacheSpan>(cachedContent.getSpans());
+  }
+
+  /** Must be called whilst holding the lock for {@code key}. */
+  @Nullable
+  private CacheSpan startReadWriteInternal(String key, long position, long length) {
+    SimpleCacheSpan span = getSpan(key, position, length);
+
+    if (span.isCached) {
+      // Read case.
+      return touchSpan(key, span);
+    }
+
+    CachedContent cachedContent = getOrAddContent(key);
+    if (cachedContent.lockRange(position, span.length)) {
+      // Write case.
+      return span;
+    }
+
+    // Lock not available.
+    return null;
+  }
+
+  /**
+   * Touches a cache span, returning the updated result. If the evictor does not require cache spans
+   * to be touched, then this method does nothing and the span is returned without modification.
+   * Must be called whilst holding the lock for {@code key}.
+   *
+   * @param key The key of the span being touched.
+   * @param span The span being touched.
+   * @return The updated span.
+   */
+  private SimpleCacheSpan touchSpan(String key, SimpleCacheSpan span) {
+    if (!touchCacheSpans) {
+      return span;
+    }
+    String fileName = Assertions.checkNotNull(span.file).getName();
+    long length = span.length;
+    long lastTouchTimestamp = System.currentTimeMillis();
+    boolean updateFile = false;
+    synchronized (indexLock) {
+      if (fileIndex != null) {
+        try {
+          fileIndex.set(fileName, length, lastTouchTimestamp);
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to update index with new touch timestamp.");
+        }
+      } else {
+        // Updating the file itself to incorporate the new last touch timestamp is much slower than
+        // updating the file index. Hence we only update the file if we don't have a file index.
+        updateFile = true;
+      }
+    }
+    SimpleCacheSpan newSpan =
+        Assertions.checkNotNull(contents.get(key))
+            .setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    notifySpanTouched(span, newSpan);
+    return newSpan;
+  }
+
+  /**
+   * Returns the cache span corresponding to the provided key and range. See {@link
+   * Cache#startReadWrite(String, long, long)} for detailed descriptions of the returned spans. Must
+   * be called whilst holding the lock for {@code key}.
+   *
+   * @param key The key of the span being requested.
+   * @param position The position of the span being requested.
+   * @param length The length of the span, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The corresponding cache {@link SimpleCacheSpan}.
+   */
+  private SimpleCacheSpan getSpan(String key, long position, long length) {
+    @Nullable CachedContent cachedContent = contents.get(key);
+    if (cachedContent == null) {
+      return SimpleCacheSpan.createHole(key, position, length);
+    }
+    while (true) {
+      SimpleCacheSpan span = cachedContent.getSpan(position, length);
+      if (span.isCached && span.file.length() != span.length) {
+        // The file has been modified or deleted underneath us. It's likely that other files for
+        // this key will have been modified too, so scan all of its spans.
+        removeStaleSpans(cachedContent);
+        continue;
+      }
+      return span;
+    }
+  }
+
+  /**
+   * Adds a cached span to the in-memory representation. Must be called whilst holding the lock for
+   * the span's key.
+   *
+   * @param span The span to be added.
+   */
+  private void addSpan(SimpleCacheSpan span) {
+    getOrAddContent(span.key).addSpan(span);
+    totalSpace.addAndGet(span.length);
+    notifySpanAdded(span);
+  }
+
+  /** Must be called whilst holding the lock for the span's key. */
+  private void removeSpanInternal(CacheSpan span) {
+    @Nullable CachedContent cachedContent = contents.get(span.key);
+    if (cachedContent == null || !cachedContent.removeSpan(span)) {
+      return;
+    }
+    totalSpace.addAndGet(-span.length);
+    synchronized (indexLock) {
+      if (fileIndex != null) {
+        String fileName = span.file.getName();
+        try {
+          fileIndex.remove(fileName);
+        } catch (IOException e) {
+          // This will leave a stale entry in the file index. It will be removed next time the
+          // cache is initialized.
+          Log.w(TAG, "Failed to remove file index entry for: " + fileName);
+        }
+      }
+    }
+    maybeRemoveContent(cachedContent.key);
+    notifySpanRemoved(span);
+  }
+
+  /**
+   * Removes any spans of the given content for which the underlying file lengths no longer match.
+   * Must be called whilst holding the lock for the content's key.
+   */
+  private void removeStaleSpans(CachedContent cachedContent) {
+    ArrayList<CacheSpan> spansToBeRemoved = new ArrayList<>();
+    for (CacheSpan span : cachedContent.getSpans()) {
+      if (span.file.length() != span.length) {
+        spansToBeRemoved.add(span);
+      }
+    }
+    for (int i = 0; i < spansToBeRemoved.size(); i++) {
+      removeSpanInternal(spansToBeRemoved.get(i));
+    }
+  }
+
+  /** Must be called whilst holding the lock for {@code key}. */
+  private CachedContent getOrAddContent(String key) {
+    @Nullable CachedContent cachedContent = contents.get(key);
+    if (cachedContent == null) {
+      synchronized (indexLock) {
+        cachedContent = contentIndex.getOrAdd(key);
+      }
+      contents.put(key, cachedContent);
+    }
+    return cachedContent;
+  }
+
+  /** Must be called whilst holding the lock for {@code key}. */
+  private void maybeRemoveContent(String key) {
+    synchronized (indexLock) {
+      contentIndex.maybeRemove(key);
+      if (contentIndex.get(key) == null) {
+        contents.remove(key);
+      }
+    }
+  }
+
+  /** Must be called whilst holding the lock for the span's key. */
+  private void notifySpanRemoved(CacheSpan span) {
+    @Nullable ArrayList<Listener> keyListeners = listeners.get(span.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanRemoved(this, span);
+      }
+    }
+    pendingEvictorEvents.add(() -> evictor.onSpanRemoved(this, span));
+  }
+
+  /** Must be called whilst holding the lock for the span's key. */
+  private void notifySpanAdded(SimpleCacheSpan span) {
+    @Nullable ArrayList<Listener> keyListeners = listeners.get(span.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanAdded(this, span);
+      }
+    }
+    pendingEvictorEvents.add(() -> evictor.onSpanAdded(this, span));
+  }
+
+  /** Must be called whilst holding the lock for the span's key. */
+  private void notifySpanTouched(SimpleCacheSpan oldSpan, CacheSpan newSpan) {
+    @Nullable ArrayList<Listener> keyListeners = listeners.get(oldSpan.key);
+    if (keyListeners != null) {
+      for (int i = keyListeners.size() - 1; i >= 0; i--) {
+        keyListeners.get(i).onSpanTouched(this, oldSpan, newSpan);
+      }
+    }
+    pendingEvictorEvents.add(() -> evictor.onSpanTouched(this, oldSpan, newSpan));
+  }
+
+  /**
+   * Dispatches queued events to the evictor. Events are queued in the order in which they occurred
+   * for each key, and are dispatched on whichever thread first acquires the evictor lock.
+   *
+   * <p>Must not be called whilst holding a key lock, since the evictor may remove spans for any
+   * key. If a key lock is held then this method does nothing, on the basis that the caller will
+   * dispatch the events once it has released the lock.
+   */
+  private void dispatchPendingEvictorEvents() {
+    if (isHoldingAnyKeyLock()) {
+      return;
+    }
+    // Re-check the queue after releasing the evictor lock, in case an event was queued by another
+    // thread whose attempt to acquire the lock failed because it was held by this thread.
+    while (!pendingEvictorEvents.isEmpty() && evictorLock.tryLock()) {
+      try {
+        @Nullable Runnable event;
+        while ((event = pendingEvictorEvents.poll()) != null) {
+          event.run();
+        }
+      } finally {
+        evictorLock.unlock();
+      }
+    }
+  }
+
+  private void blockUntilInitialized() {
+    if (!initialized) {
+      initializationCondition.blockUninterruptible();
+    }
+  }
+
+  private ReentrantLock getKeyLock(String key) {
+    return keyLocks[getKeyLockIndex(key)];
+  }
+
+  private int getKeyLockIndex(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % keyLocks.length;
+  }
+
+  /** Must be called whilst holding the lock for {@code key}. */
+  private void signalKeyLock(String key) {
+    keyLockConditions[getKeyLockIndex(key)].signalAll();
+  }
+
+  private boolean isHoldingAnyKeyLock() {
+    for (ReentrantLock keyLock : keyLocks) {
+      if (keyLock.isHeldByCurrentThread()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void lockAllKeys() {
+    // Always acquire key locks in index order, so that concurrent calls cannot deadlock.
+    for (ReentrantLock keyLock : keyLocks) {
+      keyLock.lock();
+    }
+  }
+
+  private void unlockAllKeys() {
+    for (int i = keyLocks.length - 1; i >= 0; i--) {
+      keyLocks[i].unlock();
+    }
+  }
+}
@@ -43,6 +43,18 @@ import java.io.OutputStream;
     super(out, size);
   }
 
+  /**
+   * Creates an instance that uses the given buffer, rather than allocating its own.
+   *
+   * @param out The underlying output stream.
+   * @param buffer The buffer.
+   */
+  public ReusableBufferedOutputStream(OutputStream out, byte[] buffer) {
+    // Allocate the smallest possible buffer, which is replaced immediately.
+    super(out, /* size= */ 1);
+    buf = buffer;
+  }
+
   @Override
   public void close() throws IOException {
     closed = true;
@@ -78,4 +90,17 @@ import java.io.OutputStream;
     count = 0;
     closed = false;
   }
+
+  /**
+   * Resets this stream and uses the given output stream and buffer for writing. This stream must
+   * be closed before resetting.
+   *
+   * @param out New output stream to be used for writing.
+   * @param buffer New buffer to be used for writing.
+   * @throws IllegalStateException If the stream isn't closed.
+   */
+  public void reset(OutputStream out, byte[] buffer) {
+    reset(out);
+    buf = buffer;
+  }
 }
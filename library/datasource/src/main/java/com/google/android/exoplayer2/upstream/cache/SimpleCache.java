@@ -16,7 +16,9 @@
 package com.google.android.exoplayer2.upstream.cache;
 
 import android.os.ConditionVariable;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.database.DatabaseIOException;
@@ -30,6 +32,7 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Random;
@@ -61,9 +64,9 @@ public final class SimpleCache implements Cache {
    * badly with the number of files per directory. See
    * https://github.com/google/ExoPlayer/issues/4253.
    */
-  private static final int SUBDIRECTORY_COUNT = 10;
+  /* package */ static final int SUBDIRECTORY_COUNT = 10;
 
-  private static final String UID_FILE_SUFFIX = ".uid";
+  /* package */ static final String UID_FILE_SUFFIX = ".uid";
 
   private static final HashSet<File> lockedCacheDirs = new HashSet<>();
 
@@ -74,10 +77,15 @@ public final class SimpleCache implements Cache {
   private final HashMap<String, ArrayList<Listener>> listeners;
   private final Random random;
   private final boolean touchCacheSpans;
+  @Nullable private final CacheSpanManifest spanManifest;
+  private final ConditionVariable spanVerificationCondition;
 
   private long uid;
   private long totalSpace;
   private boolean released;
+  private long initializationDurationMs;
+  private boolean initializedFromSpanManifest;
+  private boolean spanVerificationPending;
   private @MonotonicNonNull CacheException initializationException;
 
   /**
@@ -210,11 +218,89 @@ public final class SimpleCache implements Cache {
             : null);
   }
 
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * <p>When {@code useJournalIndex} is {@code true} the cache index is stored in an append-only
+   * journal in the cache directory, which is compacted periodically. Storing the index then takes
+   * time proportional to the number of changes since it was last stored, rather than to the size
+   * of the index. Any existing database or legacy index is migrated into the journal.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which cache file metadata is stored, and the
+   *     cache index if {@code useJournalIndex} is {@code false}. May be {@code null}, in which case
+   *     the legacy index is used if {@code useJournalIndex} is {@code false}.
+   * @param useJournalIndex Whether to store the cache index in an append-only journal.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      boolean useJournalIndex) {
+    this(
+        cacheDir, evictor, databaseProvider, useJournalIndex, /* useSpanManifest= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * <p>When {@code useSpanManifest} is {@code true} a manifest of the cached spans is written when
+   * the cache is {@link #release() released}. The next instance is then initialized from the
+   * manifest rather than by listing and parsing the name of every file in the cache directory,
+   * which can be slow for caches containing many spans. Spans loaded from the manifest are
+   * verified against the files on disk lazily when they're read, and in the background after
+   * initialization has completed. The manifest is discarded whenever it cannot be trusted, in which
+   * case the cache directory is scanned as usual.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which cache file metadata is stored, and the
+   *     cache index if {@code useJournalIndex} is {@code false}. May be {@code null}, in which case
+   *     the legacy index is used if {@code useJournalIndex} is {@code false}.
+   * @param useJournalIndex Whether to store the cache index in an append-only journal.
+   * @param useSpanManifest Whether to initialize the cache from a span manifest written when it was
+   *     last released.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      boolean useJournalIndex,
+      boolean useSpanManifest) {
+    this(
+        cacheDir,
+        evictor,
+        useJournalIndex
+            ? new CachedContentIndex(cacheDir, databaseProvider)
+            : new CachedContentIndex(
+                databaseProvider,
+                cacheDir,
+                /* legacyStorageSecretKey= */ null,
+                /* legacyStorageEncrypt= */ false,
+                /* preferLegacyStorage= */ false),
+        databaseProvider != null ? new CacheFileMetadataIndex(databaseProvider) : null,
+        useSpanManifest);
+  }
+
   /* package */ SimpleCache(
       File cacheDir,
       CacheEvictor evictor,
       CachedContentIndex contentIndex,
       @Nullable CacheFileMetadataIndex fileIndex) {
+    this(cacheDir, evictor, contentIndex, fileIndex, /* useSpanManifest= */ false);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean useSpanManifest) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     }
@@ -223,10 +309,13 @@ public final class SimpleCache implements Cache {
     this.evictor = evictor;
     this.contentIndex = contentIndex;
     this.fileIndex = fileIndex;
+    spanManifest = useSpanManifest ? new CacheSpanManifest(cacheDir) : null;
     listeners = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
+    spanVerificationCondition = new ConditionVariable();
     uid = UID_UNSET;
+    initializationDurationMs = C.TIME_UNSET;
 
     // Start cache initialization.
     final ConditionVariable conditionVariable = new ConditionVariable();
@@ -235,8 +324,15 @@ public final class SimpleCache implements Cache {
       public void run() {
         synchronized (SimpleCache.this) {
           conditionVariable.open();
+          long startTimeMs = SystemClock.elapsedRealtime();
           initialize();
           SimpleCache.this.evictor.onCacheInitialized();
+          initializationDurationMs = SystemClock.elapsedRealtime() - startTimeMs;
+          if (spanVerificationPending) {
+            startSpanVerification();
+          } else {
+            spanVerificationCondition.open();
+          }
         }
       }
     }.start();
@@ -254,6 +350,24 @@ public final class SimpleCache implements Cache {
     }
   }
 
+  /**
+   * Returns the time taken to initialize the cache, in milliseconds.
+   *
+   * <p>This is the time spent loading the cache index and cache spans, and does not include any
+   * verification of spans loaded from a span manifest, which happens in the background.
+   */
+  public synchronized long getInitializationDurationMs() {
+    return initializationDurationMs;
+  }
+
+  /**
+   * Returns whether the cache was initialized from a span manifest, rather than by scanning the
+   * cache directory.
+   */
+  public synchronized boolean isInitializedFromSpanManifest() {
+    return initializedFromSpanManifest;
+  }
+
   @Override
   public synchronized long getUid() {
     return uid;
@@ -268,6 +382,9 @@ public final class SimpleCache implements Cache {
     removeStaleSpans();
     try {
       contentIndex.store();
+      if (spanManifest != null && initializationException == null) {
+        storeSpanManifest(spanManifest);
+      }
     } catch (IOException e) {
       Log.e(TAG, "Storing index file failed", e);
     } finally {
@@ -550,8 +667,21 @@ public final class SimpleCache implements Cache {
 
     try {
       contentIndex.initialize(uid);
+      // The file index is also updated when the cache is initialized from a span manifest, so it
+      // needs to be initialized on both paths.
       if (fileIndex != null) {
         fileIndex.initialize(uid);
+      }
+      @Nullable
+      List<SimpleCacheSpan> manifestSpans =
+          spanManifest != null ? spanManifest.loadAndDelete(uid, contentIndex) : null;
+      if (manifestSpans != null) {
+        for (int i = 0; i < manifestSpans.size(); i++) {
+          addSpan(manifestSpans.get(i));
+        }
+        initializedFromSpanManifest = true;
+        spanVerificationPending = true;
+      } else if (fileIndex != null) {
         Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
         loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
         fileIndex.removeAll(fileMetadata.keySet());
@@ -677,9 +807,15 @@ public final class SimpleCache implements Cache {
     while (true) {
       SimpleCacheSpan span = cachedContent.getSpan(position, length);
       if (span.isCached && span.file.length() != span.length) {
-        // The file has been modified or deleted underneath us. It's likely that other files will
-        // have been modified too, so scan the whole in-memory representation.
-        removeStaleSpans();
+        if (spanVerificationPending) {
+          // The span was loaded from a span manifest and hasn't been verified yet. The background
+          // verification will find any other stale spans, so only remove this one.
+          removeSpanInternal(span);
+        } else {
+          // The file has been modified or deleted underneath us. It's likely that other files will
+          // have been modified too, so scan the whole in-memory representation.
+          removeStaleSpans();
+        }
         continue;
       }
       return span;
@@ -717,6 +853,90 @@ public final class SimpleCache implements Cache {
     notifySpanRemoved(span);
   }
 
+  private void storeSpanManifest(CacheSpanManifest spanManifest) {
+    try {
+      spanManifest.store(uid, contentIndex.getAll());
+    } catch (IOException e) {
+      Log.e(TAG, "Storing span manifest failed", e);
+      // Make sure a partially written manifest isn't used.
+      spanManifest.delete();
+    }
+  }
+
+  private void startSpanVerification() {
+    new Thread("ExoPlayer:SimpleCacheSpanVerifier") {
+      @Override
+      public void run() {
+        try {
+          verifySpans();
+        } finally {
+          spanVerificationCondition.open();
+        }
+      }
+    }.start();
+  }
+
+  /**
+   * Verifies the spans that were loaded from a span manifest, removing any for which the underlying
+   * file lengths do not match, and removes any file metadata that doesn't belong to a loaded span.
+   *
+   * <p>The underlying files are checked without holding the cache lock, so that verification does
+   * not block other operations.
+   */
+  private void verifySpans() {
+    ArrayList<SimpleCacheSpan> spans = new ArrayList<>();
+    synchronized (this) {
+      if (released) {
+        return;
+      }
+      for (CachedContent cachedContent : contentIndex.getAll()) {
+        spans.addAll(cachedContent.getSpans());
+      }
+    }
+    ArrayList<SimpleCacheSpan> staleSpans = new ArrayList<>();
+    for (int i = 0; i < spans.size(); i++) {
+      SimpleCacheSpan span = spans.get(i);
+      if (span.file.length() != span.length) {
+        staleSpans.add(span);
+      }
+    }
+    synchronized (this) {
+      spanVerificationPending = false;
+      if (released) {
+        return;
+      }
+      for (int i = 0; i < staleSpans.size(); i++) {
+        SimpleCacheSpan span = staleSpans.get(i);
+        @Nullable CachedContent cachedContent = contentIndex.get(span.key);
+        // Only remove the span if it hasn't been touched or removed whilst it was being verified.
+        if (cachedContent != null && cachedContent.getSpans().floor(span) == span) {
+          removeSpanInternal(span);
+        }
+      }
+      if (fileIndex != null) {
+        try {
+          Set<String> staleFileNames = new HashSet<>(fileIndex.getAll().keySet());
+          for (CachedContent cachedContent : contentIndex.getAll()) {
+            for (CacheSpan span : cachedContent.getSpans()) {
+              staleFileNames.remove(span.file.getName());
+            }
+          }
+          fileIndex.removeAll(staleFileNames);
+        } catch (DatabaseIOException e) {
+          Log.w(TAG, "Failed to remove stale file metadata", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Blocks until any background verification of spans loaded from a span manifest has completed.
+   */
+  @VisibleForTesting
+  /* package */ void blockUntilSpansVerified() {
+    spanVerificationCondition.block();
+  }
+
   /**
    * Scans all of the cached spans in the in-memory representation, removing any for which the
    * underlying file lengths no longer match.
@@ -771,7 +991,7 @@ public final class SimpleCache implements Cache {
    * @param files The files belonging to the root directory.
    * @return The loaded UID, or {@link #UID_UNSET} if a UID has not yet been created.
    */
-  private static long loadUid(File[] files) {
+  /* package */ static long loadUid(File[] files) {
     for (File file : files) {
       String fileName = file.getName();
       if (fileName.endsWith(UID_FILE_SUFFIX)) {
@@ -788,7 +1008,7 @@ public final class SimpleCache implements Cache {
   }
 
   @SuppressWarnings("TrulyRandom")
-  private static long createUid(File directory) throws IOException {
+  /* package */ static long createUid(File directory) throws IOException {
     // Generate a non-negative UID.
     long uid = new SecureRandom().nextLong();
     uid = uid == Long.MIN_VALUE ? 0 : Math.abs(uid);
@@ -806,7 +1026,7 @@ public final class SimpleCache implements Cache {
     return Long.parseLong(fileName.substring(0, fileName.indexOf('.')), /* radix= */ 16);
   }
 
-  private static void createCacheDirectories(File cacheDir) throws CacheException {
+  /* package */ static void createCacheDirectories(File cacheDir) throws CacheException {
     // If mkdirs() returns false, double check that the directory doesn't exist before throwing.
     if (!cacheDir.mkdirs() && !cacheDir.isDirectory()) {
       String message = "Failed to create cache directory: " + cacheDir;
@@ -815,11 +1035,11 @@ public final class SimpleCache implements Cache {
     }
   }
 
-  private static synchronized boolean lockFolder(File cacheDir) {
+  /* package */ static synchronized boolean lockFolder(File cacheDir) {
     return lockedCacheDirs.add(cacheDir.getAbsoluteFile());
   }
 
-  private static synchronized void unlockFolder(File cacheDir) {
+  /* package */ static synchronized void unlockFolder(File cacheDir) {
     lockedCacheDirs.remove(cacheDir.getAbsoluteFile());
   }
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.TreeSet;
+
+/**
+ * Evicts cache files using the W-TinyLFU policy, which combines recency and frequency so that
+ * content that is accessed once (for example by a user scanning through a long title) cannot flush
+ * content that is accessed frequently.
+ *
+ * <p>Newly written spans enter a small LRU admission window. Spans leaving the window compete for
+ * admission to the main space against the main space's eviction candidate, and are only admitted if
+ * they've been accessed more frequently. Access frequencies are estimated with a compact, aging
+ * count-min sketch, so the frequency of recently evicted content is also taken into account. The
+ * main space is a segmented LRU, in which spans are promoted from a probation segment to a
+ * protected segment when they're accessed again.
+ *
+ * <p>Frequencies are tracked per span, identified by its key and position. All sizes are in bytes,
+ * so large spans take up proportionally more of each segment.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class WindowTinyLfuCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the cache that's used for the admission window. */
+  public static final float DEFAULT_WINDOW_FRACTION = 0.1f;
+  /** The default fraction of the main space that's used for the protected segment. */
+  public static final float DEFAULT_PROTECTED_FRACTION = 0.8f;
+
+  private static final int MIN_SKETCH_CAPACITY = 1024;
+
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxProtectedBytes;
+  private final TreeSet<CacheSpan> window;
+  private final TreeSet<CacheSpan> probation;
+  private final TreeSet<CacheSpan> protectedSegment;
+  private final FrequencySketch sketch;
+
+  private long currentSize;
+  private long windowSize;
+  private long protectedSize;
+
+  /**
+   * Creates an instance with the default window and protected segment sizes.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_WINDOW_FRACTION, DEFAULT_PROTECTED_FRACTION);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   * @param windowFraction The fraction of the cache that's used for the admission window. Larger
+   *     windows favor recency, and smaller windows favor frequency.
+   * @param protectedFraction The fraction of the main space that's used for the protected segment.
+   */
+  public WindowTinyLfuCacheEvictor(long maxBytes, float windowFraction, float protectedFraction) {
+    checkArgument(windowFraction >= 0 && windowFraction <= 1);
+    checkArgument(protectedFraction >= 0 && protectedFraction <= 1);
+    this.maxBytes = maxBytes;
+    maxWindowBytes = (long) (maxBytes * windowFraction);
+    maxProtectedBytes = (long) ((maxBytes - maxWindowBytes) * protectedFraction);
+    window = new TreeSet<>(WindowTinyLfuCacheEvictor::compare);
+    probation = new TreeSet<>(WindowTinyLfuCacheEvictor::compare);
+    protectedSegment = new TreeSet<>(WindowTinyLfuCacheEvictor::compare);
+    sketch = new FrequencySketch(MIN_SKETCH_CAPACITY);
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    // Do nothing.
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    // A write follows a cache miss, which counts as an access.
+    sketch.increment(hash(key, position));
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    window.add(span);
+    windowSize += span.length;
+    currentSize += span.length;
+    sketch.ensureCapacity(window.size() + probation.size() + protectedSegment.size());
+    evictCache(cache, 0);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    if (window.remove(span)) {
+      windowSize -= span.length;
+    } else if (protectedSegment.remove(span)) {
+      protectedSize -= span.length;
+    } else if (!probation.remove(span)) {
+      return;
+    }
+    currentSize -= span.length;
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    sketch.increment(hash(newSpan.key, newSpan.position));
+    if (window.remove(oldSpan)) {
+      window.add(newSpan);
+      windowSize += newSpan.length - oldSpan.length;
+    } else if (protectedSegment.remove(oldSpan)) {
+      protectedSegment.add(newSpan);
+      protectedSize += newSpan.length - oldSpan.length;
+    } else if (probation.remove(oldSpan)) {
+      // A span that's accessed again whilst on probation is promoted to the protected segment.
+      protectedSegment.add(newSpan);
+      protectedSize += newSpan.length;
+      demoteProtectedOverflow();
+    } else {
+      return;
+    }
+    currentSize += newSpan.length - oldSpan.length;
+    evictCache(cache, 0);
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    while (currentSize + requiredSpace > maxBytes) {
+      @Nullable CacheSpan windowVictim = window.isEmpty() ? null : window.first();
+      @Nullable
+      CacheSpan mainVictim =
+          !probation.isEmpty()
+              ? probation.first()
+              : (!protectedSegment.isEmpty() ? protectedSegment.first() : null);
+      if (windowVictim != null && mainVictim != null && window.size() > 1) {
+        // The window victim competes with the main victim, and the less frequently accessed of the
+        // two is evicted. The most recently used span is never a candidate.
+        if (admit(windowVictim, mainVictim)) {
+          if (windowSize > maxWindowBytes) {
+            moveToProbation(windowVictim);
+          }
+          cache.removeSpan(mainVictim);
+        } else {
+          cache.removeSpan(windowVictim);
+        }
+      } else if (mainVictim != null) {
+        cache.removeSpan(mainVictim);
+      } else if (windowVictim != null) {
+        cache.removeSpan(windowVictim);
+      } else {
+        return;
+      }
+    }
+    // The cache has space, so spans that overflow the window can be admitted to the main space.
+    // The most recently used span always stays in the window, so that it isn't evicted by the
+    // admission policy before it's had the chance to be accessed again.
+    while (windowSize > maxWindowBytes && window.size() > 1) {
+      moveToProbation(window.first());
+    }
+  }
+
+  private boolean admit(CacheSpan candidate, CacheSpan victim) {
+    return sketch.frequency(hash(candidate.key, candidate.position))
+        > sketch.frequency(hash(victim.key, victim.position));
+  }
+
+  private void moveToProbation(CacheSpan span) {
+    window.remove(span);
+    windowSize -= span.length;
+    probation.add(span);
+  }
+
+  private void demoteProtectedOverflow() {
+    while (protectedSize > maxProtectedBytes && !protectedSegment.isEmpty()) {
+      CacheSpan span = protectedSegment.pollFirst();
+      protectedSize -= span.length;
+      probation.add(span);
+    }
+  }
+
+  private static int hash(String key, long position) {
+    return 31 * key.hashCode() + (int) (position ^ (position >>> 32));
+  }
+
+  private static int compare(CacheSpan lhs, CacheSpan rhs) {
+    long lastTouchTimestampDelta = lhs.lastTouchTimestamp - rhs.lastTouchTimestamp;
+    if (lastTouchTimestampDelta == 0) {
+      // Use the standard compareTo method as a tie-break.
+      return lhs.compareTo(rhs);
+    }
+    return lhs.lastTouchTimestamp < rhs.lastTouchTimestamp ? -1 : 1;
+  }
+
+  /**
+   * A count-min sketch that estimates access frequencies using four 4-bit counters per item. The
+   * counters are halved periodically, so that the frequencies of items that are no longer accessed
+   * decay over time.
+   */
+  private static final class FrequencySketch {
+
+    private static final long[] SEEDS =
+        new long[] {
+          0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int SAMPLE_SIZE_FACTOR = 10;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    public FrequencySketch(int capacity) {
+      table = new long[0];
+      ensureCapacity(capacity);
+    }
+
+    /**
+     * Grows the sketch so that it's able to track at least {@code capacity} items. Existing
+     * frequencies are discarded if the sketch grows.
+     */
+    public void ensureCapacity(int capacity) {
+      int tableLength = Integer.highestOneBit(max(capacity, 1) - 1) << 1;
+      if (tableLength <= table.length || tableLength <= 0) {
+        return;
+      }
+      table = new long[tableLength];
+      tableMask = tableLength - 1;
+      sampleSize = SAMPLE_SIZE_FACTOR * tableLength;
+      size = 0;
+    }
+
+    /** Returns the estimated number of times the item has been accessed, up to 15. */
+    public int frequency(int itemHash) {
+      int hash = spread(itemHash);
+      int start = (hash & 3) << 2;
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+        frequency = min(frequency, count);
+      }
+      return frequency;
+    }
+
+    /** Increments the estimated access frequency of the item. */
+    public void increment(int itemHash) {
+      int hash = spread(itemHash);
+      int start = (hash & 3) << 2;
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        added |= incrementAt(indexOf(hash, i), start + i);
+      }
+      if (added && ++size >= sampleSize) {
+        reset();
+      }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+      int offset = counter << 2;
+      long mask = 0xfL << offset;
+      if ((table[index] & mask) != mask) {
+        table[index] += 1L << offset;
+        return true;
+      }
+      return false;
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      size /= 2;
+    }
+
+    private int indexOf(int hash, int i) {
+      long index = (hash + SEEDS[i]) * SEEDS[i];
+      index += index >>> 32;
+      return ((int) index) & tableMask;
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link FileDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class FileDataSourceTest {
+
+  private static final byte[] DATA = TestUtil.buildTestData(20);
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void read_fileGrowsWhileOpen_readsAppendedData() throws Exception {
+    assertReadsAppendedData(new FileDataSource());
+  }
+
+  @Test
+  public void read_withMemoryMappingAndFileGrowsWhileOpen_readsAppendedData() throws Exception {
+    assertReadsAppendedData(
+        new FileDataSource(/* memoryMappingEnabled= */ true, /* mappedWindowSize= */ 7));
+  }
+
+  private void assertReadsAppendedData(FileDataSource dataSource) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(Paths.get(file.getAbsolutePath()), Arrays.copyOf(DATA, 10));
+    dataSource.open(
+        new DataSpec.Builder().setUri(Uri.fromFile(file)).setLength(DATA.length).build());
+    byte[] buffer = new byte[DATA.length];
+
+    try {
+      int bytesRead = read(dataSource, buffer, /* offset= */ 0);
+      Files.write(
+          Paths.get(file.getAbsolutePath()),
+          Arrays.copyOfRange(DATA, 10, DATA.length),
+          StandardOpenOption.APPEND);
+      bytesRead += read(dataSource, buffer, bytesRead);
+
+      assertThat(bytesRead).isEqualTo(DATA.length);
+      assertThat(buffer).isEqualTo(DATA);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  /** Reads from {@code dataSource} until the end of the file or of {@code buffer} is reached. */
+  private static int read(DataSource dataSource, byte[] buffer, int offset) throws IOException {
+    int totalBytesRead = 0;
+    while (offset + totalBytesRead < buffer.length) {
+      int bytesRead =
+          dataSource.read(buffer, offset + totalBytesRead, buffer.length - offset - totalBytesRead);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        break;
+      }
+      totalBytesRead += bytesRead;
+    }
+    return totalBytesRead;
+  }
+}
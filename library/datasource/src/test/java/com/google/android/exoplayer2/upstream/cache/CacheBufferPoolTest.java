@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CacheBufferPool}. */
+@RunWith(AndroidJUnit4.class)
+public final class CacheBufferPoolTest {
+
+  @Test
+  public void acquire_withEmptyPool_allocatesBuffer() {
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 16, /* maxPooledBuffers= */ 2);
+
+    byte[] buffer = bufferPool.acquire();
+
+    assertThat(buffer).hasLength(16);
+    assertThat(bufferPool.getHitCount()).isEqualTo(0);
+    assertThat(bufferPool.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void acquire_afterRelease_reusesBuffer() {
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 16, /* maxPooledBuffers= */ 2);
+    byte[] buffer = bufferPool.acquire();
+
+    bufferPool.release(buffer);
+
+    assertThat(bufferPool.acquire()).isSameInstanceAs(buffer);
+    assertThat(bufferPool.getHitCount()).isEqualTo(1);
+    assertThat(bufferPool.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void release_beyondMaxPooledBuffers_discardsBuffer() {
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 16, /* maxPooledBuffers= */ 1);
+    byte[] buffer1 = bufferPool.acquire();
+    byte[] buffer2 = bufferPool.acquire();
+
+    bufferPool.release(buffer1);
+    bufferPool.release(buffer2);
+
+    assertThat(bufferPool.getPooledBufferCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void release_withWrongSize_throws() {
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 16, /* maxPooledBuffers= */ 1);
+
+    assertThrows(IllegalArgumentException.class, () -> bufferPool.release(new byte[8]));
+  }
+}
@@ -26,6 +26,7 @@ import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.CacheAsserts;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSet.FakeData;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
@@ -35,8 +36,10 @@ import com.google.android.exoplayer2.upstream.FileDataSource;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import org.junit.After;
@@ -522,6 +525,98 @@ public final class CacheDataSourceTest {
     cacheDataSource.close();
   }
 
+  @Test
+  public void upstreamRequestCoalescing_coalescesHolesSeparatedBySmallCachedGaps()
+      throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    byte[] data = TestUtil.buildTestData(100);
+    upstream.getDataSet().setData(testDataUri, data);
+    cacheRange(upstream, /* position= */ 10, /* length= */ 5);
+    cacheRange(upstream, /* position= */ 30, /* length= */ 5);
+    upstream.getAndClearOpenedDataSpecs();
+    CacheDataSource.Factory factory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(() -> upstream)
+            .setUpstreamRequestCoalescing(
+                /* maxCachedGapLength= */ 10, /* maxCoalescedRequestLength= */ 1000);
+    CacheDataSource cacheDataSource = factory.createDataSource();
+
+    cacheDataSource.open(buildDataSpec(/* position= */ 0, data.length));
+    byte[] readData = DataSourceUtil.readToEnd(cacheDataSource);
+    cacheDataSource.close();
+
+    assertThat(readData).isEqualTo(data);
+    DataSpec[] upstreamDataSpecs = upstream.getAndClearOpenedDataSpecs();
+    assertThat(upstreamDataSpecs).hasLength(1);
+    assertThat(upstreamDataSpecs[0].position).isEqualTo(0);
+    assertThat(upstreamDataSpecs[0].length).isEqualTo(data.length);
+    assertThat(cache.isCached(defaultCacheKey, /* position= */ 0, data.length)).isTrue();
+    assertThat(factory.getStatistics().getUpstreamRequestsSaved()).isEqualTo(2);
+    CacheAsserts.assertDataCached(cache, buildDataSpec(/* position= */ 0, data.length), data);
+  }
+
+  @Test
+  public void upstreamRequestCoalescing_doesNotCoalesceHolesSeparatedByLargeCachedGaps()
+      throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    byte[] data = TestUtil.buildTestData(100);
+    upstream.getDataSet().setData(testDataUri, data);
+    cacheRange(upstream, /* position= */ 10, /* length= */ 40);
+    upstream.getAndClearOpenedDataSpecs();
+    CacheDataSource.Factory factory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(() -> upstream)
+            .setUpstreamRequestCoalescing(
+                /* maxCachedGapLength= */ 10, /* maxCoalescedRequestLength= */ 1000);
+    CacheDataSource cacheDataSource = factory.createDataSource();
+
+    cacheDataSource.open(buildDataSpec(/* position= */ 0, data.length));
+    byte[] readData = DataSourceUtil.readToEnd(cacheDataSource);
+    cacheDataSource.close();
+
+    assertThat(readData).isEqualTo(data);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+    assertThat(factory.getStatistics().getUpstreamRequestsSaved()).isEqualTo(0);
+  }
+
+  @Test
+  public void readAhead_cachesDataFollowingRequest() throws Exception {
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    byte[] data = TestUtil.buildTestData(100);
+    fakeDataSet.setData(testDataUri, data);
+    List<Runnable> readAheadTasks = new ArrayList<>();
+    CacheDataSource.Factory factory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(() -> new FakeDataSource(fakeDataSet))
+            .setReadAhead(/* readAheadLength= */ 30, /* readAheadExecutor= */ readAheadTasks::add);
+    CacheDataSource cacheDataSource = factory.createDataSource();
+
+    cacheDataSource.open(buildDataSpec(/* position= */ 0, /* length= */ 20));
+    byte[] readData = DataSourceUtil.readToEnd(cacheDataSource);
+    cacheDataSource.close();
+    assertThat(readAheadTasks).hasSize(1);
+    readAheadTasks.get(0).run();
+
+    assertThat(readData).isEqualTo(Arrays.copyOf(data, 20));
+    assertThat(cache.isCached(defaultCacheKey, /* position= */ 20, /* length= */ 30)).isTrue();
+    assertThat(cache.getCachedBytes(defaultCacheKey, /* position= */ 50, /* length= */ 50))
+        .isEqualTo(0);
+    assertThat(factory.getStatistics().getBytesPrefetched()).isEqualTo(30);
+  }
+
+  private void cacheRange(FakeDataSource upstream, long position, long length)
+      throws IOException {
+    new CacheWriter(
+            new CacheDataSource(cache, upstream),
+            buildDataSpec(position, length),
+            /* temporaryBuffer= */ null,
+            /* progressListener= */ null)
+        .cache();
+  }
+
   private void assertCacheAndRead(DataSpec dataSpec, boolean unknownLength) throws IOException {
     assertCacheAndRead(dataSpec, unknownLength, /* cacheKeyFactory= */ null);
   }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.testutil.CacheAsserts.assertCachedData;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link CacheExporter}. */
+@RunWith(AndroidJUnit4.class)
+public final class CacheExporterTest {
+
+  private static final int FRAGMENT_SIZE = 30;
+
+  private File tempFolder;
+  private SimpleCache sourceCache;
+  private SimpleCache destinationCache;
+  private FakeDataSet fakeDataSet;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFolder =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    sourceCache =
+        new SimpleCache(
+            new File(tempFolder, "source"),
+            new NoOpCacheEvictor(),
+            TestUtil.getInMemoryDatabaseProvider());
+    destinationCache =
+        new SimpleCache(
+            new File(tempFolder, "destination"),
+            new NoOpCacheEvictor(),
+            TestUtil.getInMemoryDatabaseProvider());
+    fakeDataSet = new FakeDataSet().setRandomData("test_data", 100);
+  }
+
+  @After
+  public void tearDown() {
+    sourceCache.release();
+    destinationCache.release();
+    Util.recursiveDelete(tempFolder);
+  }
+
+  @Test
+  public void exportToFile_writesCachedData() throws Exception {
+    cache(sourceCache, new DataSpec(Uri.parse("test_data")));
+    File file = new File(tempFolder, "export");
+
+    long bytesWritten = CacheExporter.exportToFile(sourceCache, "test_data", file);
+
+    assertThat(bytesWritten).isEqualTo(100);
+    assertThat(TestUtil.getByteArrayFromFilePath(file.getAbsolutePath()))
+        .isEqualTo(fakeDataSet.getData("test_data").getData());
+  }
+
+  @Test
+  public void exportToFile_partiallyCached_throwsIOException() throws Exception {
+    cache(sourceCache, new DataSpec(Uri.parse("test_data")));
+    sourceCache.removeSpan(sourceCache.getCachedSpans("test_data").first());
+    File file = new File(tempFolder, "export");
+
+    assertThrows(
+        IOException.class, () -> CacheExporter.exportToFile(sourceCache, "test_data", file));
+  }
+
+  @Test
+  public void copy_copiesDataAndContentMetadata() throws Exception {
+    cache(sourceCache, new DataSpec(Uri.parse("test_data")));
+
+    long bytesCopied = CacheExporter.copy(sourceCache, destinationCache, "test_data");
+
+    assertThat(bytesCopied).isEqualTo(100);
+    assertThat(ContentMetadata.getContentLength(destinationCache.getContentMetadata("test_data")))
+        .isEqualTo(100);
+    assertCachedData(destinationCache, fakeDataSet);
+  }
+
+  @Test
+  public void copy_withDataCachedInDestination_copiesOnlyMissingData() throws Exception {
+    cache(sourceCache, new DataSpec(Uri.parse("test_data")));
+    cache(
+        destinationCache,
+        new DataSpec(Uri.parse("test_data"), /* position= */ 20, /* length= */ 50));
+
+    long bytesCopied = CacheExporter.copy(sourceCache, destinationCache, "test_data");
+
+    assertThat(bytesCopied).isEqualTo(50);
+    assertCachedData(destinationCache, fakeDataSet);
+  }
+
+  private void cache(Cache cache, DataSpec dataSpec) throws IOException {
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            new FakeDataSource(fakeDataSet),
+            new FileDataSource(),
+            new CacheDataSink(cache, FRAGMENT_SIZE),
+            /* flags= */ 0,
+            /* eventListener= */ null);
+    new CacheWriter(
+            cacheDataSource, dataSpec, /* temporaryBuffer= */ null, /* progressListener= */ null)
+        .cache();
+  }
+}
@@ -79,6 +79,43 @@ public final class CacheWriterTest {
     assertCachedData(cache, fakeDataSet);
   }
 
+  @Test
+  public void cache_withBufferPool_reusesPooledBuffers() throws Exception {
+    FakeDataSet fakeDataSet = new FakeDataSet().setRandomData("test_data", 100);
+    CacheBufferPool bufferPool =
+        new CacheBufferPool(/* bufferSize= */ 16, /* maxPooledBuffers= */ 4);
+    CacheDataSource cacheDataSource =
+        new CacheDataSource(
+            cache,
+            new FakeDataSource(fakeDataSet),
+            new FileDataSource(),
+            new CacheDataSink(cache, /* fragmentSize= */ C.LENGTH_UNSET, bufferPool),
+            /* flags= */ 0,
+            /* eventListener= */ null);
+    Uri testUri = Uri.parse("test_data");
+
+    new CacheWriter(
+            cacheDataSource,
+            new DataSpec(testUri, /* position= */ 0, /* length= */ 50),
+            /* temporaryBuffer= */ null,
+            /* progressListener= */ null,
+            bufferPool)
+        .cache();
+    new CacheWriter(
+            cacheDataSource,
+            new DataSpec(testUri),
+            /* temporaryBuffer= */ null,
+            /* progressListener= */ null,
+            bufferPool)
+        .cache();
+
+    assertCachedData(cache, fakeDataSet);
+    // The writer and sink each allocate a buffer for the first request, and reuse them after.
+    assertThat(bufferPool.getMissCount()).isEqualTo(2);
+    assertThat(bufferPool.getHitCount()).isEqualTo(2);
+    assertThat(bufferPool.getPooledBufferCount()).isEqualTo(2);
+  }
+
   @Test
   public void cacheSetOffsetAndLength() throws Exception {
     FakeDataSet fakeDataSet = new FakeDataSet().setRandomData("test_data", 100);
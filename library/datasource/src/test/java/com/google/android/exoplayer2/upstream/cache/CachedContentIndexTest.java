@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.upstream.cache;
 import static com.google.android.exoplayer2.testutil.TestUtil.createTestFile;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
+import static java.lang.Math.max;
 
 import android.net.Uri;
 import android.util.SparseArray;
@@ -30,6 +31,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Collection;
 import java.util.Set;
 import org.junit.After;
@@ -402,6 +404,127 @@ public class CachedContentIndexTest {
     assertStoredAndLoadedEqual(index, newLegacyInstance(key));
   }
 
+  @Test
+  public void journalStoreAndLoad() throws Exception {
+    assertStoredAndLoadedEqual(newJournalInstance(), newJournalInstance());
+  }
+
+  @Test
+  public void journalStoreIncremental_replaysUpdatesAndRemovals() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.getOrAdd("key2");
+    index.store();
+    long compactedLength = getJournalFile().length();
+
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 100);
+    index.applyContentMetadataMutations("key1", mutations);
+    index.maybeRemove("key2");
+    index.getOrAdd("key3");
+    index.store();
+
+    // The changes should have been appended, rather than the journal being rewritten.
+    assertThat(getJournalFile().length()).isGreaterThan(compactedLength);
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("key1", "key3");
+    assertThat(index2.get("key1")).isEqualTo(index.get("key1"));
+    assertThat(index2.get("key3")).isEqualTo(index.get("key3"));
+    assertThat(ContentMetadata.getContentLength(index2.getContentMetadata("key1")))
+        .isEqualTo(100);
+  }
+
+  @Test
+  public void journalStore_withManySupersededRecords_compactsJournal() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+
+    long maxLength = 0;
+    for (int i = 0; i < 2000; i++) {
+      ContentMetadataMutations mutations = new ContentMetadataMutations();
+      ContentMetadataMutations.setContentLength(mutations, i);
+      index.applyContentMetadataMutations("key1", mutations);
+      index.store();
+      maxLength = max(maxLength, getJournalFile().length());
+    }
+
+    // The journal should have been compacted back down at least once.
+    assertThat(getJournalFile().length()).isLessThan(maxLength);
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("key1");
+    assertThat(ContentMetadata.getContentLength(index2.getContentMetadata("key1")))
+        .isEqualTo(1999);
+  }
+
+  @Test
+  public void journalLoad_withTruncatedRecord_discardsTruncatedRecord() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+    truncateFile(getJournalFile(), getJournalFile().length() - 3);
+
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    assertThat(index2.getKeys()).containsExactly("key1");
+
+    // The next store should rewrite the journal, so that records appended after it aren't lost
+    // behind the truncated record.
+    index2.getOrAdd("key3");
+    index2.store();
+    CachedContentIndex index3 = newJournalInstance();
+    index3.initialize(/* uid= */ 0);
+    assertThat(index3.getKeys()).containsExactly("key1", "key3");
+  }
+
+  @Test
+  public void journalLoad_withCorruptRecord_discardsCorruptAndFollowingRecords() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    long corruptPosition = getJournalFile().length() + 8;
+    index.getOrAdd("key2");
+    index.store();
+    index.getOrAdd("key3");
+    index.store();
+    try (RandomAccessFile file = new RandomAccessFile(getJournalFile(), "rw")) {
+      file.seek(corruptPosition);
+      file.write(0xFF);
+    }
+
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("key1");
+  }
+
+  @Test
+  public void journalInitialize_withLegacyIndex_migratesLegacyIndex() throws Exception {
+    CachedContentIndex legacyIndex = newLegacyInstance();
+    legacyIndex.initialize(/* uid= */ 0);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 2560);
+    legacyIndex.applyContentMetadataMutations("KLMNO", mutations);
+    legacyIndex.getOrAdd("ABCDE");
+    legacyIndex.store();
+
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+
+    assertThat(index.getKeys()).containsExactly("KLMNO", "ABCDE");
+    assertThat(index.get("KLMNO")).isEqualTo(legacyIndex.get("KLMNO"));
+    assertThat(new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC).exists()).isFalse();
+    assertThat(getJournalFile().exists()).isTrue();
+  }
+
   @Test
   public void removeEmptyNotLockedCachedContent() {
     CachedContentIndex index = newInstance();
@@ -477,4 +600,18 @@ public class CachedContentIndexTest {
         /* legacyStorageEncrypt= */ key != null,
         /* preferLegacyStorage= */ true);
   }
+
+  private CachedContentIndex newJournalInstance() {
+    return new CachedContentIndex(cacheDir, /* databaseProvider= */ null);
+  }
+
+  private File getJournalFile() {
+    return new File(cacheDir, CachedContentIndex.FILE_NAME_JOURNAL);
+  }
+
+  private static void truncateFile(File file, long length) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(length);
+    }
+  }
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.C.LENGTH_UNSET;
+import static com.google.android.exoplayer2.util.Util.toByteArray;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ConcurrentSimpleCache}. */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentSimpleCacheTest {
+
+  private static final String KEY_1 = "key1";
+  private static final String KEY_2 = "key2";
+
+  private File testDir;
+  private File cacheDir;
+
+  @Before
+  public void createTestDir() throws Exception {
+    testDir =
+        Util.createTempFile(ApplicationProvider.getApplicationContext(), "ConcurrentSimpleCache");
+    assertThat(testDir.delete()).isTrue();
+    assertThat(testDir.mkdirs()).isTrue();
+    cacheDir = new File(testDir, "cache");
+  }
+
+  @After
+  public void deleteTestDir() {
+    Util.recursiveDelete(testDir);
+  }
+
+  @Test
+  public void newInstance_withEmptyDirectory() {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+
+    long uid = cache.getUid();
+    assertThat(uid).isAtLeast(0L);
+    assertThat(cacheDir.exists()).isTrue();
+
+    cache.release();
+    cache = getCache(new NoOpCacheEvictor());
+    assertThat(cache.getUid()).isEqualTo(uid);
+    assertThat(cache.getKeys()).isEmpty();
+  }
+
+  @Test
+  public void newInstance_withExistingSimpleCacheDirectory_loadsCachedData() throws Exception {
+    @SuppressWarnings("deprecation") // Testing legacy index compatibility.
+    SimpleCache simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    File file = simpleCache.startFile(KEY_1, 0, 15);
+    writeData(file, KEY_1, 0, 15);
+    simpleCache.commitFile(file, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setRedirectedUri(mutations, Uri.parse("https://redirect.google.com"));
+    simpleCache.applyContentMetadataMutations(KEY_1, mutations);
+    simpleCache.release();
+
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+
+    CacheSpan fileSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    assertCachedDataReadCorrect(fileSpan);
+    assertThat(ContentMetadata.getRedirectedUri(cache.getContentMetadata(KEY_1)))
+        .isEqualTo(Uri.parse("https://redirect.google.com"));
+    assertThat(cache.getCacheSpace()).isEqualTo(15);
+  }
+
+  @Test
+  public void newInstance_withExistingCacheInstance_fails() {
+    getCache(new NoOpCacheEvictor());
+
+    // Instantiation should fail because the directory is locked by the first instance.
+    assertThrows(IllegalStateException.class, () -> getCache(new NoOpCacheEvictor()));
+  }
+
+  @Test
+  public void write_oneLock_twoFiles_thenRead() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+
+    CacheSpan holeSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(cache, KEY_1, 0, 7);
+    addCache(cache, KEY_1, 7, 8);
+    cache.releaseHoleSpan(holeSpan);
+
+    CacheSpan readSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    assertThat(readSpan.position).isEqualTo(0);
+    assertThat(readSpan.length).isEqualTo(7);
+    assertCachedDataReadCorrect(readSpan);
+    readSpan = cache.startReadWrite(KEY_1, 7, LENGTH_UNSET);
+    assertThat(readSpan.position).isEqualTo(7);
+    assertThat(readSpan.length).isEqualTo(8);
+    assertCachedDataReadCorrect(readSpan);
+    assertThat(cache.getCachedBytes(KEY_1, 0, LENGTH_UNSET)).isEqualTo(15);
+    assertThat(cache.isCached(KEY_1, 0, 15)).isTrue();
+  }
+
+  @Test
+  public void write_differentKeyLocked_thenRead() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+
+    CacheSpan holeSpan1 = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    CacheSpan holeSpan2 = cache.startReadWrite(KEY_2, 0, LENGTH_UNSET);
+    assertThat(holeSpan2.isCached).isFalse();
+    assertThat(holeSpan2.isOpenEnded()).isTrue();
+    addCache(cache, KEY_2, 0, 15);
+
+    CacheSpan readSpan = cache.startReadWrite(KEY_2, 0, LENGTH_UNSET);
+    assertThat(readSpan.length).isEqualTo(15);
+    assertCachedDataReadCorrect(readSpan);
+    assertThat(cache.getCacheSpace()).isEqualTo(15);
+
+    cache.releaseHoleSpan(holeSpan1);
+    cache.releaseHoleSpan(holeSpan2);
+  }
+
+  @Test
+  public void write_boundedRangeLocked_lockingOverlappingRange_fails() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+
+    CacheSpan holeSpan = cache.startReadWrite(KEY_1, 50, 100);
+    assertThat(cache.startReadWriteNonBlocking(KEY_1, 60, 100)).isNull();
+    assertThat(cache.startReadWriteNonBlocking(KEY_1, 0, 100)).isNull();
+    assertThat(cache.startReadWriteNonBlocking(KEY_1, 0, LENGTH_UNSET)).isNull();
+    assertThat(cache.startReadWriteNonBlocking(KEY_1, 150, 10)).isNotNull();
+
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  @Test
+  public void startReadWrite_blocksUntilHoleSpanReleased() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+    CacheSpan holeSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch started = new CountDownLatch(1);
+
+    Future<CacheSpan> blockedSpan =
+        executor.submit(
+            () -> {
+              started.countDown();
+              return cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+            });
+    started.await();
+    addCache(cache, KEY_1, 0, 15);
+    cache.releaseHoleSpan(holeSpan);
+
+    CacheSpan readSpan = blockedSpan.get(10, TimeUnit.SECONDS);
+    assertThat(readSpan.isCached).isTrue();
+    assertCachedDataReadCorrect(readSpan);
+    executor.shutdown();
+  }
+
+  @Test
+  public void applyContentMetadataMutations_setsContentLength() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+    assertThat(ContentMetadata.getContentLength(cache.getContentMetadata(KEY_1)))
+        .isEqualTo(LENGTH_UNSET);
+
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setContentLength(mutations, 15);
+    cache.applyContentMetadataMutations(KEY_1, mutations);
+
+    assertThat(ContentMetadata.getContentLength(cache.getContentMetadata(KEY_1))).isEqualTo(15);
+  }
+
+  @Test
+  public void removeResource_removesSpansAndFiles() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+    CacheSpan holeSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(cache, KEY_1, 0, 10);
+    addCache(cache, KEY_1, 20, 10);
+    cache.releaseHoleSpan(holeSpan);
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY_1);
+
+    cache.removeResource(KEY_1);
+
+    assertThat(cache.getCachedSpans(KEY_1)).isEmpty();
+    assertThat(cache.getKeys()).isEmpty();
+    assertThat(cache.getCacheSpace()).isEqualTo(0);
+    for (CacheSpan span : spans) {
+      assertThat(span.file.exists()).isFalse();
+    }
+  }
+
+  @Test
+  public void getSpan_withDeletedFile_removesStaleSpan() throws Exception {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+    CacheSpan holeSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(cache, KEY_1, 0, 15);
+    cache.releaseHoleSpan(holeSpan);
+    CacheSpan fileSpan = cache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    assertThat(fileSpan.file.delete()).isTrue();
+
+    CacheSpan span = cache.startReadWriteNonBlocking(KEY_1, 0, LENGTH_UNSET);
+
+    assertThat(span.isCached).isFalse();
+    assertThat(cache.getCacheSpace()).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentWritesToDifferentKeys_withEvictor_keepsCacheWithinBounds()
+      throws Exception {
+    int threadCount = 8;
+    int spansPerThread = 20;
+    int spanLength = 100;
+    long maxBytes = 50 * spanLength;
+    ConcurrentSimpleCache cache = getCache(new LeastRecentlyUsedCacheEvictor(maxBytes));
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < threadCount; i++) {
+      String key = "key" + i;
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int j = 0; j < spansPerThread; j++) {
+                  int position = j * spanLength;
+                  CacheSpan holeSpan = cache.startReadWrite(key, position, spanLength);
+                  if (!holeSpan.isCached) {
+                    addCache(cache, key, position, spanLength);
+                    cache.releaseHoleSpan(holeSpan);
+                  }
+                  cache.getCachedBytes(key, 0, LENGTH_UNSET);
+                }
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    long totalCachedBytes = 0;
+    for (String key : cache.getKeys()) {
+      for (CacheSpan span : cache.getCachedSpans(key)) {
+        assertCachedDataReadCorrect(span);
+        totalCachedBytes += span.length;
+      }
+    }
+    assertThat(cache.getCacheSpace()).isEqualTo(totalCachedBytes);
+    assertThat(cache.getCacheSpace()).isAtMost(maxBytes);
+    assertThat(cache.getCacheSpace()).isGreaterThan(0);
+  }
+
+  @Test
+  public void usingReleasedCache_throwsException() {
+    ConcurrentSimpleCache cache = getCache(new NoOpCacheEvictor());
+    cache.release();
+    assertThrows(
+        IllegalStateException.class, () -> cache.startReadWriteNonBlocking(KEY_1, 0, 100));
+  }
+
+  private ConcurrentSimpleCache getCache(CacheEvictor evictor) {
+    return new ConcurrentSimpleCache(
+        cacheDir,
+        evictor,
+        /* databaseProvider= */ null,
+        /* legacyIndexSecretKey= */ null,
+        /* legacyIndexEncrypt= */ false,
+        /* preferLegacyIndex= */ false,
+        ConcurrentSimpleCache.DEFAULT_LOCK_STRIPE_COUNT);
+  }
+
+  private static void addCache(Cache cache, String key, int position, int length)
+      throws IOException {
+    File file = cache.startFile(key, position, length);
+    writeData(file, key, position, length);
+    cache.commitFile(file, length);
+  }
+
+  private static void writeData(File file, String key, int position, int length)
+      throws IOException {
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(generateData(key, position, length));
+    }
+  }
+
+  private static void assertCachedDataReadCorrect(CacheSpan cacheSpan) throws IOException {
+    assertThat(cacheSpan.isCached).isTrue();
+    byte[] expected = generateData(cacheSpan.key, (int) cacheSpan.position, (int) cacheSpan.length);
+    try (FileInputStream inputStream = new FileInputStream(cacheSpan.file)) {
+      assertThat(toByteArray(inputStream)).isEqualTo(expected);
+    }
+  }
+
+  private static byte[] generateData(String key, int position, int length) {
+    byte[] bytes = new byte[length];
+    new Random(key.hashCode() ^ position).nextBytes(bytes);
+    return bytes;
+  }
+}
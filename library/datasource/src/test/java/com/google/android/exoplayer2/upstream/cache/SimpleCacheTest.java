@@ -22,6 +22,7 @@ import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.doAnswer;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.database.DatabaseProvider;
@@ -32,6 +33,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.NavigableSet;
 import java.util.Random;
 import org.junit.After;
@@ -148,6 +150,128 @@ public class SimpleCacheTest {
         .isEqualTo(Uri.parse("https://redirect.google.com"));
   }
 
+  @Test
+  public void newInstance_withExistingCacheDirectory_withJournalIndex_loadsCachedData()
+      throws Exception {
+    SimpleCache simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            /* databaseProvider= */ null,
+            /* useJournalIndex= */ true);
+
+    // Write some data and metadata to the cache.
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    ContentMetadataMutations mutations = new ContentMetadataMutations();
+    ContentMetadataMutations.setRedirectedUri(mutations, Uri.parse("https://redirect.google.com"));
+    simpleCache.applyContentMetadataMutations(KEY_1, mutations);
+    simpleCache.release();
+
+    // Create a new instance pointing to the same directory.
+    simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            /* databaseProvider= */ null,
+            /* useJournalIndex= */ true);
+
+    // Read the cached data and metadata back.
+    CacheSpan fileSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    assertCachedDataReadCorrect(fileSpan);
+    assertThat(ContentMetadata.getRedirectedUri(simpleCache.getContentMetadata(KEY_1)))
+        .isEqualTo(Uri.parse("https://redirect.google.com"));
+  }
+
+  @Test
+  public void newInstance_withSpanManifest_loadsCachedDataFromManifest() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithSpanManifest();
+    assertThat(simpleCache.isInitializedFromSpanManifest()).isFalse();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 10);
+    simpleCache.releaseHoleSpan(holeSpan);
+    simpleCache.release();
+    assertThat(new File(cacheDir, CacheSpanManifest.FILE_NAME).exists()).isTrue();
+
+    simpleCache = getSimpleCacheWithSpanManifest();
+    simpleCache.blockUntilSpansVerified();
+
+    assertThat(simpleCache.isInitializedFromSpanManifest()).isTrue();
+    assertThat(simpleCache.getInitializationDurationMs()).isAtLeast(0);
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(25);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET));
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 15, LENGTH_UNSET));
+    // The manifest is deleted once it's been loaded.
+    assertThat(new File(cacheDir, CacheSpanManifest.FILE_NAME).exists()).isFalse();
+  }
+
+  @Test
+  public void newInstance_withSpanManifest_removesSpansWithMissingFiles() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithSpanManifest();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 10);
+    simpleCache.releaseHoleSpan(holeSpan);
+    File deletedFile = simpleCache.getCachedSpans(KEY_1).last().file;
+    simpleCache.release();
+    assertThat(deletedFile.delete()).isTrue();
+
+    simpleCache = getSimpleCacheWithSpanManifest();
+    simpleCache.blockUntilSpansVerified();
+
+    assertThat(simpleCache.isInitializedFromSpanManifest()).isTrue();
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(15);
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(1);
+  }
+
+  @Test
+  public void newInstance_withSpanManifestAndDatabaseProvider_updatesFileIndex() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithSpanManifest(databaseProvider);
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 15);
+    addCache(simpleCache, KEY_1, 15, 10);
+    simpleCache.releaseHoleSpan(holeSpan);
+    File deletedFile = simpleCache.getCachedSpans(KEY_1).last().file;
+    simpleCache.release();
+    assertThat(deletedFile.delete()).isTrue();
+
+    simpleCache = getSimpleCacheWithSpanManifest(databaseProvider);
+    simpleCache.blockUntilSpansVerified();
+    holeSpan = simpleCache.startReadWrite(KEY_1, 15, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 15, 5);
+    simpleCache.releaseHoleSpan(holeSpan);
+    simpleCache.removeSpan(simpleCache.getCachedSpans(KEY_1).first());
+
+    assertThat(simpleCache.isInitializedFromSpanManifest()).isTrue();
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(5);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 15, LENGTH_UNSET));
+    CacheFileMetadataIndex fileIndex = new CacheFileMetadataIndex(databaseProvider);
+    fileIndex.initialize(simpleCache.getUid());
+    assertThat(fileIndex.getAll().keySet())
+        .containsExactly(simpleCache.getCachedSpans(KEY_1).first().file.getName());
+  }
+
+  @Test
+  public void newInstance_withCorruptSpanManifest_scansCacheDirectory() throws Exception {
+    SimpleCache simpleCache = getSimpleCacheWithSpanManifest();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_1, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    simpleCache.release();
+    File manifestFile = new File(cacheDir, CacheSpanManifest.FILE_NAME);
+    try (RandomAccessFile file = new RandomAccessFile(manifestFile, "rw")) {
+      file.setLength(file.length() - 1);
+    }
+
+    simpleCache = getSimpleCacheWithSpanManifest();
+
+    assertThat(simpleCache.isInitializedFromSpanManifest()).isFalse();
+    assertThat(manifestFile.exists()).isFalse();
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET));
+  }
+
   @Test
   public void newInstance_withExistingCacheInstance_fails() {
     getSimpleCache();
@@ -633,6 +757,20 @@ public class SimpleCacheTest {
     return new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
   }
 
+  private SimpleCache getSimpleCacheWithSpanManifest() {
+    return getSimpleCacheWithSpanManifest(/* databaseProvider= */ null);
+  }
+
+  private SimpleCache getSimpleCacheWithSpanManifest(
+      @Nullable DatabaseProvider databaseProvider) {
+    return new SimpleCache(
+        cacheDir,
+        new NoOpCacheEvictor(),
+        databaseProvider,
+        /* useJournalIndex= */ true,
+        /* useSpanManifest= */ true);
+  }
+
   private static void addCache(SimpleCache simpleCache, String key, int position, int length)
       throws IOException {
     File file = simpleCache.startFile(key, position, length);
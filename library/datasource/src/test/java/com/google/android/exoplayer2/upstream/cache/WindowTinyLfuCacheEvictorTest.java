@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.util.HashMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link WindowTinyLfuCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public class WindowTinyLfuCacheEvictorTest {
+
+  private static final int SPAN_LENGTH = 10;
+  private static final int MAX_BYTES = 20 * SPAN_LENGTH;
+
+  @Test
+  public void contentBiggerThanMaxSizeDoesNotThrowException() throws Exception {
+    WindowTinyLfuCacheEvictor evictor = new WindowTinyLfuCacheEvictor(MAX_BYTES);
+    evictor.onCacheInitialized();
+    evictor.onStartFile(mock(Cache.class), "key", 0, MAX_BYTES + 1);
+  }
+
+  @Test
+  public void addSpans_beyondMaxBytes_evictsToMaxBytes() {
+    FakeCache cache = new FakeCache(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+
+    for (int i = 0; i < 100; i++) {
+      cache.access("key", (long) i * SPAN_LENGTH);
+    }
+
+    assertThat(cache.getCachedBytes()).isAtMost(MAX_BYTES);
+    // The most recently written span is always retained.
+    assertThat(cache.isCached("key", 99 * SPAN_LENGTH)).isTrue();
+  }
+
+  @Test
+  public void scan_doesNotEvictFrequentlyAccessedSpans() {
+    FakeCache cache = new FakeCache(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+
+    accessHotSpansThenScan(cache);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.isCached("hot", (long) i * SPAN_LENGTH)).isTrue();
+    }
+    assertThat(cache.getCachedBytes()).isAtMost(MAX_BYTES);
+  }
+
+  @Test
+  public void scan_withLeastRecentlyUsedCacheEvictor_evictsFrequentlyAccessedSpans() {
+    FakeCache cache = new FakeCache(new LeastRecentlyUsedCacheEvictor(MAX_BYTES));
+
+    accessHotSpansThenScan(cache);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.isCached("hot", (long) i * SPAN_LENGTH)).isFalse();
+    }
+  }
+
+  @Test
+  public void repeatedlyAccessedNewSpans_areAdmittedToMainSpace() {
+    FakeCache cache = new FakeCache(new WindowTinyLfuCacheEvictor(MAX_BYTES));
+    // Fill the cache with spans that are each accessed once.
+    for (int i = 0; i < 20; i++) {
+      cache.access("old", (long) i * SPAN_LENGTH);
+    }
+
+    // New spans that are accessed repeatedly should displace them.
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 10; i++) {
+        cache.access("new", (long) i * SPAN_LENGTH);
+      }
+    }
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.isCached("new", (long) i * SPAN_LENGTH)).isTrue();
+    }
+  }
+
+  private static void accessHotSpansThenScan(FakeCache cache) {
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 10; i++) {
+        cache.access("hot", (long) i * SPAN_LENGTH);
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      cache.access("scan", (long) i * SPAN_LENGTH);
+    }
+  }
+
+  /**
+   * Simulates the interaction between a {@link Cache} and a {@link CacheEvictor}, where each access
+   * either touches an existing span or writes a new one.
+   */
+  private static final class FakeCache {
+
+    private final CacheEvictor evictor;
+    private final Cache cache;
+    private final HashMap<String, CacheSpan> spans;
+
+    private long timestamp;
+
+    public FakeCache(CacheEvictor evictor) {
+      this.evictor = evictor;
+      spans = new HashMap<>();
+      cache = mock(Cache.class);
+      doAnswer(
+              invocation -> {
+                CacheSpan span = invocation.getArgument(0);
+                spans.remove(getId(span.key, span.position));
+                evictor.onSpanRemoved(cache, span);
+                return null;
+              })
+          .when(cache)
+          .removeSpan(any());
+      evictor.onCacheInitialized();
+    }
+
+    public void access(String key, long position) {
+      String id = getId(key, position);
+      CacheSpan span = spans.get(id);
+      if (span != null) {
+        CacheSpan newSpan = createSpan(key, position);
+        spans.put(id, newSpan);
+        evictor.onSpanTouched(cache, span, newSpan);
+      } else {
+        evictor.onStartFile(cache, key, position, SPAN_LENGTH);
+        CacheSpan newSpan = createSpan(key, position);
+        spans.put(id, newSpan);
+        evictor.onSpanAdded(cache, newSpan);
+      }
+    }
+
+    public boolean isCached(String key, long position) {
+      return spans.containsKey(getId(key, position));
+    }
+
+    public long getCachedBytes() {
+      return (long) spans.size() * SPAN_LENGTH;
+    }
+
+    private CacheSpan createSpan(String key, long position) {
+      return new CacheSpan(
+          key, position, SPAN_LENGTH, ++timestamp, new File(getId(key, position)));
+    }
+
+    private static String getId(String key, long position) {
+      return key + "." + position;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -96,6 +97,33 @@ public final class DefaultExtractorInput implements ExtractorInput {
     readFully(target, offset, length, false);
   }
 
+  @Override
+  public int read(ByteBuffer buffer) throws IOException {
+    int bytesRead = readFromPeekBuffer(buffer);
+    if (bytesRead == 0) {
+      bytesRead =
+          readFromUpstream(buffer, /* bytesAlreadyRead= */ 0, /* allowEndOfInput= */ true);
+    }
+    commitBytesRead(bytesRead);
+    return bytesRead;
+  }
+
+  @Override
+  public boolean readFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    int length = target.remaining();
+    int bytesRead = readFromPeekBuffer(target);
+    while (bytesRead < length && bytesRead != C.RESULT_END_OF_INPUT) {
+      bytesRead = readFromUpstream(target, bytesRead, allowEndOfInput);
+    }
+    commitBytesRead(bytesRead);
+    return bytesRead != C.RESULT_END_OF_INPUT;
+  }
+
+  @Override
+  public void readFully(ByteBuffer target) throws IOException {
+    readFully(target, false);
+  }
+
   @Override
   public int skip(int length) throws IOException {
     int bytesSkipped = skipFromPeekBuffer(length);
@@ -163,6 +191,21 @@ public final class DefaultExtractorInput implements ExtractorInput {
     peekFully(target, offset, length, false);
   }
 
+  @Override
+  public boolean peekFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    int length = target.remaining();
+    if (!advancePeekPosition(length, allowEndOfInput)) {
+      return false;
+    }
+    target.put(peekBuffer, peekBufferPosition - length, length);
+    return true;
+  }
+
+  @Override
+  public void peekFully(ByteBuffer target) throws IOException {
+    peekFully(target, false);
+  }
+
   @Override
   public boolean advancePeekPosition(int length, boolean allowEndOfInput) throws IOException {
     ensureSpaceForPeek(length);
@@ -257,6 +300,23 @@ public final class DefaultExtractorInput implements ExtractorInput {
     return peekBytes;
   }
 
+  /**
+   * Reads from the peek buffer.
+   *
+   * @param target A target buffer into which up to {@code target.remaining()} bytes should be
+   *     written.
+   * @return The number of bytes read.
+   */
+  private int readFromPeekBuffer(ByteBuffer target) {
+    if (peekBufferLength == 0) {
+      return 0;
+    }
+    int peekBytes = min(peekBufferLength, target.remaining());
+    target.put(peekBuffer, 0, peekBytes);
+    updatePeekBuffer(peekBytes);
+    return peekBytes;
+  }
+
   /**
    * Updates the peek buffer's length, position and contents after consuming data.
    *
@@ -306,6 +366,35 @@ public final class DefaultExtractorInput implements ExtractorInput {
     return bytesAlreadyRead + bytesRead;
   }
 
+  /**
+   * Starts or continues a read from the data reader into a {@link ByteBuffer}, writing directly
+   * into it.
+   *
+   * @param target A target buffer into which up to {@code target.remaining()} bytes should be
+   *     written.
+   * @param bytesAlreadyRead The number of bytes already read from the input.
+   * @param allowEndOfInput See {@link #readFromUpstream(byte[], int, int, int, boolean)}.
+   * @return The total number of bytes read so far, or {@link C#RESULT_END_OF_INPUT} if {@code
+   *     allowEndOfInput} is true and the input has ended having read no bytes.
+   * @throws EOFException If the end of input was encountered having partially satisfied the read,
+   *     or if no bytes were read and {@code allowEndOfInput} is false.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  private int readFromUpstream(ByteBuffer target, int bytesAlreadyRead, boolean allowEndOfInput)
+      throws IOException {
+    if (Thread.interrupted()) {
+      throw new InterruptedIOException();
+    }
+    int bytesRead = dataReader.read(target);
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      if (bytesAlreadyRead == 0 && allowEndOfInput) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      throw new EOFException();
+    }
+    return bytesAlreadyRead + bytesRead;
+  }
+
   /**
    * Advances the position by the specified number of bytes read.
    *
@@ -137,6 +137,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   // TODO (b/260245332): Initialize tsSubtitleFormats in constructor once shrinking bug is fixed.
   @Nullable private ImmutableList<Format> tsSubtitleFormats;
   private int tsTimestampSearchBytes;
+  private int tsPayloadReaderThreadCount;
 
   public DefaultExtractorsFactory() {
     tsMode = TsExtractor.MODE_SINGLE_PMT;
@@ -340,6 +341,22 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     return this;
   }
 
+  /**
+   * Sets the number of background threads on which {@link TsExtractor} instances created by the
+   * factory consume packet payloads. The default value is 0, which means that payloads are consumed
+   * on the loading thread.
+   *
+   * @see TsExtractor#TsExtractor(int, TimestampAdjuster, TsPayloadReader.Factory, int, int)
+   * @param payloadReaderThreadCount The number of background threads to use.
+   * @return The factory, for convenience.
+   */
+  @CanIgnoreReturnValue
+  public synchronized DefaultExtractorsFactory setTsExtractorPayloadReaderThreadCount(
+      int payloadReaderThreadCount) {
+    tsPayloadReaderThreadCount = payloadReaderThreadCount;
+    return this;
+  }
+
   @Override
   public synchronized Extractor[] createExtractors() {
     return createExtractors(Uri.EMPTY, new HashMap<>());
@@ -348,23 +365,46 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   @Override
   public synchronized Extractor[] createExtractors(
       Uri uri, Map<String, List<String>> responseHeaders) {
+    return createExtractors(uri, responseHeaders, /* headerFileType= */ FileTypes.UNKNOWN);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The extractors for {@code headerFileType} are returned first, followed by the extractors for
+   * the file types inferred from the response headers and from the URI, followed by the remaining
+   * extractors in the default order.
+   */
+  @Override
+  public synchronized Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      @FileTypes.Type int headerFileType) {
     List<Extractor> extractors =
         new ArrayList<>(/* initialCapacity= */ DEFAULT_EXTRACTOR_ORDER.length);
 
+    if (headerFileType != FileTypes.UNKNOWN) {
+      addExtractorsForFileType(headerFileType, extractors);
+    }
+
     @FileTypes.Type
     int responseHeadersInferredFileType = inferFileTypeFromResponseHeaders(responseHeaders);
-    if (responseHeadersInferredFileType != FileTypes.UNKNOWN) {
+    if (responseHeadersInferredFileType != FileTypes.UNKNOWN
+        && responseHeadersInferredFileType != headerFileType) {
       addExtractorsForFileType(responseHeadersInferredFileType, extractors);
     }
 
     @FileTypes.Type int uriInferredFileType = inferFileTypeFromUri(uri);
     if (uriInferredFileType != FileTypes.UNKNOWN
+        && uriInferredFileType != headerFileType
         && uriInferredFileType != responseHeadersInferredFileType) {
       addExtractorsForFileType(uriInferredFileType, extractors);
     }
 
     for (int fileType : DEFAULT_EXTRACTOR_ORDER) {
-      if (fileType != responseHeadersInferredFileType && fileType != uriInferredFileType) {
+      if (fileType != headerFileType
+          && fileType != responseHeadersInferredFileType
+          && fileType != uriInferredFileType) {
         addExtractorsForFileType(fileType, extractors);
       }
     }
@@ -446,7 +486,8 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
                 tsMode,
                 new TimestampAdjuster(0),
                 new DefaultTsPayloadReaderFactory(tsFlags, tsSubtitleFormats),
-                tsTimestampSearchBytes));
+                tsTimestampSearchBytes,
+                tsPayloadReaderThreadCount));
         break;
       case FileTypes.WAV:
         extractors.add(new WavExtractor());
@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A fake {@link TrackOutput} implementation.
@@ -70,6 +71,11 @@ public final class DummyTrackOutput implements TrackOutput {
     data.skipBytes(length);
   }
 
+  @Override
+  public void sampleData(ByteBuffer data, int length, @SampleDataPart int sampleDataPart) {
+    data.position(data.position() + length);
+  }
+
   @Override
   public void sampleMetadata(
       long timeUs,
@@ -20,6 +20,7 @@ import com.google.android.exoplayer2.upstream.DataReader;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Provides data to be consumed by an {@link Extractor}.
@@ -119,6 +120,55 @@ public interface ExtractorInput extends DataReader {
    */
   void readFully(byte[] target, int offset, int length) throws IOException;
 
+  /**
+   * Like {@link #readFully(byte[], int, int, boolean)}, but reads {@link ByteBuffer#remaining()
+   * target.remaining()} bytes into {@code target}, starting at its position. The position of
+   * {@code target} is advanced by the number of bytes read.
+   *
+   * <p>The default implementation reads directly into the backing array of buffers that have one,
+   * and into a temporary array otherwise.
+   *
+   * @param target The target buffer into which data should be written.
+   * @param allowEndOfInput True if encountering the end of the input having read no data is
+   *     allowed, and should result in {@code false} being returned. False if it should be
+   *     considered an error, causing an {@link EOFException} to be thrown. See note in class
+   *     Javadoc.
+   * @return True if the read was successful. False if {@code allowEndOfInput=true} and the end of
+   *     the input was encountered having read no data.
+   * @throws EOFException If the end of input was encountered having partially satisfied the read
+   *     (i.e. having read at least one byte, but fewer than {@code target.remaining()}), or if no
+   *     bytes were read and {@code allowEndOfInput} is false.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  default boolean readFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    int length = target.remaining();
+    if (target.hasArray()) {
+      int offset = target.arrayOffset() + target.position();
+      if (!readFully(target.array(), offset, length, allowEndOfInput)) {
+        return false;
+      }
+      target.position(target.position() + length);
+    } else {
+      byte[] data = new byte[length];
+      if (!readFully(data, /* offset= */ 0, length, allowEndOfInput)) {
+        return false;
+      }
+      target.put(data);
+    }
+    return true;
+  }
+
+  /**
+   * Equivalent to {@link #readFully(ByteBuffer, boolean) readFully(target, false)}.
+   *
+   * @param target The target buffer into which data should be written.
+   * @throws EOFException If the end of input was encountered.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  default void readFully(ByteBuffer target) throws IOException {
+    readFully(target, /* allowEndOfInput= */ false);
+  }
+
   /**
    * Like {@link #read(byte[], int, int)}, except the data is skipped instead of read.
    *
@@ -208,6 +258,55 @@ public interface ExtractorInput extends DataReader {
    */
   void peekFully(byte[] target, int offset, int length) throws IOException;
 
+  /**
+   * Like {@link #peekFully(byte[], int, int, boolean)}, but peeks {@link ByteBuffer#remaining()
+   * target.remaining()} bytes into {@code target}, starting at its position. The position of
+   * {@code target} is advanced by the number of bytes peeked.
+   *
+   * <p>The default implementation peeks directly into the backing array of buffers that have one,
+   * and into a temporary array otherwise.
+   *
+   * @param target The target buffer into which data should be written.
+   * @param allowEndOfInput True if encountering the end of the input having peeked no data is
+   *     allowed, and should result in {@code false} being returned. False if it should be
+   *     considered an error, causing an {@link EOFException} to be thrown. See note in class
+   *     Javadoc.
+   * @return True if the peek was successful. False if {@code allowEndOfInput=true} and the end of
+   *     the input was encountered having peeked no data.
+   * @throws EOFException If the end of input was encountered having partially satisfied the peek
+   *     (i.e. having peeked at least one byte, but fewer than {@code target.remaining()}), or if no
+   *     bytes were peeked and {@code allowEndOfInput} is false.
+   * @throws IOException If an error occurs peeking from the input.
+   */
+  default boolean peekFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    int length = target.remaining();
+    if (target.hasArray()) {
+      int offset = target.arrayOffset() + target.position();
+      if (!peekFully(target.array(), offset, length, allowEndOfInput)) {
+        return false;
+      }
+      target.position(target.position() + length);
+    } else {
+      byte[] data = new byte[length];
+      if (!peekFully(data, /* offset= */ 0, length, allowEndOfInput)) {
+        return false;
+      }
+      target.put(data);
+    }
+    return true;
+  }
+
+  /**
+   * Equivalent to {@link #peekFully(ByteBuffer, boolean) peekFully(target, false)}.
+   *
+   * @param target The target buffer into which data should be written.
+   * @throws EOFException If the end of input was encountered.
+   * @throws IOException If an error occurs peeking from the input.
+   */
+  default void peekFully(ByteBuffer target) throws IOException {
+    peekFully(target, /* allowEndOfInput= */ false);
+  }
+
   /**
    * Advances the peek position by {@code length} bytes. Like {@link #peekFully(byte[], int, int,
    * boolean)} except the data is skipped instead of read.
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor;
 
 import android.net.Uri;
+import com.google.android.exoplayer2.util.FileTypes;
 import java.util.List;
 import java.util.Map;
 
@@ -50,4 +51,24 @@ public interface ExtractorsFactory {
   default Extractor[] createExtractors(Uri uri, Map<String, List<String>> responseHeaders) {
     return createExtractors();
   }
+
+  /**
+   * Returns an array of new {@link Extractor} instances, using the file type inferred from the
+   * start of the stream to prioritize the extractors most likely to read it.
+   *
+   * <p>The default implementation ignores {@code headerFileType}.
+   *
+   * @param uri The {@link Uri} of the media to extract.
+   * @param responseHeaders The response headers of the media to extract, or an empty map if there
+   *     are none. The map lookup should be case-insensitive.
+   * @param headerFileType The {@link FileTypes.Type} inferred from the start of the stream by
+   *     {@link FileTypes#inferFileTypeFromHeader(byte[], int)}, or {@link FileTypes#UNKNOWN}.
+   * @return The {@link Extractor} instances.
+   */
+  default Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      @FileTypes.Type int headerFileType) {
+    return createExtractors(uri, responseHeaders);
+  }
 }
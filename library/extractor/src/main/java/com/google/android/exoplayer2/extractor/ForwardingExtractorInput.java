@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * An overridable {@link ExtractorInput} implementation forwarding all methods to another input.
@@ -39,6 +40,11 @@ public class ForwardingExtractorInput implements ExtractorInput {
     return input.read(buffer, offset, length);
   }
 
+  @Override
+  public int read(ByteBuffer buffer) throws IOException {
+    return input.read(buffer);
+  }
+
   @Override
   public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput)
       throws IOException {
@@ -50,6 +56,16 @@ public class ForwardingExtractorInput implements ExtractorInput {
     input.readFully(target, offset, length);
   }
 
+  @Override
+  public boolean readFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    return input.readFully(target, allowEndOfInput);
+  }
+
+  @Override
+  public void readFully(ByteBuffer target) throws IOException {
+    input.readFully(target);
+  }
+
   @Override
   public int skip(int length) throws IOException {
     return input.skip(length);
@@ -81,6 +97,16 @@ public class ForwardingExtractorInput implements ExtractorInput {
     input.peekFully(target, offset, length);
   }
 
+  @Override
+  public boolean peekFully(ByteBuffer target, boolean allowEndOfInput) throws IOException {
+    return input.peekFully(target, allowEndOfInput);
+  }
+
+  @Override
+  public void peekFully(ByteBuffer target) throws IOException {
+    input.peekFully(target);
+  }
+
   @Override
   public boolean advancePeekPosition(int length, boolean allowEndOfInput) throws IOException {
     return input.advancePeekPosition(length, allowEndOfInput);
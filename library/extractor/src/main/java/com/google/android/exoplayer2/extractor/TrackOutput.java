@@ -29,6 +29,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -198,6 +199,32 @@ public interface TrackOutput {
    */
   void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart);
 
+  /**
+   * Called to write sample data to the output.
+   *
+   * <p>The default implementation passes the data to {@link #sampleData(ParsableByteArray, int,
+   * int)}, copying it into a temporary array if {@code data} doesn't have a backing array.
+   * Implementations that store sample data should override it to copy from {@code data} directly.
+   *
+   * @param data A {@link ByteBuffer} from which to read the sample data. Its position is advanced
+   *     by {@code length}.
+   * @param length The number of bytes to read, starting from {@code data.position()}.
+   * @param sampleDataPart The part of the sample data to which this call corresponds.
+   */
+  default void sampleData(ByteBuffer data, int length, @SampleDataPart int sampleDataPart) {
+    ParsableByteArray array;
+    if (data.hasArray()) {
+      int offset = data.arrayOffset() + data.position();
+      array = new ParsableByteArray(data.array(), /* limit= */ offset + length);
+      array.setPosition(offset);
+      data.position(data.position() + length);
+    } else {
+      array = new ParsableByteArray(length);
+      data.get(array.getData(), /* offset= */ 0, length);
+    }
+    sampleData(array, length, sampleDataPart);
+  }
+
   /**
    * Called when metadata associated with a sample has been extracted from the stream.
    *
@@ -28,7 +28,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
@@ -60,8 +60,9 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private static final int VALID_FLOAT32_ELEMENT_SIZE_BYTES = 4;
   private static final int VALID_FLOAT64_ELEMENT_SIZE_BYTES = 8;
 
+  private static final int INITIAL_MASTER_ELEMENTS_STACK_CAPACITY = 8;
+
   private final byte[] scratch;
-  private final ArrayDeque<MasterElement> masterElementsStack;
   private final VarintReader varintReader;
 
   private @MonotonicNonNull EbmlProcessor processor;
@@ -69,10 +70,18 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private int elementId;
   private long elementContentSize;
 
+  // Stack of the master elements being read, used to track when each one ends so that
+  // EbmlProcessor.endMasterElement(int) can be called. Primitive arrays are used so that starting a
+  // master element (such as a BlockGroup) doesn't allocate.
+  private int[] masterElementIds;
+  private long[] masterElementEndPositions;
+  private int masterElementCount;
+
   public DefaultEbmlReader() {
     scratch = new byte[8];
-    masterElementsStack = new ArrayDeque<>();
     varintReader = new VarintReader();
+    masterElementIds = new int[INITIAL_MASTER_ELEMENTS_STACK_CAPACITY];
+    masterElementEndPositions = new long[INITIAL_MASTER_ELEMENTS_STACK_CAPACITY];
   }
 
   @Override
@@ -83,7 +92,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   @Override
   public void reset() {
     elementState = ELEMENT_STATE_READ_ID;
-    masterElementsStack.clear();
+    masterElementCount = 0;
     varintReader.reset();
   }
 
@@ -91,9 +100,10 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   public boolean read(ExtractorInput input) throws IOException {
     Assertions.checkStateNotNull(processor);
     while (true) {
-      MasterElement head = masterElementsStack.peek();
-      if (head != null && input.getPosition() >= head.elementEndPosition) {
-        processor.endMasterElement(masterElementsStack.pop().elementId);
+      if (masterElementCount > 0
+          && input.getPosition() >= masterElementEndPositions[masterElementCount - 1]) {
+        masterElementCount--;
+        processor.endMasterElement(masterElementIds[masterElementCount]);
         return true;
       }
 
@@ -120,7 +130,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
         case EbmlProcessor.ELEMENT_TYPE_MASTER:
           long elementContentPosition = input.getPosition();
           long elementEndPosition = elementContentPosition + elementContentSize;
-          masterElementsStack.push(new MasterElement(elementId, elementEndPosition));
+          pushMasterElement(elementId, elementEndPosition);
           processor.startMasterElement(elementId, elementContentPosition, elementContentSize);
           elementState = ELEMENT_STATE_READ_ID;
           return true;
@@ -164,6 +174,16 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
   }
 
+  private void pushMasterElement(int elementId, long elementEndPosition) {
+    if (masterElementCount == masterElementIds.length) {
+      masterElementIds = Arrays.copyOf(masterElementIds, masterElementCount * 2);
+      masterElementEndPositions = Arrays.copyOf(masterElementEndPositions, masterElementCount * 2);
+    }
+    masterElementIds[masterElementCount] = elementId;
+    masterElementEndPositions[masterElementCount] = elementEndPosition;
+    masterElementCount++;
+  }
+
   /**
    * Does a byte by byte search to try and find the next level 1 element. This method is called if
    * some invalid data is encountered in the parser.
@@ -249,19 +269,4 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
     return new String(stringBytes, 0, trimmedLength);
   }
-
-  /**
-   * Used in {@link #masterElementsStack} to track when the current master element ends, so that
-   * {@link EbmlProcessor#endMasterElement(int)} can be called.
-   */
-  private static final class MasterElement {
-
-    private final int elementId;
-    private final long elementEndPosition;
-
-    private MasterElement(int elementId, long elementEndPosition) {
-      this.elementId = elementId;
-      this.elementEndPosition = elementEndPosition;
-    }
-  }
 }
@@ -55,6 +55,7 @@ import com.google.android.exoplayer2.video.ColorInfo;
 import com.google.android.exoplayer2.video.DolbyVisionConfig;
 import com.google.android.exoplayer2.video.HevcConfig;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
@@ -90,15 +91,15 @@ public class MatroskaExtractor implements Extractor {
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new MatroskaExtractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_DISABLE_SEEK_FOR_CUES}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_DISABLE_SEEK_FOR_CUES} and {@link #FLAG_INCREMENTAL_CUES}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @Target(TYPE_USE)
   @IntDef(
       flag = true,
-      value = {FLAG_DISABLE_SEEK_FOR_CUES})
+      value = {FLAG_DISABLE_SEEK_FOR_CUES, FLAG_INCREMENTAL_CUES})
   public @interface Flags {}
   /**
    * Flag to disable seeking for cues.
@@ -109,11 +110,28 @@ public class MatroskaExtractor implements Extractor {
    * media is treated as being unseekable.
    */
   public static final int FLAG_DISABLE_SEEK_FOR_CUES = 1;
+  /**
+   * Flag to read the cues element incrementally.
+   *
+   * <p>Normally (i.e. when this flag is not set) the extractor reads the whole cues element before
+   * outputting a {@link SeekMap}, and so before outputting any samples. When this flag is set, the
+   * cues element is read in parts of around 64 KiB. A {@link SeekMap} built from the cue points
+   * read so far is output after the first part has been read, and a refined one is output after
+   * each further part. Further parts are read at the start of each subsequent cluster, and the
+   * rest of the cues element is read when it's reached during extraction. Until all cue points
+   * have been read, seeking to a time after the last cue point read seeks to that cue point.
+   *
+   * <p>This flag has no effect if {@link #FLAG_DISABLE_SEEK_FOR_CUES} is set.
+   */
+  public static final int FLAG_INCREMENTAL_CUES = 1 << 1;
 
   private static final String TAG = "MatroskaExtractor";
 
   private static final int UNSET_ENTRY_ID = -1;
 
+  /** The number of bytes of the cues element read in each part, when reading it incrementally. */
+  private static final int INCREMENTAL_CUES_PASS_LENGTH = 64 * 1024;
+
   private static final int BLOCK_STATE_START = 0;
   private static final int BLOCK_STATE_HEADER = 1;
   private static final int BLOCK_STATE_DATA = 2;
@@ -387,6 +405,8 @@ public class MatroskaExtractor implements Extractor {
   private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
   private final boolean seekForCuesEnabled;
+  private final boolean incrementalCuesEnabled;
+  private final int incrementalCuesPassLength;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -426,6 +446,17 @@ public class MatroskaExtractor implements Extractor {
   @Nullable private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
 
+  // Incremental cue reading state. A pass reads cue points from cuesResumePosition until the end of
+  // the first cue point that ends at or after cuesPassEndPosition, or until the end of the Cues
+  // element, and then seeks back to seekPositionAfterBuildingCues.
+  private boolean readingCues;
+  private long cuesEndPosition = C.INDEX_UNSET;
+  private long cuesResumePosition = C.INDEX_UNSET;
+  private long cuesPassEndPosition;
+  private long cuePointEndPosition;
+  private int committedCuePointCount;
+  private long pendingCuesSeekPosition = C.INDEX_UNSET;
+
   // Reading state.
   private boolean haveOutputSample;
 
@@ -466,9 +497,16 @@ public class MatroskaExtractor implements Extractor {
   }
 
   /* package */ MatroskaExtractor(EbmlReader reader, @Flags int flags) {
+    this(reader, flags, INCREMENTAL_CUES_PASS_LENGTH);
+  }
+
+  /* package */ MatroskaExtractor(
+      EbmlReader reader, @Flags int flags, int incrementalCuesPassLength) {
     this.reader = reader;
     this.reader.init(new InnerEbmlProcessor());
     seekForCuesEnabled = (flags & FLAG_DISABLE_SEEK_FOR_CUES) == 0;
+    incrementalCuesEnabled = seekForCuesEnabled && (flags & FLAG_INCREMENTAL_CUES) != 0;
+    this.incrementalCuesPassLength = incrementalCuesPassLength;
     varintReader = new VarintReader();
     tracks = new SparseArray<>();
     scratch = new ParsableByteArray(4);
@@ -505,6 +543,17 @@ public class MatroskaExtractor implements Extractor {
     for (int i = 0; i < tracks.size(); i++) {
       tracks.valueAt(i).reset();
     }
+    if (readingCues) {
+      // Abandon the current pass over the cues. The next one starts after the last cue point that
+      // was read completely.
+      readingCues = false;
+      seekPositionAfterBuildingCues = C.INDEX_UNSET;
+      if (cueTimesUs != null && cueClusterPositions != null) {
+        cueTimesUs = truncate(cueTimesUs, committedCuePointCount);
+        cueClusterPositions = truncate(cueClusterPositions, committedCuePointCount);
+      }
+    }
+    pendingCuesSeekPosition = C.INDEX_UNSET;
   }
 
   @Override
@@ -523,6 +572,12 @@ public class MatroskaExtractor implements Extractor {
       }
     }
     if (!continueReading) {
+      if (readingCues) {
+        // The input ended before the end of the Cues element, which must be truncated.
+        seekPosition.position = endCuesPass(/* allCuePointsRead= */ true);
+        reader.reset();
+        return Extractor.RESULT_SEEK;
+      }
       for (int i = 0; i < tracks.size(); i++) {
         Track track = tracks.valueAt(i);
         track.assertOutputInitialized();
@@ -676,13 +731,23 @@ public class MatroskaExtractor implements Extractor {
         seekEntryPosition = C.INDEX_UNSET;
         break;
       case ID_CUES:
-        cueTimesUs = new LongArray();
-        cueClusterPositions = new LongArray();
+        if (incrementalCuesEnabled) {
+          startIncrementalCues(contentPosition, contentSize);
+        } else {
+          cueTimesUs = new LongArray();
+          cueClusterPositions = new LongArray();
+        }
         break;
       case ID_CUE_POINT:
         seenClusterPositionForCurrentCuePoint = false;
+        cuePointEndPosition = contentPosition + contentSize;
         break;
       case ID_CLUSTER:
+        if (readingCues) {
+          // The end of the Cues element has been passed. This is handled after the element has been
+          // started.
+          break;
+        }
         if (!sentSeekMap) {
           // We need to build cues before parsing the cluster.
           if (seekForCuesEnabled && cuesContentPosition != C.INDEX_UNSET) {
@@ -694,6 +759,12 @@ public class MatroskaExtractor implements Extractor {
             extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
             sentSeekMap = true;
           }
+        } else if (incrementalCuesEnabled && cuesResumePosition != C.INDEX_UNSET) {
+          // Read the next part of the cues, then come back to the start of the cluster's content.
+          readingCues = true;
+          seekPositionAfterBuildingCues = contentPosition;
+          cuesPassEndPosition = cuesResumePosition + incrementalCuesPassLength;
+          pendingCuesSeekPosition = cuesResumePosition;
         }
         break;
       case ID_BLOCK_GROUP:
@@ -744,7 +815,17 @@ public class MatroskaExtractor implements Extractor {
           cuesContentPosition = seekEntryPosition;
         }
         break;
+      case ID_CUE_POINT:
+        if (readingCues) {
+          committedCuePointCount = checkStateNotNull(cueTimesUs).size();
+          cuesResumePosition = cuePointEndPosition;
+        }
+        break;
       case ID_CUES:
+        if (incrementalCuesEnabled) {
+          // Handled in maybeSeekForIncrementalCues, based on the position of the input.
+          break;
+        }
         if (!sentSeekMap) {
           extractorOutput.seekMap(buildSeekMap(cueTimesUs, cueClusterPositions));
           sentSeekMap = true;
@@ -763,11 +844,13 @@ public class MatroskaExtractor implements Extractor {
         track.assertOutputInitialized();
         if (blockGroupDiscardPaddingNs > 0L && CODEC_ID_OPUS.equals(track.codecId)) {
           // For Opus, attach DiscardPadding to the block group samples as supplemental data.
-          supplementalData.reset(
-              ByteBuffer.allocate(8)
-                  .order(ByteOrder.LITTLE_ENDIAN)
-                  .putLong(blockGroupDiscardPaddingNs)
-                  .array());
+          // The value is written in little endian byte order into the reusable buffer, so that no
+          // allocation is needed for each block group.
+          supplementalData.reset(/* limit= */ 8);
+          byte[] supplementalDataBytes = supplementalData.getData();
+          for (int i = 0; i < 8; i++) {
+            supplementalDataBytes[i] = (byte) (blockGroupDiscardPaddingNs >>> (i * 8));
+          }
         }
 
         // Commit sample metadata.
@@ -1820,7 +1903,8 @@ public class MatroskaExtractor implements Extractor {
       durationsUs[i] = timesUs[i + 1] - timesUs[i];
     }
     sizes[cuePointsSize - 1] =
-        (int) (segmentContentPosition + segmentContentSize - offsets[cuePointsSize - 1]);
+        Ints.saturatedCast(
+            segmentContentPosition + segmentContentSize - offsets[cuePointsSize - 1]);
     durationsUs[cuePointsSize - 1] = durationUs - timesUs[cuePointsSize - 1];
 
     long lastDurationUs = durationsUs[cuePointsSize - 1];
@@ -1845,6 +1929,9 @@ public class MatroskaExtractor implements Extractor {
    * @return Whether the seek position was updated.
    */
   private boolean maybeSeekForCues(PositionHolder seekPosition, long currentPosition) {
+    if (incrementalCuesEnabled) {
+      return maybeSeekForIncrementalCues(seekPosition, currentPosition);
+    }
     if (seekForCues) {
       seekPositionAfterBuildingCues = currentPosition;
       seekPosition.position = cuesContentPosition;
@@ -1861,6 +1948,106 @@ public class MatroskaExtractor implements Extractor {
     return false;
   }
 
+  /**
+   * Called when the start of the Cues element is found, when reading the cues incrementally.
+   *
+   * @param contentPosition The position of the start of the element's content.
+   * @param contentSize The size of the element's content.
+   */
+  private void startIncrementalCues(long contentPosition, long contentSize) {
+    if (cuesEndPosition == C.INDEX_UNSET) {
+      // This is the first time the Cues element has been found.
+      cuesEndPosition = contentPosition + contentSize;
+      cuesResumePosition = contentPosition;
+      cuesPassEndPosition = contentPosition + incrementalCuesPassLength;
+      cueTimesUs = new LongArray();
+      cueClusterPositions = new LongArray();
+      committedCuePointCount = 0;
+      if (!readingCues) {
+        // The Cues element was found in sequence. Read the first part of it and skip the rest.
+        readingCues = true;
+        seekPositionAfterBuildingCues = cuesEndPosition;
+      }
+    } else if (cuesResumePosition != C.INDEX_UNSET) {
+      // The Cues element was found in sequence after part of it has been read. Read the rest of it.
+      readingCues = true;
+      seekPositionAfterBuildingCues = cuesEndPosition;
+      cuesPassEndPosition = cuesEndPosition;
+      pendingCuesSeekPosition = cuesResumePosition;
+    } else {
+      // The Cues element was found in sequence after all of it has been read. Skip it.
+      pendingCuesSeekPosition = cuesEndPosition;
+    }
+  }
+
+  /**
+   * Updates the position of the holder if a seek is needed to read the next part of the cues, or
+   * to return to where the extractor was before reading it.
+   *
+   * @param seekPosition The holder whose position will be updated.
+   * @param currentPosition Current position of the input.
+   * @return Whether the seek position was updated.
+   */
+  private boolean maybeSeekForIncrementalCues(PositionHolder seekPosition, long currentPosition) {
+    long position = C.INDEX_UNSET;
+    if (seekForCues) {
+      // Read the first part of the Cues element, then come back to the first cluster.
+      seekForCues = false;
+      readingCues = true;
+      seekPositionAfterBuildingCues = currentPosition;
+      position = cuesContentPosition;
+    } else if (pendingCuesSeekPosition != C.INDEX_UNSET) {
+      position = pendingCuesSeekPosition;
+      pendingCuesSeekPosition = C.INDEX_UNSET;
+    } else if (readingCues && cuesEndPosition != C.INDEX_UNSET) {
+      boolean allCuePointsRead = currentPosition >= cuesEndPosition;
+      if (allCuePointsRead || cuesResumePosition >= cuesPassEndPosition) {
+        long positionAfterPass = endCuesPass(allCuePointsRead);
+        if (positionAfterPass != currentPosition) {
+          position = positionAfterPass;
+        }
+      }
+    }
+    if (position == C.INDEX_UNSET) {
+      return false;
+    }
+    // The master elements being read don't contain the new position, so the reader must not wait
+    // for them to end.
+    reader.reset();
+    seekPosition.position = position;
+    return true;
+  }
+
+  /**
+   * Ends a pass over the cues, outputting a {@link SeekMap} built from the cue points read so far.
+   *
+   * @param allCuePointsRead Whether all of the cue points have been read.
+   * @return The position from which to continue extraction.
+   */
+  private long endCuesPass(boolean allCuePointsRead) {
+    assertInitialized();
+    readingCues = false;
+    extractorOutput.seekMap(buildSeekMap(cueTimesUs, cueClusterPositions));
+    sentSeekMap = true;
+    if (allCuePointsRead) {
+      cuesResumePosition = C.INDEX_UNSET;
+      cueTimesUs = null;
+      cueClusterPositions = null;
+    }
+    long positionAfterPass = seekPositionAfterBuildingCues;
+    seekPositionAfterBuildingCues = C.INDEX_UNSET;
+    return positionAfterPass;
+  }
+
+  private static LongArray truncate(LongArray array, int size) {
+    size = min(size, array.size());
+    LongArray truncatedArray = new LongArray(max(size, 1));
+    for (int i = 0; i < size; i++) {
+      truncatedArray.add(array.get(i));
+    }
+    return truncatedArray;
+  }
+
   private long scaleTimecodeToUs(long unscaledTimecode) throws ParserException {
     if (timecodeScale == C.TIME_UNSET) {
       throw ParserException.createForMalformedContainer(
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Calculates on demand, for a sample of a track, the accumulated size of all samples which need to
+ * be read before the sample can be used, without holding a size for every sample.
+ *
+ * <p>Samples are ordered by merging the tracks by sample timestamp, in the same way as when the
+ * sizes of all samples are calculated upfront. The state of the merge is recorded every {@link
+ * #CHECKPOINT_INTERVAL} samples, and the state at the most recently requested sample of each track
+ * is kept, so that requesting the next sample of a track only merges the samples of other tracks
+ * that precede it, and requesting an earlier sample resumes from the preceding checkpoint.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class AccumulatedSampleSizes {
+
+  /** The number of merged samples between two recorded states of the merge. */
+  private static final int CHECKPOINT_INTERVAL = 1024;
+
+  private final TrackSampleTable[] sampleTables;
+  private final ArrayList<MergeState> checkpoints;
+  private final @NullableType MergeState[] trackStates;
+
+  /**
+   * Creates an instance.
+   *
+   * @param sampleTables The sample tables of the tracks, each of which must contain at least one
+   *     sample.
+   */
+  public AccumulatedSampleSizes(TrackSampleTable[] sampleTables) {
+    this.sampleTables = sampleTables;
+    checkpoints = new ArrayList<>();
+    checkpoints.add(new MergeState(sampleTables));
+    trackStates = new MergeState[sampleTables.length];
+  }
+
+  /**
+   * Returns the accumulated size of all samples which need to be read before the sample at {@code
+   * sampleIndex} of the track at {@code trackIndex} can be used.
+   */
+  public long get(int trackIndex, int sampleIndex) {
+    MergeState checkpoint = getLatestCheckpoint(trackIndex, sampleIndex);
+    @Nullable MergeState state = trackStates[trackIndex];
+    if (state == null) {
+      state = new MergeState(checkpoint);
+      trackStates[trackIndex] = state;
+    } else if (state.nextSampleIndices[trackIndex] > sampleIndex
+        || state.mergedSampleCount < checkpoint.mergedSampleCount) {
+      state.copyFrom(checkpoint);
+    }
+    while (true) {
+      int nextTrackIndex = state.getNextTrackIndex(sampleTables);
+      if (nextTrackIndex == trackIndex && state.nextSampleIndices[trackIndex] == sampleIndex) {
+        return state.accumulatedSampleSize;
+      }
+      state.advance(sampleTables, nextTrackIndex);
+      if (state.mergedSampleCount == (long) checkpoints.size() * CHECKPOINT_INTERVAL) {
+        checkpoints.add(new MergeState(state));
+      }
+    }
+  }
+
+  /**
+   * Returns the latest recorded state of the merge that precedes the sample at {@code sampleIndex}
+   * of the track at {@code trackIndex}.
+   */
+  private MergeState getLatestCheckpoint(int trackIndex, int sampleIndex) {
+    // The next sample index of each track never decreases as the merge advances.
+    int low = 0;
+    int high = checkpoints.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (checkpoints.get(mid).nextSampleIndices[trackIndex] <= sampleIndex) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return checkpoints.get(low);
+  }
+
+  /** The state of the merge of the tracks' samples before a given sample. */
+  private static final class MergeState {
+
+    public final int[] nextSampleIndices;
+    public final long[] nextSampleTimesUs;
+    public long accumulatedSampleSize;
+    public long mergedSampleCount;
+
+    /** Creates the state before the first sample. */
+    public MergeState(TrackSampleTable[] sampleTables) {
+      nextSampleIndices = new int[sampleTables.length];
+      nextSampleTimesUs = new long[sampleTables.length];
+      for (int i = 0; i < sampleTables.length; i++) {
+        nextSampleTimesUs[i] = sampleTables[i].getTimestampUs(0);
+      }
+    }
+
+    /** Creates a copy of {@code other}. */
+    public MergeState(MergeState other) {
+      nextSampleIndices = other.nextSampleIndices.clone();
+      nextSampleTimesUs = other.nextSampleTimesUs.clone();
+      accumulatedSampleSize = other.accumulatedSampleSize;
+      mergedSampleCount = other.mergedSampleCount;
+    }
+
+    public void copyFrom(MergeState other) {
+      System.arraycopy(other.nextSampleIndices, 0, nextSampleIndices, 0, nextSampleIndices.length);
+      System.arraycopy(other.nextSampleTimesUs, 0, nextSampleTimesUs, 0, nextSampleTimesUs.length);
+      accumulatedSampleSize = other.accumulatedSampleSize;
+      mergedSampleCount = other.mergedSampleCount;
+    }
+
+    /**
+     * Returns the index of the track whose sample is merged next, or {@link C#INDEX_UNSET} if all
+     * samples have been merged.
+     */
+    public int getNextTrackIndex(TrackSampleTable[] sampleTables) {
+      long minTimeUs = Long.MAX_VALUE;
+      int minTimeTrackIndex = C.INDEX_UNSET;
+      for (int i = 0; i < sampleTables.length; i++) {
+        if (nextSampleIndices[i] < sampleTables[i].sampleCount
+            && nextSampleTimesUs[i] <= minTimeUs) {
+          minTimeTrackIndex = i;
+          minTimeUs = nextSampleTimesUs[i];
+        }
+      }
+      return minTimeTrackIndex;
+    }
+
+    /** Merges the next sample of the track at {@code trackIndex}. */
+    public void advance(TrackSampleTable[] sampleTables, int trackIndex) {
+      TrackSampleTable sampleTable = sampleTables[trackIndex];
+      int sampleIndex = nextSampleIndices[trackIndex];
+      accumulatedSampleSize += sampleTable.getSize(sampleIndex);
+      nextSampleIndices[trackIndex] = ++sampleIndex;
+      if (sampleIndex < sampleTable.sampleCount) {
+        nextSampleTimesUs[trackIndex] = sampleTable.getTimestampUs(sampleIndex);
+      }
+      mergedSampleCount++;
+    }
+  }
+}
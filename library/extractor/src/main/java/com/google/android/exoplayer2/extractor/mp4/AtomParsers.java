@@ -19,6 +19,7 @@ import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.MimeTypes.getMimeTypeFromMp4ObjectType;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import android.util.Pair;
 import androidx.annotation.Nullable;
@@ -152,6 +153,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @param drmInitData {@link DrmInitData} to be included in the format, or {@code null}.
    * @param ignoreEditLists Whether to ignore any edit lists in the trak boxes.
    * @param isQuickTime True for QuickTime media. False otherwise.
+   * @param compactSampleTables Whether to use {@link CompactSampleTable compact sample tables} for
+   *     the tracks that support them.
    * @param modifyTrackFunction A function to apply to the {@link Track Tracks} in the result.
    * @return A list of {@link TrackSampleTable} instances.
    * @throws ParserException Thrown if the trak atoms can't be parsed.
@@ -163,6 +166,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       @Nullable DrmInitData drmInitData,
       boolean ignoreEditLists,
       boolean isQuickTime,
+      boolean compactSampleTables,
       Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
       throws ParserException {
     List<TrackSampleTable> trackSampleTables = new ArrayList<>();
@@ -190,7 +194,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
                       checkNotNull(atom.getContainerAtomOfType(Atom.TYPE_mdia))
                           .getContainerAtomOfType(Atom.TYPE_minf))
                   .getContainerAtomOfType(Atom.TYPE_stbl));
-      TrackSampleTable trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      TrackSampleTable trackSampleTable =
+          parseStbl(track, stblAtom, gaplessInfoHolder, compactSampleTables);
       trackSampleTables.add(trackSampleTable);
     }
     return trackSampleTables;
@@ -430,11 +435,16 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @param track Track to which this sample table corresponds.
    * @param stblAtom stbl (sample table) atom to decode.
    * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param compactSampleTable Whether to return a {@link CompactSampleTable compact sample table}
+   *     if the track supports it.
    * @return Sample table described by the stbl atom.
    * @throws ParserException Thrown if the stbl atom can't be parsed.
    */
   private static TrackSampleTable parseStbl(
-      Track track, Atom.ContainerAtom stblAtom, GaplessInfoHolder gaplessInfoHolder)
+      Track track,
+      Atom.ContainerAtom stblAtom,
+      GaplessInfoHolder gaplessInfoHolder,
+      boolean compactSampleTable)
       throws ParserException {
     SampleSizeBox sampleSizeBox;
     @Nullable Atom.LeafAtom stszAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz);
@@ -548,10 +558,19 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       flags = rechunkedResults.flags;
       duration = rechunkedResults.duration;
     } else {
-      offsets = new long[sampleCount];
-      sizes = new int[sampleCount];
-      timestamps = new long[sampleCount];
-      flags = new int[sampleCount];
+      // Compact sample tables support edit lists with at most one edit.
+      @Nullable
+      CompactSampleTable.Builder compactSampleTableBuilder =
+          compactSampleTable
+                  && (track.editListDurations == null || track.editListDurations.length == 1)
+              ? new CompactSampleTable.Builder(
+                  sampleSizeBox, track.timescale, /* hasSyncSampleTable= */ stss != null)
+              : null;
+      int arrayLength = compactSampleTableBuilder == null ? sampleCount : 0;
+      offsets = new long[arrayLength];
+      sizes = new int[arrayLength];
+      timestamps = new long[arrayLength];
+      flags = new int[arrayLength];
       long offset = 0;
       int remainingSamplesInChunk = 0;
 
@@ -565,10 +584,12 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         if (!chunkDataComplete) {
           Log.w(TAG, "Unexpected end of chunk data");
           sampleCount = i;
-          offsets = Arrays.copyOf(offsets, sampleCount);
-          sizes = Arrays.copyOf(sizes, sampleCount);
-          timestamps = Arrays.copyOf(timestamps, sampleCount);
-          flags = Arrays.copyOf(flags, sampleCount);
+          if (compactSampleTableBuilder == null) {
+            offsets = Arrays.copyOf(offsets, sampleCount);
+            sizes = Arrays.copyOf(sizes, sampleCount);
+            timestamps = Arrays.copyOf(timestamps, sampleCount);
+            flags = Arrays.copyOf(flags, sampleCount);
+          }
           break;
         }
 
@@ -587,23 +608,31 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           remainingSamplesAtTimestampOffset--;
         }
 
-        offsets[i] = offset;
-        sizes[i] = sampleSizeBox.readNextSampleSize();
-        if (sizes[i] > maximumSize) {
-          maximumSize = sizes[i];
+        int sampleSize = sampleSizeBox.readNextSampleSize();
+        if (sampleSize > maximumSize) {
+          maximumSize = sampleSize;
         }
-        timestamps[i] = timestampTimeUnits + timestampOffset;
 
         // All samples are synchronization samples if the stss is not present.
-        flags[i] = stss == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        boolean isSynchronizationSample = stss == null;
         if (i == nextSynchronizationSampleIndex) {
-          flags[i] = C.BUFFER_FLAG_KEY_FRAME;
+          isSynchronizationSample = true;
           remainingSynchronizationSamples--;
           if (remainingSynchronizationSamples > 0) {
             nextSynchronizationSampleIndex = checkNotNull(stss).readUnsignedIntToInt() - 1;
           }
         }
 
+        if (compactSampleTableBuilder != null) {
+          compactSampleTableBuilder.addSample(
+              offset, sampleSize, timestampTimeUnits, timestampOffset, isSynchronizationSample);
+        } else {
+          offsets[i] = offset;
+          sizes[i] = sampleSize;
+          timestamps[i] = timestampTimeUnits + timestampOffset;
+          flags[i] = isSynchronizationSample ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        }
+
         // Add on the duration of this sample.
         timestampTimeUnits += timestampDeltaInTimeUnits;
         remainingSamplesAtTimestampDelta--;
@@ -619,7 +648,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           remainingTimestampDeltaChanges--;
         }
 
-        offset += sizes[i];
+        offset += sampleSize;
         remainingSamplesInChunk--;
       }
       duration = timestampTimeUnits + timestampOffset;
@@ -659,6 +688,11 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
                 + remainingSamplesAtTimestampOffset
                 + (!isCttsValid ? ", ctts invalid" : ""));
       }
+
+      if (compactSampleTableBuilder != null) {
+        return applyEditListToCompactSampleTable(
+            track, compactSampleTableBuilder.build(), maximumSize, duration, gaplessInfoHolder);
+      }
     }
     long durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
 
@@ -814,6 +848,102 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         editedDurationUs);
   }
 
+  /**
+   * Returns a sample table for a {@link CompactSampleTable}, applying the track's edit list if it
+   * has one, in the same way as {@link #parseStbl} does for sample tables backed by arrays.
+   *
+   * @param track Track to which the sample table corresponds. Must have at most one edit.
+   * @param sampleTable The unedited sample table.
+   * @param maximumSize The maximum sample size in {@code sampleTable}.
+   * @param duration The duration of {@code sampleTable}, in the track's timescale.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return The edited sample table.
+   */
+  private static TrackSampleTable applyEditListToCompactSampleTable(
+      Track track,
+      CompactSampleTable sampleTable,
+      int maximumSize,
+      long duration,
+      GaplessInfoHolder gaplessInfoHolder) {
+    if (track.editListDurations == null) {
+      long durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
+      return new TrackSampleTable(track, sampleTable, maximumSize, durationUs);
+    }
+
+    long editDuration = track.editListDurations[0];
+    long editMediaTime = checkNotNull(track.editListMediaTimes)[0];
+    if (track.type == C.TRACK_TYPE_AUDIO && sampleTable.sampleCount >= 2) {
+      long editEndTime =
+          editMediaTime
+              + Util.scaleLargeTimestamp(editDuration, track.timescale, track.movieTimescale);
+      if (canApplyEditWithGaplessInfo(sampleTable, duration, editMediaTime, editEndTime)) {
+        long paddingTimeUnits = duration - editEndTime;
+        long encoderDelay =
+            Util.scaleLargeTimestamp(
+                editMediaTime - sampleTable.getMediaTimestamp(0),
+                track.format.sampleRate,
+                track.timescale);
+        long encoderPadding =
+            Util.scaleLargeTimestamp(paddingTimeUnits, track.format.sampleRate, track.timescale);
+        if ((encoderDelay != 0 || encoderPadding != 0)
+            && encoderDelay <= Integer.MAX_VALUE
+            && encoderPadding <= Integer.MAX_VALUE) {
+          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+          long editedDurationUs =
+              Util.scaleLargeTimestamp(editDuration, C.MICROS_PER_SECOND, track.movieTimescale);
+          return new TrackSampleTable(track, sampleTable, maximumSize, editedDurationUs);
+        }
+      }
+    }
+
+    if (editDuration == 0) {
+      // Include all samples in the edit, as for sample tables backed by arrays.
+      long durationUs =
+          Util.scaleLargeTimestamp(
+              duration - editMediaTime, C.MICROS_PER_SECOND, track.timescale);
+      return new TrackSampleTable(
+          track,
+          sampleTable.edit(
+              /* startIndex= */ 0,
+              sampleTable.sampleCount,
+              editMediaTime,
+              /* clampTimestampsToZero= */ false),
+          maximumSize,
+          durationUs);
+    }
+
+    int startIndex = 0;
+    int endIndex = 0;
+    if (editMediaTime != -1) {
+      long scaledEditDuration =
+          Util.scaleLargeTimestamp(editDuration, track.timescale, track.movieTimescale);
+      startIndex =
+          sampleTable.binarySearchFloorMediaTimestamp(
+              editMediaTime, /* inclusive= */ true, /* stayInBounds= */ true);
+      // Omit any sample at the end point of the edit for audio tracks.
+      endIndex =
+          sampleTable.binarySearchCeilMediaTimestamp(
+              editMediaTime + scaledEditDuration,
+              /* inclusive= */ track.type == C.TRACK_TYPE_AUDIO,
+              /* stayInBounds= */ false);
+      if (startIndex < endIndex) {
+        // Advance to the next sync sample, as prerolling from the previous one isn't supported.
+        startIndex = min(sampleTable.getNextSynchronizationSampleIndex(startIndex), endIndex);
+      }
+    }
+    CompactSampleTable editedSampleTable =
+        sampleTable.edit(
+            startIndex,
+            endIndex,
+            editMediaTime,
+            /* clampTimestampsToZero= */ canTrimSamplesWithTimestampChange(track.type));
+    long editedDurationUs =
+        Util.scaleLargeTimestamp(editDuration, C.MICROS_PER_SECOND, track.movieTimescale);
+    return new TrackSampleTable(
+        track, editedSampleTable, editedSampleTable.getMaximumSize(), editedDurationUs);
+  }
+
   private static boolean canTrimSamplesWithTimestampChange(@C.TrackType int trackType) {
     // Audio samples have an inherent duration and we can't trim data by changing the sample
     // timestamp alone.
@@ -1988,6 +2118,18 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         && editEndTime <= duration;
   }
 
+  private static boolean canApplyEditWithGaplessInfo(
+      CompactSampleTable sampleTable, long duration, long editStartTime, long editEndTime) {
+    int lastIndex = sampleTable.sampleCount - 1;
+    int latestDelayIndex = Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+    int earliestPaddingIndex =
+        Util.constrainValue(sampleTable.sampleCount - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+    return sampleTable.getMediaTimestamp(0) <= editStartTime
+        && editStartTime < sampleTable.getMediaTimestamp(latestDelayIndex)
+        && sampleTable.getMediaTimestamp(earliestPaddingIndex) < editEndTime
+        && editEndTime <= duration;
+  }
+
   private AtomParsers() {
     // Prevent instantiation.
   }
@@ -2092,7 +2234,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   }
 
   /** A box containing sample sizes (e.g. stsz, stz2). */
-  private interface SampleSizeBox {
+  /* package */ interface SampleSizeBox {
 
     /** Returns the number of samples. */
     int getSampleCount();
@@ -2102,11 +2244,20 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
     /** Returns the size for the next sample. */
     int readNextSampleSize();
+
+    /**
+     * Returns the size of the sample at {@code sampleIndex}, without affecting the sample whose
+     * size is returned by {@link #readNextSampleSize()}.
+     */
+    int getSampleSize(int sampleIndex);
   }
 
   /** An stsz sample size box. */
   /* package */ static final class StszSampleSizeBox implements SampleSizeBox {
 
+    /** The position of the first sample size, after the sample size and sample count fields. */
+    private static final int SAMPLE_SIZES_POSITION = Atom.FULL_HEADER_SIZE + 8;
+
     private final int fixedSampleSize;
     private final int sampleCount;
     private final ParsableByteArray data;
@@ -2148,11 +2299,27 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     public int readNextSampleSize() {
       return fixedSampleSize == C.LENGTH_UNSET ? data.readUnsignedIntToInt() : fixedSampleSize;
     }
+
+    @Override
+    public int getSampleSize(int sampleIndex) {
+      if (fixedSampleSize != C.LENGTH_UNSET) {
+        return fixedSampleSize;
+      }
+      byte[] bytes = data.getData();
+      int position = SAMPLE_SIZES_POSITION + sampleIndex * 4;
+      return (bytes[position] & 0xFF) << 24
+          | (bytes[position + 1] & 0xFF) << 16
+          | (bytes[position + 2] & 0xFF) << 8
+          | (bytes[position + 3] & 0xFF);
+    }
   }
 
   /** An stz2 sample size box. */
   /* package */ static final class Stz2SampleSizeBox implements SampleSizeBox {
 
+    /** The position of the first sample size, after the field size and sample count fields. */
+    private static final int SAMPLE_SIZES_POSITION = Atom.FULL_HEADER_SIZE + 8;
+
     private final ParsableByteArray data;
     private final int sampleCount;
     private final int fieldSize; // Can be 4, 8, or 16.
@@ -2197,5 +2364,20 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         }
       }
     }
+
+    @Override
+    public int getSampleSize(int sampleIndex) {
+      byte[] bytes = data.getData();
+      if (fieldSize == 8) {
+        return bytes[SAMPLE_SIZES_POSITION + sampleIndex] & 0xFF;
+      } else if (fieldSize == 16) {
+        int position = SAMPLE_SIZES_POSITION + sampleIndex * 2;
+        return (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+      } else {
+        // fieldSize == 4.
+        int currentByte = bytes[SAMPLE_SIZES_POSITION + sampleIndex / 2];
+        return (sampleIndex % 2) == 0 ? (currentByte & 0xF0) >> 4 : currentByte & 0x0F;
+      }
+    }
   }
 }
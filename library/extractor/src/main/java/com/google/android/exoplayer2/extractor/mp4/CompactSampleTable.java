@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.mp4.AtomParsers.SampleSizeBox;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/**
+ * Sample table for a track in an MP4 file that resolves the properties of each sample on demand,
+ * rather than holding them in per-sample arrays.
+ *
+ * <p>Sample sizes are read from the sample size atom. Timestamps are derived from runs of samples
+ * that share the same decode time delta and composition offset. Sample offsets are derived from an
+ * index holding the offset of the first sample of each run of contiguous samples, and of every
+ * {@link #OFFSET_INDEX_INTERVAL}th sample within such a run. Memory use is therefore proportional
+ * to the number of chunks and timing changes in the track, rather than to its number of samples.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class CompactSampleTable {
+
+  /** Builds a {@link CompactSampleTable} from samples added in decode order. */
+  public static final class Builder {
+
+    private final SampleSizeBox sampleSizeBox;
+    private final long timescale;
+
+    private int sampleCount;
+    private int maximumSize;
+
+    private int[] offsetIndexSampleIndices;
+    private long[] offsetIndexOffsets;
+    private int offsetIndexSize;
+    private long nextSampleOffset;
+
+    private int[] decodeRunSampleIndices;
+    private long[] decodeRunTimestamps;
+    private long[] decodeRunDeltas;
+    private int decodeRunCount;
+    private long previousDecodeTimestamp;
+
+    private int[] compositionRunSampleIndices;
+    private int[] compositionRunOffsets;
+    private int compositionRunCount;
+
+    private final boolean hasSyncSampleTable;
+    private int[] syncSampleIndices;
+    private int syncSampleCount;
+
+    /**
+     * Creates an instance.
+     *
+     * @param sampleSizeBox The sample size box from which sample sizes are read.
+     * @param timescale The timescale of the track's media timestamps.
+     * @param hasSyncSampleTable Whether the track has a sync sample table. If not, all samples are
+     *     synchronization samples.
+     */
+    public Builder(SampleSizeBox sampleSizeBox, long timescale, boolean hasSyncSampleTable) {
+      this.sampleSizeBox = sampleSizeBox;
+      this.timescale = timescale;
+      offsetIndexSampleIndices = new int[INITIAL_CAPACITY];
+      offsetIndexOffsets = new long[INITIAL_CAPACITY];
+      decodeRunSampleIndices = new int[INITIAL_CAPACITY];
+      decodeRunTimestamps = new long[INITIAL_CAPACITY];
+      decodeRunDeltas = new long[INITIAL_CAPACITY];
+      compositionRunSampleIndices = new int[INITIAL_CAPACITY];
+      compositionRunOffsets = new int[INITIAL_CAPACITY];
+      this.hasSyncSampleTable = hasSyncSampleTable;
+      syncSampleIndices = new int[hasSyncSampleTable ? INITIAL_CAPACITY : 0];
+    }
+
+    /**
+     * Adds the next sample.
+     *
+     * @param offset The offset of the sample in bytes.
+     * @param size The size of the sample in bytes. Must match the size in the sample size box.
+     * @param decodeTimestamp The decode timestamp of the sample, in the track's timescale.
+     * @param compositionOffset The composition offset of the sample, in the track's timescale.
+     * @param isSyncSample Whether the sample is a synchronization sample. Ignored if the track has
+     *     no sync sample table.
+     */
+    public void addSample(
+        long offset, int size, long decodeTimestamp, int compositionOffset, boolean isSyncSample) {
+      int sampleIndex = sampleCount++;
+      maximumSize = max(maximumSize, size);
+
+      if (offsetIndexSize == 0
+          || offset != nextSampleOffset
+          || sampleIndex - offsetIndexSampleIndices[offsetIndexSize - 1]
+              >= OFFSET_INDEX_INTERVAL) {
+        if (offsetIndexSize == offsetIndexSampleIndices.length) {
+          offsetIndexSampleIndices = Arrays.copyOf(offsetIndexSampleIndices, offsetIndexSize * 2);
+          offsetIndexOffsets = Arrays.copyOf(offsetIndexOffsets, offsetIndexSize * 2);
+        }
+        offsetIndexSampleIndices[offsetIndexSize] = sampleIndex;
+        offsetIndexOffsets[offsetIndexSize] = offset;
+        offsetIndexSize++;
+      }
+      nextSampleOffset = offset + size;
+
+      int lastDecodeRun = decodeRunCount - 1;
+      if (decodeRunCount > 0 && decodeRunSampleIndices[lastDecodeRun] == sampleIndex - 1) {
+        // The last run only holds the previous sample, so its delta isn't known yet.
+        decodeRunDeltas[lastDecodeRun] = decodeTimestamp - previousDecodeTimestamp;
+      } else if (decodeRunCount == 0
+          || decodeTimestamp - previousDecodeTimestamp != decodeRunDeltas[lastDecodeRun]) {
+        if (decodeRunCount == decodeRunSampleIndices.length) {
+          decodeRunSampleIndices = Arrays.copyOf(decodeRunSampleIndices, decodeRunCount * 2);
+          decodeRunTimestamps = Arrays.copyOf(decodeRunTimestamps, decodeRunCount * 2);
+          decodeRunDeltas = Arrays.copyOf(decodeRunDeltas, decodeRunCount * 2);
+        }
+        decodeRunSampleIndices[decodeRunCount] = sampleIndex;
+        decodeRunTimestamps[decodeRunCount] = decodeTimestamp;
+        decodeRunDeltas[decodeRunCount] = 0;
+        decodeRunCount++;
+      }
+      previousDecodeTimestamp = decodeTimestamp;
+
+      if (compositionRunCount == 0
+          || compositionOffset != compositionRunOffsets[compositionRunCount - 1]) {
+        if (compositionRunCount == compositionRunSampleIndices.length) {
+          compositionRunSampleIndices =
+              Arrays.copyOf(compositionRunSampleIndices, compositionRunCount * 2);
+          compositionRunOffsets = Arrays.copyOf(compositionRunOffsets, compositionRunCount * 2);
+        }
+        compositionRunSampleIndices[compositionRunCount] = sampleIndex;
+        compositionRunOffsets[compositionRunCount] = compositionOffset;
+        compositionRunCount++;
+      }
+
+      if (hasSyncSampleTable && isSyncSample) {
+        if (syncSampleCount == syncSampleIndices.length) {
+          syncSampleIndices = Arrays.copyOf(syncSampleIndices, syncSampleCount * 2);
+        }
+        syncSampleIndices[syncSampleCount++] = sampleIndex;
+      }
+    }
+
+    /** Builds a {@link CompactSampleTable} holding all of the added samples. */
+    public CompactSampleTable build() {
+      return new CompactSampleTable(
+          sampleSizeBox,
+          timescale,
+          Arrays.copyOf(offsetIndexSampleIndices, offsetIndexSize),
+          Arrays.copyOf(offsetIndexOffsets, offsetIndexSize),
+          Arrays.copyOf(decodeRunSampleIndices, decodeRunCount),
+          Arrays.copyOf(decodeRunTimestamps, decodeRunCount),
+          Arrays.copyOf(decodeRunDeltas, decodeRunCount),
+          Arrays.copyOf(compositionRunSampleIndices, compositionRunCount),
+          Arrays.copyOf(compositionRunOffsets, compositionRunCount),
+          hasSyncSampleTable ? Arrays.copyOf(syncSampleIndices, syncSampleCount) : null,
+          /* firstSampleIndex= */ 0,
+          sampleCount,
+          maximumSize,
+          /* mediaTimeOffset= */ 0,
+          /* clampTimestampsToZero= */ false);
+    }
+  }
+
+  /**
+   * The maximum number of samples between two entries of the offset index. Resolving the offset of
+   * a sample requires summing the sizes of up to this number of preceding samples.
+   */
+  private static final int OFFSET_INDEX_INTERVAL = 32;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final SampleSizeBox sampleSizeBox;
+  private final long timescale;
+  private final int[] offsetIndexSampleIndices;
+  private final long[] offsetIndexOffsets;
+  private final int[] decodeRunSampleIndices;
+  private final long[] decodeRunTimestamps;
+  private final long[] decodeRunDeltas;
+  private final int[] compositionRunSampleIndices;
+  private final int[] compositionRunOffsets;
+  @Nullable private final int[] syncSampleIndices;
+  private final int firstSampleIndex;
+  private final int maximumSize;
+  private final long mediaTimeOffset;
+  private final boolean clampTimestampsToZero;
+
+  /** Number of samples. */
+  public final int sampleCount;
+
+  private CompactSampleTable(
+      SampleSizeBox sampleSizeBox,
+      long timescale,
+      int[] offsetIndexSampleIndices,
+      long[] offsetIndexOffsets,
+      int[] decodeRunSampleIndices,
+      long[] decodeRunTimestamps,
+      long[] decodeRunDeltas,
+      int[] compositionRunSampleIndices,
+      int[] compositionRunOffsets,
+      @Nullable int[] syncSampleIndices,
+      int firstSampleIndex,
+      int sampleCount,
+      int maximumSize,
+      long mediaTimeOffset,
+      boolean clampTimestampsToZero) {
+    this.sampleSizeBox = sampleSizeBox;
+    this.timescale = timescale;
+    this.offsetIndexSampleIndices = offsetIndexSampleIndices;
+    this.offsetIndexOffsets = offsetIndexOffsets;
+    this.decodeRunSampleIndices = decodeRunSampleIndices;
+    this.decodeRunTimestamps = decodeRunTimestamps;
+    this.decodeRunDeltas = decodeRunDeltas;
+    this.compositionRunSampleIndices = compositionRunSampleIndices;
+    this.compositionRunOffsets = compositionRunOffsets;
+    this.syncSampleIndices = syncSampleIndices;
+    this.firstSampleIndex = firstSampleIndex;
+    this.sampleCount = sampleCount;
+    this.maximumSize = maximumSize;
+    this.mediaTimeOffset = mediaTimeOffset;
+    this.clampTimestampsToZero = clampTimestampsToZero;
+  }
+
+  /**
+   * Returns a table holding the samples of this table in {@code [startIndex, endIndex)}, whose
+   * timestamps are offset by {@code -mediaTimeOffset}.
+   *
+   * @param startIndex The index of the first sample to include.
+   * @param endIndex The index after the last sample to include.
+   * @param mediaTimeOffset The media time to subtract from timestamps, in the track's timescale.
+   * @param clampTimestampsToZero Whether negative timestamps should be clamped to zero.
+   */
+  public CompactSampleTable edit(
+      int startIndex, int endIndex, long mediaTimeOffset, boolean clampTimestampsToZero) {
+    int editedSampleCount = max(0, endIndex - startIndex);
+    int editedMaximumSize = maximumSize;
+    if (editedSampleCount < sampleCount) {
+      editedMaximumSize = 0;
+      for (int i = startIndex; i < startIndex + editedSampleCount; i++) {
+        editedMaximumSize = max(editedMaximumSize, getSize(i));
+      }
+    }
+    return new CompactSampleTable(
+        sampleSizeBox,
+        timescale,
+        offsetIndexSampleIndices,
+        offsetIndexOffsets,
+        decodeRunSampleIndices,
+        decodeRunTimestamps,
+        decodeRunDeltas,
+        compositionRunSampleIndices,
+        compositionRunOffsets,
+        syncSampleIndices,
+        firstSampleIndex + startIndex,
+        editedSampleCount,
+        editedMaximumSize,
+        this.mediaTimeOffset + mediaTimeOffset,
+        clampTimestampsToZero);
+  }
+
+  /** Returns the offset of the sample at {@code index} in bytes. */
+  public long getOffset(int index) {
+    int sampleIndex = firstSampleIndex + index;
+    int indexEntry =
+        Util.binarySearchFloor(
+            offsetIndexSampleIndices, sampleIndex, /* inclusive= */ true, /* stayInBounds= */ true);
+    long offset = offsetIndexOffsets[indexEntry];
+    for (int i = offsetIndexSampleIndices[indexEntry]; i < sampleIndex; i++) {
+      offset += sampleSizeBox.getSampleSize(i);
+    }
+    return offset;
+  }
+
+  /** Returns the size of the sample at {@code index} in bytes. */
+  public int getSize(int index) {
+    return sampleSizeBox.getSampleSize(firstSampleIndex + index);
+  }
+
+  /** Returns the largest sample size in bytes, or 0 if the table is empty. */
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the timestamp of the sample at {@code index} in the track's timescale, before {@link
+   * #edit edits} are applied.
+   */
+  public long getMediaTimestamp(int index) {
+    int sampleIndex = firstSampleIndex + index;
+    int decodeRun =
+        Util.binarySearchFloor(
+            decodeRunSampleIndices, sampleIndex, /* inclusive= */ true, /* stayInBounds= */ true);
+    int compositionRun =
+        Util.binarySearchFloor(
+            compositionRunSampleIndices,
+            sampleIndex,
+            /* inclusive= */ true,
+            /* stayInBounds= */ true);
+    return decodeRunTimestamps[decodeRun]
+        + (sampleIndex - decodeRunSampleIndices[decodeRun]) * decodeRunDeltas[decodeRun]
+        + compositionRunOffsets[compositionRun];
+  }
+
+  /** Returns the timestamp of the sample at {@code index} in microseconds. */
+  public long getTimestampUs(int index) {
+    long timestampUs =
+        Util.scaleLargeTimestamp(
+            getMediaTimestamp(index) - mediaTimeOffset, C.MICROS_PER_SECOND, timescale);
+    return clampTimestampsToZero ? max(0, timestampUs) : timestampUs;
+  }
+
+  /** Returns the {@link C.BufferFlags} of the sample at {@code index}. */
+  public @C.BufferFlags int getFlags(int index) {
+    @C.BufferFlags int flags = isSynchronizationSample(index) ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    if (index == sampleCount - 1) {
+      flags |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    return flags;
+  }
+
+  /**
+   * Returns the index of the first synchronization sample at or after {@code index}, or {@link
+   * #sampleCount} if there is none.
+   */
+  public int getNextSynchronizationSampleIndex(int index) {
+    if (index >= sampleCount) {
+      return sampleCount;
+    }
+    if (syncSampleIndices == null) {
+      return index;
+    }
+    int syncSampleIndex =
+        Util.binarySearchCeil(
+            syncSampleIndices,
+            firstSampleIndex + index,
+            /* inclusive= */ true,
+            /* stayInBounds= */ false);
+    return syncSampleIndex == syncSampleIndices.length
+        ? sampleCount
+        : min(syncSampleIndices[syncSampleIndex] - firstSampleIndex, sampleCount);
+  }
+
+  /**
+   * Returns the sample index of the closest synchronization sample at or before the given
+   * timestamp, if one is available.
+   *
+   * @param timeUs Timestamp adjacent to which to find a synchronization sample.
+   * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
+   */
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    int startIndex =
+        binarySearchFloor(timeUs, /* inclusive= */ true, /* stayInBounds= */ false, /* us= */ true);
+    if (startIndex < 0) {
+      return C.INDEX_UNSET;
+    }
+    if (syncSampleIndices == null) {
+      return startIndex;
+    }
+    int syncSampleIndex =
+        Util.binarySearchFloor(
+            syncSampleIndices,
+            firstSampleIndex + startIndex,
+            /* inclusive= */ true,
+            /* stayInBounds= */ false);
+    if (syncSampleIndex < 0 || syncSampleIndices[syncSampleIndex] < firstSampleIndex) {
+      return C.INDEX_UNSET;
+    }
+    return syncSampleIndices[syncSampleIndex] - firstSampleIndex;
+  }
+
+  /**
+   * Returns the sample index of the closest synchronization sample at or after the given timestamp,
+   * if one is available.
+   *
+   * @param timeUs Timestamp adjacent to which to find a synchronization sample.
+   * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
+   */
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex =
+        binarySearchCeil(timeUs, /* inclusive= */ true, /* stayInBounds= */ false, /* us= */ true);
+    int index = getNextSynchronizationSampleIndex(startIndex);
+    return index == sampleCount ? C.INDEX_UNSET : index;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchFloor(long[], long, boolean, boolean)} applied to the
+   * {@link #getMediaTimestamp media timestamps} of the samples.
+   */
+  public int binarySearchFloorMediaTimestamp(
+      long mediaTimestamp, boolean inclusive, boolean stayInBounds) {
+    return binarySearchFloor(mediaTimestamp, inclusive, stayInBounds, /* us= */ false);
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)} applied to the
+   * {@link #getMediaTimestamp media timestamps} of the samples.
+   */
+  public int binarySearchCeilMediaTimestamp(
+      long mediaTimestamp, boolean inclusive, boolean stayInBounds) {
+    return binarySearchCeil(mediaTimestamp, inclusive, stayInBounds, /* us= */ false);
+  }
+
+  private boolean isSynchronizationSample(int index) {
+    return syncSampleIndices == null
+        || Arrays.binarySearch(syncSampleIndices, firstSampleIndex + index) >= 0;
+  }
+
+  private long getTimestamp(int index, boolean us) {
+    return us ? getTimestampUs(index) : getMediaTimestamp(index);
+  }
+
+  // The searches below mirror the corresponding Util methods, so that they give the same results as
+  // searching arrays holding the timestamps of all samples, even if the timestamps aren't sorted.
+
+  private int binarySearchFloor(long value, boolean inclusive, boolean stayInBounds, boolean us) {
+    int index = binarySearch(value, us);
+    if (index < 0) {
+      index = -(index + 2);
+    } else {
+      while (--index >= 0 && getTimestamp(index, us) == value) {}
+      if (inclusive) {
+        index++;
+      }
+    }
+    return stayInBounds ? max(0, index) : index;
+  }
+
+  private int binarySearchCeil(long value, boolean inclusive, boolean stayInBounds, boolean us) {
+    int index = binarySearch(value, us);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while (++index < sampleCount && getTimestamp(index, us) == value) {}
+      if (inclusive) {
+        index--;
+      }
+    }
+    return stayInBounds ? min(sampleCount - 1, index) : index;
+  }
+
+  /** Equivalent to {@link Arrays#binarySearch(long[], long)} applied to the sample timestamps. */
+  private int binarySearch(long value, boolean us) {
+    int lowIndex = 0;
+    int highIndex = sampleCount - 1;
+    while (lowIndex <= highIndex) {
+      int midIndex = (lowIndex + highIndex) >>> 1;
+      long midValue = getTimestamp(midIndex, us);
+      if (midValue < value) {
+        lowIndex = midIndex + 1;
+      } else if (midValue > value) {
+        highIndex = midIndex - 1;
+      } else {
+        return midIndex;
+      }
+    }
+    return -(lowIndex + 1);
+  }
+}
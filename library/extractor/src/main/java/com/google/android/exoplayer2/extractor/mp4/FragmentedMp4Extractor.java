@@ -163,6 +163,7 @@ public class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray atomHeader;
   private final ArrayDeque<ContainerAtom> containerAtoms;
   private final ArrayDeque<MetadataSampleInfo> pendingMetadataSampleInfos;
+  private final ArrayList<ParsableByteArray> moofLeafAtomDataPool;
   @Nullable private final TrackOutput additionalEmsgTrackOutput;
 
   private int parserState;
@@ -170,6 +171,7 @@ public class FragmentedMp4Extractor implements Extractor {
   private long atomSize;
   private int atomHeaderBytesRead;
   @Nullable private ParsableByteArray atomData;
+  private int moofLeafAtomDataPoolUsed;
   private long endOfMdatPosition;
   private int pendingMetadataSampleBytes;
   private long pendingSeekTimeUs;
@@ -274,6 +276,7 @@ public class FragmentedMp4Extractor implements Extractor {
     scratch = new ParsableByteArray(scratchBytes);
     containerAtoms = new ArrayDeque<>();
     pendingMetadataSampleInfos = new ArrayDeque<>();
+    moofLeafAtomDataPool = new ArrayList<>();
     trackBundles = new SparseArray<>();
     durationUs = C.TIME_UNSET;
     pendingSeekTimeUs = C.TIME_UNSET;
@@ -325,6 +328,7 @@ public class FragmentedMp4Extractor implements Extractor {
     pendingMetadataSampleBytes = 0;
     pendingSeekTimeUs = timeUs;
     containerAtoms.clear();
+    moofLeafAtomDataPoolUsed = 0;
     enterReadingAtomHeaderState();
   }
 
@@ -406,6 +410,8 @@ public class FragmentedMp4Extractor implements Extractor {
     }
 
     if (atomType == Atom.TYPE_moof) {
+      // The leaf atoms of the previous moof have been parsed, so their data can be reused.
+      moofLeafAtomDataPoolUsed = 0;
       // The data positions may be updated when parsing the tfhd/trun.
       int trackCount = trackBundles.size();
       for (int i = 0; i < trackCount; i++) {
@@ -441,7 +447,7 @@ public class FragmentedMp4Extractor implements Extractor {
         throw ParserException.createForUnsupportedContainerFeature(
             "Leaf atom with length > 2147483647 (unsupported).");
       }
-      ParsableByteArray atomData = new ParsableByteArray((int) atomSize);
+      ParsableByteArray atomData = obtainLeafAtomData((int) atomSize);
       System.arraycopy(atomHeader.getData(), 0, atomData.getData(), 0, Atom.HEADER_SIZE);
       this.atomData = atomData;
       parserState = STATE_READING_ATOM_PAYLOAD;
@@ -457,6 +463,29 @@ public class FragmentedMp4Extractor implements Extractor {
     return true;
   }
 
+  /**
+   * Returns a {@link ParsableByteArray} with a limit of {@code atomSize} into which the current leaf
+   * atom can be read.
+   *
+   * <p>The leaf atoms of a moof are parsed once the moof has been read, and aren't referenced after
+   * that, so their data is read into arrays that are reused for every moof. This avoids allocating
+   * for each fragment of a long stream. The data of pssh atoms is retained in {@link DrmInitData},
+   * so is always read into a new array.
+   */
+  private ParsableByteArray obtainLeafAtomData(int atomSize) {
+    if (atomType == Atom.TYPE_pssh
+        || containerAtoms.isEmpty()
+        || containerAtoms.getLast().type != Atom.TYPE_moof) {
+      return new ParsableByteArray(atomSize);
+    }
+    if (moofLeafAtomDataPoolUsed == moofLeafAtomDataPool.size()) {
+      moofLeafAtomDataPool.add(new ParsableByteArray());
+    }
+    ParsableByteArray atomData = moofLeafAtomDataPool.get(moofLeafAtomDataPoolUsed++);
+    atomData.reset(atomSize);
+    return atomData;
+  }
+
   private void readAtomPayload(ExtractorInput input) throws IOException {
     int atomPayloadSize = (int) atomSize - atomHeaderBytesRead;
     @Nullable ParsableByteArray atomData = this.atomData;
@@ -528,6 +557,7 @@ public class FragmentedMp4Extractor implements Extractor {
             drmInitData,
             /* ignoreEditLists= */ (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0,
             /* isQuickTime= */ false,
+            /* compactSampleTables= */ false,
             this::modifyTrack);
 
     int trackCount = sampleTables.size();
@@ -961,12 +991,21 @@ public class FragmentedMp4Extractor implements Extractor {
         ((atomFlags & 0x20 /* default_sample_flags_present */) != 0)
             ? tfhd.readInt()
             : defaultSampleValues.flags;
-    trackBundle.fragment.header =
-        new DefaultSampleValues(
-            defaultSampleDescriptionIndex,
-            defaultSampleDuration,
-            defaultSampleSize,
-            defaultSampleFlags);
+    // The values are usually the same for every fragment, in which case the previous instance is
+    // kept.
+    @Nullable DefaultSampleValues header = trackBundle.fragment.header;
+    if (header == null
+        || header.sampleDescriptionIndex != defaultSampleDescriptionIndex
+        || header.duration != defaultSampleDuration
+        || header.size != defaultSampleSize
+        || header.flags != defaultSampleFlags) {
+      trackBundle.fragment.header =
+          new DefaultSampleValues(
+              defaultSampleDescriptionIndex,
+              defaultSampleDuration,
+              defaultSampleSize,
+              defaultSampleFlags);
+    }
     return trackBundle;
   }
 
@@ -1724,21 +1763,21 @@ public class FragmentedMp4Extractor implements Extractor {
     /** Returns the presentation time of the current sample in microseconds. */
     public long getCurrentSamplePresentationTimeUs() {
       return !currentlyInFragment
-          ? moovSampleTable.timestampsUs[currentSampleIndex]
+          ? moovSampleTable.getTimestampUs(currentSampleIndex)
           : fragment.getSamplePresentationTimeUs(currentSampleIndex);
     }
 
     /** Returns the byte offset of the current sample. */
     public long getCurrentSampleOffset() {
       return !currentlyInFragment
-          ? moovSampleTable.offsets[currentSampleIndex]
+          ? moovSampleTable.getOffset(currentSampleIndex)
           : fragment.trunDataPosition[currentTrackRunIndex];
     }
 
     /** Returns the size of the current sample in bytes. */
     public int getCurrentSampleSize() {
       return !currentlyInFragment
-          ? moovSampleTable.sizes[currentSampleIndex]
+          ? moovSampleTable.getSize(currentSampleIndex)
           : fragment.sampleSizeTable[currentSampleIndex];
     }
 
@@ -1746,7 +1785,7 @@ public class FragmentedMp4Extractor implements Extractor {
     public @C.BufferFlags int getCurrentSampleFlags() {
       int flags =
           !currentlyInFragment
-              ? moovSampleTable.flags[currentSampleIndex]
+              ? moovSampleTable.getFlags(currentSampleIndex)
               : (fragment.sampleIsSyncFrameTable[currentSampleIndex] ? C.BUFFER_FLAG_KEY_FRAME : 0);
       if (getEncryptionBoxIfEncrypted() != null) {
         flags |= C.BUFFER_FLAG_ENCRYPTED;
@@ -75,8 +75,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA} and {@link
-   * #FLAG_READ_SEF_DATA}.
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA}, {@link
+   * #FLAG_READ_SEF_DATA} and {@link #FLAG_COMPACT_SAMPLE_TABLES}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -86,7 +86,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       value = {
         FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
         FLAG_READ_MOTION_PHOTO_METADATA,
-        FLAG_READ_SEF_DATA
+        FLAG_READ_SEF_DATA,
+        FLAG_COMPACT_SAMPLE_TABLES
       })
   public @interface Flags {}
   /** Flag to ignore any edit lists in the stream. */
@@ -104,6 +105,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * videos.
    */
   public static final int FLAG_READ_SEF_DATA = 1 << 2;
+  /**
+   * Flag to keep the sample tables of tracks in the run-length encoded form used by the container,
+   * resolving the offset, size, timestamp and flags of each sample when it's needed. This reduces
+   * the memory used by the sample tables of long files, at the cost of a little more work per
+   * sample. Tracks whose edit list has more than one edit, and fixed sample size raw audio tracks,
+   * always use array backed sample tables.
+   */
+  public static final int FLAG_COMPACT_SAMPLE_TABLES = 1 << 3;
 
   /** Parser states. */
   @Documented
@@ -173,6 +182,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private Mp4Track[] tracks;
 
   private long @MonotonicNonNull [][] accumulatedSampleSizes;
+  @Nullable private AccumulatedSampleSizes compactAccumulatedSampleSizes;
   private int firstVideoTrackIndex;
   private long durationUs;
   private @FileType int fileType;
@@ -320,14 +330,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
+      firstOffset = sampleTable.getOffset(sampleIndex);
       if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -530,6 +540,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             /* drmInitData= */ null,
             ignoreEditLists,
             isQuickTime,
+            /* compactSampleTables= */ (flags & FLAG_COMPACT_SAMPLE_TABLES) != 0,
             /* modifyTrackFunction= */ track -> track);
 
     int trackCount = trackSampleTables.size();
@@ -584,7 +595,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
-    accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    if ((flags & FLAG_COMPACT_SAMPLE_TABLES) != 0) {
+      // Calculate the accumulated sample sizes on demand, rather than holding one for every sample.
+      TrackSampleTable[] sampleTables = new TrackSampleTable[this.tracks.length];
+      for (int i = 0; i < sampleTables.length; i++) {
+        sampleTables[i] = this.tracks[i].sampleTable;
+      }
+      compactAccumulatedSampleSizes = new AccumulatedSampleSizes(sampleTables);
+    } else {
+      accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    }
 
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -616,8 +636,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     @Nullable TrueHdSampleRechunker trueHdSampleRechunker = track.trueHdSampleRechunker;
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
@@ -688,8 +708,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
 
-    long timeUs = track.sampleTable.timestampsUs[sampleIndex];
-    @C.BufferFlags int flags = track.sampleTable.flags[sampleIndex];
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    @C.BufferFlags int flags = track.sampleTable.getFlags(sampleIndex);
     if (trueHdSampleRechunker != null) {
       trueHdSampleRechunker.sampleMetadata(
           trackOutput, timeUs, flags, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
@@ -736,8 +756,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == track.sampleTable.sampleCount) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
-      long sampleAccumulatedBytes = castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+      long sampleOffset = track.sampleTable.getOffset(sampleIndex);
+      long sampleAccumulatedBytes = getAccumulatedSampleSize(trackIndex, sampleIndex);
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
       if ((!requiresReload && preferredRequiresReload)
@@ -760,6 +780,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         : minAccumulatedBytesTrackIndex;
   }
 
+  /**
+   * Returns the accumulated size of all samples which need to be read before the sample at {@code
+   * sampleIndex} of the track at {@code trackIndex} can be used.
+   */
+  private long getAccumulatedSampleSize(int trackIndex, int sampleIndex) {
+    return compactAccumulatedSampleSizes != null
+        ? compactAccumulatedSampleSizes.get(trackIndex, sampleIndex)
+        : castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+  }
+
   /** Updates a track's sample index to point its latest sync sample before/at {@code timeUs}. */
   private void updateSampleIndex(Mp4Track track, long timeUs) {
     TrackSampleTable sampleTable = track.sampleTable;
@@ -818,7 +848,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     boolean[] tracksFinished = new boolean[tracks.length];
     for (int i = 0; i < tracks.length; i++) {
       accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
+      nextSampleTimesUs[i] = tracks[i].sampleTable.getTimestampUs(0);
     }
     long accumulatedSampleSize = 0;
     int finishedTracks = 0;
@@ -833,11 +863,11 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
       int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
       accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
+      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.getSize(trackSampleIndex);
       nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
       if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
         nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
+            tracks[minTimeTrackIndex].sampleTable.getTimestampUs(trackSampleIndex);
       } else {
         tracksFinished[minTimeTrackIndex] = true;
         finishedTracks++;
@@ -861,7 +891,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return min(sampleOffset, offset);
   }
 
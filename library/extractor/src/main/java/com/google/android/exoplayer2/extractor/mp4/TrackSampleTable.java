@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.extractor.mp4;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -22,6 +23,9 @@ import com.google.android.exoplayer2.util.Util;
 /**
  * Sample table for a track in an MP4 file.
  *
+ * <p>The properties of each sample are either held in arrays, or resolved on demand by a {@link
+ * CompactSampleTable}.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -34,19 +38,17 @@ import com.google.android.exoplayer2.util.Util;
   public final Track track;
   /** Number of samples. */
   public final int sampleCount;
-  /** Sample offsets in bytes. */
-  public final long[] offsets;
-  /** Sample sizes in bytes. */
-  public final int[] sizes;
-  /** Maximum sample size in {@link #sizes}. */
+  /** Maximum sample size in bytes. */
   public final int maximumSize;
-  /** Sample timestamps in microseconds. */
-  public final long[] timestampsUs;
-  /** Sample flags. */
-  public final int[] flags;
   /** The duration of the track sample table in microseconds. */
   public final long durationUs;
 
+  private final long[] offsets;
+  private final int[] sizes;
+  private final long[] timestampsUs;
+  private final int[] flags;
+  @Nullable private final CompactSampleTable compactSampleTable;
+
   public TrackSampleTable(
       Track track,
       long[] offsets,
@@ -67,11 +69,53 @@ import com.google.android.exoplayer2.util.Util;
     this.flags = flags;
     this.durationUs = durationUs;
     sampleCount = offsets.length;
+    compactSampleTable = null;
     if (flags.length > 0) {
       flags[flags.length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
     }
   }
 
+  public TrackSampleTable(
+      Track track, CompactSampleTable compactSampleTable, int maximumSize, long durationUs) {
+    this.track = track;
+    this.compactSampleTable = compactSampleTable;
+    this.maximumSize = maximumSize;
+    this.durationUs = durationUs;
+    sampleCount = compactSampleTable.sampleCount;
+    offsets = new long[0];
+    sizes = new int[0];
+    timestampsUs = new long[0];
+    flags = new int[0];
+  }
+
+  /** Returns the offset of the sample at {@code sampleIndex} in bytes. */
+  public long getOffset(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getOffset(sampleIndex)
+        : offsets[sampleIndex];
+  }
+
+  /** Returns the size of the sample at {@code sampleIndex} in bytes. */
+  public int getSize(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getSize(sampleIndex)
+        : sizes[sampleIndex];
+  }
+
+  /** Returns the timestamp of the sample at {@code sampleIndex} in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getTimestampUs(sampleIndex)
+        : timestampsUs[sampleIndex];
+  }
+
+  /** Returns the {@link C.BufferFlags} of the sample at {@code sampleIndex}. */
+  public @C.BufferFlags int getFlags(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getFlags(sampleIndex)
+        : flags[sampleIndex];
+  }
+
   /**
    * Returns the sample index of the closest synchronization sample at or before the given
    * timestamp, if one is available.
@@ -80,6 +124,9 @@ import com.google.android.exoplayer2.util.Util;
    * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    if (compactSampleTable != null) {
+      return compactSampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs);
+    }
     // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
     // Frames are not reordered past synchronization samples so this works in practice.
     int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
@@ -99,6 +146,9 @@ import com.google.android.exoplayer2.util.Util;
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    if (compactSampleTable != null) {
+      return compactSampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
+    }
     int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
     for (int i = startIndex; i < timestampsUs.length; i++) {
       if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.NalUnitStartCodeScanner;
 import com.google.android.exoplayer2.util.NalUnitUtil;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
@@ -62,7 +63,7 @@ public final class H262Reader implements ElementaryStreamReader {
 
   // State that should be reset on seek.
   @Nullable private final NalUnitTargetBuffer userData;
-  private final boolean[] prefixFlags;
+  private final NalUnitStartCodeScanner startCodeScanner;
   private final CsdBuffer csdBuffer;
   private long totalBytesWritten;
   private boolean startedFirstSample;
@@ -86,7 +87,7 @@ public final class H262Reader implements ElementaryStreamReader {
 
   /* package */ H262Reader(@Nullable UserDataReader userDataReader) {
     this.userDataReader = userDataReader;
-    prefixFlags = new boolean[4];
+    startCodeScanner = new NalUnitStartCodeScanner();
     csdBuffer = new CsdBuffer(128);
     if (userDataReader != null) {
       userData = new NalUnitTargetBuffer(START_USER_DATA, 128);
@@ -101,7 +102,7 @@ public final class H262Reader implements ElementaryStreamReader {
 
   @Override
   public void seek() {
-    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    startCodeScanner.reset();
     csdBuffer.reset();
     if (userData != null) {
       userData.reset();
@@ -140,7 +141,7 @@ public final class H262Reader implements ElementaryStreamReader {
     output.sampleData(data, data.bytesLeft());
 
     while (true) {
-      int startCodeOffset = NalUnitUtil.findNalUnit(dataArray, offset, limit, prefixFlags);
+      int startCodeOffset = startCodeScanner.findNalUnit(dataArray, offset, limit);
 
       if (startCodeOffset == limit) {
         // We've scanned to the end of the data without finding another start code.
@@ -29,6 +29,7 @@ import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.NalUnitStartCodeScanner;
 import com.google.android.exoplayer2.util.NalUnitUtil;
 import com.google.android.exoplayer2.util.ParsableBitArray;
 import com.google.android.exoplayer2.util.ParsableByteArray;
@@ -71,7 +72,7 @@ public final class H263Reader implements ElementaryStreamReader {
   @Nullable private final ParsableByteArray userDataParsable;
 
   // State that should be reset on seek.
-  private final boolean[] prefixFlags;
+  private final NalUnitStartCodeScanner startCodeScanner;
   private final CsdBuffer csdBuffer;
   @Nullable private final NalUnitTargetBuffer userData;
   private H263Reader.@MonotonicNonNull SampleReader sampleReader;
@@ -94,7 +95,7 @@ public final class H263Reader implements ElementaryStreamReader {
 
   /* package */ H263Reader(@Nullable UserDataReader userDataReader) {
     this.userDataReader = userDataReader;
-    prefixFlags = new boolean[4];
+    startCodeScanner = new NalUnitStartCodeScanner();
     csdBuffer = new CsdBuffer(128);
     pesTimeUs = C.TIME_UNSET;
     if (userDataReader != null) {
@@ -108,7 +109,7 @@ public final class H263Reader implements ElementaryStreamReader {
 
   @Override
   public void seek() {
-    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    startCodeScanner.reset();
     csdBuffer.reset();
     if (sampleReader != null) {
       sampleReader.reset();
@@ -153,7 +154,7 @@ public final class H263Reader implements ElementaryStreamReader {
     output.sampleData(data, data.bytesLeft());
 
     while (true) {
-      int startCodeOffset = NalUnitUtil.findNalUnit(dataArray, offset, limit, prefixFlags);
+      int startCodeOffset = startCodeScanner.findNalUnit(dataArray, offset, limit);
 
       if (startCodeOffset == limit) {
         // We've scanned to the end of the data without finding another start code.
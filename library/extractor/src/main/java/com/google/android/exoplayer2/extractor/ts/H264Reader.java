@@ -27,6 +27,7 @@ import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerat
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.CodecSpecificDataUtil;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.NalUnitStartCodeScanner;
 import com.google.android.exoplayer2.util.NalUnitUtil;
 import com.google.android.exoplayer2.util.NalUnitUtil.SpsData;
 import com.google.android.exoplayer2.util.ParsableByteArray;
@@ -57,7 +58,7 @@ public final class H264Reader implements ElementaryStreamReader {
   private final NalUnitTargetBuffer pps;
   private final NalUnitTargetBuffer sei;
   private long totalBytesWritten;
-  private final boolean[] prefixFlags;
+  private final NalUnitStartCodeScanner startCodeScanner;
 
   private @MonotonicNonNull String formatId;
   private @MonotonicNonNull TrackOutput output;
@@ -86,7 +87,7 @@ public final class H264Reader implements ElementaryStreamReader {
     this.seiReader = seiReader;
     this.allowNonIdrKeyframes = allowNonIdrKeyframes;
     this.detectAccessUnits = detectAccessUnits;
-    prefixFlags = new boolean[3];
+    startCodeScanner = new NalUnitStartCodeScanner();
     sps = new NalUnitTargetBuffer(NalUnitUtil.NAL_UNIT_TYPE_SPS, 128);
     pps = new NalUnitTargetBuffer(NalUnitUtil.NAL_UNIT_TYPE_PPS, 128);
     sei = new NalUnitTargetBuffer(NalUnitUtil.NAL_UNIT_TYPE_SEI, 128);
@@ -99,7 +100,7 @@ public final class H264Reader implements ElementaryStreamReader {
     totalBytesWritten = 0;
     randomAccessIndicator = false;
     pesTimeUs = C.TIME_UNSET;
-    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    startCodeScanner.reset();
     sps.reset();
     pps.reset();
     sei.reset();
@@ -139,7 +140,7 @@ public final class H264Reader implements ElementaryStreamReader {
 
     // Scan the appended data, processing NAL units as they are encountered
     while (true) {
-      int nalUnitOffset = NalUnitUtil.findNalUnit(dataArray, offset, limit, prefixFlags);
+      int nalUnitOffset = startCodeScanner.findNalUnit(dataArray, offset, limit);
 
       if (nalUnitOffset == limit) {
         // We've scanned to the end of the data without finding the start of another NAL unit.
@@ -24,6 +24,7 @@ import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerat
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.CodecSpecificDataUtil;
 import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.NalUnitStartCodeScanner;
 import com.google.android.exoplayer2.util.NalUnitUtil;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.Util;
@@ -66,7 +67,7 @@ public final class H265Reader implements ElementaryStreamReader {
   private boolean hasOutputFormat;
 
   // State that should be reset on seek.
-  private final boolean[] prefixFlags;
+  private final NalUnitStartCodeScanner startCodeScanner;
   private final NalUnitTargetBuffer vps;
   private final NalUnitTargetBuffer sps;
   private final NalUnitTargetBuffer pps;
@@ -85,7 +86,7 @@ public final class H265Reader implements ElementaryStreamReader {
    */
   public H265Reader(SeiReader seiReader) {
     this.seiReader = seiReader;
-    prefixFlags = new boolean[3];
+    startCodeScanner = new NalUnitStartCodeScanner();
     vps = new NalUnitTargetBuffer(VPS_NUT, 128);
     sps = new NalUnitTargetBuffer(SPS_NUT, 128);
     pps = new NalUnitTargetBuffer(PPS_NUT, 128);
@@ -99,7 +100,7 @@ public final class H265Reader implements ElementaryStreamReader {
   public void seek() {
     totalBytesWritten = 0;
     pesTimeUs = C.TIME_UNSET;
-    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    startCodeScanner.reset();
     vps.reset();
     sps.reset();
     pps.reset();
@@ -142,7 +143,7 @@ public final class H265Reader implements ElementaryStreamReader {
 
       // Scan the appended data, processing NAL units as they are encountered
       while (offset < limit) {
-        int nalUnitOffset = NalUnitUtil.findNalUnit(dataArray, offset, limit, prefixFlags);
+        int nalUnitOffset = startCodeScanner.findNalUnit(dataArray, offset, limit);
 
         if (nalUnitOffset == limit) {
           // We've scanned to the end of the data without finding the start of another NAL unit.
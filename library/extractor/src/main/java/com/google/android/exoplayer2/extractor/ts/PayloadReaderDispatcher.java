@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static com.google.android.exoplayer2.extractor.ts.TsExtractor.TS_PACKET_SIZE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import android.util.SparseIntArray;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Passes TS packet payloads to {@link TsPayloadReader}s on background threads.
+ *
+ * <p>Each PID is assigned to one of a fixed number of lanes, and each lane consumes the payloads
+ * dispatched to the readers of its PIDs on a single thread, in the order in which they were
+ * dispatched. Payloads are copied into one of two fixed size batches, so that one batch can be
+ * filled while the other is being consumed.
+ *
+ * <p>{@link SectionReader}s are called directly, once all previously dispatched calls have
+ * completed. This is because the sections they parse may change the state of the extractor, and
+ * because their output may depend on the state of shared objects updated by the other readers
+ * (for example, the last timestamp adjusted by a {@link
+ * com.google.android.exoplayer2.util.TimestampAdjuster}).
+ */
+/* package */ final class PayloadReaderDispatcher {
+
+  private static final String THREAD_NAME = "ExoPlayer:TsPayloadReader";
+  private static final int BATCH_CAPACITY = 256;
+  private static final long KEEP_ALIVE_TIME_MS = 1000;
+
+  private final @NullableType ThreadPoolExecutor[] laneExecutors;
+  private final ParsableByteArray[] laneScratches;
+  private final SparseIntArray pidLaneIndices;
+  private final Batch[] batches;
+
+  private int batchIndex;
+  private int nextLaneIndex;
+
+  /**
+   * Creates an instance.
+   *
+   * @param threadCount The number of threads on which payloads are consumed.
+   */
+  public PayloadReaderDispatcher(int threadCount) {
+    laneExecutors = new ThreadPoolExecutor[threadCount];
+    laneScratches = new ParsableByteArray[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      laneScratches[i] = new ParsableByteArray();
+    }
+    pidLaneIndices = new SparseIntArray();
+    batches = new Batch[] {new Batch(threadCount), new Batch(threadCount)};
+  }
+
+  /**
+   * Dispatches a call to {@link TsPayloadReader#seek()}.
+   *
+   * @param pid The PID of the reader.
+   * @param reader The reader to seek.
+   * @throws ParserException If a previously dispatched payload could not be parsed.
+   */
+  public void seek(int pid, TsPayloadReader reader) throws ParserException {
+    if (reader instanceof SectionReader) {
+      reader.seek();
+      return;
+    }
+    getBatchWithCapacity().add(reader, getLaneIndex(pid), /* data= */ null, /* flags= */ 0);
+  }
+
+  /**
+   * Dispatches a call to {@link TsPayloadReader#consume(ParsableByteArray, int)}. The bytes from
+   * the position to the limit of {@code data} are copied, and the position of {@code data} is not
+   * modified.
+   *
+   * @param pid The PID of the reader.
+   * @param reader The reader to consume the payload.
+   * @param data The TS packet, with its position set to the start of the payload.
+   * @param flags See {@link TsPayloadReader.Flags}.
+   * @throws ParserException If the payload (when consumed directly) or a previously dispatched
+   *     payload could not be parsed.
+   */
+  public void consume(
+      int pid, TsPayloadReader reader, ParsableByteArray data, @TsPayloadReader.Flags int flags)
+      throws ParserException {
+    if (reader instanceof SectionReader) {
+      awaitCompletion();
+      reader.consume(data, flags);
+      return;
+    }
+    getBatchWithCapacity().add(reader, getLaneIndex(pid), data, flags);
+  }
+
+  /**
+   * Blocks until all dispatched calls have completed.
+   *
+   * @throws ParserException If a dispatched payload could not be parsed.
+   */
+  public void awaitCompletion() throws ParserException {
+    Batch batch = batches[batchIndex];
+    if (batch.size > 0) {
+      dispatch(batch);
+    }
+    batchIndex = (batchIndex + 1) % batches.length;
+    // Wait for the older batch first, so that its error (if any) takes precedence.
+    @Nullable Exception olderBatchException = awaitLanes(batches[batchIndex]);
+    @Nullable
+    Exception newerBatchException = awaitLanes(batches[(batchIndex + 1) % batches.length]);
+    maybeThrow(olderBatchException != null ? olderBatchException : newerBatchException);
+  }
+
+  /**
+   * Releases the threads used to consume payloads. Must only be called when there are no pending
+   * calls.
+   */
+  public void release() {
+    for (int i = 0; i < laneExecutors.length; i++) {
+      @Nullable ThreadPoolExecutor executor = laneExecutors[i];
+      if (executor != null) {
+        executor.shutdown();
+        laneExecutors[i] = null;
+      }
+    }
+  }
+
+  // Internal methods.
+
+  private Batch getBatchWithCapacity() throws ParserException {
+    Batch batch = batches[batchIndex];
+    if (batch.size == BATCH_CAPACITY) {
+      dispatch(batch);
+      batchIndex = (batchIndex + 1) % batches.length;
+      batch = batches[batchIndex];
+      maybeThrow(awaitLanes(batch));
+    }
+    return batch;
+  }
+
+  /**
+   * Returns the lane of a PID. Lanes are assigned by PID rather than by reader, so that readers
+   * that replace each other (for example after a PMT change) aren't retained by the dispatcher.
+   */
+  private int getLaneIndex(int pid) {
+    int laneIndex = pidLaneIndices.get(pid, C.INDEX_UNSET);
+    if (laneIndex == C.INDEX_UNSET) {
+      laneIndex = nextLaneIndex;
+      nextLaneIndex = (nextLaneIndex + 1) % laneExecutors.length;
+      pidLaneIndices.put(pid, laneIndex);
+    }
+    return laneIndex;
+  }
+
+  private void dispatch(Batch batch) {
+    for (int laneIndex = 0; laneIndex < laneExecutors.length; laneIndex++) {
+      if (!batch.hasLane(laneIndex)) {
+        continue;
+      }
+      ParsableByteArray scratch = laneScratches[laneIndex];
+      int finalLaneIndex = laneIndex;
+      batch.pendingLanes.add(
+          getLaneExecutor(laneIndex).submit(() -> batch.consume(finalLaneIndex, scratch)));
+    }
+  }
+
+  private ThreadPoolExecutor getLaneExecutor(int laneIndex) {
+    @Nullable ThreadPoolExecutor executor = laneExecutors[laneIndex];
+    if (executor == null) {
+      // The thread is allowed to time out, so that it doesn't outlive an extractor that is never
+      // released.
+      executor =
+          new ThreadPoolExecutor(
+              /* corePoolSize= */ 1,
+              /* maximumPoolSize= */ 1,
+              KEEP_ALIVE_TIME_MS,
+              MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> new Thread(runnable, THREAD_NAME));
+      executor.allowCoreThreadTimeOut(true);
+      laneExecutors[laneIndex] = executor;
+    }
+    return executor;
+  }
+
+  /** Blocks until the lanes of a batch have completed, and returns the first error, if any. */
+  @Nullable
+  private static Exception awaitLanes(Batch batch) {
+    @Nullable RuntimeException runtimeException = null;
+    for (int i = 0; i < batch.pendingLanes.size(); i++) {
+      try {
+        Futures.getUnchecked(batch.pendingLanes.get(i));
+      } catch (RuntimeException e) {
+        if (runtimeException == null) {
+          runtimeException = e;
+        }
+      }
+    }
+    @Nullable ParserException parserException = batch.getParserException();
+    batch.reset();
+    return parserException != null ? parserException : runtimeException;
+  }
+
+  private static void maybeThrow(@Nullable Exception exception) throws ParserException {
+    if (exception instanceof ParserException) {
+      throw (ParserException) exception;
+    } else if (exception != null) {
+      throw (RuntimeException) exception;
+    }
+  }
+
+  private static final class Batch {
+
+    public final byte[] data;
+    public final List<TsPayloadReader> readers;
+    public final int[] laneIndices;
+    public final int[] offsets;
+    public final int[] lengths;
+    public final int[] flags;
+    public final List<Future<?>> pendingLanes;
+    private final boolean[] lanesWithCalls;
+
+    public int size;
+    public int dataLength;
+    @Nullable private ParserException parserException;
+
+    public Batch(int laneCount) {
+      data = new byte[BATCH_CAPACITY * TS_PACKET_SIZE];
+      readers = new ArrayList<>(BATCH_CAPACITY);
+      laneIndices = new int[BATCH_CAPACITY];
+      offsets = new int[BATCH_CAPACITY];
+      lengths = new int[BATCH_CAPACITY];
+      flags = new int[BATCH_CAPACITY];
+      pendingLanes = new ArrayList<>();
+      lanesWithCalls = new boolean[laneCount];
+    }
+
+    /**
+     * Adds a call to the batch. A call to {@link TsPayloadReader#seek()} is added if {@code data}
+     * is null.
+     */
+    public void add(
+        TsPayloadReader reader,
+        int laneIndex,
+        @Nullable ParsableByteArray data,
+        @TsPayloadReader.Flags int flags) {
+      readers.add(reader);
+      laneIndices[size] = laneIndex;
+      lanesWithCalls[laneIndex] = true;
+      this.flags[size] = flags;
+      if (data == null) {
+        lengths[size] = C.LENGTH_UNSET;
+      } else {
+        int length = data.bytesLeft();
+        System.arraycopy(data.getData(), data.getPosition(), this.data, dataLength, length);
+        offsets[size] = dataLength;
+        lengths[size] = length;
+        dataLength += length;
+      }
+      size++;
+    }
+
+    public boolean hasLane(int laneIndex) {
+      return lanesWithCalls[laneIndex];
+    }
+
+    /** Makes the calls added for a lane. Called on the thread of the lane. */
+    public void consume(int laneIndex, ParsableByteArray scratch) {
+      try {
+        for (int i = 0; i < size; i++) {
+          if (laneIndices[i] != laneIndex) {
+            continue;
+          }
+          TsPayloadReader reader = readers.get(i);
+          int length = lengths[i];
+          if (length == C.LENGTH_UNSET) {
+            reader.seek();
+          } else {
+            scratch.reset(data, /* limit= */ offsets[i] + length);
+            scratch.setPosition(offsets[i]);
+            reader.consume(scratch, flags[i]);
+          }
+        }
+      } catch (ParserException e) {
+        setParserException(e);
+      }
+    }
+
+    @Nullable
+    public synchronized ParserException getParserException() {
+      return parserException;
+    }
+
+    public synchronized void reset() {
+      readers.clear();
+      pendingLanes.clear();
+      size = 0;
+      dataLength = 0;
+      Arrays.fill(lanesWithCalls, false);
+      parserException = null;
+    }
+
+    private synchronized void setParserException(ParserException e) {
+      if (parserException == null) {
+        parserException = e;
+      }
+    }
+  }
+}
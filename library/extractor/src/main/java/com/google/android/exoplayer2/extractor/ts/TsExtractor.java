@@ -122,6 +122,7 @@ public final class TsExtractor implements Extractor {
   private static final long HEVC_FORMAT_IDENTIFIER = 0x48455643;
 
   private static final int BUFFER_SIZE = TS_PACKET_SIZE * 50;
+  private static final int MAX_DISPATCHED_PACKETS_PER_READ = 1024;
   private static final int SNIFF_TS_PACKET_COUNT = 5;
 
   private final @Mode int mode;
@@ -134,6 +135,8 @@ public final class TsExtractor implements Extractor {
   private final SparseBooleanArray trackIds;
   private final SparseBooleanArray trackPids;
   private final TsDurationReader durationReader;
+  @Nullable private final PayloadReaderDispatcher payloadReaderDispatcher;
+  @Nullable private final TsPacketIndex packetIndex;
 
   // Accessed only by the loading thread.
   private @MonotonicNonNull TsBinarySearchSeeker tsBinarySearchSeeker;
@@ -213,6 +216,72 @@ public final class TsExtractor implements Extractor {
       TimestampAdjuster timestampAdjuster,
       TsPayloadReader.Factory payloadReaderFactory,
       int timestampSearchBytes) {
+    this(
+        mode,
+        timestampAdjuster,
+        payloadReaderFactory,
+        timestampSearchBytes,
+        /* payloadReaderThreadCount= */ 0);
+  }
+
+  /**
+   * @param mode Mode for the extractor. One of {@link #MODE_MULTI_PMT}, {@link #MODE_SINGLE_PMT}
+   *     and {@link #MODE_HLS}.
+   * @param timestampAdjuster A timestamp adjuster for offsetting and scaling sample timestamps.
+   * @param payloadReaderFactory Factory for injecting a custom set of payload readers.
+   * @param timestampSearchBytes The number of bytes searched from a given position in the stream to
+   *     find a PCR timestamp. See {@link #TsExtractor(int, TimestampAdjuster,
+   *     TsPayloadReader.Factory, int)}.
+   * @param payloadReaderThreadCount The number of background threads on which payload readers
+   *     other than {@link SectionReader}s consume packet payloads, or 0 to consume all payloads on
+   *     the thread calling {@link #read}. If greater than 0, the thread calling {@link #read} only
+   *     synchronizes to packets, routes them by PID and parses the program specific information
+   *     once the tracks and their timestamp offsets are known, and each payload reader (and so
+   *     each {@link TrackOutput}) is then called from one of the background threads. Each {@link
+   *     TrackOutput} still receives its samples in order, and no {@link TrackOutput} is called
+   *     after {@link #read} returns. This is only beneficial for high bitrate streams, where
+   *     parsing the payloads of all the elementary streams on a single thread is a bottleneck.
+   */
+  public TsExtractor(
+      @Mode int mode,
+      TimestampAdjuster timestampAdjuster,
+      TsPayloadReader.Factory payloadReaderFactory,
+      int timestampSearchBytes,
+      int payloadReaderThreadCount) {
+    this(
+        mode,
+        timestampAdjuster,
+        payloadReaderFactory,
+        timestampSearchBytes,
+        payloadReaderThreadCount,
+        /* packetIndex= */ null);
+  }
+
+  /**
+   * @param mode Mode for the extractor. One of {@link #MODE_MULTI_PMT}, {@link #MODE_SINGLE_PMT}
+   *     and {@link #MODE_HLS}.
+   * @param timestampAdjuster A timestamp adjuster for offsetting and scaling sample timestamps.
+   * @param payloadReaderFactory Factory for injecting a custom set of payload readers.
+   * @param timestampSearchBytes The number of bytes searched from a given position in the stream to
+   *     find a PCR timestamp. See {@link #TsExtractor(int, TimestampAdjuster,
+   *     TsPayloadReader.Factory, int)}.
+   * @param payloadReaderThreadCount The number of background threads on which packet payloads are
+   *     consumed. See {@link #TsExtractor(int, TimestampAdjuster, TsPayloadReader.Factory, int,
+   *     int)}.
+   * @param packetIndex A {@link TsPacketIndex} of the stream, or null. If set, the duration and
+   *     the {@link SeekMap} are taken from the index, so that the stream doesn't need to be
+   *     searched for PCR timestamps to determine the duration or to seek. Must be null in {@link
+   *     #MODE_HLS}.
+   */
+  public TsExtractor(
+      @Mode int mode,
+      TimestampAdjuster timestampAdjuster,
+      TsPayloadReader.Factory payloadReaderFactory,
+      int timestampSearchBytes,
+      int payloadReaderThreadCount,
+      @Nullable TsPacketIndex packetIndex) {
+    Assertions.checkArgument(payloadReaderThreadCount >= 0);
+    Assertions.checkArgument(packetIndex == null || mode != MODE_HLS);
     this.payloadReaderFactory = Assertions.checkNotNull(payloadReaderFactory);
     this.timestampSearchBytes = timestampSearchBytes;
     this.mode = mode;
@@ -228,6 +297,9 @@ public final class TsExtractor implements Extractor {
     tsPayloadReaders = new SparseArray<>();
     continuityCounters = new SparseIntArray();
     durationReader = new TsDurationReader(timestampSearchBytes);
+    payloadReaderDispatcher =
+        payloadReaderThreadCount > 0 ? new PayloadReaderDispatcher(payloadReaderThreadCount) : null;
+    this.packetIndex = packetIndex;
     output = ExtractorOutput.PLACEHOLDER;
     pcrPid = -1;
     resetPayloadReaders();
@@ -300,7 +372,9 @@ public final class TsExtractor implements Extractor {
 
   @Override
   public void release() {
-    // Do nothing
+    if (payloadReaderDispatcher != null) {
+      payloadReaderDispatcher.release();
+    }
   }
 
   @Override
@@ -308,7 +382,8 @@ public final class TsExtractor implements Extractor {
       throws IOException {
     long inputLength = input.getLength();
     if (tracksEnded) {
-      boolean canReadDuration = inputLength != C.LENGTH_UNSET && mode != MODE_HLS;
+      boolean canReadDuration =
+          inputLength != C.LENGTH_UNSET && mode != MODE_HLS && packetIndex == null;
       if (canReadDuration && !durationReader.isDurationReadFinished()) {
         return durationReader.readDuration(input, seekPosition, pcrPid);
       }
@@ -332,10 +407,42 @@ public final class TsExtractor implements Extractor {
       return RESULT_END_OF_INPUT;
     }
 
+    @Nullable PayloadReaderDispatcher payloadReaderDispatcher = this.payloadReaderDispatcher;
+    if (payloadReaderDispatcher != null && canDispatchPayloads()) {
+      // Read a number of packets per call, so that the payloads can be consumed in parallel, but
+      // make sure all of them have been consumed before returning.
+      try {
+        int packetCount = 0;
+        do {
+          readPacket(inputLength, payloadReaderDispatcher);
+        } while (++packetCount < MAX_DISPATCHED_PACKETS_PER_READ
+            && fillBufferWithAtLeastOnePacket(input));
+      } finally {
+        payloadReaderDispatcher.awaitCompletion();
+      }
+      return RESULT_CONTINUE;
+    }
+
+    readPacket(inputLength, /* payloadReaderDispatcher= */ null);
+    return RESULT_CONTINUE;
+  }
+
+  // Internals.
+
+  /**
+   * Reads the first TS packet in the packet buffer, if it's been read fully into the buffer.
+   *
+   * @param inputLength The length of the input, or {@link C#LENGTH_UNSET} if unknown.
+   * @param payloadReaderDispatcher The dispatcher through which the payload is consumed, or null to
+   *     consume it directly.
+   */
+  private void readPacket(
+      long inputLength, @Nullable PayloadReaderDispatcher payloadReaderDispatcher)
+      throws ParserException {
     int endOfPacket = findEndOfFirstTsPacketInBuffer();
     int limit = tsPacketBuffer.limit();
     if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
+      return;
     }
 
     @TsPayloadReader.Flags int packetHeaderFlags = 0;
@@ -345,7 +452,7 @@ public final class TsExtractor implements Extractor {
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
     packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
@@ -357,7 +464,7 @@ public final class TsExtractor implements Extractor {
     TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
     if (payloadReader == null) {
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
@@ -368,10 +475,14 @@ public final class TsExtractor implements Extractor {
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
         tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
+        return;
       } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
-        payloadReader.seek();
+        if (payloadReaderDispatcher != null) {
+          payloadReaderDispatcher.seek(pid, payloadReader);
+        } else {
+          payloadReader.seek();
+        }
       }
     }
 
@@ -391,7 +502,11 @@ public final class TsExtractor implements Extractor {
     boolean wereTracksEnded = tracksEnded;
     if (shouldConsumePacketPayload(pid)) {
       tsPacketBuffer.setLimit(endOfPacket);
-      payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
+      if (payloadReaderDispatcher != null) {
+        payloadReaderDispatcher.consume(pid, payloadReader, tsPacketBuffer, packetHeaderFlags);
+      } else {
+        payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
+      }
       tsPacketBuffer.setLimit(limit);
     }
     if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
@@ -402,15 +517,31 @@ public final class TsExtractor implements Extractor {
     }
 
     tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
   }
 
-  // Internals.
+  /**
+   * Returns whether packet payloads can be dispatched to other threads. This is only the case once
+   * all the tracks are known (or in HLS mode) and the timestamp offsets have been determined, since
+   * otherwise the outcome would depend on the order in which the threads consume the payloads.
+   */
+  private boolean canDispatchPayloads() {
+    if (mode != MODE_HLS && !tracksEnded) {
+      return false;
+    }
+    for (int i = 0; i < timestampAdjusters.size(); i++) {
+      if (!timestampAdjusters.get(i).isInitialized()) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
       hasOutputSeekMap = true;
-      if (durationReader.getDurationUs() != C.TIME_UNSET) {
+      if (packetIndex != null) {
+        output.seekMap(packetIndex.createSeekMap());
+      } else if (durationReader.getDurationUs() != C.TIME_UNSET) {
         tsBinarySearchSeeker =
             new TsBinarySearchSeeker(
                 durationReader.getPcrTimestampAdjuster(),
@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static com.google.android.exoplayer2.extractor.ts.TsExtractor.TS_PACKET_SIZE;
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.min;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.IndexSeekMap;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.LongArray;
+import com.google.android.exoplayer2.util.TimestampAdjuster;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An index of seek points in a transport stream, which can be stored alongside the stream (for
+ * example in a sidecar file) and passed to {@link TsExtractor} to seek without searching the
+ * stream for PCR timestamps.
+ *
+ * <p>An index is created by a {@link Builder} in a single pass over the stream. Each seek point
+ * maps the PCR time (relative to the first PCR in the stream) to the position of a packet. If the
+ * stream signals random access points on the PID that carries the PCR (typically the video PID),
+ * the seek points are the positions of these (key frame) packets. Otherwise the seek points are
+ * the positions of the packets that carry the PCR.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class TsPacketIndex {
+
+  /** Builds a {@link TsPacketIndex} from the bytes of a transport stream, in a single pass. */
+  public static final class Builder {
+
+    /** The default minimum interval between two seek points, in microseconds. */
+    public static final long DEFAULT_MIN_POINT_INTERVAL_US = 500_000;
+
+    private final long minPointIntervalUs;
+    private final TimestampAdjuster pcrTimestampAdjuster;
+    private final byte[] packet;
+    private final byte[] readBuffer;
+    private final LongArray randomAccessPositions;
+    private final LongArray randomAccessTimesUs;
+    private final LongArray pcrPositions;
+    private final LongArray pcrTimesUs;
+
+    private int packetBytes;
+    private long position;
+    private int pcrPid;
+    private long lastPcrTimeUs;
+
+    /** Creates an instance using {@link #DEFAULT_MIN_POINT_INTERVAL_US}. */
+    public Builder() {
+      this(DEFAULT_MIN_POINT_INTERVAL_US);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param minPointIntervalUs The minimum interval between two seek points, in microseconds.
+     */
+    public Builder(long minPointIntervalUs) {
+      checkArgument(minPointIntervalUs >= 0);
+      this.minPointIntervalUs = minPointIntervalUs;
+      pcrTimestampAdjuster = new TimestampAdjuster(/* firstSampleTimestampUs= */ 0);
+      packet = new byte[TS_PACKET_SIZE];
+      readBuffer = new byte[TS_PACKET_SIZE * 50];
+      randomAccessPositions = new LongArray();
+      randomAccessTimesUs = new LongArray();
+      pcrPositions = new LongArray();
+      pcrTimesUs = new LongArray();
+      pcrPid = C.INDEX_UNSET;
+      lastPcrTimeUs = C.TIME_UNSET;
+    }
+
+    /**
+     * Appends the next bytes of the stream.
+     *
+     * @param data An array containing the bytes.
+     * @param offset The offset of the first byte in {@code data}.
+     * @param length The number of bytes.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder append(byte[] data, int offset, int length) {
+      int limit = offset + length;
+      while (offset < limit) {
+        if (packetBytes == 0) {
+          // Discard all bytes before the next sync byte.
+          int syncBytePosition = TsUtil.findSyncBytePosition(data, offset, limit);
+          position += syncBytePosition - offset;
+          offset = syncBytePosition;
+          if (limit - offset >= TS_PACKET_SIZE) {
+            // The packet is fully contained in data, so there's no need to copy it.
+            readPacket(data, offset, position);
+            offset += TS_PACKET_SIZE;
+            position += TS_PACKET_SIZE;
+            continue;
+          } else if (offset == limit) {
+            break;
+          }
+        }
+        int bytesToCopy = min(TS_PACKET_SIZE - packetBytes, limit - offset);
+        System.arraycopy(data, offset, packet, packetBytes, bytesToCopy);
+        packetBytes += bytesToCopy;
+        offset += bytesToCopy;
+        position += bytesToCopy;
+        if (packetBytes == TS_PACKET_SIZE) {
+          readPacket(packet, /* offset= */ 0, position - TS_PACKET_SIZE);
+          packetBytes = 0;
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Appends all the remaining bytes that can be read from a {@link DataReader}.
+     *
+     * @param dataReader The {@link DataReader} to read from.
+     * @return This builder.
+     * @throws IOException If an error occurs reading from the {@link DataReader}.
+     */
+    @CanIgnoreReturnValue
+    public Builder append(DataReader dataReader) throws IOException {
+      int bytesRead;
+      while ((bytesRead = dataReader.read(readBuffer, 0, readBuffer.length))
+          != C.RESULT_END_OF_INPUT) {
+        append(readBuffer, /* offset= */ 0, bytesRead);
+      }
+      return this;
+    }
+
+    /** Returns an index of the bytes appended so far. */
+    public TsPacketIndex build() {
+      boolean hasRandomAccessPoints = randomAccessPositions.size() > 0;
+      return new TsPacketIndex(
+          hasRandomAccessPoints ? randomAccessPositions.toArray() : pcrPositions.toArray(),
+          hasRandomAccessPoints ? randomAccessTimesUs.toArray() : pcrTimesUs.toArray(),
+          /* durationUs= */ lastPcrTimeUs >= 0 ? lastPcrTimeUs : C.TIME_UNSET);
+    }
+
+    private void readPacket(byte[] data, int offset, long packetPosition) {
+      // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
+      int secondHeaderByte = data[offset + 1] & 0xFF;
+      if ((secondHeaderByte & 0x80) != 0) { // transport_error_indicator
+        return;
+      }
+      boolean payloadUnitStartIndicator = (secondHeaderByte & 0x40) != 0;
+      int pid = ((secondHeaderByte & 0x1F) << 8) | (data[offset + 2] & 0xFF);
+      boolean adaptationFieldExists = (data[offset + 3] & 0x20) != 0;
+      int adaptationFieldLength = data[offset + 4] & 0xFF;
+      if (!adaptationFieldExists
+          || adaptationFieldLength == 0
+          || (pcrPid != C.INDEX_UNSET && pid != pcrPid)) {
+        return;
+      }
+      int adaptationFieldFlags = data[offset + 5] & 0xFF;
+      if ((adaptationFieldFlags & 0x10) != 0 && adaptationFieldLength >= 7) { // PCR_flag
+        // The PCR of the first PID that carries one is used.
+        pcrPid = pid;
+        lastPcrTimeUs = pcrTimestampAdjuster.adjustTsTimestamp(readPcrValue(data, offset + 6));
+        maybeAddPoint(pcrPositions, pcrTimesUs, packetPosition, lastPcrTimeUs);
+      }
+      if (pid == pcrPid
+          && payloadUnitStartIndicator
+          && (adaptationFieldFlags & 0x40) != 0 // random_access_indicator
+          && lastPcrTimeUs != C.TIME_UNSET) {
+        maybeAddPoint(randomAccessPositions, randomAccessTimesUs, packetPosition, lastPcrTimeUs);
+      }
+    }
+
+    private void maybeAddPoint(LongArray positions, LongArray timesUs, long position, long timeUs) {
+      int size = timesUs.size();
+      if (size == 0 || timeUs >= timesUs.get(size - 1) + minPointIntervalUs) {
+        positions.add(position);
+        timesUs.add(timeUs);
+      }
+    }
+
+    /** Returns the 33 bit PCR base, ignoring the PCR extension. */
+    private static long readPcrValue(byte[] data, int offset) {
+      return (data[offset] & 0xFFL) << 25
+          | (data[offset + 1] & 0xFFL) << 17
+          | (data[offset + 2] & 0xFFL) << 9
+          | (data[offset + 3] & 0xFFL) << 1
+          | (data[offset + 4] & 0xFFL) >> 7;
+    }
+  }
+
+  private static final int MAGIC = 0x54534958; // "TSIX"
+  private static final int VERSION = 1;
+
+  private final long[] positions;
+  private final long[] timesUs;
+  private final long durationUs;
+
+  private TsPacketIndex(long[] positions, long[] timesUs, long durationUs) {
+    this.positions = positions;
+    this.timesUs = timesUs;
+    this.durationUs = durationUs;
+  }
+
+  /**
+   * Reads an index written by {@link #write(OutputStream)}.
+   *
+   * @param inputStream The stream to read from. The stream is not closed.
+   * @return The index.
+   * @throws ParserException If the data is not a valid index.
+   * @throws IOException If an error occurs reading from the stream.
+   */
+  public static TsPacketIndex read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(inputStream);
+    if (input.readInt() != MAGIC) {
+      throw ParserException.createForMalformedContainer(
+          "Invalid TS packet index", /* cause= */ null);
+    }
+    int version = input.readUnsignedByte();
+    if (version != VERSION) {
+      throw ParserException.createForMalformedContainer(
+          "Unsupported TS packet index version: " + version, /* cause= */ null);
+    }
+    long durationUs = input.readLong();
+    int pointCount = input.readInt();
+    if (pointCount < 0) {
+      throw ParserException.createForMalformedContainer(
+          "Invalid TS packet index point count: " + pointCount, /* cause= */ null);
+    }
+    long[] positions = new long[pointCount];
+    long[] timesUs = new long[pointCount];
+    long position = 0;
+    long timeUs = 0;
+    for (int i = 0; i < pointCount; i++) {
+      position += readUnsignedVarint(input);
+      long zigZagTimeDeltaUs = readUnsignedVarint(input);
+      timeUs += (zigZagTimeDeltaUs >>> 1) ^ -(zigZagTimeDeltaUs & 1);
+      positions[i] = position;
+      timesUs[i] = timeUs;
+    }
+    return new TsPacketIndex(positions, timesUs, durationUs);
+  }
+
+  /**
+   * Writes the index in a compact binary form, which can be read by {@link #read(InputStream)}.
+   *
+   * <p>Positions and times are delta encoded as variable length integers, so each seek point
+   * typically takes five bytes or less.
+   *
+   * @param outputStream The stream to write to. The stream is flushed but not closed.
+   * @throws IOException If an error occurs writing to the stream.
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(MAGIC);
+    output.writeByte(VERSION);
+    output.writeLong(durationUs);
+    output.writeInt(positions.length);
+    long previousPosition = 0;
+    long previousTimeUs = 0;
+    for (int i = 0; i < positions.length; i++) {
+      writeUnsignedVarint(output, positions[i] - previousPosition);
+      long timeDeltaUs = timesUs[i] - previousTimeUs;
+      writeUnsignedVarint(output, (timeDeltaUs << 1) ^ (timeDeltaUs >> 63));
+      previousPosition = positions[i];
+      previousTimeUs = timesUs[i];
+    }
+    output.flush();
+  }
+
+  /** Returns the duration of the stream, or {@link C#TIME_UNSET} if it's unknown. */
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  /** Returns the number of seek points. */
+  public int getPointCount() {
+    return positions.length;
+  }
+
+  /** Returns the position of the packet of a seek point, in bytes. */
+  public long getPointPosition(int index) {
+    return positions[index];
+  }
+
+  /** Returns the time of a seek point, in microseconds. */
+  public long getPointTimeUs(int index) {
+    return timesUs[index];
+  }
+
+  /** Returns a {@link SeekMap} for the stream. */
+  public SeekMap createSeekMap() {
+    return new IndexSeekMap(positions, timesUs, durationUs);
+  }
+
+  private static void writeUnsignedVarint(DataOutputStream output, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      output.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  private static long readUnsignedVarint(DataInputStream input) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int currentByte = input.readUnsignedByte();
+      value |= (long) (currentByte & 0x7F) << shift;
+      if ((currentByte & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw ParserException.createForMalformedContainer(
+        "Invalid variable length integer in TS packet index", /* cause= */ null);
+  }
+}
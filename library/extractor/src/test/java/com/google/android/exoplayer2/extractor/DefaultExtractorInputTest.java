@@ -28,6 +28,7 @@ import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -214,6 +215,86 @@ public class DefaultExtractorInputTest {
     assertThat(input.getPosition()).isEqualTo(TEST_DATA.length);
   }
 
+  @Test
+  public void readToByteBufferMultipleTimes() throws Exception {
+    DefaultExtractorInput input = createDefaultExtractorInput();
+    ByteBuffer target = ByteBuffer.allocateDirect(TEST_DATA.length);
+    // We expect to perform three reads of three bytes, as setup in buildTestDataSource.
+    assertThat(input.read(target)).isEqualTo(3);
+    assertThat(input.read(target)).isEqualTo(3);
+    assertThat(input.read(target)).isEqualTo(3);
+    assertThat(input.getPosition()).isEqualTo(TEST_DATA.length);
+    assertThat(getBytes(target)).isEqualTo(TEST_DATA);
+    // Check that we see end of input if we read again.
+    assertThat(input.read(ByteBuffer.allocateDirect(1))).isEqualTo(RESULT_END_OF_INPUT);
+  }
+
+  @Test
+  public void readFullyToDirectByteBuffer() throws Exception {
+    DefaultExtractorInput input = createDefaultExtractorInput();
+    ByteBuffer target = ByteBuffer.allocateDirect(TEST_DATA.length);
+    input.readFully(target);
+    // Check that we read the whole of TEST_DATA, and that the buffer position was advanced.
+    assertThat(target.hasRemaining()).isFalse();
+    assertThat(getBytes(target)).isEqualTo(TEST_DATA);
+    assertThat(input.getPosition()).isEqualTo(TEST_DATA.length);
+    // Check that we see end of input if we read again with allowEndOfInput set.
+    assertThat(input.readFully(ByteBuffer.allocateDirect(1), true)).isFalse();
+    // Check that we fail with EOFException we read again with allowEndOfInput unset.
+    try {
+      input.readFully(ByteBuffer.allocateDirect(1));
+      fail();
+    } catch (EOFException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void readFullyToHeapByteBufferHalfPeeked() throws Exception {
+    DefaultExtractorInput input = createDefaultExtractorInput();
+    byte[] array = new byte[TEST_DATA.length + 2];
+    ByteBuffer target = ByteBuffer.wrap(array, /* offset= */ 2, TEST_DATA.length).slice();
+
+    input.advancePeekPosition(4);
+    input.readFully(target);
+
+    // Check the read data is correct.
+    assertThat(copyOfRange(array, 2, array.length)).isEqualTo(TEST_DATA);
+    assertThat(target.position()).isEqualTo(TEST_DATA.length);
+    assertThat(input.getPosition()).isEqualTo(TEST_DATA.length);
+  }
+
+  @Test
+  public void readFullyToDirectByteBufferTooMuch() throws Exception {
+    // Read more than TEST_DATA. Should fail with an EOFException. Position should not update.
+    DefaultExtractorInput input = createDefaultExtractorInput();
+    try {
+      input.readFully(ByteBuffer.allocateDirect(TEST_DATA.length + 1), true);
+      fail();
+    } catch (EOFException e) {
+      // Expected.
+    }
+    assertThat(input.getPosition()).isEqualTo(0);
+  }
+
+  @Test
+  public void peekFullyToDirectByteBuffer() throws Exception {
+    DefaultExtractorInput input = createDefaultExtractorInput();
+    ByteBuffer target = ByteBuffer.allocateDirect(5);
+
+    input.peekFully(target);
+
+    assertThat(getBytes(target)).isEqualTo(copyOf(TEST_DATA, 5));
+    assertThat(input.getPeekPosition()).isEqualTo(5);
+    assertThat(input.getPosition()).isEqualTo(0);
+    // Check that the peeked data can then be read.
+    target = ByteBuffer.allocateDirect(TEST_DATA.length);
+    input.readFully(target);
+    assertThat(getBytes(target)).isEqualTo(TEST_DATA);
+    // Check that we see end of input if we peek again with allowEndOfInput set.
+    assertThat(input.peekFully(ByteBuffer.allocateDirect(1), true)).isFalse();
+  }
+
   @Test
   public void skipMultipleTimes() throws Exception {
     DefaultExtractorInput input = createDefaultExtractorInput();
@@ -636,6 +717,13 @@ public class DefaultExtractorInputTest {
     return testDataSource;
   }
 
+  /** Returns the bytes from the start of {@code buffer} to its position. */
+  private static byte[] getBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.position()];
+    ((ByteBuffer) buffer.duplicate().flip()).get(bytes);
+    return bytes;
+  }
+
   private static DefaultExtractorInput createDefaultExtractorInput() throws Exception {
     FakeDataSource testDataSource = buildDataSource();
     return new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNSET);
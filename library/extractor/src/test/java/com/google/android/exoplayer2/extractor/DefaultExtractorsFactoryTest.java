@@ -35,6 +35,7 @@ import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
 import com.google.android.exoplayer2.extractor.ts.PsExtractor;
 import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.MimeTypes;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -119,6 +120,52 @@ public final class DefaultExtractorsFactoryTest {
         .inOrder();
   }
 
+  @Test
+  public void createExtractors_withHeaderFileType_startsWithExtractorsMatchingHeaderFileType() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Uri uri = Uri.parse("test.mp3");
+    Map<String, List<String>> responseHeaders = new HashMap<>();
+    responseHeaders.put("Content-Type", Collections.singletonList(MimeTypes.VIDEO_MP4));
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(uri, responseHeaders, FileTypes.MATROSKA);
+
+    List<Class<? extends Extractor>> extractorClasses = getExtractorClasses(extractors);
+    assertThat(extractorClasses.get(0)).isEqualTo(MatroskaExtractor.class);
+    assertThat(extractorClasses.subList(1, 3))
+        .containsExactly(Mp4Extractor.class, FragmentedMp4Extractor.class);
+    assertThat(extractorClasses.get(3)).isEqualTo(Mp3Extractor.class);
+    assertThat(extractorClasses.subList(4, extractors.length))
+        .containsExactly(
+            FlvExtractor.class,
+            FlacExtractor.class,
+            WavExtractor.class,
+            AmrExtractor.class,
+            PsExtractor.class,
+            OggExtractor.class,
+            TsExtractor.class,
+            AdtsExtractor.class,
+            Ac3Extractor.class,
+            Ac4Extractor.class,
+            AviExtractor.class,
+            JpegExtractor.class)
+        .inOrder();
+  }
+
+  @Test
+  public void createExtractors_withHeaderFileTypeMatchingUri_doesNotDuplicateExtractors() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(
+            Uri.parse("test.mp3"), new HashMap<>(), FileTypes.MP3);
+
+    List<Class<? extends Extractor>> extractorClasses = getExtractorClasses(extractors);
+    assertThat(extractorClasses.get(0)).isEqualTo(Mp3Extractor.class);
+    assertThat(extractorClasses).containsNoDuplicates();
+    assertThat(extractors).hasLength(defaultExtractorsFactory.createExtractors().length);
+  }
+
   private static List<Class<? extends Extractor>> getExtractorClasses(Extractor[] extractors) {
     List<Class<? extends Extractor>> extractorClasses = new ArrayList<>();
     for (Extractor extractor : extractors) {
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mkv;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Seeking tests for {@link MatroskaExtractor} when reading cues incrementally. */
+@RunWith(AndroidJUnit4.class)
+public final class MatroskaExtractorSeekTest {
+
+  // The Cues element of this file is after the clusters, and contains 51 cue points.
+  private static final String TEST_FILE = "media/mkv/sample.mkv";
+  private static final long DURATION_US = 1_104_000;
+
+  private DefaultDataSource dataSource;
+  private Uri fileUri;
+
+  @Before
+  public void setUp() {
+    dataSource =
+        new DefaultDataSource.Factory(ApplicationProvider.getApplicationContext())
+            .createDataSource();
+    fileUri = TestUtil.buildAssetUri(TEST_FILE);
+  }
+
+  @Test
+  public void incrementalCues_outputsSeekMapBuiltFromFirstCuePoints() throws Exception {
+    SeekMap seekMap =
+        TestUtil.extractSeekMap(
+            createExtractorReadingOneCuePointPerPass(),
+            new FakeExtractorOutput(),
+            dataSource,
+            fileUri);
+
+    assertThat(seekMap.isSeekable()).isTrue();
+    assertThat(seekMap.getDurationUs()).isEqualTo(DURATION_US);
+    // Only the first cue point has been read.
+    assertThat(seekMap.getSeekPoints(DURATION_US).first)
+        .isEqualTo(new SeekPoint(/* timeUs= */ 67_000, /* position= */ 5576));
+  }
+
+  @Test
+  public void incrementalCues_outputsSameSeekMapAsFullCuesOnceAllCuePointsRead()
+      throws Exception {
+    SeekMap fullSeekMap =
+        TestUtil.extractSeekMap(
+            new MatroskaExtractor(), new FakeExtractorOutput(), dataSource, fileUri);
+    FakeExtractorOutput extractorOutput = new FakeExtractorOutput();
+    Extractor extractor = createExtractorReadingOneCuePointPerPass();
+    TestUtil.extractSeekMap(extractor, extractorOutput, dataSource, fileUri);
+
+    // Seek before all cue points have been read, then read to the end of the file.
+    extractor.seek(/* position= */ 5576, /* timeUs= */ 0);
+    readToEndOfInput(extractor, /* position= */ 5576);
+
+    SeekMap seekMap = extractorOutput.seekMap;
+    for (long timeUs = 0; timeUs <= DURATION_US; timeUs += 50_000) {
+      assertThat(seekMap.getSeekPoints(timeUs)).isEqualTo(fullSeekMap.getSeekPoints(timeUs));
+    }
+  }
+
+  private static MatroskaExtractor createExtractorReadingOneCuePointPerPass() {
+    return new MatroskaExtractor(
+        new DefaultEbmlReader(),
+        MatroskaExtractor.FLAG_INCREMENTAL_CUES,
+        /* incrementalCuesPassLength= */ 1);
+  }
+
+  private void readToEndOfInput(Extractor extractor, long position) throws IOException {
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_SEEK;
+    while (readResult == Extractor.RESULT_SEEK) {
+      ExtractorInput input = TestUtil.getExtractorInputFromPosition(dataSource, position, fileUri);
+      try {
+        do {
+          readResult = extractor.read(input, positionHolder);
+        } while (readResult == Extractor.RESULT_CONTINUE);
+      } finally {
+        DataSourceUtil.closeQuietly(dataSource);
+      }
+      position = positionHolder.position;
+    }
+  }
+}
@@ -40,6 +40,26 @@ public final class MatroskaExtractorTest {
         MatroskaExtractor::new, "media/mkv/sample.mkv", simulationConfig);
   }
 
+  @Test
+  public void mkvSample_withIncrementalCues() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new MatroskaExtractor(MatroskaExtractor.FLAG_INCREMENTAL_CUES),
+        "media/mkv/sample.mkv",
+        simulationConfig);
+  }
+
+  @Test
+  public void mkvSample_withIncrementalCuesReadOneCuePointAtATime() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () ->
+            new MatroskaExtractor(
+                new DefaultEbmlReader(),
+                MatroskaExtractor.FLAG_INCREMENTAL_CUES,
+                /* incrementalCuesPassLength= */ 1),
+        "media/mkv/sample.mkv",
+        simulationConfig);
+  }
+
   @Test
   public void mkvSample_withSubripSubtitles() throws Exception {
     ExtractorAsserts.assertBehavior(
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link AccumulatedSampleSizes}. */
+@RunWith(AndroidJUnit4.class)
+public final class AccumulatedSampleSizesTest {
+
+  // Enough samples for the merge to record several checkpoints.
+  private static final int SAMPLE_COUNT = 3000;
+
+  @Test
+  public void get_interleavedTracks_returnsSizeOfPrecedingSamples() {
+    // Samples of the first track of size 1 at even times alternate with samples of the second
+    // track of size 10 at odd times.
+    AccumulatedSampleSizes accumulatedSampleSizes =
+        new AccumulatedSampleSizes(
+            new TrackSampleTable[] {
+              createSampleTable(/* firstTimestampUs= */ 0, /* sampleSize= */ 1),
+              createSampleTable(/* firstTimestampUs= */ 1, /* sampleSize= */ 10)
+            });
+
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, i)).isEqualTo(11L * i);
+      assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, i)).isEqualTo(11L * i + 1);
+    }
+  }
+
+  @Test
+  public void get_samplesWithEqualTimestamps_mergesLaterTrackFirst() {
+    AccumulatedSampleSizes accumulatedSampleSizes =
+        new AccumulatedSampleSizes(
+            new TrackSampleTable[] {
+              createSampleTable(/* firstTimestampUs= */ 0, /* sampleSize= */ 1),
+              createSampleTable(/* firstTimestampUs= */ 0, /* sampleSize= */ 10)
+            });
+
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 0)).isEqualTo(0);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 0))
+        .isEqualTo(10);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 5))
+        .isEqualTo(55);
+  }
+
+  @Test
+  public void get_earlierSamplesAfterLaterSamples_returnsSizeOfPrecedingSamples() {
+    AccumulatedSampleSizes accumulatedSampleSizes =
+        new AccumulatedSampleSizes(
+            new TrackSampleTable[] {
+              createSampleTable(/* firstTimestampUs= */ 0, /* sampleSize= */ 1),
+              createSampleTable(/* firstTimestampUs= */ 1, /* sampleSize= */ 10)
+            });
+
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, SAMPLE_COUNT - 1))
+        .isEqualTo(11L * (SAMPLE_COUNT - 1));
+    // Requests for earlier samples, as after a seek, resume from a recorded state of the merge.
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 2000))
+        .isEqualTo(22_000);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 10))
+        .isEqualTo(111);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 0)).isEqualTo(0);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, SAMPLE_COUNT - 1))
+        .isEqualTo(11L * (SAMPLE_COUNT - 1) + 1);
+  }
+
+  /**
+   * Returns a sample table of {@link #SAMPLE_COUNT} samples of the same size, whose timestamps
+   * increase by two from {@code firstTimestampUs}.
+   */
+  private static TrackSampleTable createSampleTable(long firstTimestampUs, int sampleSize) {
+    long[] offsets = new long[SAMPLE_COUNT];
+    int[] sizes = new int[SAMPLE_COUNT];
+    long[] timestampsUs = new long[SAMPLE_COUNT];
+    int[] flags = new int[SAMPLE_COUNT];
+    Arrays.fill(sizes, sampleSize);
+    Arrays.fill(flags, C.BUFFER_FLAG_KEY_FRAME);
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      offsets[i] = (long) i * sampleSize;
+      timestampsUs[i] = firstTimestampUs + 2L * i;
+    }
+    Track track =
+        new Track(
+            /* id= */ 1,
+            /* type= */ C.TRACK_TYPE_VIDEO,
+            /* timescale= */ 1_000_000,
+            /* movieTimescale= */ 1000,
+            /* durationUs= */ C.TIME_UNSET,
+            new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build(),
+            /* sampleTransformation= */ Track.TRANSFORMATION_NONE,
+            /* sampleDescriptionEncryptionBoxes= */ null,
+            /* nalUnitLengthFieldLength= */ 4,
+            /* editListDurations= */ null,
+            /* editListMediaTimes= */ null);
+    return new TrackSampleTable(
+        track,
+        offsets,
+        sizes,
+        /* maximumSize= */ sampleSize,
+        timestampsUs,
+        flags,
+        /* durationUs= */ 2L * SAMPLE_COUNT);
+  }
+}
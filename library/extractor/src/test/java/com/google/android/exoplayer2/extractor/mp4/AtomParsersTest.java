@@ -73,6 +73,8 @@ public final class AtomParsersTest {
     assertThat(box.getFixedSampleSize()).isEqualTo(C.LENGTH_UNSET);
     for (int i = 0; i < box.getSampleCount(); i++) {
       assertThat(box.readNextSampleSize()).isEqualTo(i + 1);
+    }    for (int i = box.getSampleCount() - 1; i >= 0; i--) {
+      assertThat(box.getSampleSize(i)).isEqualTo(i + 1);
     }
   }
 }
@@ -39,6 +39,14 @@ public final class Mp4ExtractorTest {
     ExtractorAsserts.assertBehavior(Mp4Extractor::new, "media/mp4/sample.mp4", simulationConfig);
   }
 
+  @Test
+  public void mp4SampleWithCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample.mp4",
+        simulationConfig);
+  }
+
   @Test
   public void mp4SampleWithSlowMotionMetadata() throws Exception {
     ExtractorAsserts.assertBehavior(
@@ -125,4 +133,20 @@ public final class Mp4ExtractorTest {
     ExtractorAsserts.assertBehavior(
         Mp4Extractor::new, "media/mp4/sample_with_colr_mdcv_and_clli.mp4", simulationConfig);
   }
+
+  @Test
+  public void mp4SampleWithOpusTrackAndCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample_opus.mp4",
+        simulationConfig);
+  }
+
+  @Test
+  public void mp4SampleWithDolbyTrueHDTrackAndCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample_dthd.mp4",
+        simulationConfig);
+  }
 }
@@ -152,6 +152,41 @@ public final class TsExtractorTest {
         TsExtractor::new, "media/ts/sample_with_junk", simulationConfig);
   }
 
+  @Test
+  public void sampleWithH262AndMpegAudio_withPayloadReaderThreads() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        TsExtractorTest::createTsExtractorWithPayloadReaderThreads,
+        "media/ts/sample_h262_mpeg_audio.ts",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleWithH264AndMpegAudio_withPayloadReaderThreads() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        TsExtractorTest::createTsExtractorWithPayloadReaderThreads,
+        "media/ts/sample_h264_mpeg_audio.ts",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleWithScte35_withPayloadReaderThreads() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        TsExtractorTest::createTsExtractorWithPayloadReaderThreads,
+        "media/ts/sample_scte35.ts",
+        new ExtractorAsserts.AssertionConfig.Builder()
+            .setDeduplicateConsecutiveFormats(true)
+            .build(),
+        simulationConfig);
+  }
+
+  @Test
+  public void streamWithJunkData_withPayloadReaderThreads() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        TsExtractorTest::createTsExtractorWithPayloadReaderThreads,
+        "media/ts/sample_with_junk",
+        simulationConfig);
+  }
+
   @Test
   public void customPesReader() throws Exception {
     CustomTsPayloadReaderFactory factory = new CustomTsPayloadReaderFactory(true, false);
@@ -216,6 +251,15 @@ public final class TsExtractorTest {
     assertThat(factory.sdtReader.consumedSdts).isEqualTo(2);
   }
 
+  private static TsExtractor createTsExtractorWithPayloadReaderThreads() {
+    return new TsExtractor(
+        TsExtractor.MODE_SINGLE_PMT,
+        new TimestampAdjuster(0),
+        new DefaultTsPayloadReaderFactory(),
+        TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES,
+        /* payloadReaderThreadCount= */ 2);
+  }
+
   private static final class CustomTsPayloadReaderFactory implements TsPayloadReader.Factory {
 
     private final boolean provideSdtReader;
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.TimestampAdjuster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link TsPacketIndex}. */
+@RunWith(AndroidJUnit4.class)
+public final class TsPacketIndexTest {
+
+  private static final String TEST_FILE = "media/ts/bbb_2500ms.ts";
+
+  @Test
+  public void build_withRandomAccessIndicators_usesRandomAccessPoints() throws IOException {
+    TsPacketIndex index = new TsPacketIndex.Builder().append(getTestData(TEST_FILE)).build();
+
+    assertThat(index.getDurationUs()).isEqualTo(2_500_000);
+    assertThat(getPointPositions(index))
+        .asList()
+        .containsExactly(564L, 149_648L, 883_036L, 1_353_600L, 1_837_324L)
+        .inOrder();
+    assertThat(index.getPointTimeUs(0)).isEqualTo(0);
+    assertThat(index.getPointTimeUs(1)).isEqualTo(500_000);
+  }
+
+  @Test
+  public void build_withoutRandomAccessIndicators_usesPcrPointsAndHandlesWraparound()
+      throws IOException {
+    TsPacketIndex index =
+        new TsPacketIndex.Builder(/* minPointIntervalUs= */ 0)
+            .append(getTestData("media/ts/sample_eac3joc.ts"))
+            .build();
+
+    // The PCR wraps around in this stream.
+    assertThat(index.getDurationUs()).isEqualTo(2_013_977);
+    assertThat(index.getPointCount()).isEqualTo(33);
+    for (int i = 1; i < index.getPointCount(); i++) {
+      assertThat(index.getPointPosition(i)).isGreaterThan(index.getPointPosition(i - 1));
+      assertThat(index.getPointTimeUs(i)).isAtLeast(index.getPointTimeUs(i - 1));
+    }
+  }
+
+  @Test
+  public void build_withDataAppendedInChunks_matchesDataAppendedAtOnce() throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), TEST_FILE);
+    TsPacketIndex.Builder builder = new TsPacketIndex.Builder(/* minPointIntervalUs= */ 0);
+    for (int offset = 0; offset < data.length; offset += 100) {
+      builder.append(data, offset, Math.min(100, data.length - offset));
+    }
+    TsPacketIndex chunkedIndex = builder.build();
+
+    TsPacketIndex index =
+        new TsPacketIndex.Builder(/* minPointIntervalUs= */ 0)
+            .append(data, /* offset= */ 0, data.length)
+            .build();
+
+    assertThat(getPointPositions(chunkedIndex)).isEqualTo(getPointPositions(index));
+    assertThat(getPointTimesUs(chunkedIndex)).isEqualTo(getPointTimesUs(index));
+  }
+
+  @Test
+  public void writeThenRead_returnsEquivalentIndex() throws IOException {
+    TsPacketIndex index = new TsPacketIndex.Builder().append(getTestData(TEST_FILE)).build();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    index.write(outputStream);
+    TsPacketIndex readIndex =
+        TsPacketIndex.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+    assertThat(readIndex.getDurationUs()).isEqualTo(index.getDurationUs());
+    assertThat(getPointPositions(readIndex)).isEqualTo(getPointPositions(index));
+    assertThat(getPointTimesUs(readIndex)).isEqualTo(getPointTimesUs(index));
+  }
+
+  @Test
+  public void read_withInvalidData_throwsParserException() {
+    assertThrows(
+        ParserException.class,
+        () -> TsPacketIndex.read(new ByteArrayInputStream(new byte[] {0, 1, 2, 3, 4, 5, 6, 7})));
+  }
+
+  @Test
+  public void extractWithIndex_outputsSeekMapFromIndex() throws IOException {
+    TsPacketIndex index = new TsPacketIndex.Builder().append(getTestData(TEST_FILE)).build();
+    TsExtractor extractor =
+        new TsExtractor(
+            TsExtractor.MODE_SINGLE_PMT,
+            new TimestampAdjuster(0),
+            new DefaultTsPayloadReaderFactory(),
+            TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES,
+            /* payloadReaderThreadCount= */ 0,
+            index);
+
+    FakeExtractorOutput output =
+        TestUtil.extractAllSamplesFromFile(
+            extractor, ApplicationProvider.getApplicationContext(), TEST_FILE);
+
+    SeekMap seekMap = output.seekMap;
+    assertThat(seekMap.getDurationUs()).isEqualTo(2_500_000);
+    assertThat(seekMap.getSeekPoints(/* timeUs= */ 600_000).first)
+        .isEqualTo(new SeekPoint(/* timeUs= */ 500_000, /* position= */ 149_648));
+  }
+
+  private static DataReader getTestData(String fileName) throws IOException {
+    return new FakeExtractorInput.Builder()
+        .setData(TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), fileName))
+        .build();
+  }
+
+  private static long[] getPointPositions(TsPacketIndex index) {
+    long[] positions = new long[index.getPointCount()];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = index.getPointPosition(i);
+    }
+    return positions;
+  }
+
+  private static long[] getPointTimesUs(TsPacketIndex index) {
+    long[] timesUs = new long[index.getPointCount()];
+    for (int i = 0; i < timesUs.length; i++) {
+      timesUs[i] = index.getPointTimeUs(i);
+    }
+    return timesUs;
+  }
+}
@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.source.hls;
 
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
 
 import android.net.Uri;
@@ -46,6 +47,7 @@ import com.google.android.exoplayer2.upstream.CmcdHeadersFactory;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
 import com.google.android.exoplayer2.util.UriUtil;
@@ -144,6 +146,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final PlayerId playerId;
   @Nullable private final CmcdConfiguration cmcdConfiguration;
   private final long timestampAdjusterInitializationTimeoutMs;
+  private final int segmentPrefetchCount;
+  @Nullable private final HlsSegmentPrefetcher segmentPrefetcher;
 
   private boolean isPrimaryTimestampSource;
   private byte[] scratchSpace;
@@ -177,6 +181,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    *     an infinite timeout.
    * @param muxedCaptionFormats List of muxed caption {@link Format}s. Null if no closed caption
    *     information is available in the multivariant playlist.
+   * @param playerId The ID of the current player.
+   * @param cmcdConfiguration The {@link CmcdConfiguration}, or null if CMCD headers aren't sent.
+   * @param segmentPrefetchCount The number of media segments following the segment being loaded
+   *     that are fetched concurrently with it. Zero disables prefetching.
    */
   public HlsChunkSource(
       HlsExtractorFactory extractorFactory,
@@ -189,7 +197,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       long timestampAdjusterInitializationTimeoutMs,
       @Nullable List<Format> muxedCaptionFormats,
       PlayerId playerId,
-      @Nullable CmcdConfiguration cmcdConfiguration) {
+      @Nullable CmcdConfiguration cmcdConfiguration,
+      int segmentPrefetchCount) {
     this.extractorFactory = extractorFactory;
     this.playlistTracker = playlistTracker;
     this.playlistUrls = playlistUrls;
@@ -199,13 +208,31 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     this.muxedCaptionFormats = muxedCaptionFormats;
     this.playerId = playerId;
     this.cmcdConfiguration = cmcdConfiguration;
+    this.segmentPrefetchCount = segmentPrefetchCount;
     keyCache = new FullSegmentEncryptionKeyCache(KEY_CACHE_SIZE);
     scratchSpace = Util.EMPTY_BYTE_ARRAY;
     liveEdgeInPeriodTimeUs = C.TIME_UNSET;
-    mediaDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA);
+    DataSource mediaDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA);
+    if (segmentPrefetchCount > 0) {
+      // The segment being loaded is prefetched too, so that it can be taken over from a previous
+      // prefetch.
+      segmentPrefetcher =
+          new HlsSegmentPrefetcher(
+              dataSourceFactory,
+              mediaTransferListener,
+              /* maxSegmentCount= */ segmentPrefetchCount + 1,
+              HlsSegmentPrefetcher.DEFAULT_SEGMENT_BUFFER_SIZE,
+              HlsSegmentPrefetcher.DEFAULT_STALLED_CONNECTION_TIMEOUT_MS,
+              Clock.DEFAULT);
+      mediaDataSource = segmentPrefetcher.createDataSource(mediaDataSource);
+    } else {
+      segmentPrefetcher = null;
+    }
     if (mediaTransferListener != null) {
+      // Added after wrapping, so that reads of prefetched segments are reported too.
       mediaDataSource.addTransferListener(mediaTransferListener);
     }
+    this.mediaDataSource = mediaDataSource;
     encryptionDataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_DRM);
     trackGroup = new TrackGroup(playlistFormats);
     // Use only non-trickplay variants for preparation. See [Internal ref: b/161529098].
@@ -258,6 +285,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     fatalError = null;
   }
 
+  /** Releases the source. */
+  public void release() {
+    if (segmentPrefetcher != null) {
+      segmentPrefetcher.release();
+    }
+  }
+
   /**
    * Sets whether this chunk source is responsible for initializing timestamp adjusters.
    *
@@ -554,6 +588,37 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             shouldSpliceIn,
             playerId,
             cmcdHeadersFactory);
+    if (segmentPrefetcher != null) {
+      segmentPrefetcher.prefetch(getSegmentDataSpecsToPrefetch(playlist, segmentBaseHolder));
+    }
+  }
+
+  /**
+   * Returns the {@link DataSpec DataSpecs} of the segment to be loaded and of the segments that
+   * follow it, up to the segment prefetch count. Segments aren't prefetched while parts are loaded.
+   */
+  private ImmutableList<DataSpec> getSegmentDataSpecsToPrefetch(
+      HlsMediaPlaylist playlist, SegmentBaseHolder segmentBaseHolder) {
+    if (segmentBaseHolder.partIndex != C.INDEX_UNSET) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<DataSpec> dataSpecs = ImmutableList.builder();
+    int segmentIndex = (int) (segmentBaseHolder.mediaSequence - playlist.mediaSequence);
+    int endSegmentIndex = min(playlist.segments.size(), segmentIndex + segmentPrefetchCount + 1);
+    for (int i = segmentIndex; i < endSegmentIndex; i++) {
+      Segment segment = playlist.segments.get(i);
+      if (segment.hasGapTag) {
+        continue;
+      }
+      dataSpecs.add(
+          new DataSpec.Builder()
+              .setUri(UriUtil.resolveToUri(playlist.baseUri, segment.url))
+              .setPosition(segment.byteRangeOffset)
+              .setLength(segment.byteRangeLength)
+              .setFlags(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
+              .build());
+    }
+    return dataSpecs.build();
   }
 
   private boolean getIsMuxedAudioAndVideo() {
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.source.hls;
 
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static java.lang.annotation.ElementType.TYPE_USE;
 import static java.lang.annotation.RetentionPolicy.SOURCE;
@@ -120,6 +121,7 @@ public final class HlsMediaSource extends BaseMediaSource
     private boolean useSessionKeys;
     private long elapsedRealTimeOffsetMs;
     private long timestampAdjusterInitializationTimeoutMs;
+    private int segmentPrefetchCount;
 
     /**
      * Creates a new factory for {@link HlsMediaSource}s.
@@ -344,6 +346,26 @@ public final class HlsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets the number of media segments following the segment being loaded that are fetched
+     * concurrently with it. The default value is zero, which disables prefetching.
+     *
+     * <p>Prefetching overlaps the request latency of upcoming segments with the loading of the
+     * segments before them, which increases the loading throughput on connections with a high
+     * round-trip time. The data of each prefetched segment that hasn't been loaded yet is held in
+     * a bounded in-memory buffer. Segments are not prefetched while the parts of a low-latency
+     * stream are loaded.
+     *
+     * @param segmentPrefetchCount The number of segments to prefetch. Must not be negative.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setSegmentPrefetchCount(int segmentPrefetchCount) {
+      checkArgument(segmentPrefetchCount >= 0);
+      this.segmentPrefetchCount = segmentPrefetchCount;
+      return this;
+    }
+
     /**
      * Sets the offset between {@link SystemClock#elapsedRealtime()} and the time since the Unix
      * epoch. By default, is it set to {@link C#TIME_UNSET}.
@@ -395,7 +417,8 @@ public final class HlsMediaSource extends BaseMediaSource
           allowChunklessPreparation,
           metadataType,
           useSessionKeys,
-          timestampAdjusterInitializationTimeoutMs);
+          timestampAdjusterInitializationTimeoutMs,
+          segmentPrefetchCount);
     }
 
     @Override
@@ -418,6 +441,7 @@ public final class HlsMediaSource extends BaseMediaSource
   private final long elapsedRealTimeOffsetMs;
   private final MediaItem mediaItem;
   private final long timestampAdjusterInitializationTimeoutMs;
+  private final int segmentPrefetchCount;
 
   private MediaItem.LiveConfiguration liveConfiguration;
   @Nullable private TransferListener mediaTransferListener;
@@ -435,7 +459,8 @@ public final class HlsMediaSource extends BaseMediaSource
       boolean allowChunklessPreparation,
       @MetadataType int metadataType,
       boolean useSessionKeys,
-      long timestampAdjusterInitializationTimeoutMs) {
+      long timestampAdjusterInitializationTimeoutMs,
+      int segmentPrefetchCount) {
     this.localConfiguration = checkNotNull(mediaItem.localConfiguration);
     this.mediaItem = mediaItem;
     this.liveConfiguration = mediaItem.liveConfiguration;
@@ -451,6 +476,7 @@ public final class HlsMediaSource extends BaseMediaSource
     this.metadataType = metadataType;
     this.useSessionKeys = useSessionKeys;
     this.timestampAdjusterInitializationTimeoutMs = timestampAdjusterInitializationTimeoutMs;
+    this.segmentPrefetchCount = segmentPrefetchCount;
   }
 
   @Override
@@ -495,7 +521,8 @@ public final class HlsMediaSource extends BaseMediaSource
         metadataType,
         useSessionKeys,
         getPlayerId(),
-        timestampAdjusterInitializationTimeoutMs);
+        timestampAdjusterInitializationTimeoutMs,
+        segmentPrefetchCount);
   }
 
   @Override
@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Fetches upcoming media segments of an HLS stream concurrently, so that the latency of their
+ * requests overlaps with the loading of the segments before them.
+ *
+ * <p>Each segment passed to {@link #prefetch(List)} is fetched on its own thread into a bounded
+ * in-memory buffer. A {@link DataSource} created by {@link #createDataSource(DataSource)} that is
+ * opened with the {@link DataSpec} of a prefetched segment takes over the prefetch, and reads the
+ * buffered data as it arrives. The fetching thread is blocked while the buffer of a segment is
+ * full, so at most one buffer of data is held per segment. If the buffer stays full for longer
+ * than a timeout, the connection is closed and reopened from the current position once there's
+ * space in the buffer again. Any other data is read from upstream.
+ *
+ * <p>Prefetches are expected to use {@link DataSpec#FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED}, since
+ * their transfers are throttled by the reader. Instead, the reads from a prefetched segment are
+ * reported as a network transfer to the transfer listeners of the {@link DataSource} that reads it,
+ * with the {@link DataSpec} it was opened with, so that bandwidth estimates keep receiving samples
+ * of the segments being loaded.
+ */
+/* package */ final class HlsSegmentPrefetcher {
+
+  /** The default maximum number of bytes of a segment that are buffered ahead of its reader. */
+  public static final int DEFAULT_SEGMENT_BUFFER_SIZE = 2 * 1024 * 1024;
+
+  /**
+   * The default time for which the buffer of a segment can stay full before its connection is
+   * closed, in milliseconds.
+   */
+  public static final long DEFAULT_STALLED_CONNECTION_TIMEOUT_MS = 1000;
+
+  private static final String THREAD_NAME = "ExoPlayer:HlsSegmentPrefetcher";
+  private static final long KEEP_ALIVE_TIME_MS = 1000;
+
+  private final HlsDataSourceFactory dataSourceFactory;
+  @Nullable private final TransferListener transferListener;
+  private final int maxSegmentCount;
+  private final int segmentBufferSize;
+  private final long stalledConnectionTimeoutMs;
+  private final Clock clock;
+  private final ThreadPoolExecutor executor;
+  private final List<Prefetch> prefetches;
+
+  private boolean released;
+
+  /**
+   * Creates an instance.
+   *
+   * @param dataSourceFactory An {@link HlsDataSourceFactory} to create the {@link DataSource}
+   *     from which each segment is fetched.
+   * @param transferListener The transfer listener which should be informed of the data transfers
+   *     of the prefetches. May be null if no listener is available.
+   * @param maxSegmentCount The maximum number of segments that are prefetched at the same time.
+   * @param segmentBufferSize The maximum number of bytes of a segment that are buffered ahead of
+   *     its reader.
+   * @param stalledConnectionTimeoutMs The time for which the buffer of a segment can stay full
+   *     before its connection is closed, in milliseconds.
+   * @param clock The {@link Clock} used to measure how long the buffer of a segment stays full.
+   */
+  public HlsSegmentPrefetcher(
+      HlsDataSourceFactory dataSourceFactory,
+      @Nullable TransferListener transferListener,
+      int maxSegmentCount,
+      int segmentBufferSize,
+      long stalledConnectionTimeoutMs,
+      Clock clock) {
+    Assertions.checkArgument(maxSegmentCount > 0 && segmentBufferSize > 0);
+    this.dataSourceFactory = dataSourceFactory;
+    this.transferListener = transferListener;
+    this.maxSegmentCount = maxSegmentCount;
+    this.segmentBufferSize = segmentBufferSize;
+    this.stalledConnectionTimeoutMs = stalledConnectionTimeoutMs;
+    this.clock = clock;
+    // Each prefetch that can't run on an idle thread gets a new thread, so that a canceled prefetch
+    // that's still blocked in its data source doesn't delay the others. Idle threads time out, so
+    // that they don't outlive a prefetcher that is never released.
+    executor =
+        new ThreadPoolExecutor(
+            /* corePoolSize= */ 0,
+            /* maximumPoolSize= */ Integer.MAX_VALUE,
+            KEEP_ALIVE_TIME_MS,
+            MILLISECONDS,
+            new SynchronousQueue<>(),
+            runnable -> new Thread(runnable, THREAD_NAME));
+    prefetches = new ArrayList<>();
+  }
+
+  /**
+   * Returns a {@link DataSource} that reads the segments prefetched by this instance, and reads
+   * any other data from {@code upstream}.
+   */
+  public DataSource createDataSource(DataSource upstream) {
+    return new PrefetchingDataSource(upstream);
+  }
+
+  /**
+   * Updates the segments to prefetch.
+   *
+   * <p>Prefetches of segments that aren't in the list and haven't been taken over by a reader are
+   * canceled, and prefetches of the listed segments that aren't being prefetched yet are started,
+   * in order, up to the maximum number of segments.
+   *
+   * @param dataSpecs The {@link DataSpec DataSpecs} of the segments to prefetch, in the order in
+   *     which they will be read.
+   */
+  public synchronized void prefetch(List<DataSpec> dataSpecs) {
+    if (released) {
+      return;
+    }
+    for (int i = prefetches.size() - 1; i >= 0; i--) {
+      Prefetch prefetch = prefetches.get(i);
+      if (!containsMatch(dataSpecs, prefetch)) {
+        prefetch.cancel();
+        prefetches.remove(i);
+      }
+    }
+    for (int i = 0; i < dataSpecs.size() && prefetches.size() < maxSegmentCount; i++) {
+      DataSpec dataSpec = dataSpecs.get(i);
+      if (indexOfMatch(dataSpec) == C.INDEX_UNSET) {
+        DataSource dataSource = dataSourceFactory.createDataSource(C.DATA_TYPE_MEDIA);
+        if (transferListener != null) {
+          dataSource.addTransferListener(transferListener);
+        }
+        Prefetch prefetch =
+            new Prefetch(
+                dataSpec, dataSource, segmentBufferSize, stalledConnectionTimeoutMs, clock);
+        prefetches.add(prefetch);
+        executor.execute(prefetch);
+      }
+    }
+  }
+
+  /**
+   * Releases the prefetcher. Prefetches that haven't been taken over by a reader are canceled.
+   * Prefetches being read continue until their reader is closed.
+   */
+  public synchronized void release() {
+    released = true;
+    for (int i = 0; i < prefetches.size(); i++) {
+      prefetches.get(i).cancel();
+    }
+    prefetches.clear();
+    executor.shutdown();
+  }
+
+  /** Removes and returns the prefetch of the given segment, or null if it isn't prefetched. */
+  @Nullable
+  private synchronized Prefetch takePrefetch(DataSpec dataSpec) {
+    int index = indexOfMatch(dataSpec);
+    return index == C.INDEX_UNSET ? null : prefetches.remove(index);
+  }
+
+  private int indexOfMatch(DataSpec dataSpec) {
+    for (int i = 0; i < prefetches.size(); i++) {
+      if (prefetches.get(i).matches(dataSpec)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  private static boolean containsMatch(List<DataSpec> dataSpecs, Prefetch prefetch) {
+    for (int i = 0; i < dataSpecs.size(); i++) {
+      if (prefetch.matches(dataSpecs.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Serves the segments that are being prefetched, and reads any other data from upstream. */
+  private final class PrefetchingDataSource implements DataSource {
+
+    private final DataSource upstream;
+    private final ArrayList<TransferListener> transferListeners;
+
+    @Nullable private Prefetch openedPrefetch;
+    @Nullable private DataSpec openedDataSpec;
+
+    public PrefetchingDataSource(DataSource upstream) {
+      this.upstream = upstream;
+      transferListeners = new ArrayList<>(/* initialCapacity= */ 1);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      Assertions.checkNotNull(transferListener);
+      upstream.addTransferListener(transferListener);
+      if (!transferListeners.contains(transferListener)) {
+        transferListeners.add(transferListener);
+      }
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      @Nullable Prefetch prefetch = takePrefetch(dataSpec);
+      if (prefetch != null && prefetch.awaitOpen()) {
+        openedPrefetch = prefetch;
+        openedDataSpec = dataSpec;
+        for (int i = 0; i < transferListeners.size(); i++) {
+          transferListeners.get(i).onTransferInitializing(this, dataSpec, /* isNetwork= */ true);
+          transferListeners.get(i).onTransferStart(this, dataSpec, /* isNetwork= */ true);
+        }
+        return prefetch.getLength();
+      }
+      // The segment isn't prefetched, or fetching it failed before any data was received.
+      return upstream.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (openedPrefetch == null) {
+        return upstream.read(buffer, offset, length);
+      }
+      int bytesRead = openedPrefetch.read(buffer, offset, length);
+      if (bytesRead > 0) {
+        DataSpec dataSpec = Assertions.checkNotNull(openedDataSpec);
+        for (int i = 0; i < transferListeners.size(); i++) {
+          transferListeners
+              .get(i)
+              .onBytesTransferred(this, dataSpec, /* isNetwork= */ true, bytesRead);
+        }
+      }
+      return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return openedPrefetch != null ? openedPrefetch.getUri() : upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return openedPrefetch != null
+          ? openedPrefetch.getResponseHeaders()
+          : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (openedPrefetch != null) {
+        openedPrefetch.cancel();
+        openedPrefetch = null;
+        DataSpec dataSpec = Assertions.checkNotNull(openedDataSpec);
+        openedDataSpec = null;
+        for (int i = 0; i < transferListeners.size(); i++) {
+          transferListeners.get(i).onTransferEnd(this, dataSpec, /* isNetwork= */ true);
+        }
+      } else {
+        upstream.close();
+      }
+    }
+  }
+
+  /**
+   * Fetches a segment into a ring buffer, from which it's read by at most one reader.
+   *
+   * <p>The fetching thread writes to the part of the buffer that hasn't been written yet or has
+   * already been read, and the reader reads the part that has been written. The positions of both
+   * are guarded by the instance's lock.
+   */
+  private static final class Prefetch implements Runnable {
+
+    private final DataSpec dataSpec;
+    private final DataSource dataSource;
+    private final int maxBufferSize;
+    private final long stalledConnectionTimeoutMs;
+    private final Clock clock;
+
+    private byte[] buffer;
+    private long bytesWritten;
+    private long bytesRead;
+    private long length;
+    @Nullable private Uri uri;
+    private Map<String, List<String>> responseHeaders;
+    @Nullable private Thread fetchThread;
+    private boolean opened;
+    private boolean ended;
+    private boolean finished;
+    private boolean canceled;
+    @Nullable private IOException error;
+
+    public Prefetch(
+        DataSpec dataSpec,
+        DataSource dataSource,
+        int maxBufferSize,
+        long stalledConnectionTimeoutMs,
+        Clock clock) {
+      this.dataSpec = dataSpec;
+      this.dataSource = dataSource;
+      this.maxBufferSize = maxBufferSize;
+      this.stalledConnectionTimeoutMs = stalledConnectionTimeoutMs;
+      this.clock = clock;
+      buffer = Util.EMPTY_BYTE_ARRAY;
+      length = C.LENGTH_UNSET;
+      responseHeaders = Collections.emptyMap();
+    }
+
+    /** Returns whether this prefetches the data of the given {@link DataSpec}. */
+    public boolean matches(DataSpec other) {
+      return dataSpec.uri.equals(other.uri)
+          && dataSpec.position == other.position
+          && dataSpec.length == other.length;
+    }
+
+    /**
+     * Cancels the prefetch, unblocking the fetching thread. The fetching thread is interrupted, so
+     * that it stops waiting for its data source where the data source supports interruption.
+     */
+    public synchronized void cancel() {
+      canceled = true;
+      if (fetchThread != null) {
+        fetchThread.interrupt();
+      }
+      notifyAll();
+    }
+
+    /**
+     * Blocks until the segment has been opened or fetching it failed, and returns whether it has
+     * been opened.
+     */
+    public synchronized boolean awaitOpen() throws InterruptedIOException {
+      while (!opened && !finished) {
+        waitForUpdate();
+      }
+      return opened;
+    }
+
+    /** Returns the length of the segment, as resolved when it was opened. */
+    public synchronized long getLength() {
+      return length;
+    }
+
+    @Nullable
+    public synchronized Uri getUri() {
+      return uri;
+    }
+
+    public synchronized Map<String, List<String>> getResponseHeaders() {
+      return responseHeaders;
+    }
+
+    /**
+     * Reads up to {@code length} bytes of the segment, blocking until at least one byte has been
+     * fetched, the end of the segment has been reached or fetching it failed.
+     */
+    public synchronized int read(byte[] target, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (bytesWritten == bytesRead && !finished) {
+        waitForUpdate();
+      }
+      if (bytesWritten == bytesRead) {
+        if (ended) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw error != null ? error : new IOException("Segment prefetch failed: " + dataSpec.uri);
+      }
+      int readPosition = (int) (bytesRead % buffer.length);
+      int bytesToRead =
+          (int) min(length, min(bytesWritten - bytesRead, buffer.length - readPosition));
+      System.arraycopy(buffer, readPosition, target, offset, bytesToRead);
+      bytesRead += bytesToRead;
+      // Unblock the fetching thread if it's waiting for space in the buffer.
+      notifyAll();
+      return bytesToRead;
+    }
+
+    @Override
+    public void run() {
+      try {
+        synchronized (this) {
+          if (canceled) {
+            return;
+          }
+          fetchThread = Thread.currentThread();
+        }
+        long resolvedLength = dataSource.open(dataSpec);
+        synchronized (this) {
+          if (canceled) {
+            return;
+          }
+          int bufferSize =
+              resolvedLength == C.LENGTH_UNSET
+                  ? maxBufferSize
+                  : (int) max(1, min(resolvedLength, maxBufferSize));
+          buffer = new byte[bufferSize];
+          length = resolvedLength;
+          uri = dataSource.getUri();
+          responseHeaders = dataSource.getResponseHeaders();
+          opened = true;
+          notifyAll();
+        }
+        fetch();
+      } catch (IOException e) {
+        synchronized (this) {
+          error = e;
+        }
+      } catch (InterruptedException e) {
+        // The prefetch was canceled.
+      } finally {
+        synchronized (this) {
+          fetchThread = null;
+        }
+        DataSourceUtil.closeQuietly(dataSource);
+        // Clear any interrupt from cancel(), so that it doesn't affect the next task of the thread.
+        Thread.interrupted();
+        synchronized (this) {
+          finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    private void fetch() throws IOException, InterruptedException {
+      boolean connected = true;
+      while (true) {
+        int writePosition;
+        int bytesToWrite;
+        boolean stalled = false;
+        long reopenPosition;
+        synchronized (this) {
+          if (length != C.LENGTH_UNSET && bytesWritten == length) {
+            ended = true;
+            return;
+          }
+          while (!canceled && isBufferFull() && !stalled) {
+            if (connected) {
+              // Keep waiting until the timeout has passed, since wait can return before it.
+              long bytesReadBeforeWait = bytesRead;
+              long nowMs = clock.elapsedRealtime();
+              long endMs = nowMs + stalledConnectionTimeoutMs;
+              while (!canceled && bytesRead == bytesReadBeforeWait && nowMs < endMs) {
+                wait(endMs - nowMs);
+                nowMs = clock.elapsedRealtime();
+              }
+              stalled = isBufferFull() && bytesRead == bytesReadBeforeWait;
+            } else {
+              wait();
+            }
+          }
+          if (canceled) {
+            return;
+          }
+          writePosition = (int) (bytesWritten % buffer.length);
+          bytesToWrite =
+              (int) min(buffer.length - writePosition, buffer.length - (bytesWritten - bytesRead));
+          reopenPosition = bytesWritten;
+        }
+        if (stalled) {
+          // Release the connection while the reader isn't consuming data, so that it's neither
+          // held open indefinitely nor reported as an idle transfer.
+          dataSource.close();
+          connected = false;
+          continue;
+        }
+        if (!connected) {
+          dataSource.open(dataSpec.subrange(reopenPosition));
+          connected = true;
+        }
+        // The reader doesn't access the part of the buffer that is written outside of the lock.
+        int bytesFetched = dataSource.read(buffer, writePosition, bytesToWrite);
+        synchronized (this) {
+          if (bytesFetched == C.RESULT_END_OF_INPUT) {
+            ended = true;
+            return;
+          }
+          bytesWritten += bytesFetched;
+          notifyAll();
+        }
+      }
+    }
+
+    private boolean isBufferFull() {
+      return bytesWritten - bytesRead == buffer.length;
+    }
+
+    private void waitForUpdate() throws InterruptedIOException {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
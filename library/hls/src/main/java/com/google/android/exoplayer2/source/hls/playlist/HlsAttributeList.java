@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls.playlist;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.Arrays;
+
+/**
+ * A reusable view of the attribute list of an HLS tag line, as defined by RFC 8216, Section 4.2.
+ *
+ * <p>The attribute list is tokenized in a single pass when {@link #reset(String)} is called, and
+ * the positions of the attribute names and values are held in arrays that are reused for later
+ * lines. Values are only copied out of the line when they are requested.
+ */
+/* package */ final class HlsAttributeList {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String line;
+  private int size;
+  private int[] nameStarts;
+  private int[] nameEnds;
+  private int[] valueStarts;
+  private int[] valueEnds;
+  private boolean[] quoted;
+
+  /** Creates an empty attribute list. */
+  public HlsAttributeList() {
+    line = "";
+    nameStarts = new int[INITIAL_CAPACITY];
+    nameEnds = new int[INITIAL_CAPACITY];
+    valueStarts = new int[INITIAL_CAPACITY];
+    valueEnds = new int[INITIAL_CAPACITY];
+    quoted = new boolean[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Tokenizes the attribute list of a tag line, which follows the first colon of the line.
+   *
+   * <p>Whitespace around attribute names and unquoted values is ignored. Attributes without a value
+   * are skipped, and a quoted value that isn't terminated ends the attribute list.
+   *
+   * @param line The tag line.
+   */
+  public void reset(String line) {
+    this.line = line;
+    size = 0;
+    int length = line.length();
+    int position = line.indexOf(':');
+    if (position == -1) {
+      return;
+    }
+    position++;
+    while (position < length) {
+      position = skipWhitespace(line, position, length);
+      int nameStart = position;
+      while (position < length && line.charAt(position) != '=' && line.charAt(position) != ',') {
+        position++;
+      }
+      int nameEnd = trimWhitespace(line, nameStart, position);
+      if (position == length || line.charAt(position) == ',') {
+        // The attribute has no value.
+        position++;
+        continue;
+      }
+      position = skipWhitespace(line, position + 1, length);
+      int valueStart;
+      int valueEnd;
+      boolean isQuoted = position < length && line.charAt(position) == '"';
+      if (isQuoted) {
+        valueStart = position + 1;
+        valueEnd = line.indexOf('"', valueStart);
+        if (valueEnd == -1) {
+          return;
+        }
+        position = line.indexOf(',', valueEnd + 1);
+      } else {
+        valueStart = position;
+        position = line.indexOf(',', position);
+        valueEnd = trimWhitespace(line, valueStart, position == -1 ? length : position);
+      }
+      add(nameStart, nameEnd, valueStart, valueEnd, isQuoted);
+      if (position == -1) {
+        return;
+      }
+      position++;
+    }
+  }
+
+  /** Returns the tag line from which the attribute list was tokenized. */
+  public String getLine() {
+    return line;
+  }
+
+  /** Returns the number of attributes in the list. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the index of the first attribute with the given name, or {@link C#INDEX_UNSET} if
+   * there's no such attribute.
+   */
+  public int indexOf(String name) {
+    int nameLength = name.length();
+    for (int i = 0; i < size; i++) {
+      if (nameEnds[i] - nameStarts[i] == nameLength
+          && line.regionMatches(nameStarts[i], name, /* otherOffset= */ 0, nameLength)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /** Returns the name of the attribute at the given index. */
+  public String getName(int index) {
+    return line.substring(nameStarts[index], nameEnds[index]);
+  }
+
+  /** Returns the value of the attribute at the given index, without quotes. */
+  public String getValue(int index) {
+    return line.substring(valueStarts[index], valueEnds[index]);
+  }
+
+  /** Returns whether the value of the attribute at the given index is a quoted string. */
+  public boolean isQuoted(int index) {
+    return quoted[index];
+  }
+
+  /**
+   * Returns the value of the first attribute with the given name if it's a non-empty quoted string,
+   * or null otherwise.
+   */
+  @Nullable
+  public String getQuotedString(String name) {
+    int index = indexOf(name);
+    return index != C.INDEX_UNSET && quoted[index] && valueEnds[index] > valueStarts[index]
+        ? getValue(index)
+        : null;
+  }
+
+  /**
+   * Returns the value of the first attribute with the given name if it's a non-empty unquoted
+   * value, or null otherwise.
+   */
+  @Nullable
+  public String getUnquotedValue(String name) {
+    int index = indexOf(name);
+    return index != C.INDEX_UNSET && !quoted[index] && valueEnds[index] > valueStarts[index]
+        ? getValue(index)
+        : null;
+  }
+
+  /**
+   * Returns whether the value of the first attribute with the given name is unquoted and equal to
+   * {@code value}.
+   */
+  public boolean hasUnquotedValue(String name, String value) {
+    int index = indexOf(name);
+    return index != C.INDEX_UNSET
+        && !quoted[index]
+        && valueEnds[index] - valueStarts[index] == value.length()
+        && line.regionMatches(valueStarts[index], value, /* otherOffset= */ 0, value.length());
+  }
+
+  private void add(int nameStart, int nameEnd, int valueStart, int valueEnd, boolean isQuoted) {
+    if (size == nameStarts.length) {
+      int newCapacity = size * 2;
+      nameStarts = Arrays.copyOf(nameStarts, newCapacity);
+      nameEnds = Arrays.copyOf(nameEnds, newCapacity);
+      valueStarts = Arrays.copyOf(valueStarts, newCapacity);
+      valueEnds = Arrays.copyOf(valueEnds, newCapacity);
+      quoted = Arrays.copyOf(quoted, newCapacity);
+    }
+    nameStarts[size] = nameStart;
+    nameEnds[size] = nameEnd;
+    valueStarts[size] = valueStart;
+    valueEnds[size] = valueEnd;
+    quoted[size] = isQuoted;
+    size++;
+  }
+
+  private static int skipWhitespace(String line, int position, int limit) {
+    while (position < limit && Character.isWhitespace(line.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  private static int trimWhitespace(String line, int start, int end) {
+    while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+      end--;
+    }
+    return end;
+  }
+}
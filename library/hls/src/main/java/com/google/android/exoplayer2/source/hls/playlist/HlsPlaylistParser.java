@@ -59,8 +59,6 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
 import org.checkerframework.checker.nullness.qual.PolyNull;
 
@@ -134,102 +132,65 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String BOOLEAN_TRUE = "YES";
   private static final String BOOLEAN_FALSE = "NO";
 
-  private static final String ATTR_CLOSED_CAPTIONS_NONE = "CLOSED-CAPTIONS=NONE";
-
-  private static final Pattern REGEX_AVERAGE_BANDWIDTH =
-      Pattern.compile("AVERAGE-BANDWIDTH=(\\d+)\\b");
-  private static final Pattern REGEX_VIDEO = Pattern.compile("VIDEO=\"(.+?)\"");
-  private static final Pattern REGEX_AUDIO = Pattern.compile("AUDIO=\"(.+?)\"");
-  private static final Pattern REGEX_SUBTITLES = Pattern.compile("SUBTITLES=\"(.+?)\"");
-  private static final Pattern REGEX_CLOSED_CAPTIONS = Pattern.compile("CLOSED-CAPTIONS=\"(.+?)\"");
-  private static final Pattern REGEX_BANDWIDTH = Pattern.compile("[^-]BANDWIDTH=(\\d+)\\b");
-  private static final Pattern REGEX_CHANNELS = Pattern.compile("CHANNELS=\"(.+?)\"");
-  private static final Pattern REGEX_CODECS = Pattern.compile("CODECS=\"(.+?)\"");
-  private static final Pattern REGEX_RESOLUTION = Pattern.compile("RESOLUTION=(\\d+x\\d+)");
-  private static final Pattern REGEX_FRAME_RATE = Pattern.compile("FRAME-RATE=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_TARGET_DURATION =
-      Pattern.compile(TAG_TARGET_DURATION + ":(\\d+)\\b");
-  private static final Pattern REGEX_ATTR_DURATION = Pattern.compile("DURATION=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_PART_TARGET_DURATION =
-      Pattern.compile("PART-TARGET=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_VERSION = Pattern.compile(TAG_VERSION + ":(\\d+)\\b");
-  private static final Pattern REGEX_PLAYLIST_TYPE =
-      Pattern.compile(TAG_PLAYLIST_TYPE + ":(.+)\\b");
-  private static final Pattern REGEX_CAN_SKIP_UNTIL =
-      Pattern.compile("CAN-SKIP-UNTIL=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_CAN_SKIP_DATE_RANGES =
-      compileBooleanAttrPattern("CAN-SKIP-DATERANGES");
-  private static final Pattern REGEX_SKIPPED_SEGMENTS =
-      Pattern.compile("SKIPPED-SEGMENTS=(\\d+)\\b");
-  private static final Pattern REGEX_HOLD_BACK = Pattern.compile("[:|,]HOLD-BACK=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_PART_HOLD_BACK =
-      Pattern.compile("PART-HOLD-BACK=([\\d\\.]+)\\b");
-  private static final Pattern REGEX_CAN_BLOCK_RELOAD =
-      compileBooleanAttrPattern("CAN-BLOCK-RELOAD");
-  private static final Pattern REGEX_MEDIA_SEQUENCE =
-      Pattern.compile(TAG_MEDIA_SEQUENCE + ":(\\d+)\\b");
-  private static final Pattern REGEX_MEDIA_DURATION =
-      Pattern.compile(TAG_MEDIA_DURATION + ":([\\d\\.]+)\\b");
-  private static final Pattern REGEX_MEDIA_TITLE =
-      Pattern.compile(TAG_MEDIA_DURATION + ":[\\d\\.]+\\b,(.+)");
-  private static final Pattern REGEX_LAST_MSN = Pattern.compile("LAST-MSN" + "=(\\d+)\\b");
-  private static final Pattern REGEX_LAST_PART = Pattern.compile("LAST-PART" + "=(\\d+)\\b");
-  private static final Pattern REGEX_TIME_OFFSET = Pattern.compile("TIME-OFFSET=(-?[\\d\\.]+)\\b");
-  private static final Pattern REGEX_BYTERANGE =
-      Pattern.compile(TAG_BYTERANGE + ":(\\d+(?:@\\d+)?)\\b");
-  private static final Pattern REGEX_ATTR_BYTERANGE =
-      Pattern.compile("BYTERANGE=\"(\\d+(?:@\\d+)?)\\b\"");
-  private static final Pattern REGEX_BYTERANGE_START = Pattern.compile("BYTERANGE-START=(\\d+)\\b");
-  private static final Pattern REGEX_BYTERANGE_LENGTH =
-      Pattern.compile("BYTERANGE-LENGTH=(\\d+)\\b");
-  private static final Pattern REGEX_METHOD =
-      Pattern.compile(
-          "METHOD=("
-              + METHOD_NONE
-              + "|"
-              + METHOD_AES_128
-              + "|"
-              + METHOD_SAMPLE_AES
-              + "|"
-              + METHOD_SAMPLE_AES_CENC
-              + "|"
-              + METHOD_SAMPLE_AES_CTR
-              + ")"
-              + "\\s*(?:,|$)");
-  private static final Pattern REGEX_KEYFORMAT = Pattern.compile("KEYFORMAT=\"(.+?)\"");
-  private static final Pattern REGEX_KEYFORMATVERSIONS =
-      Pattern.compile("KEYFORMATVERSIONS=\"(.+?)\"");
-  private static final Pattern REGEX_URI = Pattern.compile("URI=\"(.+?)\"");
-  private static final Pattern REGEX_IV = Pattern.compile("IV=([^,.*]+)");
-  private static final Pattern REGEX_TYPE =
-      Pattern.compile(
-          "TYPE=("
-              + TYPE_AUDIO
-              + "|"
-              + TYPE_VIDEO
-              + "|"
-              + TYPE_SUBTITLES
-              + "|"
-              + TYPE_CLOSED_CAPTIONS
-              + ")");
-  private static final Pattern REGEX_PRELOAD_HINT_TYPE =
-      Pattern.compile("TYPE=(" + TYPE_PART + "|" + TYPE_MAP + ")");
-  private static final Pattern REGEX_LANGUAGE = Pattern.compile("LANGUAGE=\"(.+?)\"");
-  private static final Pattern REGEX_NAME = Pattern.compile("NAME=\"(.+?)\"");
-  private static final Pattern REGEX_GROUP_ID = Pattern.compile("GROUP-ID=\"(.+?)\"");
-  private static final Pattern REGEX_CHARACTERISTICS = Pattern.compile("CHARACTERISTICS=\"(.+?)\"");
-  private static final Pattern REGEX_INSTREAM_ID =
-      Pattern.compile("INSTREAM-ID=\"((?:CC|SERVICE)\\d+)\"");
-  private static final Pattern REGEX_AUTOSELECT = compileBooleanAttrPattern("AUTOSELECT");
-  private static final Pattern REGEX_DEFAULT = compileBooleanAttrPattern("DEFAULT");
-  private static final Pattern REGEX_FORCED = compileBooleanAttrPattern("FORCED");
-  private static final Pattern REGEX_INDEPENDENT = compileBooleanAttrPattern("INDEPENDENT");
-  private static final Pattern REGEX_GAP = compileBooleanAttrPattern("GAP");
-  private static final Pattern REGEX_PRECISE = compileBooleanAttrPattern("PRECISE");
-  private static final Pattern REGEX_VALUE = Pattern.compile("VALUE=\"(.+?)\"");
-  private static final Pattern REGEX_IMPORT = Pattern.compile("IMPORT=\"(.+?)\"");
-  private static final Pattern REGEX_VARIABLE_REFERENCE =
-      Pattern.compile("\\{\\$([a-zA-Z0-9\\-_]+)\\}");
+  private static final String CLOSED_CAPTIONS_NONE = "NONE";
+
+  private static final String[] METHODS =
+      new String[] {
+        METHOD_NONE,
+        METHOD_AES_128,
+        METHOD_SAMPLE_AES,
+        METHOD_SAMPLE_AES_CENC,
+        METHOD_SAMPLE_AES_CTR
+      };
+  private static final String[] MEDIA_TYPES =
+      new String[] {TYPE_AUDIO, TYPE_VIDEO, TYPE_SUBTITLES, TYPE_CLOSED_CAPTIONS};
+  private static final String[] PRELOAD_HINT_TYPES = new String[] {TYPE_PART, TYPE_MAP};
+
+  private static final String ATTR_AVERAGE_BANDWIDTH = "AVERAGE-BANDWIDTH";
+  private static final String ATTR_VIDEO = "VIDEO";
+  private static final String ATTR_AUDIO = "AUDIO";
+  private static final String ATTR_SUBTITLES = "SUBTITLES";
+  private static final String ATTR_CLOSED_CAPTIONS = "CLOSED-CAPTIONS";
+  private static final String ATTR_BANDWIDTH = "BANDWIDTH";
+  private static final String ATTR_CHANNELS = "CHANNELS";
+  private static final String ATTR_CODECS = "CODECS";
+  private static final String ATTR_RESOLUTION = "RESOLUTION";
+  private static final String ATTR_FRAME_RATE = "FRAME-RATE";
+  private static final String ATTR_DURATION = "DURATION";
+  private static final String ATTR_PART_TARGET_DURATION = "PART-TARGET";
+  private static final String ATTR_CAN_SKIP_UNTIL = "CAN-SKIP-UNTIL";
+  private static final String ATTR_CAN_SKIP_DATE_RANGES = "CAN-SKIP-DATERANGES";
+  private static final String ATTR_SKIPPED_SEGMENTS = "SKIPPED-SEGMENTS";
+  private static final String ATTR_HOLD_BACK = "HOLD-BACK";
+  private static final String ATTR_PART_HOLD_BACK = "PART-HOLD-BACK";
+  private static final String ATTR_CAN_BLOCK_RELOAD = "CAN-BLOCK-RELOAD";
+  private static final String ATTR_LAST_MSN = "LAST-MSN";
+  private static final String ATTR_LAST_PART = "LAST-PART";
+  private static final String ATTR_TIME_OFFSET = "TIME-OFFSET";
+  private static final String ATTR_BYTERANGE = "BYTERANGE";
+  private static final String ATTR_BYTERANGE_START = "BYTERANGE-START";
+  private static final String ATTR_BYTERANGE_LENGTH = "BYTERANGE-LENGTH";
+  private static final String ATTR_METHOD = "METHOD";
+  private static final String ATTR_KEYFORMAT = "KEYFORMAT";
+  private static final String ATTR_KEYFORMATVERSIONS = "KEYFORMATVERSIONS";
+  private static final String ATTR_URI = "URI";
+  private static final String ATTR_IV = "IV";
+  private static final String ATTR_TYPE = "TYPE";
+  private static final String ATTR_LANGUAGE = "LANGUAGE";
+  private static final String ATTR_NAME = "NAME";
+  private static final String ATTR_GROUP_ID = "GROUP-ID";
+  private static final String ATTR_CHARACTERISTICS = "CHARACTERISTICS";
+  private static final String ATTR_INSTREAM_ID = "INSTREAM-ID";
+  private static final String ATTR_AUTOSELECT = "AUTOSELECT";
+  private static final String ATTR_DEFAULT = "DEFAULT";
+  private static final String ATTR_FORCED = "FORCED";
+  private static final String ATTR_INDEPENDENT = "INDEPENDENT";
+  private static final String ATTR_GAP = "GAP";
+  private static final String ATTR_PRECISE = "PRECISE";
+  private static final String ATTR_VALUE = "VALUE";
+  private static final String ATTR_IMPORT = "IMPORT";
+
+  private static final String VARIABLE_REFERENCE_PREFIX = "{$";
 
   private final HlsMultivariantPlaylist multivariantPlaylist;
   @Nullable private final HlsMediaPlaylist previousMediaPlaylist;
@@ -249,7 +210,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
    * @param multivariantPlaylist The multivariant playlist from which media playlists will inherit
    *     attributes.
    * @param previousMediaPlaylist The previous media playlist from which the new media playlist may
-   *     inherit skipped segments.
+   *     inherit skipped segments. Segments of the new media playlist that are also in the previous
+   *     media playlist (as identified by their media sequence number) are taken from the previous
+   *     media playlist rather than parsed again.
    */
   public HlsPlaylistParser(
       HlsMultivariantPlaylist multivariantPlaylist,
@@ -345,6 +308,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     List<Format> muxedCaptionFormats = null;
     boolean noClosedCaptions = false;
     boolean hasIndependentSegmentsTag = false;
+    HlsAttributeList attributes = new HlsAttributeList();
 
     String line;
     while (iterator.hasNext()) {
@@ -357,9 +321,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       boolean isIFrameOnlyVariant = line.startsWith(TAG_I_FRAME_STREAM_INF);
 
       if (line.startsWith(TAG_DEFINE)) {
+        attributes.reset(line);
         variableDefinitions.put(
-            /* key= */ parseStringAttr(line, REGEX_NAME, variableDefinitions),
-            /* value= */ parseStringAttr(line, REGEX_VALUE, variableDefinitions));
+            /* key= */ parseStringAttr(attributes, ATTR_NAME, variableDefinitions),
+            /* value= */ parseStringAttr(attributes, ATTR_VALUE, variableDefinitions));
       } else if (line.equals(TAG_INDEPENDENT_SEGMENTS)) {
         hasIndependentSegmentsTag = true;
       } else if (line.startsWith(TAG_MEDIA)) {
@@ -367,22 +332,25 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         // tags.
         mediaTags.add(line);
       } else if (line.startsWith(TAG_SESSION_KEY)) {
+        attributes.reset(line);
         String keyFormat =
-            parseOptionalStringAttr(line, REGEX_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
-        SchemeData schemeData = parseDrmSchemeData(line, keyFormat, variableDefinitions);
+            parseOptionalStringAttr(
+                attributes, ATTR_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
+        SchemeData schemeData = parseDrmSchemeData(attributes, keyFormat, variableDefinitions);
         if (schemeData != null) {
-          String method = parseStringAttr(line, REGEX_METHOD, variableDefinitions);
+          String method = parseEnumeratedStringAttr(attributes, ATTR_METHOD, METHODS);
           String scheme = parseEncryptionScheme(method);
           sessionKeyDrmInitData.add(new DrmInitData(scheme, schemeData));
         }
       } else if (line.startsWith(TAG_STREAM_INF) || isIFrameOnlyVariant) {
-        noClosedCaptions |= line.contains(ATTR_CLOSED_CAPTIONS_NONE);
+        attributes.reset(line);
+        noClosedCaptions |=
+            attributes.hasUnquotedValue(ATTR_CLOSED_CAPTIONS, CLOSED_CAPTIONS_NONE);
         int roleFlags = isIFrameOnlyVariant ? C.ROLE_FLAG_TRICK_PLAY : 0;
-        int peakBitrate = parseIntAttr(line, REGEX_BANDWIDTH);
-        int averageBitrate = parseOptionalIntAttr(line, REGEX_AVERAGE_BANDWIDTH, -1);
-        String codecs = parseOptionalStringAttr(line, REGEX_CODECS, variableDefinitions);
-        String resolutionString =
-            parseOptionalStringAttr(line, REGEX_RESOLUTION, variableDefinitions);
+        int peakBitrate = parseIntAttr(attributes, ATTR_BANDWIDTH);
+        int averageBitrate = parseOptionalIntAttr(attributes, ATTR_AVERAGE_BANDWIDTH, -1);
+        String codecs = parseOptionalStringAttr(attributes, ATTR_CODECS, variableDefinitions);
+        @Nullable String resolutionString = parseOptionalResolutionAttr(attributes);
         int width;
         int height;
         if (resolutionString != null) {
@@ -399,21 +367,21 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           height = Format.NO_VALUE;
         }
         float frameRate = Format.NO_VALUE;
-        String frameRateString =
-            parseOptionalStringAttr(line, REGEX_FRAME_RATE, variableDefinitions);
+        @Nullable String frameRateString = parseOptionalDecimalAttr(attributes, ATTR_FRAME_RATE);
         if (frameRateString != null) {
           frameRate = Float.parseFloat(frameRateString);
         }
-        String videoGroupId = parseOptionalStringAttr(line, REGEX_VIDEO, variableDefinitions);
-        String audioGroupId = parseOptionalStringAttr(line, REGEX_AUDIO, variableDefinitions);
+        String videoGroupId = parseOptionalStringAttr(attributes, ATTR_VIDEO, variableDefinitions);
+        String audioGroupId = parseOptionalStringAttr(attributes, ATTR_AUDIO, variableDefinitions);
         String subtitlesGroupId =
-            parseOptionalStringAttr(line, REGEX_SUBTITLES, variableDefinitions);
+            parseOptionalStringAttr(attributes, ATTR_SUBTITLES, variableDefinitions);
         String closedCaptionsGroupId =
-            parseOptionalStringAttr(line, REGEX_CLOSED_CAPTIONS, variableDefinitions);
+            parseOptionalStringAttr(attributes, ATTR_CLOSED_CAPTIONS, variableDefinitions);
         Uri uri;
         if (isIFrameOnlyVariant) {
           uri =
-              UriUtil.resolveToUri(baseUri, parseStringAttr(line, REGEX_URI, variableDefinitions));
+              UriUtil.resolveToUri(
+                  baseUri, parseStringAttr(attributes, ATTR_URI, variableDefinitions));
         } else if (!iterator.hasNext()) {
           throw ParserException.createForMalformedManifest(
               "#EXT-X-STREAM-INF must be followed by another line", /* cause= */ null);
@@ -475,22 +443,24 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
     for (int i = 0; i < mediaTags.size(); i++) {
       line = mediaTags.get(i);
-      String groupId = parseStringAttr(line, REGEX_GROUP_ID, variableDefinitions);
-      String name = parseStringAttr(line, REGEX_NAME, variableDefinitions);
+      attributes.reset(line);
+      String groupId = parseStringAttr(attributes, ATTR_GROUP_ID, variableDefinitions);
+      String name = parseStringAttr(attributes, ATTR_NAME, variableDefinitions);
       Format.Builder formatBuilder =
           new Format.Builder()
               .setId(groupId + ":" + name)
               .setLabel(name)
               .setContainerMimeType(MimeTypes.APPLICATION_M3U8)
-              .setSelectionFlags(parseSelectionFlags(line))
-              .setRoleFlags(parseRoleFlags(line, variableDefinitions))
-              .setLanguage(parseOptionalStringAttr(line, REGEX_LANGUAGE, variableDefinitions));
+              .setSelectionFlags(parseSelectionFlags(attributes))
+              .setRoleFlags(parseRoleFlags(attributes, variableDefinitions))
+              .setLanguage(parseOptionalStringAttr(attributes, ATTR_LANGUAGE, variableDefinitions));
 
-      @Nullable String referenceUri = parseOptionalStringAttr(line, REGEX_URI, variableDefinitions);
+      @Nullable
+      String referenceUri = parseOptionalStringAttr(attributes, ATTR_URI, variableDefinitions);
       @Nullable Uri uri = referenceUri == null ? null : UriUtil.resolveToUri(baseUri, referenceUri);
       Metadata metadata =
           new Metadata(new HlsTrackMetadataEntry(groupId, name, Collections.emptyList()));
-      switch (parseStringAttr(line, REGEX_TYPE, variableDefinitions)) {
+      switch (parseEnumeratedStringAttr(attributes, ATTR_TYPE, MEDIA_TYPES)) {
         case TYPE_VIDEO:
           @Nullable Variant variant = getVariantWithVideoGroup(variants, groupId);
           if (variant != null) {
@@ -522,7 +492,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
           @Nullable
           String channelsString =
-              parseOptionalStringAttr(line, REGEX_CHANNELS, variableDefinitions);
+              parseOptionalStringAttr(attributes, ATTR_CHANNELS, variableDefinitions);
           if (channelsString != null) {
             int channelCount = Integer.parseInt(Util.splitAtFirst(channelsString, "/")[0]);
             formatBuilder.setChannelCount(channelCount);
@@ -560,7 +530,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
           break;
         case TYPE_CLOSED_CAPTIONS:
-          String instreamId = parseStringAttr(line, REGEX_INSTREAM_ID, variableDefinitions);
+          String instreamId = parseInstreamIdAttr(attributes);
           int accessibilityChannel;
           if (instreamId.startsWith("CC")) {
             sampleMimeType = MimeTypes.APPLICATION_CEA608;
@@ -642,6 +612,61 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       LineIterator iterator,
       String baseUri)
       throws IOException {
+    if (previousMediaPlaylist == null || previousMediaPlaylist.segments.isEmpty()) {
+      return checkNotNull(
+          parseMediaPlaylist(
+              multivariantPlaylist,
+              previousMediaPlaylist,
+              iterator,
+              baseUri,
+              /* reusePreviousSegments= */ false));
+    }
+    iterator.startRecording();
+    @Nullable
+    HlsMediaPlaylist mediaPlaylist =
+        parseMediaPlaylist(
+            multivariantPlaylist,
+            previousMediaPlaylist,
+            iterator,
+            baseUri,
+            /* reusePreviousSegments= */ true);
+    if (mediaPlaylist == null) {
+      // A segment doesn't match the segment with the same media sequence number in the previous
+      // playlist, so the playlist must have been replaced. Parse it again without reusing segments.
+      mediaPlaylist =
+          parseMediaPlaylist(
+              multivariantPlaylist,
+              previousMediaPlaylist,
+              iterator.replayRecordedLines(),
+              baseUri,
+              /* reusePreviousSegments= */ false);
+    }
+    return checkNotNull(mediaPlaylist);
+  }
+
+  /**
+   * Parses a media playlist.
+   *
+   * <p>If {@code reusePreviousSegments} is true, the segments that are also in {@code
+   * previousMediaPlaylist} are taken from it without parsing the tags that only apply to them
+   * ({@code #EXTINF}, {@code #EXT-X-BYTERANGE} and {@code #EXT-X-PART}). This relies on the
+   * segments of a media playlist never changing once published (see RFC 8216, Section 6.2.1), so
+   * that a segment can be identified by its media sequence number. Tags whose state carries over
+   * to later segments are always parsed. Segments that have parts in {@code previousMediaPlaylist}
+   * are always parsed, since the parts of older segments are removed from later playlists.
+   *
+   * @return The parsed playlist, or null if {@code reusePreviousSegments} is true and a segment
+   *     differs from the reusable segment with the same media sequence number in {@code
+   *     previousMediaPlaylist}, by its URI, its {@code #EXT-X-GAP} tag or by having parts.
+   */
+  @Nullable
+  private static HlsMediaPlaylist parseMediaPlaylist(
+      HlsMultivariantPlaylist multivariantPlaylist,
+      @Nullable HlsMediaPlaylist previousMediaPlaylist,
+      LineIterator iterator,
+      String baseUri,
+      boolean reusePreviousSegments)
+      throws IOException {
     @HlsMediaPlaylist.PlaylistType int playlistType = HlsMediaPlaylist.PLAYLIST_TYPE_UNKNOWN;
     long startOffsetUs = C.TIME_UNSET;
     long mediaSequence = 0;
@@ -658,6 +683,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     @Nullable Part preloadPart = null;
     List<RenditionReport> renditionReports = new ArrayList<>();
     List<String> tags = new ArrayList<>();
+    HlsAttributeList attributes = new HlsAttributeList();
 
     long segmentDurationUs = 0;
     String segmentTitle = "";
@@ -698,8 +724,22 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         tags.add(line);
       }
 
+      if (reusePreviousSegments
+          && isSegmentOnlyTag(line)
+          && getReusableSegment(castNonNull(previousMediaPlaylist), segmentMediaSequence)
+              != null) {
+        if (line.startsWith(TAG_PART)) {
+          // The segment had no parts in the previous playlist, so it can't be reused.
+          return null;
+        }
+        // The segment will be taken from the previous playlist.
+        continue;
+      }
+
       if (line.startsWith(TAG_PLAYLIST_TYPE)) {
-        String playlistTypeString = parseStringAttr(line, REGEX_PLAYLIST_TYPE, variableDefinitions);
+        String playlistTypeString =
+            replaceVariableReferences(
+                parseTagValue(line, TAG_PLAYLIST_TYPE), variableDefinitions);
         if ("VOD".equals(playlistTypeString)) {
           playlistType = HlsMediaPlaylist.PLAYLIST_TYPE_VOD;
         } else if ("EVENT".equals(playlistTypeString)) {
@@ -708,17 +748,22 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       } else if (line.equals(TAG_IFRAME)) {
         isIFrameOnly = true;
       } else if (line.startsWith(TAG_START)) {
-        startOffsetUs = (long) (parseDoubleAttr(line, REGEX_TIME_OFFSET) * C.MICROS_PER_SECOND);
+        attributes.reset(line);
+        startOffsetUs =
+            (long) (parseSignedDoubleAttr(attributes, ATTR_TIME_OFFSET) * C.MICROS_PER_SECOND);
         preciseStart =
-            parseOptionalBooleanAttribute(line, REGEX_PRECISE, /* defaultValue= */ false);
+            parseOptionalBooleanAttribute(attributes, ATTR_PRECISE, /* defaultValue= */ false);
       } else if (line.startsWith(TAG_SERVER_CONTROL)) {
-        serverControl = parseServerControl(line);
+        attributes.reset(line);
+        serverControl = parseServerControl(attributes);
       } else if (line.startsWith(TAG_PART_INF)) {
-        double partTargetDurationSeconds = parseDoubleAttr(line, REGEX_PART_TARGET_DURATION);
+        attributes.reset(line);
+        double partTargetDurationSeconds = parseDoubleAttr(attributes, ATTR_PART_TARGET_DURATION);
         partTargetDurationUs = (long) (partTargetDurationSeconds * C.MICROS_PER_SECOND);
       } else if (line.startsWith(TAG_INIT_SEGMENT)) {
-        String uri = parseStringAttr(line, REGEX_URI, variableDefinitions);
-        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE, variableDefinitions);
+        attributes.reset(line);
+        String uri = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
+        @Nullable String byteRange = parseOptionalByteRangeAttr(attributes);
         if (byteRange != null) {
           String[] splitByteRange = Util.split(byteRange, "@");
           segmentByteRangeLength = Long.parseLong(splitByteRange[0]);
@@ -749,14 +794,16 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         }
         segmentByteRangeLength = C.LENGTH_UNSET;
       } else if (line.startsWith(TAG_TARGET_DURATION)) {
-        targetDurationUs = parseIntAttr(line, REGEX_TARGET_DURATION) * C.MICROS_PER_SECOND;
+        targetDurationUs =
+            Integer.parseInt(parseNumberTagValue(line, TAG_TARGET_DURATION)) * C.MICROS_PER_SECOND;
       } else if (line.startsWith(TAG_MEDIA_SEQUENCE)) {
-        mediaSequence = parseLongAttr(line, REGEX_MEDIA_SEQUENCE);
+        mediaSequence = Long.parseLong(parseNumberTagValue(line, TAG_MEDIA_SEQUENCE));
         segmentMediaSequence = mediaSequence;
       } else if (line.startsWith(TAG_VERSION)) {
-        version = parseIntAttr(line, REGEX_VERSION);
+        version = Integer.parseInt(parseNumberTagValue(line, TAG_VERSION));
       } else if (line.startsWith(TAG_DEFINE)) {
-        String importName = parseOptionalStringAttr(line, REGEX_IMPORT, variableDefinitions);
+        attributes.reset(line);
+        String importName = parseOptionalStringAttr(attributes, ATTR_IMPORT, variableDefinitions);
         if (importName != null) {
           String value = multivariantPlaylist.variableDefinitions.get(importName);
           if (value != null) {
@@ -766,14 +813,15 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         } else {
           variableDefinitions.put(
-              parseStringAttr(line, REGEX_NAME, variableDefinitions),
-              parseStringAttr(line, REGEX_VALUE, variableDefinitions));
+              parseStringAttr(attributes, ATTR_NAME, variableDefinitions),
+              parseStringAttr(attributes, ATTR_VALUE, variableDefinitions));
         }
       } else if (line.startsWith(TAG_MEDIA_DURATION)) {
-        segmentDurationUs = parseTimeSecondsToUs(line, REGEX_MEDIA_DURATION);
-        segmentTitle = parseOptionalStringAttr(line, REGEX_MEDIA_TITLE, "", variableDefinitions);
+        segmentDurationUs = parseTimeSecondsToUs(line);
+        segmentTitle = parseMediaTitle(line, variableDefinitions);
       } else if (line.startsWith(TAG_SKIP)) {
-        int skippedSegmentCount = parseIntAttr(line, REGEX_SKIPPED_SEGMENTS);
+        attributes.reset(line);
+        int skippedSegmentCount = parseIntAttr(attributes, ATTR_SKIPPED_SEGMENTS);
         checkState(previousMediaPlaylist != null && segments.isEmpty());
         int startIndex = (int) (mediaSequence - castNonNull(previousMediaPlaylist).mediaSequence);
         int endIndex = startIndex + skippedSegmentCount;
@@ -810,20 +858,27 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           segmentMediaSequence++;
         }
       } else if (line.startsWith(TAG_KEY)) {
-        String method = parseStringAttr(line, REGEX_METHOD, variableDefinitions);
+        attributes.reset(line);
+        String method = parseEnumeratedStringAttr(attributes, ATTR_METHOD, METHODS);
         String keyFormat =
-            parseOptionalStringAttr(line, REGEX_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
+            parseOptionalStringAttr(
+                attributes, ATTR_KEYFORMAT, KEYFORMAT_IDENTITY, variableDefinitions);
         fullSegmentEncryptionKeyUri = null;
         fullSegmentEncryptionIV = null;
         if (METHOD_NONE.equals(method)) {
           currentSchemeDatas.clear();
           cachedDrmInitData = null;
         } else /* !METHOD_NONE.equals(method) */ {
-          fullSegmentEncryptionIV = parseOptionalStringAttr(line, REGEX_IV, variableDefinitions);
+          @Nullable String encryptionIV = attributes.getUnquotedValue(ATTR_IV);
+          fullSegmentEncryptionIV =
+              encryptionIV != null
+                  ? replaceVariableReferences(encryptionIV, variableDefinitions)
+                  : null;
           if (KEYFORMAT_IDENTITY.equals(keyFormat)) {
             if (METHOD_AES_128.equals(method)) {
               // The segment is fully encrypted using an identity key.
-              fullSegmentEncryptionKeyUri = parseStringAttr(line, REGEX_URI, variableDefinitions);
+              fullSegmentEncryptionKeyUri =
+                  parseStringAttr(attributes, ATTR_URI, variableDefinitions);
             } else {
               // Do nothing. Samples are encrypted using an identity key, but this is not supported.
               // Hopefully, a traditional DRM alternative is also provided.
@@ -832,7 +887,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             if (encryptionScheme == null) {
               encryptionScheme = parseEncryptionScheme(method);
             }
-            SchemeData schemeData = parseDrmSchemeData(line, keyFormat, variableDefinitions);
+            SchemeData schemeData = parseDrmSchemeData(attributes, keyFormat, variableDefinitions);
             if (schemeData != null) {
               cachedDrmInitData = null;
               currentSchemeDatas.put(keyFormat, schemeData);
@@ -840,7 +895,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
       } else if (line.startsWith(TAG_BYTERANGE)) {
-        String byteRange = parseStringAttr(line, REGEX_BYTERANGE, variableDefinitions);
+        String byteRange = parseByteRangeTagValue(line);
         String[] splitByteRange = Util.split(byteRange, "@");
         segmentByteRangeLength = Long.parseLong(splitByteRange[0]);
         if (splitByteRange.length > 1) {
@@ -864,24 +919,28 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       } else if (line.equals(TAG_ENDLIST)) {
         hasEndTag = true;
       } else if (line.startsWith(TAG_RENDITION_REPORT)) {
-        long lastMediaSequence = parseOptionalLongAttr(line, REGEX_LAST_MSN, C.INDEX_UNSET);
-        int lastPartIndex = parseOptionalIntAttr(line, REGEX_LAST_PART, C.INDEX_UNSET);
-        String uri = parseStringAttr(line, REGEX_URI, variableDefinitions);
+        attributes.reset(line);
+        long lastMediaSequence = parseOptionalLongAttr(attributes, ATTR_LAST_MSN, C.INDEX_UNSET);
+        int lastPartIndex = parseOptionalIntAttr(attributes, ATTR_LAST_PART, C.INDEX_UNSET);
+        String uri = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
         Uri playlistUri = Uri.parse(UriUtil.resolve(baseUri, uri));
         renditionReports.add(new RenditionReport(playlistUri, lastMediaSequence, lastPartIndex));
       } else if (line.startsWith(TAG_PRELOAD_HINT)) {
         if (preloadPart != null) {
           continue;
         }
-        String type = parseStringAttr(line, REGEX_PRELOAD_HINT_TYPE, variableDefinitions);
+        attributes.reset(line);
+        String type = parseEnumeratedStringAttr(attributes, ATTR_TYPE, PRELOAD_HINT_TYPES);
         if (!TYPE_PART.equals(type)) {
           continue;
         }
-        String url = parseStringAttr(line, REGEX_URI, variableDefinitions);
+        String url = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
         long byteRangeStart =
-            parseOptionalLongAttr(line, REGEX_BYTERANGE_START, /* defaultValue= */ C.LENGTH_UNSET);
+            parseOptionalLongAttr(
+                attributes, ATTR_BYTERANGE_START, /* defaultValue= */ C.LENGTH_UNSET);
         long byteRangeLength =
-            parseOptionalLongAttr(line, REGEX_BYTERANGE_LENGTH, /* defaultValue= */ C.LENGTH_UNSET);
+            parseOptionalLongAttr(
+                attributes, ATTR_BYTERANGE_LENGTH, /* defaultValue= */ C.LENGTH_UNSET);
         @Nullable
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
@@ -912,20 +971,21 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
                   /* isPreload= */ true);
         }
       } else if (line.startsWith(TAG_PART)) {
+        attributes.reset(line);
         @Nullable
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
                 segmentMediaSequence, fullSegmentEncryptionKeyUri, fullSegmentEncryptionIV);
-        String url = parseStringAttr(line, REGEX_URI, variableDefinitions);
+        String url = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
         long partDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_ATTR_DURATION) * C.MICROS_PER_SECOND);
+            (long) (parseDoubleAttr(attributes, ATTR_DURATION) * C.MICROS_PER_SECOND);
         boolean isIndependent =
-            parseOptionalBooleanAttribute(line, REGEX_INDEPENDENT, /* defaultValue= */ false);
+            parseOptionalBooleanAttribute(attributes, ATTR_INDEPENDENT, /* defaultValue= */ false);
         // The first part of a segment is always independent if the segments are independent.
         isIndependent |= hasIndependentSegmentsTag && trailingParts.isEmpty();
-        boolean isGap = parseOptionalBooleanAttribute(line, REGEX_GAP, /* defaultValue= */ false);
-        @Nullable
-        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE, variableDefinitions);
+        boolean isGap =
+            parseOptionalBooleanAttribute(attributes, ATTR_GAP, /* defaultValue= */ false);
+        @Nullable String byteRange = parseOptionalByteRangeAttr(attributes);
         long partByteRangeLength = C.LENGTH_UNSET;
         if (byteRange != null) {
           String[] splitByteRange = Util.split(byteRange, "@");
@@ -964,6 +1024,44 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           partByteRangeOffset += partByteRangeLength;
         }
       } else if (!line.startsWith("#")) {
+        @Nullable
+        Segment previousSegment =
+            reusePreviousSegments
+                ? getReusableSegment(castNonNull(previousMediaPlaylist), segmentMediaSequence)
+                : null;
+        if (previousSegment != null) {
+          String segmentUri = replaceVariableReferences(line, variableDefinitions);
+          if (!segmentUri.equals(previousSegment.url) || hasGapTag != previousSegment.hasGapTag) {
+            return null;
+          }
+          if (previousSegment.relativeStartTimeUs != segmentStartTimeUs
+              || previousSegment.relativeDiscontinuitySequence != relativeDiscontinuitySequence) {
+            previousSegment =
+                previousSegment.copyWith(segmentStartTimeUs, relativeDiscontinuitySequence);
+          }
+          if (initializationSegment == null && previousSegment.initializationSegment != null) {
+            urlToInferredInitSegment.put(segmentUri, previousSegment.initializationSegment);
+          }
+          if (cachedDrmInitData == null && !currentSchemeDatas.isEmpty()) {
+            SchemeData[] schemeDatas = currentSchemeDatas.values().toArray(new SchemeData[0]);
+            cachedDrmInitData = new DrmInitData(encryptionScheme, schemeDatas);
+            if (playlistProtectionSchemes == null) {
+              playlistProtectionSchemes =
+                  getPlaylistProtectionSchemes(encryptionScheme, schemeDatas);
+            }
+          }
+          segments.add(previousSegment);
+          segmentMediaSequence++;
+          segmentStartTimeUs += previousSegment.durationUs;
+          partStartTimeUs = segmentStartTimeUs;
+          segmentByteRangeOffset =
+              previousSegment.byteRangeLength != C.LENGTH_UNSET
+                  ? previousSegment.byteRangeOffset + previousSegment.byteRangeLength
+                  : 0;
+          segmentByteRangeLength = C.LENGTH_UNSET;
+          hasGapTag = false;
+          continue;
+        }
         @Nullable
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
@@ -1071,6 +1169,33 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         renditionReportMap);
   }
 
+  /**
+   * Returns whether a media playlist line is a tag that only applies to the next segment (or to
+   * one of its parts), and whose state doesn't carry over to later segments.
+   */
+  private static boolean isSegmentOnlyTag(String line) {
+    return line.startsWith(TAG_MEDIA_DURATION)
+        || line.startsWith(TAG_BYTERANGE)
+        || (line.startsWith(TAG_PART) && !line.startsWith(TAG_PART_INF));
+  }
+
+  /**
+   * Returns the segment of a media playlist with the given media sequence number, or null if the
+   * playlist doesn't contain it or it can't be reused when parsing a later playlist.
+   *
+   * <p>Segments with parts aren't reused, since servers remove the parts of older segments from
+   * later playlists.
+   */
+  @Nullable
+  private static Segment getReusableSegment(HlsMediaPlaylist mediaPlaylist, long mediaSequence) {
+    long segmentIndex = mediaSequence - mediaPlaylist.mediaSequence;
+    if (segmentIndex < 0 || segmentIndex >= mediaPlaylist.segments.size()) {
+      return null;
+    }
+    Segment segment = mediaPlaylist.segments.get((int) segmentIndex);
+    return segment.parts.isEmpty() ? segment : null;
+  }
+
   private static DrmInitData getPlaylistProtectionSchemes(
       @Nullable String encryptionScheme, SchemeData[] schemeDatas) {
     SchemeData[] playlistSchemeDatas = new SchemeData[schemeDatas.length];
@@ -1093,24 +1218,24 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return Long.toHexString(segmentMediaSequence);
   }
 
-  private static @C.SelectionFlags int parseSelectionFlags(String line) {
+  private static @C.SelectionFlags int parseSelectionFlags(HlsAttributeList attributes) {
     int flags = 0;
-    if (parseOptionalBooleanAttribute(line, REGEX_DEFAULT, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_DEFAULT, false)) {
       flags |= C.SELECTION_FLAG_DEFAULT;
     }
-    if (parseOptionalBooleanAttribute(line, REGEX_FORCED, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_FORCED, false)) {
       flags |= C.SELECTION_FLAG_FORCED;
     }
-    if (parseOptionalBooleanAttribute(line, REGEX_AUTOSELECT, false)) {
+    if (parseOptionalBooleanAttribute(attributes, ATTR_AUTOSELECT, false)) {
       flags |= C.SELECTION_FLAG_AUTOSELECT;
     }
     return flags;
   }
 
   private static @C.RoleFlags int parseRoleFlags(
-      String line, Map<String, String> variableDefinitions) {
+      HlsAttributeList attributes, Map<String, String> variableDefinitions) {
     String concatenatedCharacteristics =
-        parseOptionalStringAttr(line, REGEX_CHARACTERISTICS, variableDefinitions);
+        parseOptionalStringAttr(attributes, ATTR_CHARACTERISTICS, variableDefinitions);
     if (TextUtils.isEmpty(concatenatedCharacteristics)) {
       return 0;
     }
@@ -1133,20 +1258,20 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
   @Nullable
   private static SchemeData parseDrmSchemeData(
-      String line, String keyFormat, Map<String, String> variableDefinitions)
+      HlsAttributeList attributes, String keyFormat, Map<String, String> variableDefinitions)
       throws ParserException {
     String keyFormatVersions =
-        parseOptionalStringAttr(line, REGEX_KEYFORMATVERSIONS, "1", variableDefinitions);
+        parseOptionalStringAttr(attributes, ATTR_KEYFORMATVERSIONS, "1", variableDefinitions);
     if (KEYFORMAT_WIDEVINE_PSSH_BINARY.equals(keyFormat)) {
-      String uriString = parseStringAttr(line, REGEX_URI, variableDefinitions);
+      String uriString = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
       return new SchemeData(
           C.WIDEVINE_UUID,
           MimeTypes.VIDEO_MP4,
           Base64.decode(uriString.substring(uriString.indexOf(',')), Base64.DEFAULT));
     } else if (KEYFORMAT_WIDEVINE_PSSH_JSON.equals(keyFormat)) {
-      return new SchemeData(C.WIDEVINE_UUID, "hls", Util.getUtf8Bytes(line));
+      return new SchemeData(C.WIDEVINE_UUID, "hls", Util.getUtf8Bytes(attributes.getLine()));
     } else if (KEYFORMAT_PLAYREADY.equals(keyFormat) && "1".equals(keyFormatVersions)) {
-      String uriString = parseStringAttr(line, REGEX_URI, variableDefinitions);
+      String uriString = parseStringAttr(attributes, ATTR_URI, variableDefinitions);
       byte[] data = Base64.decode(uriString.substring(uriString.indexOf(',')), Base64.DEFAULT);
       byte[] psshData = PsshAtomUtil.buildPsshAtom(C.PLAYREADY_UUID, data);
       return new SchemeData(C.PLAYREADY_UUID, MimeTypes.VIDEO_MP4, psshData);
@@ -1154,28 +1279,30 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return null;
   }
 
-  private static HlsMediaPlaylist.ServerControl parseServerControl(String line) {
+  private static HlsMediaPlaylist.ServerControl parseServerControl(HlsAttributeList attributes) {
     double skipUntilSeconds =
-        parseOptionalDoubleAttr(line, REGEX_CAN_SKIP_UNTIL, /* defaultValue= */ C.TIME_UNSET);
+        parseOptionalDoubleAttr(attributes, ATTR_CAN_SKIP_UNTIL, /* defaultValue= */ C.TIME_UNSET);
     long skipUntilUs =
         skipUntilSeconds == C.TIME_UNSET
             ? C.TIME_UNSET
             : (long) (skipUntilSeconds * C.MICROS_PER_SECOND);
     boolean canSkipDateRanges =
-        parseOptionalBooleanAttribute(line, REGEX_CAN_SKIP_DATE_RANGES, /* defaultValue= */ false);
+        parseOptionalBooleanAttribute(
+            attributes, ATTR_CAN_SKIP_DATE_RANGES, /* defaultValue= */ false);
     double holdBackSeconds =
-        parseOptionalDoubleAttr(line, REGEX_HOLD_BACK, /* defaultValue= */ C.TIME_UNSET);
+        parseOptionalDoubleAttr(attributes, ATTR_HOLD_BACK, /* defaultValue= */ C.TIME_UNSET);
     long holdBackUs =
         holdBackSeconds == C.TIME_UNSET
             ? C.TIME_UNSET
             : (long) (holdBackSeconds * C.MICROS_PER_SECOND);
-    double partHoldBackSeconds = parseOptionalDoubleAttr(line, REGEX_PART_HOLD_BACK, C.TIME_UNSET);
+    double partHoldBackSeconds =
+        parseOptionalDoubleAttr(attributes, ATTR_PART_HOLD_BACK, C.TIME_UNSET);
     long partHoldBackUs =
         partHoldBackSeconds == C.TIME_UNSET
             ? C.TIME_UNSET
             : (long) (partHoldBackSeconds * C.MICROS_PER_SECOND);
     boolean canBlockReload =
-        parseOptionalBooleanAttribute(line, REGEX_CAN_BLOCK_RELOAD, /* defaultValue= */ false);
+        parseOptionalBooleanAttribute(attributes, ATTR_CAN_BLOCK_RELOAD, /* defaultValue= */ false);
 
     return new HlsMediaPlaylist.ServerControl(
         skipUntilUs, canSkipDateRanges, holdBackUs, partHoldBackUs, canBlockReload);
@@ -1187,107 +1314,344 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         : C.CENC_TYPE_cbcs;
   }
 
-  private static int parseIntAttr(String line, Pattern pattern) throws ParserException {
-    return Integer.parseInt(parseStringAttr(line, pattern, Collections.emptyMap()));
+  private static int parseIntAttr(HlsAttributeList attributes, String name)
+      throws ParserException {
+    return Integer.parseInt(parseNumberAttr(attributes, name, /* isDecimal= */ false));
+  }
+
+  private static int parseOptionalIntAttr(
+      HlsAttributeList attributes, String name, int defaultValue) {
+    @Nullable String value = parseOptionalNumberAttr(attributes, name, /* isDecimal= */ false);
+    return value != null ? Integer.parseInt(value) : defaultValue;
+  }
+
+  private static long parseOptionalLongAttr(
+      HlsAttributeList attributes, String name, long defaultValue) {
+    @Nullable String value = parseOptionalNumberAttr(attributes, name, /* isDecimal= */ false);
+    return value != null ? Long.parseLong(value) : defaultValue;
   }
 
-  private static int parseOptionalIntAttr(String line, Pattern pattern, int defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return Integer.parseInt(checkNotNull(matcher.group(1)));
+  private static double parseDoubleAttr(HlsAttributeList attributes, String name)
+      throws ParserException {
+    return Double.parseDouble(parseNumberAttr(attributes, name, /* isDecimal= */ true));
+  }
+
+  private static double parseOptionalDoubleAttr(
+      HlsAttributeList attributes, String name, double defaultValue) {
+    @Nullable String value = parseOptionalDecimalAttr(attributes, name);
+    return value != null ? Double.parseDouble(value) : defaultValue;
+  }
+
+  private static double parseSignedDoubleAttr(HlsAttributeList attributes, String name)
+      throws ParserException {
+    @Nullable String value = attributes.getUnquotedValue(name);
+    if (value != null) {
+      int start = value.charAt(0) == '-' ? 1 : 0;
+      if (start < value.length()
+          && getNumberEnd(value, start, /* isDecimal= */ true) == value.length()) {
+        return Double.parseDouble(value);
+      }
     }
-    return defaultValue;
+    throw createMissingAttributeException(attributes, name);
   }
 
-  private static long parseLongAttr(String line, Pattern pattern) throws ParserException {
-    return Long.parseLong(parseStringAttr(line, pattern, Collections.emptyMap()));
+  @Nullable
+  private static String parseOptionalDecimalAttr(HlsAttributeList attributes, String name) {
+    return parseOptionalNumberAttr(attributes, name, /* isDecimal= */ true);
   }
 
-  private static long parseOptionalLongAttr(String line, Pattern pattern, long defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return Long.parseLong(checkNotNull(matcher.group(1)));
+  private static String parseNumberAttr(
+      HlsAttributeList attributes, String name, boolean isDecimal) throws ParserException {
+    @Nullable String value = parseOptionalNumberAttr(attributes, name, isDecimal);
+    if (value == null) {
+      throw createMissingAttributeException(attributes, name);
     }
-    return defaultValue;
+    return value;
   }
 
-  private static long parseTimeSecondsToUs(String line, Pattern pattern) throws ParserException {
-    String timeValueSeconds = parseStringAttr(line, pattern, Collections.emptyMap());
-    BigDecimal timeValue = new BigDecimal(timeValueSeconds);
-    return timeValue.multiply(new BigDecimal(C.MICROS_PER_SECOND)).longValue();
+  /**
+   * Returns the value of an unquoted attribute if it only contains digits (and dots if {@code
+   * isDecimal} is true), or null otherwise.
+   */
+  @Nullable
+  private static String parseOptionalNumberAttr(
+      HlsAttributeList attributes, String name, boolean isDecimal) {
+    @Nullable String value = attributes.getUnquotedValue(name);
+    return value != null && getNumberEnd(value, /* start= */ 0, isDecimal) == value.length()
+        ? value
+        : null;
   }
 
-  private static double parseDoubleAttr(String line, Pattern pattern) throws ParserException {
-    return Double.parseDouble(parseStringAttr(line, pattern, Collections.emptyMap()));
+  /**
+   * Returns the value of a {@code BYTERANGE} attribute if it has the form {@code <n>[@<o>]}, or
+   * null otherwise.
+   */
+  @Nullable
+  private static String parseOptionalByteRangeAttr(HlsAttributeList attributes) {
+    @Nullable String value = attributes.getQuotedString(ATTR_BYTERANGE);
+    return value != null && getByteRangeEnd(value, /* start= */ 0) == value.length()
+        ? value
+        : null;
+  }
+
+  /**
+   * Returns the {@code <width>x<height>} at the start of the value of a {@code RESOLUTION}
+   * attribute, or null if there's no such value.
+   */
+  @Nullable
+  private static String parseOptionalResolutionAttr(HlsAttributeList attributes) {
+    @Nullable String value = attributes.getUnquotedValue(ATTR_RESOLUTION);
+    if (value == null) {
+      return null;
+    }
+    int widthEnd = getDigitsEnd(value, /* start= */ 0);
+    if (widthEnd == 0 || widthEnd == value.length() || value.charAt(widthEnd) != 'x') {
+      return null;
+    }
+    int heightEnd = getDigitsEnd(value, widthEnd + 1);
+    return heightEnd > widthEnd + 1 ? value.substring(0, heightEnd) : null;
+  }
+
+  private static String parseInstreamIdAttr(HlsAttributeList attributes) throws ParserException {
+    @Nullable String instreamId = attributes.getQuotedString(ATTR_INSTREAM_ID);
+    if (instreamId == null) {
+      throw createMissingAttributeException(attributes, ATTR_INSTREAM_ID);
+    }
+    int channelStart =
+        instreamId.startsWith("CC") ? 2 : instreamId.startsWith("SERVICE") ? 7 : C.INDEX_UNSET;
+    if (channelStart == C.INDEX_UNSET
+        || channelStart == instreamId.length()
+        || getDigitsEnd(instreamId, channelStart) != instreamId.length()) {
+      throw createMissingAttributeException(attributes, ATTR_INSTREAM_ID);
+    }
+    return instreamId;
+  }
+
+  private static String parseEnumeratedStringAttr(
+      HlsAttributeList attributes, String name, String[] values) throws ParserException {
+    for (String value : values) {
+      if (attributes.hasUnquotedValue(name, value)) {
+        return value;
+      }
+    }
+    throw createMissingAttributeException(attributes, name);
   }
 
   private static String parseStringAttr(
-      String line, Pattern pattern, Map<String, String> variableDefinitions)
+      HlsAttributeList attributes, String name, Map<String, String> variableDefinitions)
       throws ParserException {
-    String value = parseOptionalStringAttr(line, pattern, variableDefinitions);
+    String value = parseOptionalStringAttr(attributes, name, variableDefinitions);
     if (value != null) {
       return value;
     } else {
-      throw ParserException.createForMalformedManifest(
-          "Couldn't match " + pattern.pattern() + " in " + line, /* cause= */ null);
+      throw createMissingAttributeException(attributes, name);
     }
   }
 
   @Nullable
   private static String parseOptionalStringAttr(
-      String line, Pattern pattern, Map<String, String> variableDefinitions) {
-    return parseOptionalStringAttr(line, pattern, null, variableDefinitions);
+      HlsAttributeList attributes, String name, Map<String, String> variableDefinitions) {
+    return parseOptionalStringAttr(attributes, name, null, variableDefinitions);
   }
 
   private static @PolyNull String parseOptionalStringAttr(
-      String line,
-      Pattern pattern,
+      HlsAttributeList attributes,
+      String name,
       @PolyNull String defaultValue,
       Map<String, String> variableDefinitions) {
-    Matcher matcher = pattern.matcher(line);
-    @PolyNull String value = matcher.find() ? checkNotNull(matcher.group(1)) : defaultValue;
+    @Nullable String quotedString = attributes.getQuotedString(name);
+    @PolyNull String value = quotedString != null ? quotedString : defaultValue;
     return variableDefinitions.isEmpty() || value == null
         ? value
         : replaceVariableReferences(value, variableDefinitions);
   }
 
-  private static double parseOptionalDoubleAttr(String line, Pattern pattern, double defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return Double.parseDouble(checkNotNull(matcher.group(1)));
+  private static boolean parseOptionalBooleanAttribute(
+      HlsAttributeList attributes, String name, boolean defaultValue) {
+    if (attributes.hasUnquotedValue(name, BOOLEAN_TRUE)) {
+      return true;
+    } else if (attributes.hasUnquotedValue(name, BOOLEAN_FALSE)) {
+      return false;
     }
     return defaultValue;
   }
 
+  private static ParserException createMissingAttributeException(
+      HlsAttributeList attributes, String name) {
+    return ParserException.createForMalformedManifest(
+        "Couldn't match " + name + " in " + attributes.getLine(), /* cause= */ null);
+  }
+
+  /**
+   * Returns the value of a tag of the form {@code <tag>:<value>}, without any trailing characters
+   * that aren't letters, digits or underscores.
+   */
+  private static String parseTagValue(String line, String tag) throws ParserException {
+    int start = getTagValueStart(line, tag);
+    int end = line.length();
+    while (end > start && !isWordBoundary(line, end)) {
+      end--;
+    }
+    if (end == start) {
+      throw createMalformedTagException(line, tag);
+    }
+    return line.substring(start, end);
+  }
+
+  /** Returns the integer value of a tag of the form {@code <tag>:<n>}. */
+  private static String parseNumberTagValue(String line, String tag) throws ParserException {
+    int start = getTagValueStart(line, tag);
+    int end = getNumberEnd(line, start, /* isDecimal= */ false);
+    if (end == start) {
+      throw createMalformedTagException(line, tag);
+    }
+    return line.substring(start, end);
+  }
+
+  /** Returns the byte range of an {@code #EXT-X-BYTERANGE:<n>[@<o>]} tag. */
+  private static String parseByteRangeTagValue(String line) throws ParserException {
+    int start = getTagValueStart(line, TAG_BYTERANGE);
+    int end = getByteRangeEnd(line, start);
+    if (end == start) {
+      throw createMalformedTagException(line, TAG_BYTERANGE);
+    }
+    return line.substring(start, end);
+  }
+
+  private static long parseTimeSecondsToUs(String line) throws ParserException {
+    int start = getTagValueStart(line, TAG_MEDIA_DURATION);
+    int end = getNumberEnd(line, start, /* isDecimal= */ true);
+    if (end == start) {
+      throw createMalformedTagException(line, TAG_MEDIA_DURATION);
+    }
+    BigDecimal timeValue = new BigDecimal(line.substring(start, end));
+    return timeValue.multiply(new BigDecimal(C.MICROS_PER_SECOND)).longValue();
+  }
+
+  /** Returns the title of an {@code #EXTINF:<duration>,[<title>]} tag, or an empty string. */
+  private static String parseMediaTitle(String line, Map<String, String> variableDefinitions) {
+    int start = line.indexOf(':') + 1;
+    int durationEnd = getNumberEnd(line, start, /* isDecimal= */ true);
+    if (durationEnd == start
+        || durationEnd >= line.length() - 1
+        || line.charAt(durationEnd) != ',') {
+      return "";
+    }
+    return replaceVariableReferences(line.substring(durationEnd + 1), variableDefinitions);
+  }
+
+  private static int getTagValueStart(String line, String tag) throws ParserException {
+    int tagLength = tag.length();
+    if (line.length() <= tagLength || line.charAt(tagLength) != ':') {
+      throw createMalformedTagException(line, tag);
+    }
+    return tagLength + 1;
+  }
+
+  private static ParserException createMalformedTagException(String line, String tag) {
+    return ParserException.createForMalformedManifest(
+        "Couldn't parse " + tag + " in " + line, /* cause= */ null);
+  }
+
+  /**
+   * Returns the end of the number that starts at {@code start}, or {@code start} if there's no
+   * number. A number is a run of digits (and dots if {@code isDecimal} is true) that ends at a word
+   * boundary.
+   */
+  private static int getNumberEnd(String string, int start, boolean isDecimal) {
+    int end = start;
+    while (end < string.length()
+        && (isDigit(string.charAt(end)) || (isDecimal && string.charAt(end) == '.'))) {
+      end++;
+    }
+    while (end > start && !isWordBoundary(string, end)) {
+      end--;
+    }
+    return end;
+  }
+
+  /**
+   * Returns the end of the byte range of the form {@code <n>[@<o>]} that starts at {@code start},
+   * or {@code start} if there's no byte range.
+   */
+  private static int getByteRangeEnd(String string, int start) {
+    int lengthEnd = getDigitsEnd(string, start);
+    if (lengthEnd == start) {
+      return start;
+    }
+    if (lengthEnd < string.length() && string.charAt(lengthEnd) == '@') {
+      int offsetEnd = getDigitsEnd(string, lengthEnd + 1);
+      if (offsetEnd > lengthEnd + 1 && isWordBoundary(string, offsetEnd)) {
+        return offsetEnd;
+      }
+    }
+    return isWordBoundary(string, lengthEnd) ? lengthEnd : start;
+  }
+
+  private static int getDigitsEnd(String string, int start) {
+    int end = start;
+    while (end < string.length() && isDigit(string.charAt(end))) {
+      end++;
+    }
+    return end;
+  }
+
+  private static boolean isWordBoundary(String string, int index) {
+    boolean isWordCharacterBefore = index > 0 && isWordCharacter(string.charAt(index - 1));
+    boolean isWordCharacterAfter =
+        index < string.length() && isWordCharacter(string.charAt(index));
+    return isWordCharacterBefore != isWordCharacterAfter;
+  }
+
+  private static boolean isWordCharacter(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
   private static String replaceVariableReferences(
       String string, Map<String, String> variableDefinitions) {
-    Matcher matcher = REGEX_VARIABLE_REFERENCE.matcher(string);
-    // TODO: Replace StringBuffer with StringBuilder once Java 9 is available.
-    StringBuffer stringWithReplacements = new StringBuffer();
-    while (matcher.find()) {
-      String groupName = matcher.group(1);
-      if (variableDefinitions.containsKey(groupName)) {
-        matcher.appendReplacement(
-            stringWithReplacements, Matcher.quoteReplacement(variableDefinitions.get(groupName)));
+    int referenceStart = string.indexOf(VARIABLE_REFERENCE_PREFIX);
+    if (referenceStart == C.INDEX_UNSET) {
+      return string;
+    }
+    @Nullable StringBuilder stringWithReplacements = null;
+    int copiedEnd = 0;
+    while (referenceStart != C.INDEX_UNSET) {
+      int nameStart = referenceStart + VARIABLE_REFERENCE_PREFIX.length();
+      int nameEnd = nameStart;
+      while (nameEnd < string.length() && isVariableNameCharacter(string.charAt(nameEnd))) {
+        nameEnd++;
+      }
+      if (nameEnd == nameStart || nameEnd == string.length() || string.charAt(nameEnd) != '}') {
+        referenceStart = string.indexOf(VARIABLE_REFERENCE_PREFIX, referenceStart + 1);
+        continue;
+      }
+      @Nullable String value = variableDefinitions.get(string.substring(nameStart, nameEnd));
+      if (value != null) {
+        if (stringWithReplacements == null) {
+          stringWithReplacements = new StringBuilder(string.length());
+        }
+        stringWithReplacements.append(string, copiedEnd, referenceStart).append(value);
+        copiedEnd = nameEnd + 1;
       } else {
         // The variable is not defined. The value is ignored.
       }
+      referenceStart = string.indexOf(VARIABLE_REFERENCE_PREFIX, nameEnd + 1);
     }
-    matcher.appendTail(stringWithReplacements);
-    return stringWithReplacements.toString();
+    return stringWithReplacements == null
+        ? string
+        : stringWithReplacements.append(string, copiedEnd, string.length()).toString();
   }
 
-  private static boolean parseOptionalBooleanAttribute(
-      String line, Pattern pattern, boolean defaultValue) {
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-      return BOOLEAN_TRUE.equals(matcher.group(1));
-    }
-    return defaultValue;
-  }
-
-  private static Pattern compileBooleanAttrPattern(String attribute) {
-    return Pattern.compile(attribute + "=(" + BOOLEAN_FALSE + "|" + BOOLEAN_TRUE + ")");
+  private static boolean isVariableNameCharacter(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || isDigit(c)
+        || c == '-'
+        || c == '_';
   }
 
   private static class LineIterator {
@@ -1296,6 +1660,7 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     private final Queue<String> extraLines;
 
     @Nullable private String next;
+    @Nullable private List<String> recordedLines;
 
     public LineIterator(Queue<String> extraLines, BufferedReader reader) {
       this.extraLines = extraLines;
@@ -1325,10 +1690,34 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       if (hasNext()) {
         String result = next;
         next = null;
+        if (recordedLines != null) {
+          recordedLines.add(result);
+        }
         return result;
       } else {
         throw new NoSuchElementException();
       }
     }
+
+    /** Starts recording the lines returned by {@link #next()}. */
+    public void startRecording() {
+      recordedLines = new ArrayList<>();
+    }
+
+    /**
+     * Returns an iterator over the lines recorded since {@link #startRecording()} was called,
+     * followed by the lines that haven't yet been returned by this iterator.
+     */
+    public LineIterator replayRecordedLines() {
+      Queue<String> lines = new ArrayDeque<>(checkNotNull(recordedLines));
+      if (next != null) {
+        lines.add(next);
+        next = null;
+      }
+      lines.addAll(extraLines);
+      extraLines.clear();
+      recordedLines = null;
+      return new LineIterator(lines, reader);
+    }
   }
 }
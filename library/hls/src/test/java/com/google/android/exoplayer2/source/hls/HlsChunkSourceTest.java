@@ -15,7 +15,9 @@
  */
 package com.google.android.exoplayer2.source.hls;
 
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
@@ -33,14 +35,19 @@ import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
 import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistTracker;
 import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.CmcdConfiguration;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.LinkedBlockingQueue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -57,6 +64,7 @@ public class HlsChunkSourceTest {
   private static final String PLAYLIST_EMPTY = "media/m3u8/media_playlist_empty";
   private static final Uri PLAYLIST_URI = Uri.parse("http://example.com/");
   private static final long PLAYLIST_START_PERIOD_OFFSET_US = 8_000_000L;
+  private static final long TIMEOUT_MS = 10_000;
   private static final Uri IFRAME_URI = Uri.parse("http://example.com/iframe");
   private static final Format IFRAME_FORMAT =
       new Format.Builder()
@@ -312,19 +320,89 @@ public class HlsChunkSourceTest {
             "key4=5.0");
   }
 
+  @Test
+  public void getNextChunk_withSegmentPrefetchCount_prefetchesChunkAndFollowingSegments()
+      throws Exception {
+    LinkedBlockingQueue<DataSpec> openedDataSpecs = new LinkedBlockingQueue<>();
+    TransferListener transferListener =
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(
+              DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            openedDataSpecs.add(dataSpec);
+          }
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {}
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        };
+    HlsDataSourceFactory dataSourceFactory =
+        new DefaultHlsDataSourceFactory(
+            new FakeDataSource.Factory()
+                .setFakeDataSet(new FakeDataSet().newDefaultData().appendReadData(10).endData()));
+    HlsChunkSource testChunkSource =
+        createHlsChunkSource(
+            dataSourceFactory,
+            transferListener,
+            /* cmcdConfiguration= */ null,
+            /* segmentPrefetchCount= */ 2);
+    HlsChunkSource.HlsChunkHolder output = new HlsChunkSource.HlsChunkHolder();
+
+    testChunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 0,
+        /* queue= */ ImmutableList.of(),
+        /* allowEndOfStream= */ true,
+        output);
+    ImmutableList.Builder<Uri> prefetchedUris = ImmutableList.builder();
+    for (int i = 0; i < 3; i++) {
+      DataSpec dataSpec = checkNotNull(openedDataSpecs.poll(TIMEOUT_MS, MILLISECONDS));
+      // Prefetches are throttled by their reader, so they must not be used for bandwidth estimates.
+      assertThat(dataSpec.isFlagSet(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)).isTrue();
+      prefetchedUris.add(dataSpec.uri);
+    }
+    testChunkSource.release();
+
+    assertThat(output.chunk.dataSpec.uri).isEqualTo(Uri.parse("http://example.com/2.mp4"));
+    assertThat(prefetchedUris.build())
+        .containsExactly(
+            Uri.parse("http://example.com/2.mp4"),
+            Uri.parse("http://example.com/3.mp4"),
+            Uri.parse("http://example.com/4.mp4"));
+  }
+
   private HlsChunkSource createHlsChunkSource(@Nullable CmcdConfiguration cmcdConfiguration) {
+    return createHlsChunkSource(
+        new DefaultHlsDataSourceFactory(new FakeDataSource.Factory()),
+        /* mediaTransferListener= */ null,
+        cmcdConfiguration,
+        /* segmentPrefetchCount= */ 0);
+  }
+
+  private HlsChunkSource createHlsChunkSource(
+      HlsDataSourceFactory dataSourceFactory,
+      @Nullable TransferListener mediaTransferListener,
+      @Nullable CmcdConfiguration cmcdConfiguration,
+      int segmentPrefetchCount) {
     return new HlsChunkSource(
         HlsExtractorFactory.DEFAULT,
         mockPlaylistTracker,
         new Uri[] {IFRAME_URI, PLAYLIST_URI},
         new Format[] {IFRAME_FORMAT, ExoPlayerTestRunner.VIDEO_FORMAT},
-        new DefaultHlsDataSourceFactory(new FakeDataSource.Factory()),
-        /* mediaTransferListener= */ null,
+        dataSourceFactory,
+        mediaTransferListener,
         new TimestampAdjusterProvider(),
         /* timestampAdjusterInitializationTimeoutMs= */ 0,
         /* muxedCaptionFormats= */ null,
         PlayerId.UNSET,
-        cmcdConfiguration);
+        cmcdConfiguration,
+        segmentPrefetchCount);
   }
 
   private static long playlistTimeToPeriodTimeUs(long playlistTimeUs) {
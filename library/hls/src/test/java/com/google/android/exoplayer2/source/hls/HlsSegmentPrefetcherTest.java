@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link HlsSegmentPrefetcher}. */
+@RunWith(AndroidJUnit4.class)
+public final class HlsSegmentPrefetcherTest {
+
+  private static final int PREFETCH_COUNT = 3;
+  private static final long TIMEOUT_MS = 10_000;
+
+  @Nullable private HlsSegmentPrefetcher prefetcher;
+
+  @After
+  public void tearDown() {
+    if (prefetcher != null) {
+      prefetcher.release();
+    }
+  }
+
+  @Test
+  public void read_prefetchedSegments_returnsSegmentData() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 3, /* size= */ 50);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    prefetcher =
+        createPrefetcher(
+            new LatencyDataSourceFactory(segments, /* latencyMs= */ 0),
+            /* segmentBufferSize= */ 1024);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 3));
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(readSegment(dataSource, i)).isEqualTo(segments.get(getSegmentUri(i)));
+    }
+    assertThat(upstream.openCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_segmentLargerThanBuffer_returnsSegmentData() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 2, /* size= */ 1000);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    prefetcher =
+        createPrefetcher(
+            new LatencyDataSourceFactory(segments, /* latencyMs= */ 0),
+            /* segmentBufferSize= */ 10);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 2));
+
+    assertThat(readSegment(dataSource, 0)).isEqualTo(segments.get(getSegmentUri(0)));
+    assertThat(readSegment(dataSource, 1)).isEqualTo(segments.get(getSegmentUri(1)));
+    assertThat(upstream.openCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_prefetchedSegment_reportsReadsToBandwidthMeter() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 50_000);
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(ApplicationProvider.getApplicationContext())
+            .setClock(clock)
+            .build();
+    long initialBitrateEstimate = bandwidthMeter.getBitrateEstimate();
+    prefetcher =
+        new HlsSegmentPrefetcher(
+            new LatencyDataSourceFactory(segments, /* latencyMs= */ 0),
+            bandwidthMeter,
+            /* maxSegmentCount= */ PREFETCH_COUNT + 1,
+            /* segmentBufferSize= */ 1024,
+            HlsSegmentPrefetcher.DEFAULT_STALLED_CONNECTION_TIMEOUT_MS,
+            Clock.DEFAULT);
+    DataSource dataSource =
+        prefetcher.createDataSource(new LatencyDataSource(segments, /* latencyMs= */ 0));
+    dataSource.addTransferListener(bandwidthMeter);
+
+    prefetcher.prefetch(
+        ImmutableList.of(
+            getSegmentDataSpec(/* index= */ 0)
+                .buildUpon()
+                .setFlags(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
+                .build()));
+    dataSource.open(getSegmentDataSpec(/* index= */ 0));
+    clock.advanceTime(/* timeDiffMs= */ 2000);
+    byte[] data = DataSourceUtil.readToEnd(dataSource);
+    dataSource.close();
+
+    assertThat(data).isEqualTo(segments.get(getSegmentUri(0)));
+    // 50_000 bytes read in 2 seconds.
+    assertThat(bandwidthMeter.getBitrateEstimate()).isNotEqualTo(initialBitrateEstimate);
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(200_000);
+  }
+
+  @Test
+  public void read_segmentNotPrefetched_readsFromUpstream() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 2, /* size= */ 50);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    prefetcher =
+        createPrefetcher(
+            new LatencyDataSourceFactory(segments, /* latencyMs= */ 0),
+            /* segmentBufferSize= */ 1024);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+
+    assertThat(readSegment(dataSource, 1)).isEqualTo(segments.get(getSegmentUri(1)));
+    assertThat(upstream.openCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void prefetch_withSegmentRemovedFromList_readsSegmentFromUpstream() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 2, /* size= */ 50);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    prefetcher =
+        createPrefetcher(
+            new LatencyDataSourceFactory(segments, /* latencyMs= */ 0),
+            /* segmentBufferSize= */ 1024);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 2));
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 1, /* toIndex= */ 2));
+
+    assertThat(readSegment(dataSource, 0)).isEqualTo(segments.get(getSegmentUri(0)));
+    assertThat(upstream.openCount.get()).isEqualTo(1);
+    assertThat(readSegment(dataSource, 1)).isEqualTo(segments.get(getSegmentUri(1)));
+    assertThat(upstream.openCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void read_prefetchFailsToOpen_readsFromUpstream() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 50);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    // The data sources of the prefetches don't have any segments, so opening them fails.
+    prefetcher =
+        createPrefetcher(
+            new LatencyDataSourceFactory(ImmutableMap.of(), /* latencyMs= */ 0),
+            /* segmentBufferSize= */ 1024);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+
+    assertThat(readSegment(dataSource, 0)).isEqualTo(segments.get(getSegmentUri(0)));
+    assertThat(upstream.openCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void read_prefetchFailsAfterOpen_throwsError() throws IOException {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 50);
+    LatencyDataSourceFactory dataSourceFactory =
+        new LatencyDataSourceFactory(segments, /* latencyMs= */ 0);
+    dataSourceFactory.failReads = true;
+    prefetcher = createPrefetcher(dataSourceFactory, /* segmentBufferSize= */ 1024);
+    DataSource dataSource =
+        prefetcher.createDataSource(new LatencyDataSource(segments, /* latencyMs= */ 0));
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+
+    assertThrows(IOException.class, () -> readSegment(dataSource, 0));
+  }
+
+  @Test
+  public void prefetch_multipleSegments_opensSegmentsInParallel() throws IOException {
+    int segmentCount = PREFETCH_COUNT + 1;
+    Map<Uri, byte[]> segments = createSegments(segmentCount, /* size= */ 50);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    LatencyDataSourceFactory dataSourceFactory =
+        new LatencyDataSourceFactory(segments, /* latencyMs= */ 0);
+    // Each open blocks until all segments are being opened, so a prefetch fails unless all segments
+    // are opened at the same time.
+    dataSourceFactory.openLatch = new CountDownLatch(segmentCount);
+    prefetcher = createPrefetcher(dataSourceFactory, /* segmentBufferSize= */ 1024);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ segmentCount));
+
+    for (int i = 0; i < segmentCount; i++) {
+      assertThat(readSegment(dataSource, i)).isEqualTo(segments.get(getSegmentUri(i)));
+    }
+    assertThat(dataSourceFactory.openCount.get()).isEqualTo(segmentCount);
+    assertThat(upstream.openCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void prefetch_bufferFullForLongerThanTimeout_closesConnectionAndResumes()
+      throws Exception {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 100);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    LatencyDataSourceFactory dataSourceFactory =
+        new LatencyDataSourceFactory(segments, /* latencyMs= */ 0);
+    dataSourceFactory.closeLatch = new CountDownLatch(1);
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    prefetcher =
+        new HlsSegmentPrefetcher(
+            dataSourceFactory,
+            /* transferListener= */ null,
+            /* maxSegmentCount= */ PREFETCH_COUNT + 1,
+            /* segmentBufferSize= */ 10,
+            /* stalledConnectionTimeoutMs= */ 1,
+            clock);
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+    // Nothing is read, so the buffer stays full and the connection is closed before the end of the
+    // segment once the clock passes the timeout.
+    for (int i = 0; i < TIMEOUT_MS && dataSourceFactory.closeLatch.getCount() > 0; i++) {
+      clock.advanceTime(/* timeDiffMs= */ 1);
+      dataSourceFactory.closeLatch.await(/* timeout= */ 1, MILLISECONDS);
+    }
+    assertThat(dataSourceFactory.closeLatch.getCount()).isEqualTo(0);
+
+    assertThat(readSegment(dataSource, 0)).isEqualTo(segments.get(getSegmentUri(0)));
+    assertThat(dataSourceFactory.openCount.get()).isAtLeast(2);
+    assertThat(upstream.openCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void prefetch_bufferFullBeforeTimeoutPasses_keepsConnectionOpen() throws Exception {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 100);
+    LatencyDataSource upstream = new LatencyDataSource(segments, /* latencyMs= */ 0);
+    LatencyDataSourceFactory dataSourceFactory =
+        new LatencyDataSourceFactory(segments, /* latencyMs= */ 0);
+    dataSourceFactory.closeLatch = new CountDownLatch(1);
+    // The clock doesn't advance, so each timed wait of the fetching thread returns before the
+    // timeout has passed on the clock.
+    prefetcher =
+        new HlsSegmentPrefetcher(
+            dataSourceFactory,
+            /* transferListener= */ null,
+            /* maxSegmentCount= */ PREFETCH_COUNT + 1,
+            /* segmentBufferSize= */ 10,
+            /* stalledConnectionTimeoutMs= */ 1,
+            new FakeClock(/* initialTimeMs= */ 0));
+    DataSource dataSource = prefetcher.createDataSource(upstream);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+
+    assertThat(dataSourceFactory.closeLatch.await(/* timeout= */ 100, MILLISECONDS)).isFalse();
+    assertThat(readSegment(dataSource, 0)).isEqualTo(segments.get(getSegmentUri(0)));
+    assertThat(dataSourceFactory.openCount.get()).isEqualTo(1);
+    assertThat(upstream.openCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void prefetch_withSegmentRemovedWhileOpening_interruptsOpen() throws Exception {
+    Map<Uri, byte[]> segments = createSegments(/* count= */ 1, /* size= */ 50);
+    // The open only completes if it's interrupted before the test times out.
+    LatencyDataSourceFactory dataSourceFactory =
+        new LatencyDataSourceFactory(segments, /* latencyMs= */ 10 * TIMEOUT_MS);
+    dataSourceFactory.openLatch = new CountDownLatch(1);
+    dataSourceFactory.closeLatch = new CountDownLatch(1);
+    prefetcher = createPrefetcher(dataSourceFactory, /* segmentBufferSize= */ 1024);
+
+    prefetcher.prefetch(getSegmentDataSpecs(/* fromIndex= */ 0, /* toIndex= */ 1));
+    assertThat(dataSourceFactory.openLatch.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+    prefetcher.prefetch(ImmutableList.of());
+
+    assertThat(dataSourceFactory.closeLatch.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+  }
+
+  private static HlsSegmentPrefetcher createPrefetcher(
+      HlsDataSourceFactory dataSourceFactory, int segmentBufferSize) {
+    return new HlsSegmentPrefetcher(
+        dataSourceFactory,
+        /* transferListener= */ null,
+        /* maxSegmentCount= */ PREFETCH_COUNT + 1,
+        segmentBufferSize,
+        HlsSegmentPrefetcher.DEFAULT_STALLED_CONNECTION_TIMEOUT_MS,
+        Clock.DEFAULT);
+  }
+
+  private static byte[] readSegment(DataSource dataSource, int index) throws IOException {
+    try {
+      dataSource.open(getSegmentDataSpec(index));
+      return DataSourceUtil.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private static Map<Uri, byte[]> createSegments(int count, int size) {
+    ImmutableMap.Builder<Uri, byte[]> segments = ImmutableMap.builder();
+    for (int i = 0; i < count; i++) {
+      segments.put(getSegmentUri(i), TestUtil.buildTestData(size, /* seed= */ i));
+    }
+    return segments.buildOrThrow();
+  }
+
+  private static List<DataSpec> getSegmentDataSpecs(int fromIndex, int toIndex) {
+    ImmutableList.Builder<DataSpec> dataSpecs = ImmutableList.builder();
+    for (int i = fromIndex; i < toIndex; i++) {
+      dataSpecs.add(getSegmentDataSpec(i));
+    }
+    return dataSpecs.build();
+  }
+
+  private static DataSpec getSegmentDataSpec(int index) {
+    return new DataSpec(getSegmentUri(index));
+  }
+
+  private static Uri getSegmentUri(int index) {
+    return Uri.parse("https://example.com/segment" + index + ".ts");
+  }
+
+  /**
+   * Creates {@link LatencyDataSource} instances for the prefetches, which share the factory's open
+   * count and latches.
+   */
+  private static final class LatencyDataSourceFactory implements HlsDataSourceFactory {
+
+    public final AtomicInteger openCount;
+
+    private final Map<Uri, byte[]> segments;
+    private final long latencyMs;
+
+    public boolean failReads;
+    @Nullable public CountDownLatch openLatch;
+    @Nullable public CountDownLatch closeLatch;
+
+    public LatencyDataSourceFactory(Map<Uri, byte[]> segments, long latencyMs) {
+      this.segments = segments;
+      this.latencyMs = latencyMs;
+      openCount = new AtomicInteger();
+    }
+
+    @Override
+    public DataSource createDataSource(@C.DataType int dataType) {
+      LatencyDataSource dataSource = new LatencyDataSource(segments, latencyMs, openCount);
+      dataSource.failReads = failReads;
+      dataSource.openLatch = openLatch;
+      dataSource.closeLatch = closeLatch;
+      return dataSource;
+    }
+  }
+
+  /**
+   * A {@link DataSource} that serves segments after a simulated request latency.
+   *
+   * <p>If set, the open latch is counted down when opening starts, and opening then blocks until
+   * the latch reaches zero. The close latch is counted down when the data source is closed.
+   */
+  private static final class LatencyDataSource implements DataSource {
+
+    public final AtomicInteger openCount;
+
+    private final Map<Uri, byte[]> segments;
+    private final long latencyMs;
+
+    public boolean failReads;
+    @Nullable public CountDownLatch openLatch;
+    @Nullable public CountDownLatch closeLatch;
+    @Nullable private Uri uri;
+    private byte[] data;
+    private int readPosition;
+    private int bytesRemaining;
+
+    public LatencyDataSource(Map<Uri, byte[]> segments, long latencyMs) {
+      this(segments, latencyMs, new AtomicInteger());
+    }
+
+    public LatencyDataSource(Map<Uri, byte[]> segments, long latencyMs, AtomicInteger openCount) {
+      this.segments = segments;
+      this.latencyMs = latencyMs;
+      this.openCount = openCount;
+      data = new byte[0];
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {}
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      openCount.incrementAndGet();
+      try {
+        if (openLatch != null) {
+          openLatch.countDown();
+          if (!openLatch.await(TIMEOUT_MS, MILLISECONDS)) {
+            throw new IOException("Timed out waiting for other opens: " + dataSpec.uri);
+          }
+        }
+        Thread.sleep(latencyMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      @Nullable byte[] data = segments.get(dataSpec.uri);
+      if (data == null) {
+        throw new IOException("Unknown segment: " + dataSpec.uri);
+      }
+      this.data = data;
+      uri = dataSpec.uri;
+      readPosition = (int) dataSpec.position;
+      bytesRemaining =
+          dataSpec.length == C.LENGTH_UNSET ? data.length - readPosition : (int) dataSpec.length;
+      return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (failReads) {
+        throw new IOException("Read failed: " + uri);
+      }
+      if (length == 0) {
+        return 0;
+      }
+      if (bytesRemaining == 0) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesToRead = min(length, bytesRemaining);
+      System.arraycopy(data, readPosition, buffer, offset, bytesToRead);
+      readPosition += bytesToRead;
+      bytesRemaining -= bytesToRead;
+      return bytesToRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+      if (closeLatch != null) {
+        closeLatch.countDown();
+      }
+    }
+  }
+}
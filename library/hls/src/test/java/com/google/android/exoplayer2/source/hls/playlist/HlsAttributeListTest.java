@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.hls.playlist;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link HlsAttributeList}. */
+@RunWith(AndroidJUnit4.class)
+public final class HlsAttributeListTest {
+
+  @Test
+  public void reset_withQuotedAndUnquotedValues_tokenizesAttributes() {
+    HlsAttributeList attributes = new HlsAttributeList();
+
+    attributes.reset(
+        "#EXT-X-STREAM-INF:BANDWIDTH=1280000,CODECS=\"avc1.4d401f,mp4a.40.2\",RESOLUTION=1280x720");
+
+    assertThat(attributes.size()).isEqualTo(3);
+    assertThat(attributes.getName(0)).isEqualTo("BANDWIDTH");
+    assertThat(attributes.getValue(0)).isEqualTo("1280000");
+    assertThat(attributes.isQuoted(0)).isFalse();
+    assertThat(attributes.getName(1)).isEqualTo("CODECS");
+    assertThat(attributes.getValue(1)).isEqualTo("avc1.4d401f,mp4a.40.2");
+    assertThat(attributes.isQuoted(1)).isTrue();
+    assertThat(attributes.getName(2)).isEqualTo("RESOLUTION");
+    assertThat(attributes.getValue(2)).isEqualTo("1280x720");
+  }
+
+  @Test
+  public void reset_withWhitespaceAndAttributesWithoutValue_ignoresThem() {
+    HlsAttributeList attributes = new HlsAttributeList();
+
+    attributes.reset("#EXT-X-KEY: METHOD = AES-128 ,FOO, URI=\"key\" ,IV=0x1234");
+
+    assertThat(attributes.size()).isEqualTo(3);
+    assertThat(attributes.getUnquotedValue("METHOD")).isEqualTo("AES-128");
+    assertThat(attributes.getQuotedString("URI")).isEqualTo("key");
+    assertThat(attributes.getUnquotedValue("IV")).isEqualTo("0x1234");
+    assertThat(attributes.indexOf("FOO")).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void reset_withUnterminatedQuotedValue_endsAttributeList() {
+    HlsAttributeList attributes = new HlsAttributeList();
+
+    attributes.reset("#EXT-X-MAP:BYTERANGE=\"100@0\",URI=\"init.mp4");
+
+    assertThat(attributes.size()).isEqualTo(1);
+    assertThat(attributes.getQuotedString("BYTERANGE")).isEqualTo("100@0");
+    assertThat(attributes.getQuotedString("URI")).isNull();
+  }
+
+  @Test
+  public void reset_withLineWithoutColon_returnsEmptyList() {
+    HlsAttributeList attributes = new HlsAttributeList();
+
+    attributes.reset("#EXT-X-ENDLIST");
+
+    assertThat(attributes.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void reset_withManyAttributes_replacesPreviousLine() {
+    HlsAttributeList attributes = new HlsAttributeList();
+    StringBuilder line = new StringBuilder("#EXT-X-TEST:");
+    for (int i = 0; i < 40; i++) {
+      line.append(i == 0 ? "" : ",").append("A").append(i).append('=').append(i);
+    }
+    attributes.reset(line.toString());
+
+    assertThat(attributes.size()).isEqualTo(40);
+    assertThat(attributes.getUnquotedValue("A39")).isEqualTo("39");
+
+    attributes.reset("#EXT-X-PART:DURATION=2.0,URI=\"part.ts\"");
+
+    assertThat(attributes.size()).isEqualTo(2);
+    assertThat(attributes.getUnquotedValue("A39")).isNull();
+    assertThat(attributes.getLine()).isEqualTo("#EXT-X-PART:DURATION=2.0,URI=\"part.ts\"");
+  }
+
+  @Test
+  public void getters_withValueOfOtherQuoting_returnNull() {
+    HlsAttributeList attributes = new HlsAttributeList();
+
+    attributes.reset("#EXT-X-STREAM-INF:BANDWIDTH=\"1000\",CLOSED-CAPTIONS=NONE,AUDIO=\"\"");
+
+    assertThat(attributes.getUnquotedValue("BANDWIDTH")).isNull();
+    assertThat(attributes.getQuotedString("CLOSED-CAPTIONS")).isNull();
+    assertThat(attributes.hasUnquotedValue("CLOSED-CAPTIONS", "NONE")).isTrue();
+    assertThat(attributes.getQuotedString("AUDIO")).isNull();
+  }
+}
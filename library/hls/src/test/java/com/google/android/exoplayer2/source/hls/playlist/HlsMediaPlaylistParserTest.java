@@ -464,6 +464,207 @@ public class HlsMediaPlaylistParserTest {
     assertThat(playlist.trailingParts.get(0).relativeDiscontinuitySequence).isEqualTo(1);
   }
 
+  @Test
+  public void parseMediaPlaylist_withPreviousPlaylist_reusesSegmentsOfPreviousPlaylist()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.0,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:3.5,\n"
+            + "segment11.ts\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.0,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:3.5,\n"
+            + "segment11.ts\n"
+            + "#EXTINF:4.0,\n"
+            + "segment12.ts\n";
+    HlsMediaPlaylist previousPlaylist = parseMediaPlaylist(playlistUri, previousPlaylistString);
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMultivariantPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    assertThat(playlist.segments).hasSize(3);
+    assertThat(playlist.segments.get(0)).isSameInstanceAs(previousPlaylist.segments.get(0));
+    assertThat(playlist.segments.get(1)).isSameInstanceAs(previousPlaylist.segments.get(1));
+    assertThat(playlist.segments.get(2).url).isEqualTo("segment12.ts");
+    assertThat(playlist.segments.get(2).relativeStartTimeUs).isEqualTo(7_500_000);
+  }
+
+  @Test
+  public void parseMediaPlaylist_withPreviousPlaylist_matchesPlaylistParsedWithoutPrevious()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:3\n"
+            + "#EXT-X-MEDIA-SEQUENCE:20\n"
+            + "#EXT-X-PROGRAM-DATE-TIME:2020-01-01T00:00:00.000Z\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\",BYTERANGE=\"100@0\"\n"
+            + "#EXTINF:4.0,\n"
+            + "#EXT-X-BYTERANGE:1000@100\n"
+            + "media.mp4\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key\"\n"
+            + "#EXTINF:4.0,\n"
+            + "#EXT-X-BYTERANGE:1000\n"
+            + "media.mp4\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:3.0,\n"
+            + "#EXT-X-BYTERANGE:500\n"
+            + "media.mp4\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:3\n"
+            + "#EXT-X-MEDIA-SEQUENCE:21\n"
+            + "#EXT-X-PROGRAM-DATE-TIME:2020-01-01T00:00:04.000Z\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\",BYTERANGE=\"100@0\"\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"https://example.com/key\"\n"
+            + "#EXTINF:4.0,\n"
+            + "#EXT-X-BYTERANGE:1000@1100\n"
+            + "media.mp4\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:3.0,\n"
+            + "#EXT-X-BYTERANGE:500\n"
+            + "media.mp4\n"
+            + "#EXTINF:4.0,\n"
+            + "#EXT-X-BYTERANGE:800\n"
+            + "media.mp4\n";
+    HlsMediaPlaylist previousPlaylist = parseMediaPlaylist(playlistUri, previousPlaylistString);
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMultivariantPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+    HlsMediaPlaylist expectedPlaylist = parseMediaPlaylist(playlistUri, playlistString);
+
+    assertThat(playlist.startTimeUs).isEqualTo(expectedPlaylist.startTimeUs);
+    assertThat(playlist.segments).hasSize(expectedPlaylist.segments.size());
+    for (int i = 0; i < playlist.segments.size(); i++) {
+      Segment segment = playlist.segments.get(i);
+      Segment expectedSegment = expectedPlaylist.segments.get(i);
+      assertThat(segment.url).isEqualTo(expectedSegment.url);
+      assertThat(segment.durationUs).isEqualTo(expectedSegment.durationUs);
+      assertThat(segment.relativeStartTimeUs).isEqualTo(expectedSegment.relativeStartTimeUs);
+      assertThat(segment.relativeDiscontinuitySequence)
+          .isEqualTo(expectedSegment.relativeDiscontinuitySequence);
+      assertThat(segment.byteRangeOffset).isEqualTo(expectedSegment.byteRangeOffset);
+      assertThat(segment.byteRangeLength).isEqualTo(expectedSegment.byteRangeLength);
+      assertThat(segment.fullSegmentEncryptionKeyUri)
+          .isEqualTo(expectedSegment.fullSegmentEncryptionKeyUri);
+      assertThat(segment.encryptionIV).isEqualTo(expectedSegment.encryptionIV);
+      assertThat(segment.initializationSegment.url)
+          .isEqualTo(expectedSegment.initializationSegment.url);
+    }
+  }
+
+  @Test
+  public void parseMediaPlaylist_withPreviousPlaylistWithDifferentSegments_parsesAllSegments()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.0,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:4.0,\n"
+            + "segment11.ts\n";
+    // The stream has been restarted, with media sequence numbers starting again from 10.
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:2.0,\n"
+            + "restarted10.ts\n"
+            + "#EXTINF:3.0,\n"
+            + "restarted11.ts\n";
+    HlsMediaPlaylist previousPlaylist = parseMediaPlaylist(playlistUri, previousPlaylistString);
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMultivariantPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    assertThat(playlist.segments).hasSize(2);
+    assertThat(playlist.segments.get(0).url).isEqualTo("restarted10.ts");
+    assertThat(playlist.segments.get(0).durationUs).isEqualTo(2_000_000);
+    assertThat(playlist.segments.get(1).url).isEqualTo("restarted11.ts");
+    assertThat(playlist.segments.get(1).durationUs).isEqualTo(3_000_000);
+    assertThat(playlist.tags).isEqualTo(parseMediaPlaylist(playlistUri, playlistString).tags);
+  }
+
+  @Test
+  public void parseMediaPlaylist_withPreviousPlaylistWithParts_matchesFullParse()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=1.000000\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.0,\n"
+            + "segment10.ts\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part11.0.ts\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part11.1.ts\",GAP=YES\n"
+            + "#EXTINF:4.0,\n"
+            + "segment11.ts\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part12.0.ts\"\n";
+    // The parts of segment 11 have been removed and segment 12 has been completed.
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=1.000000\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4.0,\n"
+            + "segment10.ts\n"
+            + "#EXTINF:4.0,\n"
+            + "segment11.ts\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part12.0.ts\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part12.1.ts\"\n"
+            + "#EXTINF:4.0,\n"
+            + "segment12.ts\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part13.0.ts\"\n";
+    HlsMediaPlaylist previousPlaylist = parseMediaPlaylist(playlistUri, previousPlaylistString);
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMultivariantPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+    HlsMediaPlaylist expectedPlaylist = parseMediaPlaylist(playlistUri, playlistString);
+
+    assertThat(playlist.segments.get(0)).isSameInstanceAs(previousPlaylist.segments.get(0));
+    assertThat(playlist.segments).hasSize(expectedPlaylist.segments.size());
+    for (int i = 0; i < playlist.segments.size(); i++) {
+      Segment segment = playlist.segments.get(i);
+      Segment expectedSegment = expectedPlaylist.segments.get(i);
+      assertThat(segment.url).isEqualTo(expectedSegment.url);
+      assertThat(segment.durationUs).isEqualTo(expectedSegment.durationUs);
+      assertThat(segment.relativeStartTimeUs).isEqualTo(expectedSegment.relativeStartTimeUs);
+      assertThat(segment.hasGapTag).isEqualTo(expectedSegment.hasGapTag);
+      assertThat(segment.parts).hasSize(expectedSegment.parts.size());
+      for (int j = 0; j < segment.parts.size(); j++) {
+        assertThat(segment.parts.get(j).url).isEqualTo(expectedSegment.parts.get(j).url);
+        assertThat(segment.parts.get(j).hasGapTag)
+            .isEqualTo(expectedSegment.parts.get(j).hasGapTag);
+      }
+    }
+    assertThat(playlist.trailingParts).hasSize(1);
+    assertThat(playlist.trailingParts.get(0).url).isEqualTo("part13.0.ts");
+  }
+
   @Test
   public void parseMediaPlaylist_withParts_parsesPartWithAllAttributes() throws IOException {
     Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
@@ -697,7 +898,7 @@ public class HlsMediaPlaylistParserTest {
             + "#EXT-X-VERSION:6\n"
             + "#EXT-X-MEDIA-SEQUENCE:266\n"
             + "#EXT-X-PART:DURATION=2.00000,URI=\"part267.1.ts\"\n"
-            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"filePart267.2.ts,BYTERANGE-START=0\"\n";
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"filePart267.2.ts\",BYTERANGE-START=0\n";
     InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
 
     HlsMediaPlaylist playlist =
@@ -1472,4 +1673,11 @@ public class HlsMediaPlaylistParserTest {
       assertThat(playlist.segments.get(i - 1).url).isEqualTo("long_path" + i + ".ts");
     }
   }
+
+  private static HlsMediaPlaylist parseMediaPlaylist(Uri playlistUri, String playlistString)
+      throws IOException {
+    return (HlsMediaPlaylist)
+        new HlsPlaylistParser()
+            .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+  }
 }